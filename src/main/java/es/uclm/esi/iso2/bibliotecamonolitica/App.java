@@ -1,7 +1,24 @@
 package es.uclm.esi.iso2.bibliotecamonolitica;
 
 import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios.AvisosVencimiento;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios.DiarioPrestamos;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios.PlanificadorVencimientos;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.EventoPrestamoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ModoBusqueda;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.VencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.AutocompletadoCatalogo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.ColasReserva;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceDisponibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceFacetas;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceInvertido;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceTrigramas;
 import es.uclm.esi.iso2.bibliotecamonolitica.vista.ui.VistaLogin;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.GeneradorCodigoBarrasSnowflake;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
 
 /**
@@ -19,6 +36,16 @@ public class App {
             
             logger.info("Configuración cargada correctamente");
             
+            // Un nodo de códigos de barras erróneo detiene el arranque en vez
+            // de repetir los códigos de otra instancia
+            GeneradorCodigoBarrasSnowflake.getInstance();
+            
+            // Construir los índices de búsqueda en segundo plano; hasta que
+            // terminen, las búsquedas se resuelven directamente en MySQL
+            Thread cargaIndices = new Thread(App::cargarIndices, "carga-indices");
+            cargaIndices.setDaemon(true);
+            cargaIndices.start();
+            
             // Iniciar interfaz de usuario
             javax.swing.SwingUtilities.invokeLater(() -> {
                 try {
@@ -34,4 +61,103 @@ public class App {
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Construye los índices en memoria del catálogo. Antes que nada arranca
+     * el escritor del diario de préstamos, porque sin él los eventos de las
+     * operaciones se acumulan en su cola hasta llenarla. El índice invertido
+     * solo se carga si el modo de búsqueda configurado lo utiliza; el índice
+     * de nombres de usuario, el autocompletado, las facetas, la
+     * disponibilidad y la elegibilidad de los usuarios se cargan siempre;
+     * esta última se concilia después periódicamente con la base de datos.
+     * Por último se reconstruyen las listas de espera de las reservas, los
+     * avisos de vencimiento de los préstamos en curso y la proyección del
+     * diario desde las tablas de préstamos, que también se concilia
+     * periódicamente. Cada carga falla por separado: un índice que no se carga deja
+     * sus consultas en MySQL sin impedir la carga de los demás.
+     */
+    private static void cargarIndices() {
+        EventoPrestamoDAO eventoPrestamoDAO = crear("el DAO del diario de préstamos", EventoPrestamoDAO::new);
+        if (eventoPrestamoDAO != null) {
+            DiarioPrestamos.getInstance().iniciar(eventoPrestamoDAO);
+        }
+        
+        LibroDAO libroDAO = crear("el DAO de libros", LibroDAO::new);
+        UsuarioDAO usuarioDAO = crear("el DAO de usuarios", UsuarioDAO::new);
+        if (libroDAO != null) {
+            if (libroDAO.getModoBusqueda() == ModoBusqueda.INDICE) {
+                cargar("el índice invertido", () -> IndiceInvertido.getInstance().cargar(libroDAO));
+            }
+            cargar("el índice de facetas", () -> IndiceFacetas.getInstance().cargar(libroDAO));
+            cargar("el índice de disponibilidad", () -> IndiceDisponibilidad.getInstance().cargar(libroDAO));
+        }
+        if (usuarioDAO != null) {
+            cargar("el índice de nombres de usuario", () -> IndiceTrigramas.getInstance().cargar(usuarioDAO));
+            cargar("el índice de elegibilidad", () -> IndiceElegibilidad.getInstance().cargar(usuarioDAO));
+            IndiceElegibilidad.getInstance().programarConciliacion(usuarioDAO);
+        }
+        if (libroDAO != null && usuarioDAO != null) {
+            cargar("el autocompletado", () -> AutocompletadoCatalogo.getInstance().cargar(libroDAO, usuarioDAO));
+        }
+        cargar("las listas de espera de las reservas", () -> ColasReserva.getInstance().cargar(new ReservaDAO()));
+        if (usuarioDAO != null) {
+            cargar("los avisos de vencimiento", () -> {
+                PlanificadorVencimientos planificador = PlanificadorVencimientos.getInstance();
+                planificador.addObservador(new AvisosVencimiento(usuarioDAO));
+                planificador.cargar(new VencimientoDAO());
+                planificador.programarAvance();
+            });
+        }
+        if (eventoPrestamoDAO != null && usuarioDAO != null) {
+            cargar("la proyección del diario de préstamos", () -> DiarioPrestamos.getInstance().cargar(usuarioDAO));
+            DiarioPrestamos.getInstance().programarConciliacion(usuarioDAO);
+        }
+    }
+    
+    /**
+     * Ejecuta una carga de la inicialización y registra su error sin detener
+     * las demás.
+     *
+     * @param descripcion Qué se carga, para el registro
+     * @param carga Carga a ejecutar
+     */
+    private static void cargar(String descripcion, Carga carga) {
+        try {
+            carga.ejecutar();
+        } catch (Exception e) {
+            logger.error("Error al cargar {}", descripcion, e);
+        }
+    }
+    
+    /**
+     * Crea un componente de la inicialización y registra su error.
+     *
+     * @param descripcion Qué se crea, para el registro
+     * @param creacion Creación del componente
+     * @return Componente creado, o null si ha fallado
+     */
+    private static <T> T crear(String descripcion, Creacion<T> creacion) {
+        try {
+            return creacion.crear();
+        } catch (Exception e) {
+            logger.error("Error al crear {}", descripcion, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Paso de la inicialización que puede fallar.
+     */
+    @FunctionalInterface
+    private interface Carga {
+        void ejecutar() throws Exception;
+    }
+    
+    /**
+     * Creación de un componente de la inicialización que puede fallar.
+     */
+    @FunctionalInterface
+    private interface Creacion<T> {
+        T crear() throws Exception;
+    }
+}
@@ -0,0 +1,18 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades;
+
+/**
+ * Estados posibles de una reserva de un libro.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public enum EstadoReserva {
+    /** En la lista de espera del libro */
+    PENDIENTE,
+    /** Tiene un ejemplar apartado a la espera de que el usuario lo recoja */
+    ASIGNADA,
+    /** El usuario se ha llevado en préstamo el ejemplar apartado */
+    CUMPLIDA,
+    /** Cancelada por el usuario */
+    CANCELADA
+}
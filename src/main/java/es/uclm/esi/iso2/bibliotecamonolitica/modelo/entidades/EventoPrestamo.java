@@ -0,0 +1,99 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Evento inmutable del diario de préstamos. Cada préstamo, devolución,
+ * renovación o multa añade un evento al diario, que nunca se modifica; el
+ * estado de los préstamos de un usuario en cualquier momento se obtiene
+ * reproduciendo sus eventos hasta esa fecha.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class EventoPrestamo {
+
+    private final long id;
+    private final TipoEventoPrestamo tipo;
+    private final long prestamoId;
+    private final long usuarioId;
+    private final long ejemplarId;
+    private final BigDecimal importe;
+    private final Date fecha;
+
+    /**
+     * Constructor de un evento aún no escrito en el diario.
+     *
+     * @param tipo Tipo de evento
+     * @param prestamoId ID del préstamo
+     * @param usuarioId ID del usuario del préstamo
+     * @param ejemplarId ID del ejemplar prestado o devuelto, o 0 si no corresponde
+     * @param importe Importe de la multa, o null si no corresponde
+     * @param fecha Fecha de la operación
+     */
+    public EventoPrestamo(TipoEventoPrestamo tipo, long prestamoId, long usuarioId, long ejemplarId,
+            BigDecimal importe, Date fecha) {
+        this(0, tipo, prestamoId, usuarioId, ejemplarId, importe, fecha);
+    }
+
+    /**
+     * Constructor de un evento leído del diario.
+     *
+     * @param id ID del evento, que da su orden en el diario
+     * @param tipo Tipo de evento
+     * @param prestamoId ID del préstamo
+     * @param usuarioId ID del usuario del préstamo
+     * @param ejemplarId ID del ejemplar prestado o devuelto, o 0 si no corresponde
+     * @param importe Importe de la multa, o null si no corresponde
+     * @param fecha Fecha de la operación
+     */
+    public EventoPrestamo(long id, TipoEventoPrestamo tipo, long prestamoId, long usuarioId, long ejemplarId,
+            BigDecimal importe, Date fecha) {
+        this.id = id;
+        this.tipo = tipo;
+        this.prestamoId = prestamoId;
+        this.usuarioId = usuarioId;
+        this.ejemplarId = ejemplarId;
+        this.importe = importe;
+        this.fecha = fecha;
+    }
+
+    /**
+     * Obtiene el ID del evento en el diario.
+     *
+     * @return ID del evento, o 0 si aún no se ha escrito
+     */
+    public long getId() {
+        return id;
+    }
+
+    public TipoEventoPrestamo getTipo() {
+        return tipo;
+    }
+
+    public long getPrestamoId() {
+        return prestamoId;
+    }
+
+    public long getUsuarioId() {
+        return usuarioId;
+    }
+
+    public long getEjemplarId() {
+        return ejemplarId;
+    }
+
+    public BigDecimal getImporte() {
+        return importe;
+    }
+
+    public Date getFecha() {
+        return fecha;
+    }
+
+    @Override
+    public String toString() {
+        return tipo + "[préstamo=" + prestamoId + ", usuario=" + usuarioId + ", ejemplar=" + ejemplarId + "]";
+    }
+}
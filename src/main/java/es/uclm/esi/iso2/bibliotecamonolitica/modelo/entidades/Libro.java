@@ -7,9 +7,15 @@ import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
-import javax.validation.constraints.Pattern;
+
+import org.hibernate.annotations.Formula;
 import java.util.Date;
 
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoIsbn;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.GeneradorCodigoBarras;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.GeneradorCodigoBarrasSnowflake;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.validacion.IsbnValido;
+
 /**
  * Entidad que representa un libro en el catálogo de la biblioteca.
  */
@@ -19,6 +25,9 @@ public class Libro implements Serializable {
     
     private static final long serialVersionUID = 1L;
     
+    /** Generador de los códigos de barras de los ejemplares nuevos; null para usar el compartido */
+    private static volatile GeneradorCodigoBarras generadorCodigoBarras;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -38,8 +47,7 @@ public class Libro implements Serializable {
     @Column(name = "anio_publicacion")
     private Integer anioPublicacion;
     
-    @Pattern(regexp = "^(?:ISBN(?:-13)?:?\\s)?(?=[0-9X]{13}$|(?=(?:[0-9]+[-\\s]){4})[-\\s0-9X]{17}$)97[89][-\\s]?[0-9]{1,5}[-\\s]?[0-9]+[-\\s]?[0-9]+[-\\s]?[0-9X]$", 
-            message = "El formato del ISBN no es válido")
+    @IsbnValido(message = "El formato del ISBN no es válido")
     @Column(name = "isbn", unique = true)
     private String isbn;
     
@@ -54,8 +62,21 @@ public class Libro implements Serializable {
     @Temporal(TemporalType.DATE)
     private Date fechaAlta;
     
+    /** Se crea al añadir el primer ejemplar: los libros sin ejemplares no reservan la lista */
     @OneToMany(mappedBy = "libro", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<Ejemplar> ejemplares = new ArrayList<>();
+    private List<Ejemplar> ejemplares;
+    
+    /** Ejemplares disponibles según la base de datos, leídos sin cargar la colección */
+    @Formula("(SELECT COUNT(*) FROM ejemplares e WHERE e.libro_id = id AND e.estado = 'DISPONIBLE')")
+    private Integer disponiblesCargados;
+    
+    /** Número de ejemplares en cada estado, indexado por el ordinal de EstadoEjemplar; null si todos son cero */
+    @Transient
+    private int[] ejemplaresPorEstado;
+    
+    /** false si solo se conoce el número de disponibles, no el de los demás estados */
+    @Transient
+    private boolean contadoresCompletos = true;
 
     // Constructores
     public Libro() {
@@ -115,8 +136,14 @@ public class Libro implements Serializable {
         return isbn;
     }
 
+    /**
+     * Establece el ISBN. Los ISBN válidos se guardan como ISBN-13 sin
+     * separadores, de modo que dos formas del mismo ISBN son el mismo libro.
+     * 
+     * @param isbn ISBN-13 o ISBN-10, con o sin separadores
+     */
     public void setIsbn(String isbn) {
-        this.isbn = isbn;
+        this.isbn = CodigoIsbn.normalizar(isbn);
     }
 
     public Categoria getCategoria() {
@@ -144,11 +171,15 @@ public class Libro implements Serializable {
     }
 
     public List<Ejemplar> getEjemplares() {
+        if (ejemplares == null) {
+            ejemplares = new ArrayList<>();
+        }
         return ejemplares;
     }
 
     public void setEjemplares(List<Ejemplar> ejemplares) {
         this.ejemplares = ejemplares;
+        recontarEjemplares();
     }
     
     // Métodos de negocio
@@ -165,7 +196,8 @@ public class Libro implements Serializable {
         ejemplar.setUbicacion(ubicacion);
         ejemplar.setFechaAdquisicion(new Date());
         ejemplar.setCodigoBarras(generarCodigoBarras());
-        this.ejemplares.add(ejemplar);
+        getEjemplares().add(ejemplar);
+        registrarCambioEstado(null, EstadoEjemplar.DISPONIBLE);
         return ejemplar;
     }
     
@@ -175,22 +207,113 @@ public class Libro implements Serializable {
      * @return true si se eliminó correctamente
      */
     public boolean eliminarEjemplar(Ejemplar ejemplar) {
-        return this.ejemplares.remove(ejemplar);
+        if (this.ejemplares == null || !this.ejemplares.remove(ejemplar)) {
+            return false;
+        }
+        registrarCambioEstado(ejemplar.getEstado(), null);
+        return true;
+    }
+    
+    /**
+     * Cambia el estado de un ejemplar del libro manteniendo los contadores por estado
+     * @param ejemplar Ejemplar del libro
+     * @param estado Nuevo estado
+     * @throws IllegalArgumentException Si el ejemplar no pertenece a este libro
+     */
+    public void cambiarEstadoEjemplar(Ejemplar ejemplar, EstadoEjemplar estado) {
+        if (ejemplar.getLibro() != this) {
+            throw new IllegalArgumentException("El ejemplar no pertenece a este libro");
+        }
+        EstadoEjemplar anterior = ejemplar.getEstado();
+        ejemplar.setEstado(estado);
+        registrarCambioEstado(anterior, estado);
+    }
+    
+    /**
+     * Actualiza los contadores por estado tras el cambio de estado de uno de
+     * los ejemplares del libro. Cualquier código que cambie el estado de un
+     * ejemplar sin pasar por {@link #cambiarEstadoEjemplar} debe llamarlo.
+     * @param anterior Estado anterior, o null si el ejemplar es nuevo
+     * @param nuevo Estado nuevo, o null si el ejemplar se ha eliminado
+     */
+    public void registrarCambioEstado(EstadoEjemplar anterior, EstadoEjemplar nuevo) {
+        if (anterior == nuevo) {
+            return;
+        }
+        if (ejemplaresPorEstado == null) {
+            ejemplaresPorEstado = new int[EstadoEjemplar.values().length];
+        }
+        if (anterior != null) {
+            ejemplaresPorEstado[anterior.ordinal()]--;
+        }
+        if (nuevo != null) {
+            ejemplaresPorEstado[nuevo.ordinal()]++;
+        }
     }
     
     /**
-     * Cuenta cuántos ejemplares disponibles tiene el libro
+     * Cuenta cuántos ejemplares disponibles tiene el libro, sin recorrer ni cargar la colección
      * @return número de ejemplares disponibles
      */
     public int contarEjemplaresDisponibles() {
-        return (int) this.ejemplares.stream()
-                .filter(e -> e.getEstado() == EstadoEjemplar.DISPONIBLE)
-                .count();
+        return ejemplaresPorEstado != null ? ejemplaresPorEstado[EstadoEjemplar.DISPONIBLE.ordinal()] : 0;
+    }
+    
+    /**
+     * Cuenta cuántos ejemplares del libro están en un estado. Si solo se cargó
+     * de la base de datos el número de disponibles, la primera consulta de otro
+     * estado recorre la colección una vez.
+     * @param estado Estado de los ejemplares
+     * @return número de ejemplares en ese estado
+     */
+    public int contarEjemplares(EstadoEjemplar estado) {
+        if (!contadoresCompletos && estado != EstadoEjemplar.DISPONIBLE) {
+            recontarEjemplares();
+        }
+        return ejemplaresPorEstado != null ? ejemplaresPorEstado[estado.ordinal()] : 0;
+    }
+    
+    /**
+     * Fija el número de ejemplares disponibles leído de la base de datos, sin
+     * cargar la colección de ejemplares
+     * @param disponibles Ejemplares disponibles del libro
+     */
+    public void cargarEjemplaresDisponibles(int disponibles) {
+        ejemplaresPorEstado = null;
+        if (disponibles != 0) {
+            ejemplaresPorEstado = new int[EstadoEjemplar.values().length];
+            ejemplaresPorEstado[EstadoEjemplar.DISPONIBLE.ordinal()] = disponibles;
+        }
+        contadoresCompletos = false;
+    }
+    
+    @PostLoad
+    private void cargarContadores() {
+        cargarEjemplaresDisponibles(disponiblesCargados != null ? disponiblesCargados : 0);
+    }
+    
+    private void recontarEjemplares() {
+        ejemplaresPorEstado = null;
+        if (ejemplares != null) {
+            for (Ejemplar ejemplar : ejemplares) {
+                registrarCambioEstado(null, ejemplar.getEstado());
+            }
+        }
+        contadoresCompletos = true;
+    }
+    
+    /**
+     * Cambia el generador de los códigos de barras de los ejemplares nuevos
+     * @param generador Generador a usar, o null para volver al compartido
+     */
+    public static void setGeneradorCodigoBarras(GeneradorCodigoBarras generador) {
+        generadorCodigoBarras = generador;
     }
     
     private String generarCodigoBarras() {
-        // Lógica para generar un código de barras único
-        return "LIB-" + System.currentTimeMillis() + "-" + (ejemplares.size() + 1);
+        // Único entre hilos e instancias de la aplicación, a diferencia del instante más el número de ejemplar
+        GeneradorCodigoBarras generador = generadorCodigoBarras;
+        return generador != null ? generador.generar() : GeneradorCodigoBarrasSnowflake.getInstance().generar();
     }
     
     @Override
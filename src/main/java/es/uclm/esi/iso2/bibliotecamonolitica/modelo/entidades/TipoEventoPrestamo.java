@@ -0,0 +1,20 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades;
+
+/**
+ * Tipos de los eventos del diario de préstamos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public enum TipoEventoPrestamo {
+    /** Se ha prestado un ejemplar; el primero de un préstamo lo abre */
+    EJEMPLAR_PRESTADO,
+    /** Se ha devuelto un ejemplar; el último de un préstamo lo cierra */
+    EJEMPLAR_DEVUELTO,
+    /** Se ha renovado un préstamo */
+    PRESTAMO_RENOVADO,
+    /** Se ha creado la multa de un préstamo */
+    MULTA_GENERADA,
+    /** Se ha fijado el importe final de una multa devengada */
+    MULTA_ACTUALIZADA
+}
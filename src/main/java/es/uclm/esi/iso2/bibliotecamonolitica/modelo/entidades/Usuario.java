@@ -8,6 +8,8 @@ import javax.persistence.*;
 import javax.validation.constraints.*;
 
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoDniNif;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.validacion.DniNifValido;
 
 /**
  * Entidad que representa a un usuario de la biblioteca.
@@ -41,7 +43,7 @@ public class Usuario implements Serializable {
     
     /** DNI/NIF del usuario */
     @NotBlank(message = "El DNI/NIF es obligatorio")
-    @Pattern(regexp = "[0-9]{8}[A-Z]", message = "El formato del DNI/NIF no es válido")
+    @DniNifValido(message = "El formato del DNI/NIF no es válido")
     @Column(name = "dni_nif", nullable = false, unique = true)
     private String dniNif;
     
@@ -76,13 +78,13 @@ public class Usuario implements Serializable {
     @Temporal(TemporalType.DATE)
     private Date fechaAlta;
     
-    /** Lista de préstamos realizados por el usuario */
+    /** Lista de préstamos realizados por el usuario; se crea al pedirla por primera vez */
     @OneToMany(mappedBy = "usuario", fetch = FetchType.LAZY)
-    private List<Prestamo> prestamos = new ArrayList<>();
+    private List<Prestamo> prestamos;
     
-    /** Lista de multas asociadas al usuario */
+    /** Lista de multas asociadas al usuario; se crea al pedirla por primera vez */
     @OneToMany(mappedBy = "usuario", fetch = FetchType.LAZY)
-    private List<Multa> multas = new ArrayList<>();
+    private List<Multa> multas;
     
     /**
      * Constructor por defecto necesario para JPA
@@ -182,7 +184,8 @@ public class Usuario implements Serializable {
     }
     
     /**
-     * Establece el DNI/NIF del usuario
+     * Establece el DNI/NIF del usuario. Los válidos se guardan sin separadores
+     * y con la letra en mayúscula.
      * 
      * @param dniNif DNI/NIF a establecer
      * @throws NotNullValueAllowedException si el DNI/NIF es null o vacío
@@ -191,7 +194,7 @@ public class Usuario implements Serializable {
         if (dniNif == null || dniNif.trim().isEmpty()) {
             throw new NotNullValueAllowedException("El DNI/NIF no puede ser nulo o vacío");
         }
-        this.dniNif = dniNif;
+        this.dniNif = CodigoDniNif.normalizar(dniNif);
     }
     
     /**
@@ -216,5 +219,29 @@ public class Usuario implements Serializable {
         this.direccion = direccion;
     }
 
+    /**
+     * Obtiene los préstamos del usuario
+     * 
+     * @return Lista de préstamos, creada vacía si el usuario no tenía ninguna
+     */
+    public List<Prestamo> getPrestamos() {
+        if (prestamos == null) {
+            prestamos = new ArrayList<>();
+        }
+        return prestamos;
+    }
+    
+    /**
+     * Obtiene las multas del usuario
+     * 
+     * @return Lista de multas, creada vacía si el usuario no tenía ninguna
+     */
+    public List<Multa> getMultas() {
+        if (multas == null) {
+            multas = new ArrayList<>();
+        }
+        return multas;
+    }
+
     // Resto de getters y setters siguiendo el mismo patrón
 }
\ No newline at end of file
@@ -58,6 +58,15 @@ public interface IRepositorioLibro {
      */
     List<Libro> buscarPorAutor(String autor);
     
+    /**
+     * Busca libros cuyo título, autor o descripción contengan el texto,
+     * ordenados por relevancia cuando el modo de búsqueda lo permite
+     * @param texto Texto a buscar
+     * @param limite Número máximo de resultados
+     * @return Lista de libros que coinciden, los más relevantes primero
+     */
+    List<Libro> buscarPorTexto(String texto, int limite);
+    
     /**
      * Busca libros por categoría
      * @param categoria La categoría a buscar
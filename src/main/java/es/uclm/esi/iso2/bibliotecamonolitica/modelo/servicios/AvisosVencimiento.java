@@ -0,0 +1,154 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO.PrestamoVencido;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.VencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Acciones de la aplicación ante los avisos de {@link PlanificadorVencimientos}:
+ * <ul>
+ * <li>Recordatorio: se registra para el usuario en el log.</li>
+ * <li>Vencimiento: el préstamo pasa a estar vencido creando su multa
+ * devengada, que {@link TareaMultasVencidas} actualiza después cada día. El
+ * estado del préstamo no cambia, porque un préstamo vencido sigue en curso y
+ * debe poder devolverse y contar como préstamo activo.</li>
+ * <li>Bloqueo: el usuario pasa a estar bloqueado si seguía activo, y el
+ * préstamo queda marcado para que el bloqueo no se repita al arrancar.</li>
+ * </ul>
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class AvisosVencimiento implements PlanificadorVencimientos.ObservadorVencimientos {
+
+    private static final LogHelper logger = LogHelper.getLogger(AvisosVencimiento.class);
+
+    private static final BigDecimal IMPORTE_DIA_RETRASO_POR_DEFECTO = new BigDecimal("0.50");
+
+    private final UsuarioDAO usuarioDAO;
+    private final VencimientoDAO vencimientoDAO;
+    private final MultaVencimientoDAO multaVencimientoDAO;
+    private final BigDecimal importeDiaRetraso;
+
+    private IndiceElegibilidad indiceElegibilidad = IndiceElegibilidad.getInstance();
+
+    /**
+     * Constructor que crea los DAOs de vencimientos y multas y lee el importe
+     * por día de retraso de la propiedad {@code multa.importe_dia_retraso}.
+     *
+     * @param usuarioDAO DAO de usuarios
+     * @throws DAOException Si no se pueden inicializar los DAOs
+     */
+    public AvisosVencimiento(UsuarioDAO usuarioDAO) throws DAOException {
+        this(usuarioDAO, new VencimientoDAO(), new MultaVencimientoDAO(), leerImporteDiaRetraso());
+    }
+
+    /**
+     * Constructor con los DAOs a utilizar.
+     *
+     * @param usuarioDAO DAO de usuarios
+     * @param vencimientoDAO DAO en el que se marcan los bloqueos aplicados
+     * @param multaVencimientoDAO DAO de las multas devengadas
+     * @param importeDiaRetraso Importe por día de retraso
+     */
+    public AvisosVencimiento(UsuarioDAO usuarioDAO, VencimientoDAO vencimientoDAO,
+            MultaVencimientoDAO multaVencimientoDAO, BigDecimal importeDiaRetraso) {
+        this.usuarioDAO = usuarioDAO;
+        this.vencimientoDAO = vencimientoDAO;
+        this.multaVencimientoDAO = multaVencimientoDAO;
+        this.importeDiaRetraso = importeDiaRetraso;
+    }
+
+    /**
+     * Sustituye el índice en el que se registran las multas nuevas.
+     *
+     * @param indiceElegibilidad Índice a actualizar, o null para no actualizar ninguno
+     */
+    public void setIndiceElegibilidad(IndiceElegibilidad indiceElegibilidad) {
+        this.indiceElegibilidad = indiceElegibilidad;
+    }
+
+    @Override
+    public void avisar(PlanificadorVencimientos.Aviso aviso) {
+        try {
+            switch (aviso.getTipo()) {
+                case RECORDATORIO:
+                    logger.info("Recordatorio al usuario {}: el préstamo {} debe devolverse el {}",
+                            aviso.getUsuarioId(), aviso.getPrestamoId(), aviso.getFechaDevolucionPrevista());
+                    break;
+                case VENCIMIENTO:
+                    marcarVencido(aviso);
+                    break;
+                case BLOQUEO:
+                    bloquearUsuario(aviso);
+                    break;
+                default:
+                    break;
+            }
+        } catch (DAOException | NotNullValueAllowedException e) {
+            logger.error("Error al procesar el aviso {} del préstamo {}", aviso.getTipo(), aviso.getPrestamoId(), e);
+        }
+    }
+
+    /**
+     * Crea la multa devengada de un préstamo que acaba de vencer. La
+     * inserción comprueba que el préstamo sigue en curso y aún no tiene multa.
+     */
+    private void marcarVencido(PlanificadorVencimientos.Aviso aviso) throws DAOException {
+        Date ahora = new Date();
+        long diasRetraso = ServicioPrestamo.calcularDiasRetraso(aviso.getFechaDevolucionPrevista(), ahora);
+        BigDecimal importe = ServicioPrestamo.calcularImporte(importeDiaRetraso, diasRetraso);
+        PrestamoVencido prestamo = new PrestamoVencido(aviso.getPrestamoId(), aviso.getUsuarioId(),
+                aviso.getFechaDevolucionPrevista(), null);
+
+        boolean[] creadas = multaVencimientoDAO.registrarMultas(Collections.singletonList(prestamo),
+                new BigDecimal[] {importe}, ahora);
+        if (creadas.length > 0 && creadas[0]) {
+            if (indiceElegibilidad != null) {
+                indiceElegibilidad.multaGenerada(aviso.getUsuarioId());
+            }
+            logger.info("Préstamo {} del usuario {} vencido: multa devengada de {}",
+                    aviso.getPrestamoId(), aviso.getUsuarioId(), importe);
+        }
+    }
+
+    /**
+     * Bloquea al usuario de un préstamo que lleva demasiado tiempo vencido y
+     * marca el préstamo, de modo que el aviso no se vuelva a planificar al
+     * arrancar aunque después se desbloquee al usuario.
+     */
+    private void bloquearUsuario(PlanificadorVencimientos.Aviso aviso)
+            throws DAOException, NotNullValueAllowedException {
+        Optional<Usuario> usuario = usuarioDAO.findById(aviso.getUsuarioId());
+        if (usuario.isPresent() && usuario.get().getEstado() == EstadoUsuario.ACTIVO) {
+            usuario.get().setEstado(EstadoUsuario.BLOQUEADO);
+            usuarioDAO.update(usuario.get());
+            logger.info("Usuario {} bloqueado por el préstamo vencido {}", aviso.getUsuarioId(),
+                    aviso.getPrestamoId());
+        }
+        vencimientoDAO.marcarBloqueoAplicado(aviso.getPrestamoId());
+    }
+
+    private static BigDecimal leerImporteDiaRetraso() {
+        try {
+            String valor = ConfigManager.getInstance().getDatabaseProperties().getProperty("multa.importe_dia_retraso");
+            return valor != null ? new BigDecimal(valor.trim()) : IMPORTE_DIA_RETRASO_POR_DEFECTO;
+        } catch (Exception e) {
+            logger.warn("No se pudo leer el importe por día de retraso, se usa {}", IMPORTE_DIA_RETRASO_POR_DEFECTO, e);
+            return IMPORTE_DIA_RETRASO_POR_DEFECTO;
+        }
+    }
+}
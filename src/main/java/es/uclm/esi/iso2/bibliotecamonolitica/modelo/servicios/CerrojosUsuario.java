@@ -0,0 +1,274 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.CerrojoUsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.PrestamoException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Serializa las operaciones de préstamo de un mismo usuario, de modo que las
+ * comprobaciones de límites (préstamos activos, multas) y la operación que
+ * las sigue no se intercalan con otra operación del mismo usuario.
+ * <p>
+ * Los cerrojos se reparten en un número fijo de franjas según el ID del
+ * usuario: las operaciones de usuarios distintos solo se esperan si coinciden
+ * en la misma franja, algo improbable con el número de franjas por defecto. Si
+ * se configura un {@link CerrojoUsuarioDAO}, tras el cerrojo local se adquiere
+ * también el cerrojo del usuario en MySQL, para serializar entre varias
+ * instancias de la aplicación; el cerrojo local garantiza que cada instancia
+ * solo pide a MySQL un cerrojo por franja a la vez.
+ * <p>
+ * Registra cuántas adquisiciones han tenido que esperar y cuánto tiempo.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class CerrojosUsuario {
+
+    private static final LogHelper logger = LogHelper.getLogger(CerrojosUsuario.class);
+
+    private static final int FRANJAS_POR_DEFECTO = 256;
+    private static final long ESPERA_MS_POR_DEFECTO = 5000;
+
+    /** Instancia compartida por la aplicación */
+    private static CerrojosUsuario instance;
+
+    private final ReentrantLock[] franjas;
+    private final int mascara;
+    private final long esperaNanos;
+    private final CerrojoUsuarioDAO cerrojoDistribuido;
+
+    private final LongAdder adquisiciones = new LongAdder();
+    private final LongAdder adquisicionesConEspera = new LongAdder();
+    private final LongAdder nanosEspera = new LongAdder();
+    private final LongAccumulator maxNanosEspera = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Obtiene la instancia compartida, configurada con las propiedades
+     * {@code prestamo.cerrojo.franjas}, {@code prestamo.cerrojo.espera_ms} y
+     * {@code prestamo.cerrojo.distribuido}.
+     *
+     * @return Cerrojos por usuario de la aplicación
+     */
+    public static synchronized CerrojosUsuario getInstance() {
+        if (instance == null) {
+            instance = desdeConfiguracion();
+        }
+        return instance;
+    }
+
+    private static CerrojosUsuario desdeConfiguracion() {
+        Properties props;
+        try {
+            props = ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de cerrojos, se usan los valores por defecto", e);
+            props = new Properties();
+        }
+        int franjas = FRANJAS_POR_DEFECTO;
+        long esperaMs = ESPERA_MS_POR_DEFECTO;
+        try {
+            franjas = Integer.parseInt(props.getProperty("prestamo.cerrojo.franjas",
+                    String.valueOf(FRANJAS_POR_DEFECTO)).trim());
+            esperaMs = Long.parseLong(props.getProperty("prestamo.cerrojo.espera_ms",
+                    String.valueOf(ESPERA_MS_POR_DEFECTO)).trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Configuración de cerrojos no válida, se usan los valores por defecto", e);
+        }
+
+        CerrojoUsuarioDAO distribuido = null;
+        if (Boolean.parseBoolean(props.getProperty("prestamo.cerrojo.distribuido", "false").trim())) {
+            try {
+                distribuido = new CerrojoUsuarioDAO();
+            } catch (DAOException e) {
+                logger.error("No se pudo crear el cerrojo distribuido, solo se serializa en esta instancia", e);
+            }
+        }
+        return new CerrojosUsuario(franjas, esperaMs, distribuido);
+    }
+
+    /**
+     * Crea cerrojos locales a esta instancia de la aplicación.
+     *
+     * @param franjas Número de franjas; se redondea a la potencia de dos superior
+     * @param esperaMs Milisegundos máximos de espera por un cerrojo
+     */
+    public CerrojosUsuario(int franjas, long esperaMs) {
+        this(franjas, esperaMs, null);
+    }
+
+    /**
+     * Crea cerrojos que, además, se adquieren en MySQL.
+     *
+     * @param franjas Número de franjas; se redondea a la potencia de dos superior
+     * @param esperaMs Milisegundos máximos de espera por un cerrojo
+     * @param cerrojoDistribuido DAO de cerrojos de MySQL, o null para usar solo cerrojos locales
+     */
+    public CerrojosUsuario(int franjas, long esperaMs, CerrojoUsuarioDAO cerrojoDistribuido) {
+        int tamano = Integer.highestOneBit(Math.max(1, Math.min(franjas, 1 << 16) * 2 - 1));
+        this.franjas = new ReentrantLock[tamano];
+        for (int i = 0; i < tamano; i++) {
+            this.franjas[i] = new ReentrantLock();
+        }
+        this.mascara = tamano - 1;
+        this.esperaNanos = TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        this.cerrojoDistribuido = cerrojoDistribuido;
+    }
+
+    /**
+     * Adquiere el cerrojo de un usuario. Debe liberarse con
+     * {@link Cerrojo#close()}, normalmente con un try-with-resources. No debe
+     * adquirirse dos veces el mismo usuario desde un hilo si hay cerrojo
+     * distribuido.
+     *
+     * @param usuarioId ID del usuario
+     * @return Cerrojo adquirido
+     * @throws PrestamoException Si se agota la espera, se interrumpe o falla el cerrojo distribuido
+     */
+    public Cerrojo adquirir(long usuarioId) throws PrestamoException {
+        ReentrantLock franja = franjas[franja(usuarioId)];
+        long inicio = System.nanoTime();
+        boolean libre = franja.tryLock();
+        if (!libre) {
+            try {
+                if (!franja.tryLock(esperaNanos, TimeUnit.NANOSECONDS)) {
+                    registrarEspera(System.nanoTime() - inicio, true);
+                    throw new PrestamoException("Tiempo de espera agotado para operar con el usuario " + usuarioId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PrestamoException("Interrumpida la espera para operar con el usuario " + usuarioId, e);
+            }
+        }
+
+        Connection conexion = null;
+        if (cerrojoDistribuido != null) {
+            long restanteNanos = Math.max(0, esperaNanos - (System.nanoTime() - inicio));
+            try {
+                conexion = cerrojoDistribuido.adquirir(usuarioId,
+                        (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(restanteNanos)));
+            } catch (DAOException e) {
+                franja.unlock();
+                registrarEspera(System.nanoTime() - inicio, true);
+                throw new PrestamoException("No se pudo adquirir el cerrojo del usuario " + usuarioId, e);
+            }
+        }
+
+        long espera = System.nanoTime() - inicio;
+        registrarEspera(espera, !libre);
+        if (!libre) {
+            logger.debug("Cerrojo del usuario {} adquirido tras esperar {} µs", usuarioId, espera / 1000);
+        }
+        return new Cerrojo(franja, conexion, usuarioId);
+    }
+
+    private void registrarEspera(long nanos, boolean conEspera) {
+        adquisiciones.increment();
+        nanosEspera.add(nanos);
+        maxNanosEspera.accumulate(nanos);
+        if (conEspera) {
+            adquisicionesConEspera.increment();
+        }
+    }
+
+    /**
+     * Calcula la franja de un usuario, mezclando los bits del ID para que los
+     * IDs consecutivos caigan en franjas distintas.
+     *
+     * @param usuarioId ID del usuario
+     * @return Índice de la franja
+     */
+    int franja(long usuarioId) {
+        return (int) ((usuarioId * 0x9E3779B97F4A7C15L) >>> 32) & mascara;
+    }
+
+    /**
+     * Obtiene el número de franjas.
+     *
+     * @return Número de cerrojos locales
+     */
+    public int getNumeroFranjas() {
+        return franjas.length;
+    }
+
+    /**
+     * Obtiene el número de intentos de adquirir un cerrojo, incluidos los que
+     * agotaron la espera.
+     *
+     * @return Adquisiciones
+     */
+    public long getAdquisiciones() {
+        return adquisiciones.sum();
+    }
+
+    /**
+     * Obtiene el número de adquisiciones que encontraron la franja ocupada
+     * y tuvieron que esperar.
+     *
+     * @return Adquisiciones con espera
+     */
+    public long getAdquisicionesConEspera() {
+        return adquisicionesConEspera.sum();
+    }
+
+    /**
+     * Obtiene el tiempo total de espera de todas las adquisiciones.
+     *
+     * @return Nanosegundos de espera acumulados
+     */
+    public long getNanosEspera() {
+        return nanosEspera.sum();
+    }
+
+    /**
+     * Obtiene la espera más larga de una adquisición.
+     *
+     * @return Nanosegundos de la espera máxima
+     */
+    public long getMaxNanosEspera() {
+        return maxNanosEspera.get();
+    }
+
+    /**
+     * Cerrojo adquirido sobre un usuario
+     */
+    public final class Cerrojo implements AutoCloseable {
+
+        private final ReentrantLock franja;
+        private final Connection conexion;
+        private final long usuarioId;
+        private boolean liberado;
+
+        private Cerrojo(ReentrantLock franja, Connection conexion, long usuarioId) {
+            this.franja = franja;
+            this.conexion = conexion;
+            this.usuarioId = usuarioId;
+        }
+
+        /**
+         * Libera el cerrojo. Las llamadas posteriores no tienen efecto.
+         */
+        @Override
+        public void close() {
+            if (liberado) {
+                return;
+            }
+            liberado = true;
+            try {
+                if (conexion != null) {
+                    cerrojoDistribuido.liberar(conexion, usuarioId);
+                }
+            } finally {
+                franja.unlock();
+            }
+        }
+    }
+}
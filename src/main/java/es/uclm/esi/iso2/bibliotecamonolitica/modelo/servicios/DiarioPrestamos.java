@@ -0,0 +1,404 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.EventoPrestamoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Diario de préstamos: registro de solo adición de los préstamos,
+ * devoluciones, renovaciones y multas, y proyección en memoria de los
+ * contadores de préstamos de cada usuario.
+ * <p>
+ * Las operaciones encolan sus eventos después de confirmarse, sin esperar
+ * a la base de datos. Un único hilo escritor vacía la cola y escribe los
+ * eventos acumulados en una transacción, en el orden de la cola, y tras
+ * cada lote actualiza la {@link ProyeccionPrestamos}.
+ * <p>
+ * El diario no es fiable: un evento se pierde si la cola sigue llena tras
+ * esperar un segundo, si el diario se detiene sin poder escribirlo o si la
+ * aplicación termina con eventos en la cola, porque el escritor es un hilo
+ * en segundo plano. Por eso la tabla de eventos es solo un registro de
+ * actividad y no se reproduce: no hay historial ni instantáneas que
+ * dependan de que esté completa. Las tablas de préstamos son la fuente de
+ * verdad; la proyección parte de ellas al cargarse y sus préstamos activos
+ * se concilian periódicamente con ellas (véase {@link #programarConciliacion}).
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class DiarioPrestamos {
+
+    private static final LogHelper logger = LogHelper.getLogger(DiarioPrestamos.class);
+
+    /** Número de usuarios leídos por consulta al cargar y conciliar la proyección */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    private static final int CAPACIDAD_COLA_POR_DEFECTO = 10000;
+    private static final int TAMANO_LOTE_POR_DEFECTO = 500;
+    private static final int CONCILIACION_MIN_POR_DEFECTO = 60;
+
+    /** Espera máxima de una operación cuando la cola está llena */
+    private static final long ESPERA_COLA_LLENA_MS = 1000;
+    private static final long ESPERA_REINTENTO_INICIAL_MS = 100;
+    private static final long ESPERA_REINTENTO_MAXIMA_MS = 5000;
+
+    /** Instancia compartida por la aplicación */
+    private static DiarioPrestamos instance;
+
+    private final BlockingQueue<EventoPrestamo> cola;
+    private final int tamanoLote;
+
+    private final AtomicLong escritos = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong correcciones = new AtomicLong();
+
+    private volatile ProyeccionPrestamos proyeccion = new ProyeccionPrestamos();
+    private volatile EventoPrestamoDAO eventoPrestamoDAO;
+    private volatile boolean cargado;
+    private volatile boolean detenido;
+    private Thread escritor;
+    private ScheduledExecutorService programador;
+
+    /**
+     * Obtiene la instancia compartida del diario, configurada con las
+     * propiedades {@code diario.capacidad_cola} y {@code diario.tamano_lote}.
+     *
+     * @return Diario de préstamos
+     */
+    public static synchronized DiarioPrestamos getInstance() {
+        if (instance == null) {
+            Properties props = leerConfiguracion();
+            instance = new DiarioPrestamos(
+                    leerEntero(props, "diario.capacidad_cola", CAPACIDAD_COLA_POR_DEFECTO),
+                    leerEntero(props, "diario.tamano_lote", TAMANO_LOTE_POR_DEFECTO));
+        }
+        return instance;
+    }
+
+    /**
+     * Crea un diario vacío, sin hilo escritor.
+     *
+     * @param capacidadCola Eventos que pueden esperar a ser escritos
+     * @param tamanoLote Máximo de eventos escritos en una transacción
+     */
+    public DiarioPrestamos(int capacidadCola, int tamanoLote) {
+        this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidadCola));
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    /**
+     * Carga los préstamos activos de la proyección desde las tablas de
+     * préstamos. Puede llamarse con el escritor ya iniciado: los usuarios con
+     * lotes escritos durante la carga se corrigen en la siguiente
+     * conciliación. Las devoluciones de préstamos anteriores a la carga solo
+     * se reflejan en la conciliación siguiente, y el resto de contadores
+     * cuentan desde la carga.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     * @throws DAOException Si ocurre un error al leer los usuarios
+     */
+    public void cargar(UsuarioDAO usuarioDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        synchronized (this) {
+            proyeccion = new ProyeccionPrestamos();
+            cargado = true;
+        }
+        try {
+            conciliar(usuarioDAO);
+        } catch (DAOException | RuntimeException e) {
+            cargado = false;
+            throw e;
+        }
+        logger.info("Diario de préstamos cargado: {} usuarios en {} ms", proyeccion.getNumeroUsuarios(),
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si la proyección ha terminado su carga inicial.
+     *
+     * @return true si la proyección está cargada
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Arranca el hilo que escribe los eventos en el diario. Si no se ha
+     * cargado la proyección, los eventos solo se escriben. Las llamadas
+     * posteriores no tienen efecto.
+     *
+     * @param eventoPrestamoDAO DAO del diario
+     */
+    public synchronized void iniciar(EventoPrestamoDAO eventoPrestamoDAO) {
+        if (escritor != null) {
+            return;
+        }
+        this.eventoPrestamoDAO = eventoPrestamoDAO;
+        escritor = new Thread(this::escribir, "diario-prestamos");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Detiene el hilo escritor después de escribir los eventos pendientes.
+     *
+     * @param esperaMs Tiempo máximo de espera en milisegundos
+     * @return true si se han escrito todos los eventos pendientes
+     */
+    public boolean detener(long esperaMs) {
+        Thread hilo;
+        synchronized (this) {
+            detenido = true;
+            hilo = escritor;
+        }
+        if (hilo != null) {
+            try {
+                hilo.join(esperaMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return (hilo == null || !hilo.isAlive()) && cola.isEmpty();
+    }
+
+    /**
+     * Encola un evento para escribirlo en el diario. Solo espera si la cola
+     * está llena; si sigue llena tras la espera, el evento se descarta y la
+     * proyección no lo refleja hasta la siguiente conciliación.
+     *
+     * @param evento Evento de una operación ya confirmada
+     */
+    public void registrar(EventoPrestamo evento) {
+        try {
+            if (cola.offer(evento) || cola.offer(evento, ESPERA_COLA_LLENA_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        descartados.incrementAndGet();
+        logger.error("Evento {} descartado: la cola del diario de préstamos está llena", evento);
+    }
+
+    /**
+     * Obtiene los contadores actuales de préstamos de un usuario.
+     *
+     * @param usuarioId ID del usuario
+     * @return Contadores del usuario
+     */
+    public ProyeccionPrestamos.ResumenUsuario consultar(long usuarioId) {
+        return proyeccion.consultar(usuarioId);
+    }
+
+    /**
+     * Sustituye los préstamos activos de la proyección por los de las tablas
+     * de préstamos, para corregir los eventos perdidos. Los usuarios con
+     * eventos escritos durante la conciliación o todavía en la cola se
+     * corrigen en la siguiente.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     * @return Número de usuarios corregidos, 0 si la proyección no está cargada
+     * @throws DAOException Si ocurre un error al leer los usuarios
+     */
+    public long conciliar(UsuarioDAO usuarioDAO) throws DAOException {
+        if (!cargado) {
+            return 0;
+        }
+        ProyeccionPrestamos actual = proyeccion;
+        Map<Long, Integer> distintos = new HashMap<>();
+        actual.iniciarConciliacion();
+        boolean completa = false;
+        long corregidos;
+        try {
+            usuarioDAO.recorrerElegibilidad(TAMANO_BLOQUE_CARGA, (usuarioId, activo, prestamos, multas) -> {
+                if (actual.consultar(usuarioId).getPrestamosActivos() != prestamos) {
+                    distintos.put(usuarioId, prestamos);
+                }
+            });
+            completa = true;
+        } finally {
+            Set<Long> enCola = new HashSet<>();
+            for (EventoPrestamo evento : cola) {
+                enCola.add(evento.getUsuarioId());
+            }
+            corregidos = actual.terminarConciliacion(completa ? distintos : Collections.emptyMap(), enCola);
+            correcciones.addAndGet(corregidos);
+            if (corregidos > 0) {
+                logger.warn("Conciliación del diario de préstamos: {} usuarios corregidos", corregidos);
+            }
+        }
+        return corregidos;
+    }
+
+    /**
+     * Programa una conciliación periódica en un hilo en segundo plano, con
+     * el periodo de la propiedad {@code diario.conciliacion_min}. Las
+     * llamadas posteriores no tienen efecto.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     */
+    public synchronized void programarConciliacion(UsuarioDAO usuarioDAO) {
+        if (programador != null) {
+            return;
+        }
+        long periodo = Math.max(1, leerEntero(leerConfiguracion(), "diario.conciliacion_min",
+                CONCILIACION_MIN_POR_DEFECTO));
+        programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "conciliacion-diario");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                conciliar(usuarioDAO);
+            } catch (DAOException | RuntimeException e) {
+                logger.error("Error en la conciliación del diario de préstamos", e);
+            }
+        }, periodo, periodo, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Obtiene el número de eventos a la espera de ser escritos.
+     *
+     * @return Eventos en la cola
+     */
+    public int getPendientes() {
+        return cola.size();
+    }
+
+    /**
+     * Obtiene el número de eventos escritos desde que se creó el diario.
+     *
+     * @return Eventos escritos
+     */
+    public long getEscritos() {
+        return escritos.get();
+    }
+
+    /**
+     * Obtiene el número de transacciones con que se han escrito los eventos.
+     *
+     * @return Lotes escritos
+     */
+    public long getLotes() {
+        return lotes.get();
+    }
+
+    /**
+     * Obtiene el número de eventos descartados por tener la cola llena o por
+     * detenerse el diario sin poder escribirlos.
+     *
+     * @return Eventos descartados
+     */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    /**
+     * Obtiene el número total de usuarios corregidos por las conciliaciones.
+     *
+     * @return Usuarios corregidos
+     */
+    public long getCorrecciones() {
+        return correcciones.get();
+    }
+
+    /**
+     * Bucle del hilo escritor: espera un evento y escribe con él todos los
+     * que se han acumulado, hasta que se detiene el diario y se vacía la cola.
+     */
+    private void escribir() {
+        List<EventoPrestamo> lote = new ArrayList<>(tamanoLote);
+        while (!detenido || !cola.isEmpty()) {
+            try {
+                EventoPrestamo primero = cola.poll(ESPERA_COLA_LLENA_MS, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                cola.drainTo(lote, tamanoLote - 1);
+                escribirLote(lote);
+                lote.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logger.info("Diario de préstamos detenido: {} eventos escritos en {} lotes, {} descartados",
+                escritos.get(), lotes.get(), descartados.get());
+    }
+
+    /**
+     * Escribe un lote en una transacción, reintentándolo con esperas
+     * crecientes mientras falle la base de datos, y lo aplica a la proyección.
+     * Si el diario se detiene sin poder escribirlo, el lote se descarta.
+     */
+    private void escribirLote(List<EventoPrestamo> lote) throws InterruptedException {
+        long espera = ESPERA_REINTENTO_INICIAL_MS;
+        while (true) {
+            try {
+                eventoPrestamoDAO.insertar(lote);
+                break;
+            } catch (DAOException e) {
+                if (detenido) {
+                    descartados.addAndGet(lote.size());
+                    logger.error("Diario detenido: {} eventos sin escribir", lote.size(), e);
+                    return;
+                }
+                logger.warn("Error al escribir {} eventos en el diario, se reintenta en {} ms",
+                        lote.size(), espera, e);
+                Thread.sleep(espera);
+                espera = Math.min(espera * 2, ESPERA_REINTENTO_MAXIMA_MS);
+            }
+        }
+        escritos.addAndGet(lote.size());
+        lotes.incrementAndGet();
+        synchronized (this) {
+            // Los lotes anteriores a la carga ya están en las tablas de las que parte la proyección
+            if (cargado) {
+                proyeccion.aplicar(lote);
+            }
+        }
+    }
+
+    private static Properties leerConfiguracion() {
+        try {
+            return ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración del diario, se usan los valores por defecto", e);
+            return new Properties();
+        }
+    }
+
+    private static int leerEntero(Properties props, String clave, int porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido para {}: {}, se usa {}", clave, valor, porDefecto);
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoIsbn;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LectorCsv;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LectorFilas;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LectorMarc21;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Importa el catálogo de libros desde ficheros CSV, TSV o MARC21 de cualquier
+ * tamaño, como los que envían las editoriales y los consorcios de bibliotecas.
+ * <p>
+ * El fichero se lee fila a fila con un {@link LectorCsv} o un
+ * {@link LectorMarc21} y se trocea en bloques. Cada bloque se valida y
+ * normaliza en un grupo de hilos y después lo escribe un único hilo, en el
+ * orden del fichero, con los lotes de
+ * {@link LibroDAO}: así, si un ISBN aparece varias veces en el fichero,
+ * siempre se queda la primera fila. El número de bloques leídos y pendientes
+ * de escribir está limitado, de modo que la lectura se detiene mientras la
+ * base de datos no da abasto y la memoria no depende del tamaño del fichero.
+ * <p>
+ * En los ficheros CSV y TSV la primera fila es la cabecera, con los nombres
+ * de las columnas en cualquier orden: {@code isbn}, {@code titulo} y
+ * {@code autor} son obligatorias y {@code editorial},
+ * {@code anio_publicacion}, {@code categoria_id} y {@code descripcion}
+ * opcionales. Las filas no válidas
+ * se rechazan con su número de línea y el motivo, sin detener la importación.
+ * Cada bloque se escribe en su propia transacción; si falla uno, la
+ * importación se detiene y los bloques anteriores quedan escritos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ImportadorCatalogo {
+
+    private static final LogHelper logger = LogHelper.getLogger(ImportadorCatalogo.class);
+
+    private static final int TAMANO_BLOQUE_POR_DEFECTO = 1000;
+
+    /** Bloques leídos por adelantado por cada hilo de validación */
+    private static final int BLOQUES_POR_HILO = 2;
+
+    /** Rechazos que se conservan en el resumen; el resto solo se cuentan */
+    static final int MAX_RECHAZOS = 1000;
+
+    /** Intervalo mínimo entre dos mensajes de progreso */
+    private static final long INTERVALO_PROGRESO_MS = 5000;
+
+    private static final int MAX_TITULO = 255;
+    private static final int MAX_AUTOR = 255;
+    private static final int MAX_EDITORIAL = 100;
+
+    private final LibroDAO libroDAO;
+    private final int tamanoBloque;
+    private final int paralelismo;
+
+    /**
+     * Importa un fichero. Uso: {@code ImportadorCatalogo <fichero> [OMITIR|ACTUALIZAR]};
+     * por defecto se omiten los libros que ya están en el catálogo.
+     *
+     * @param args Fichero a importar y modo opcional
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Uso: ImportadorCatalogo <fichero> [OMITIR|ACTUALIZAR]");
+            System.exit(2);
+        }
+        ModoImportacion modo = args.length > 1 && "ACTUALIZAR".equalsIgnoreCase(args[1])
+                ? ModoImportacion.ACTUALIZAR_EXISTENTES : ModoImportacion.OMITIR_EXISTENTES;
+        try {
+            ConfigManager.getInstance().cargarConfiguracion();
+            Resumen resumen = new ImportadorCatalogo().importar(Paths.get(args[0]), modo);
+            for (Rechazo rechazo : resumen.getRechazos()) {
+                logger.warn("Fila rechazada en la {}", rechazo);
+            }
+        } catch (DAOException | IOException e) {
+            logger.error("Error al importar el catálogo desde {}", args[0], e);
+            System.exit(1);
+        } catch (Exception e) {
+            logger.error("Error al cargar la configuración", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Constructor que crea el DAO y lee la configuración: el tamaño de bloque
+     * de {@code importacion.tamano_bloque} y los hilos de validación de
+     * {@code importacion.hilos}.
+     *
+     * @throws DAOException Si no se puede inicializar el DAO
+     */
+    public ImportadorCatalogo() throws DAOException {
+        this(new LibroDAO(), leerConfiguracion());
+    }
+
+    private ImportadorCatalogo(LibroDAO libroDAO, Properties props) {
+        this(libroDAO,
+                leerEntero(props.getProperty("importacion.tamano_bloque"), TAMANO_BLOQUE_POR_DEFECTO),
+                leerEntero(props.getProperty("importacion.hilos"), Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructor con el DAO y los parámetros de la importación.
+     *
+     * @param libroDAO DAO en el que se escriben los libros
+     * @param tamanoBloque Filas por bloque
+     * @param paralelismo Hilos que validan bloques a la vez
+     */
+    public ImportadorCatalogo(LibroDAO libroDAO, int tamanoBloque, int paralelismo) {
+        this.libroDAO = libroDAO;
+        this.tamanoBloque = Math.max(1, tamanoBloque);
+        this.paralelismo = Math.max(1, paralelismo);
+    }
+
+    /**
+     * Importa un fichero. Los ficheros {@code .mrc} y {@code .marc} se leen
+     * como volcados MARC21; el resto, como texto en UTF-8, separado por
+     * tabuladores si es {@code .tsv} y, si no, con el separador que se deduce
+     * de la cabecera.
+     *
+     * @param fichero Fichero a importar
+     * @param modo Qué hacer con los libros que ya están en el catálogo
+     * @return Resumen de la importación
+     * @throws IOException Si no se puede leer el fichero o su cabecera no es válida
+     * @throws DAOException Si falla la escritura de algún bloque
+     */
+    public Resumen importar(Path fichero, ModoImportacion modo) throws IOException, DAOException {
+        String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".mrc") || nombre.endsWith(".marc")) {
+            return importarMarc21(fichero, modo);
+        }
+        try (BufferedReader entrada = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            char separador;
+            if (nombre.endsWith(".tsv")) {
+                separador = '\t';
+            } else {
+                entrada.mark(1 << 16);
+                String cabecera = entrada.readLine();
+                entrada.reset();
+                separador = LectorCsv.detectarSeparador(cabecera != null ? cabecera : "");
+            }
+            logger.info("Importando el catálogo desde {}", fichero);
+            return importar(entrada, separador, modo);
+        }
+    }
+
+    /**
+     * Importa el catálogo desde una entrada de texto.
+     *
+     * @param entrada Entrada con la cabecera y las filas; se cierra al terminar
+     * @param separador Separador de campos
+     * @param modo Qué hacer con los libros que ya están en el catálogo
+     * @return Resumen de la importación
+     * @throws IOException Si no se puede leer la entrada o su cabecera no es válida
+     * @throws DAOException Si falla la escritura de algún bloque; los bloques
+     *         anteriores quedan escritos
+     */
+    public Resumen importar(Reader entrada, char separador, ModoImportacion modo)
+            throws IOException, DAOException {
+        try (LectorCsv lector = new LectorCsv(entrada, separador)) {
+            String[] cabecera = lector.siguienteFila();
+            if (cabecera == null) {
+                throw new IOException("El fichero no tiene cabecera");
+            }
+            return importar(lector, new Columnas(cabecera), modo);
+        }
+    }
+
+    /**
+     * Importa el catálogo desde un volcado MARC21 con {@link LectorMarc21}.
+     * En los rechazos, la línea es el número de orden del registro.
+     *
+     * @param fichero Fichero con los registros en formato ISO 2709
+     * @param modo Qué hacer con los libros que ya están en el catálogo
+     * @return Resumen de la importación
+     * @throws IOException Si no se puede leer el fichero o algún registro está dañado
+     * @throws DAOException Si falla la escritura de algún bloque; los bloques
+     *         anteriores quedan escritos
+     */
+    public Resumen importarMarc21(Path fichero, ModoImportacion modo) throws IOException, DAOException {
+        logger.info("Importando el catálogo desde el volcado MARC21 {}", fichero);
+        try (LectorMarc21 lector = LectorMarc21.abrir(fichero)) {
+            return importar(lector, new Columnas(LectorMarc21.COLUMNAS), modo);
+        }
+    }
+
+    /**
+     * Recorre las filas por bloques: los valida en paralelo y los escribe en orden.
+     */
+    private Resumen importar(LectorFilas lector, Columnas columnas, ModoImportacion modo)
+            throws IOException, DAOException {
+        Resumen resumen = new Resumen();
+        long inicio = System.nanoTime();
+        Date fechaAlta = new Date();
+        Escritura escritura = new Escritura(modo, resumen, inicio);
+
+        ExecutorService validadores = Executors.newFixedThreadPool(paralelismo);
+        ExecutorService escritor = Executors.newSingleThreadExecutor();
+        // Uno más que los hilos de validación para que el escritor no espere
+        int maxEnCurso = paralelismo * BLOQUES_POR_HILO + 1;
+        Semaphore enCurso = new Semaphore(maxEnCurso);
+        CompletableFuture<Void> ultimo = CompletableFuture.completedFuture(null);
+        try {
+            int leidas;
+            do {
+                Bloque bloque = leerBloque(lector);
+                // El bloque pasa a los validadores: no se vuelve a tocar desde este hilo
+                leidas = bloque.filas.size();
+                if (leidas == 0) {
+                    break;
+                }
+                resumen.filas.add(leidas);
+                enCurso.acquireUninterruptibly();
+                CompletableFuture<Bloque> validado = CompletableFuture.supplyAsync(
+                        () -> validar(bloque, columnas, fechaAlta), validadores);
+                // Los bloques se escriben en orden aunque se validen en cualquiera
+                ultimo = ultimo.thenCombineAsync(validado, (nada, listo) -> {
+                    escritura.escribir(listo);
+                    return null;
+                }, escritor);
+                ultimo.whenComplete((nada, error) -> enCurso.release());
+            } while (leidas == tamanoBloque && !ultimo.isCompletedExceptionally());
+        } finally {
+            // Esperar a los bloques en curso antes de terminar o propagar un error
+            enCurso.acquireUninterruptibly(maxEnCurso);
+            validadores.shutdown();
+            escritor.shutdown();
+        }
+
+        try {
+            ultimo.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof DAOException) {
+                throw (DAOException) e.getCause();
+            }
+            throw new DAOException("La importación del catálogo se detuvo tras "
+                    + escritura.procesadas + " filas", e.getCause());
+        }
+
+        resumen.milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+        logger.info("Catálogo importado: {} filas, {} creadas, {} actualizadas, {} omitidas, "
+                + "{} duplicadas, {} rechazadas, {} ms", resumen.getFilas(), resumen.getCreadas(),
+                resumen.getActualizadas(), resumen.getOmitidas(), resumen.getDuplicadas(),
+                resumen.getRechazadas(), resumen.milisegundos);
+        return resumen;
+    }
+
+    private Bloque leerBloque(LectorFilas lector) throws IOException {
+        Bloque bloque = new Bloque(tamanoBloque);
+        String[] fila;
+        while (bloque.filas.size() < tamanoBloque && (fila = lector.siguienteFila()) != null) {
+            bloque.lineas[bloque.filas.size()] = lector.getLinea();
+            bloque.filas.add(fila);
+        }
+        return bloque;
+    }
+
+    /**
+     * Convierte las filas de un bloque en libros y anota las que no son válidas.
+     */
+    private static Bloque validar(Bloque bloque, Columnas columnas, Date fechaAlta) {
+        for (int i = 0; i < bloque.filas.size(); i++) {
+            try {
+                bloque.libros.add(crearLibro(bloque.filas.get(i), columnas, fechaAlta));
+            } catch (IllegalArgumentException e) {
+                bloque.rechazos.add(new Rechazo(bloque.lineas[i], e.getMessage()));
+            }
+        }
+        // Las filas ya no hacen falta mientras el bloque espera su turno de escritura
+        bloque.filas.clear();
+        return bloque;
+    }
+
+    /**
+     * Crea el libro de una fila, con el ISBN normalizado a ISBN-13.
+     *
+     * @throws IllegalArgumentException Con el motivo, si la fila no es válida
+     */
+    private static Libro crearLibro(String[] fila, Columnas columnas, Date fechaAlta) {
+        String isbn = columnas.valor(fila, columnas.isbn);
+        if (isbn == null) {
+            throw new IllegalArgumentException("falta el ISBN");
+        }
+        if (!CodigoIsbn.esValido(isbn)) {
+            throw new IllegalArgumentException("ISBN no válido: " + isbn);
+        }
+
+        Libro libro = new Libro();
+        libro.setIsbn(CodigoIsbn.normalizar(isbn));
+        libro.setTitulo(texto(fila, columnas, columnas.titulo, "título", MAX_TITULO, true));
+        libro.setAutor(texto(fila, columnas, columnas.autor, "autor", MAX_AUTOR, true));
+        libro.setEditorial(texto(fila, columnas, columnas.editorial, "editorial", MAX_EDITORIAL, false));
+        libro.setDescripcion(columnas.valor(fila, columnas.descripcion));
+        libro.setFechaAlta(fechaAlta);
+
+        String anio = columnas.valor(fila, columnas.anioPublicacion);
+        if (anio != null) {
+            try {
+                libro.setAnioPublicacion(Integer.valueOf(anio));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("año de publicación no válido: " + anio);
+            }
+        }
+
+        String categoriaId = columnas.valor(fila, columnas.categoriaId);
+        if (categoriaId != null) {
+            long id;
+            try {
+                id = Long.parseLong(categoriaId);
+            } catch (NumberFormatException e) {
+                id = 0;
+            }
+            if (id <= 0) {
+                throw new IllegalArgumentException("categoría no válida: " + categoriaId);
+            }
+            Categoria categoria = new Categoria();
+            categoria.setId(id);
+            libro.setCategoria(categoria);
+        }
+        return libro;
+    }
+
+    private static String texto(String[] fila, Columnas columnas, int columna, String nombre, int maximo,
+            boolean obligatorio) {
+        String valor = columnas.valor(fila, columna);
+        if (valor == null) {
+            if (obligatorio) {
+                throw new IllegalArgumentException("falta el " + nombre);
+            }
+            return null;
+        }
+        if (valor.length() > maximo) {
+            throw new IllegalArgumentException("el " + nombre + " supera los " + maximo + " caracteres");
+        }
+        return valor;
+    }
+
+    private static Properties leerConfiguracion() {
+        try {
+            return ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de la importación, se usan los valores por defecto", e);
+            return new Properties();
+        }
+    }
+
+    private static int leerEntero(String valor, int porDefecto) {
+        try {
+            return valor == null || valor.trim().isEmpty() ? porDefecto : Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido: {}, se usa {}", valor, porDefecto);
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Escritura de los bloques validados. Solo la usa el hilo escritor, de
+     * uno en uno y en el orden del fichero.
+     */
+    private final class Escritura {
+
+        private final ModoImportacion modo;
+        private final Resumen resumen;
+        private final long inicio;
+
+        /** ISBN-13 ya vistos en el fichero, como número para ocupar menos */
+        private final Set<Long> isbnsVistos = new HashSet<>();
+        private long procesadas;
+        private long ultimoProgreso;
+
+        Escritura(ModoImportacion modo, Resumen resumen, long inicio) {
+            this.modo = modo;
+            this.resumen = resumen;
+            this.inicio = inicio;
+            this.ultimoProgreso = inicio;
+        }
+
+        void escribir(Bloque bloque) {
+            for (Rechazo rechazo : bloque.rechazos) {
+                resumen.rechazar(rechazo);
+            }
+
+            List<Libro> unicos = new ArrayList<>(bloque.libros.size());
+            List<String> isbns = new ArrayList<>(bloque.libros.size());
+            for (Libro libro : bloque.libros) {
+                if (isbnsVistos.add(Long.parseLong(libro.getIsbn()))) {
+                    unicos.add(libro);
+                    isbns.add(libro.getIsbn());
+                } else {
+                    resumen.duplicadas.increment();
+                }
+            }
+
+            try {
+                Map<String, Long> existentes = isbns.isEmpty() ? new HashMap<>() : libroDAO.buscarIdsPorIsbn(isbns);
+                List<Libro> nuevos = new ArrayList<>(unicos.size());
+                List<Libro> actualizados = new ArrayList<>();
+                for (Libro libro : unicos) {
+                    Long id = existentes.get(libro.getIsbn());
+                    if (id == null) {
+                        nuevos.add(libro);
+                    } else if (modo == ModoImportacion.ACTUALIZAR_EXISTENTES) {
+                        libro.setId(id);
+                        actualizados.add(libro);
+                    } else {
+                        resumen.omitidas.increment();
+                    }
+                }
+                libroDAO.crearLote(nuevos);
+                libroDAO.actualizarLote(actualizados);
+                resumen.creadas.add(nuevos.size());
+                resumen.actualizadas.add(actualizados.size());
+            } catch (DAOException e) {
+                throw new CompletionException(e);
+            }
+
+            procesadas += bloque.libros.size() + bloque.rechazos.size();
+            informarProgreso();
+        }
+
+        private void informarProgreso() {
+            long ahora = System.nanoTime();
+            if ((ahora - ultimoProgreso) / 1_000_000 < INTERVALO_PROGRESO_MS) {
+                return;
+            }
+            ultimoProgreso = ahora;
+            long milisegundos = Math.max(1, (ahora - inicio) / 1_000_000);
+            logger.info("Importación del catálogo: {} filas escritas ({} filas/s), {} creadas, {} actualizadas, "
+                    + "{} rechazadas", procesadas, procesadas * 1000 / milisegundos, resumen.getCreadas(),
+                    resumen.getActualizadas(), resumen.getRechazadas());
+        }
+    }
+
+    /**
+     * Filas leídas de un bloque y, tras validarlas, sus libros y rechazos
+     */
+    private static final class Bloque {
+        private final List<String[]> filas;
+        private final long[] lineas;
+        private final List<Libro> libros;
+        private final List<Rechazo> rechazos = new ArrayList<>();
+
+        Bloque(int capacidad) {
+            this.filas = new ArrayList<>(capacidad);
+            this.lineas = new long[capacidad];
+            this.libros = new ArrayList<>(capacidad);
+        }
+    }
+
+    /**
+     * Posición de cada columna conocida en la cabecera, o -1 si no está
+     */
+    private static final class Columnas {
+        private final int isbn;
+        private final int titulo;
+        private final int autor;
+        private final int editorial;
+        private final int anioPublicacion;
+        private final int categoriaId;
+        private final int descripcion;
+
+        Columnas(String[] cabecera) throws IOException {
+            Map<String, Integer> posiciones = new HashMap<>();
+            for (int i = 0; i < cabecera.length; i++) {
+                posiciones.putIfAbsent(cabecera[i].trim().toLowerCase(Locale.ROOT), i);
+            }
+            isbn = obligatoria(posiciones, "isbn");
+            titulo = obligatoria(posiciones, "titulo");
+            autor = obligatoria(posiciones, "autor");
+            editorial = posiciones.getOrDefault("editorial", -1);
+            anioPublicacion = posiciones.getOrDefault("anio_publicacion", -1);
+            categoriaId = posiciones.getOrDefault("categoria_id", -1);
+            descripcion = posiciones.getOrDefault("descripcion", -1);
+        }
+
+        private static int obligatoria(Map<String, Integer> posiciones, String nombre) throws IOException {
+            Integer posicion = posiciones.get(nombre);
+            if (posicion == null) {
+                throw new IOException("Falta la columna obligatoria " + nombre + " en la cabecera");
+            }
+            return posicion;
+        }
+
+        /**
+         * Obtiene el valor de una columna sin los espacios de los extremos.
+         *
+         * @return Valor, o null si la columna no está o la celda está vacía
+         */
+        String valor(String[] fila, int columna) {
+            if (columna < 0 || columna >= fila.length || fila[columna] == null) {
+                return null;
+            }
+            String valor = fila[columna].trim();
+            return valor.isEmpty() ? null : valor;
+        }
+    }
+
+    /**
+     * Fila del fichero que no se ha importado
+     */
+    public static final class Rechazo {
+
+        private final long linea;
+        private final String motivo;
+
+        Rechazo(long linea, String motivo) {
+            this.linea = linea;
+            this.motivo = motivo;
+        }
+
+        /**
+         * Obtiene la línea del fichero en la que empieza la fila, o el número
+         * de registro en los volcados MARC21.
+         *
+         * @return Número de línea o de registro, empezando en 1
+         */
+        public long getLinea() {
+            return linea;
+        }
+
+        /**
+         * Obtiene el motivo del rechazo.
+         *
+         * @return Motivo
+         */
+        public String getMotivo() {
+            return motivo;
+        }
+
+        @Override
+        public String toString() {
+            return "línea " + linea + ": " + motivo;
+        }
+    }
+
+    /**
+     * Resumen de una importación
+     */
+    public static final class Resumen {
+
+        private final LongAdder filas = new LongAdder();
+        private final LongAdder creadas = new LongAdder();
+        private final LongAdder actualizadas = new LongAdder();
+        private final LongAdder omitidas = new LongAdder();
+        private final LongAdder duplicadas = new LongAdder();
+        private final LongAdder rechazadas = new LongAdder();
+        private final List<Rechazo> rechazos = new ArrayList<>();
+        private long milisegundos;
+
+        private void rechazar(Rechazo rechazo) {
+            rechazadas.increment();
+            if (rechazos.size() < MAX_RECHAZOS) {
+                rechazos.add(rechazo);
+            }
+        }
+
+        /**
+         * Obtiene el número de filas leídas, sin contar la cabecera.
+         *
+         * @return Filas leídas
+         */
+        public long getFilas() {
+            return filas.sum();
+        }
+
+        /**
+         * Obtiene el número de libros nuevos creados.
+         *
+         * @return Libros creados
+         */
+        public long getCreadas() {
+            return creadas.sum();
+        }
+
+        /**
+         * Obtiene el número de libros existentes actualizados.
+         *
+         * @return Libros actualizados
+         */
+        public long getActualizadas() {
+            return actualizadas.sum();
+        }
+
+        /**
+         * Obtiene el número de filas cuyo ISBN ya estaba en el catálogo y se han omitido.
+         *
+         * @return Filas omitidas
+         */
+        public long getOmitidas() {
+            return omitidas.sum();
+        }
+
+        /**
+         * Obtiene el número de filas con un ISBN que ya aparecía antes en el fichero.
+         *
+         * @return Filas duplicadas
+         */
+        public long getDuplicadas() {
+            return duplicadas.sum();
+        }
+
+        /**
+         * Obtiene el número de filas no válidas.
+         *
+         * @return Filas rechazadas
+         */
+        public long getRechazadas() {
+            return rechazadas.sum();
+        }
+
+        /**
+         * Obtiene las primeras filas rechazadas, en el orden del fichero.
+         *
+         * @return Hasta {@value ImportadorCatalogo#MAX_RECHAZOS} rechazos
+         */
+        public List<Rechazo> getRechazos() {
+            return Collections.unmodifiableList(rechazos);
+        }
+
+        /**
+         * Obtiene la duración de la importación.
+         *
+         * @return Milisegundos
+         */
+        public long getMilisegundos() {
+            return milisegundos;
+        }
+    }
+}
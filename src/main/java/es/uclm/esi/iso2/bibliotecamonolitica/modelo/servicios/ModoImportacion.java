@@ -0,0 +1,15 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+/**
+ * Enumeración que indica qué hace el {@link ImportadorCatalogo} con las filas
+ * cuyo ISBN ya está en el catálogo.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public enum ModoImportacion {
+    /** Deja el libro existente como está y cuenta la fila como omitida */
+    OMITIR_EXISTENTES,
+    /** Sustituye los datos del libro existente por los de la fila; las columnas opcionales vacías se conservan */
+    ACTUALIZAR_EXISTENTES
+}
@@ -0,0 +1,361 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.VencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Planifica en memoria los avisos asociados a la fecha de devolución prevista
+ * de cada préstamo en curso: un recordatorio unos días antes, el vencimiento
+ * al terminar el día previsto y el bloqueo del usuario si el préstamo sigue
+ * sin devolver pasados unos días más. Los avisos se entregan a los
+ * {@link ObservadorVencimientos} registrados.
+ * <p>
+ * Los avisos se guardan en una {@link RuedaTemporizadores}, de modo que
+ * programar, reprogramar o cancelar los avisos de un préstamo y entregar cada
+ * aviso cuesta O(1), sin consultar la tabla de préstamos. {@link ServicioPrestamo}
+ * mantiene la planificación al prestar, renovar y devolver; al arrancar se
+ * reconstruye recorriendo los préstamos en curso. Los vencimientos y bloqueos
+ * cuyo momento pasó con la aplicación parada se entregan en el siguiente
+ * avance, y sus acciones no se repiten si ya se habían hecho; solo se
+ * descartan los recordatorios pasados, que ya no tienen sentido, y los
+ * bloqueos ya aplicados, para no volver a bloquear a un usuario que un
+ * administrador desbloqueó.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class PlanificadorVencimientos {
+
+    private static final LogHelper logger = LogHelper.getLogger(PlanificadorVencimientos.class);
+
+    /** Número de préstamos leídos por consulta durante la carga */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    private static final long DURACION_TIC_POR_DEFECTO = TimeUnit.MINUTES.toMillis(1);
+    private static final int DIAS_RECORDATORIO_POR_DEFECTO = 2;
+    private static final int DIAS_BLOQUEO_POR_DEFECTO = 30;
+
+    /**
+     * Tipos de aviso de un préstamo
+     */
+    public enum TipoAviso {
+        /** Faltan unos días para la fecha de devolución prevista */
+        RECORDATORIO,
+        /** Ha terminado el día previsto sin que se devuelva el préstamo */
+        VENCIMIENTO,
+        /** El préstamo lleva demasiados días vencido */
+        BLOQUEO
+    }
+
+    /** Instancia compartida por la aplicación */
+    private static PlanificadorVencimientos instance;
+
+    private final RuedaTemporizadores<Aviso> rueda;
+    private final long duracionTic;
+    private final int diasRecordatorio;
+    private final int diasBloqueo;
+    private final List<ObservadorVencimientos> observadores = new CopyOnWriteArrayList<>();
+    private final AtomicLong avisosEntregados = new AtomicLong();
+
+    /** Préstamos modificados durante la carga, cuya fila leída puede estar desfasada */
+    private final Set<Long> modificadosEnCarga = ConcurrentHashMap.newKeySet();
+    private volatile boolean cargando;
+    private volatile boolean cargado;
+    private ScheduledExecutorService programador;
+
+    /**
+     * Obtiene la instancia compartida del planificador, configurada con las
+     * propiedades {@code prestamo.aviso.tic_ms}, {@code prestamo.aviso.recordatorio_dias}
+     * y {@code prestamo.aviso.bloqueo_dias}.
+     *
+     * @return Planificador de avisos de vencimiento
+     */
+    public static synchronized PlanificadorVencimientos getInstance() {
+        if (instance == null) {
+            Properties props = leerConfiguracion();
+            instance = new PlanificadorVencimientos(
+                    leerEntero(props, "prestamo.aviso.tic_ms", DURACION_TIC_POR_DEFECTO),
+                    (int) leerEntero(props, "prestamo.aviso.recordatorio_dias", DIAS_RECORDATORIO_POR_DEFECTO),
+                    (int) leerEntero(props, "prestamo.aviso.bloqueo_dias", DIAS_BLOQUEO_POR_DEFECTO),
+                    System.currentTimeMillis());
+        }
+        return instance;
+    }
+
+    /**
+     * Crea un planificador vacío.
+     *
+     * @param duracionTic Precisión de los avisos en milisegundos
+     * @param diasRecordatorio Días antes de la fecha prevista en que se recuerda; 0 para no recordar
+     * @param diasBloqueo Días tras la fecha prevista en que se bloquea al usuario; 0 para no bloquear
+     * @param inicio Instante inicial del reloj en milisegundos
+     */
+    public PlanificadorVencimientos(long duracionTic, int diasRecordatorio, int diasBloqueo, long inicio) {
+        this.rueda = new RuedaTemporizadores<>(duracionTic, inicio);
+        this.duracionTic = duracionTic;
+        this.diasRecordatorio = diasRecordatorio;
+        this.diasBloqueo = diasBloqueo;
+    }
+
+    /**
+     * Registra un componente que debe recibir los avisos.
+     *
+     * @param observador Observador a registrar
+     */
+    public void addObservador(ObservadorVencimientos observador) {
+        if (!observadores.contains(observador)) {
+            observadores.add(observador);
+        }
+    }
+
+    /**
+     * Reconstruye la planificación recorriendo los préstamos en curso. Los
+     * préstamos que se prestan, renuevan o devuelven mientras tanto conservan
+     * la planificación de esas operaciones.
+     *
+     * @param vencimientoDAO DAO con el que recorrer los préstamos
+     * @throws DAOException Si ocurre un error al leer los préstamos
+     */
+    public void cargar(VencimientoDAO vencimientoDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        cargando = true;
+        try {
+            long leidos = vencimientoDAO.recorrerVencimientos(TAMANO_BLOQUE_CARGA,
+                    (prestamoId, usuarioId, fecha, bloqueoAplicado) -> {
+                        if (!modificadosEnCarga.contains(prestamoId)) {
+                            planificar(prestamoId, usuarioId, fecha, !bloqueoAplicado);
+                        }
+                    });
+            cargado = true;
+            logger.info("Planificación de vencimientos cargada: {} préstamos, {} avisos en {} ms",
+                    leidos, getAvisosPendientes(), (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            cargando = false;
+            modificadosEnCarga.clear();
+        }
+    }
+
+    /**
+     * Indica si el planificador ha terminado su carga inicial.
+     *
+     * @return true si el planificador está cargado
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Programa, o reprograma tras una renovación, los avisos de un préstamo.
+     *
+     * @param prestamoId ID del préstamo
+     * @param usuarioId ID del usuario
+     * @param fechaDevolucionPrevista Fecha en que debe devolverse
+     */
+    public void programar(long prestamoId, long usuarioId, Date fechaDevolucionPrevista) {
+        if (cargando) {
+            modificadosEnCarga.add(prestamoId);
+        }
+        planificar(prestamoId, usuarioId, fechaDevolucionPrevista, true);
+    }
+
+    /**
+     * Cancela los avisos pendientes de un préstamo devuelto.
+     *
+     * @param prestamoId ID del préstamo
+     */
+    public void cancelar(long prestamoId) {
+        if (cargando) {
+            modificadosEnCarga.add(prestamoId);
+        }
+        for (TipoAviso tipo : TipoAviso.values()) {
+            rueda.cancelar(clave(prestamoId, tipo));
+        }
+    }
+
+    private void planificar(long prestamoId, long usuarioId, Date fechaDevolucionPrevista, boolean bloquear) {
+        long prevista = fechaDevolucionPrevista.getTime();
+        long ahora = System.currentTimeMillis();
+        Aviso recordatorio = new Aviso(TipoAviso.RECORDATORIO, prestamoId, usuarioId, fechaDevolucionPrevista);
+        Aviso vencimiento = new Aviso(TipoAviso.VENCIMIENTO, prestamoId, usuarioId, fechaDevolucionPrevista);
+        Aviso bloqueo = new Aviso(TipoAviso.BLOQUEO, prestamoId, usuarioId, fechaDevolucionPrevista);
+
+        planificar(recordatorio, diasRecordatorio > 0 ? prevista - TimeUnit.DAYS.toMillis(diasRecordatorio) : -1, ahora);
+        planificar(vencimiento, prevista + TimeUnit.DAYS.toMillis(1), ahora);
+        planificar(bloqueo, bloquear && diasBloqueo > 0 ? prevista + TimeUnit.DAYS.toMillis(diasBloqueo) : -1, ahora);
+    }
+
+    /**
+     * Programa un aviso, sustituyendo el anterior del mismo tipo. Un
+     * vencimiento o un bloqueo cuyo momento ya ha pasado se entrega en el
+     * siguiente avance; un recordatorio pasado, o un aviso desactivado con un
+     * instante negativo, solo cancela el anterior.
+     */
+    private void planificar(Aviso aviso, long instante, long ahora) {
+        long clave = clave(aviso.getPrestamoId(), aviso.getTipo());
+        if (instante < 0 || (instante <= ahora && aviso.getTipo() == TipoAviso.RECORDATORIO)) {
+            rueda.cancelar(clave);
+        } else if (!rueda.programar(clave, instante, aviso)) {
+            logger.warn("Aviso {} del préstamo {} fuera del alcance de la planificación",
+                    aviso.getTipo(), aviso.getPrestamoId());
+        }
+    }
+
+    /**
+     * Avanza el reloj hasta el instante indicado y entrega a los observadores
+     * los avisos vencidos. Un error de un observador no impide entregar el
+     * aviso a los demás ni los avisos siguientes.
+     *
+     * @param ahora Instante actual en milisegundos
+     * @return Número de avisos entregados
+     */
+    public int avanzar(long ahora) {
+        List<Aviso> avisos = rueda.avanzar(ahora);
+        for (Aviso aviso : avisos) {
+            for (ObservadorVencimientos observador : observadores) {
+                try {
+                    observador.avisar(aviso);
+                } catch (RuntimeException e) {
+                    logger.warn("Error al entregar el aviso {} del préstamo {}",
+                            aviso.getTipo(), aviso.getPrestamoId(), e);
+                }
+            }
+        }
+        avisosEntregados.addAndGet(avisos.size());
+        return avisos.size();
+    }
+
+    /**
+     * Avanza el reloj en un hilo en segundo plano una vez por tic. Las
+     * llamadas posteriores no tienen efecto.
+     */
+    public synchronized void programarAvance() {
+        if (programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "avisos-vencimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleAtFixedRate(() -> {
+            try {
+                avanzar(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                logger.error("Error al entregar los avisos de vencimiento", e);
+            }
+        }, duracionTic, duracionTic, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtiene el número de avisos programados.
+     *
+     * @return Avisos pendientes
+     */
+    public int getAvisosPendientes() {
+        return rueda.size();
+    }
+
+    /**
+     * Obtiene el número de avisos entregados desde que se creó el planificador.
+     *
+     * @return Avisos entregados
+     */
+    public long getAvisosEntregados() {
+        return avisosEntregados.get();
+    }
+
+    private static long clave(long prestamoId, TipoAviso tipo) {
+        return prestamoId << 2 | tipo.ordinal();
+    }
+
+    private static Properties leerConfiguracion() {
+        try {
+            return ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de avisos, se usan los valores por defecto", e);
+            return new Properties();
+        }
+    }
+
+    private static long leerEntero(Properties props, String clave, long porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido para {}: {}, se usa {}", clave, valor, porDefecto);
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Componente que recibe los avisos de vencimiento.
+     */
+    @FunctionalInterface
+    public interface ObservadorVencimientos {
+
+        /**
+         * Recibe un aviso. Se invoca desde el hilo que avanza el reloj.
+         *
+         * @param aviso Aviso vencido
+         */
+        void avisar(Aviso aviso);
+    }
+
+    /**
+     * Aviso de vencimiento de un préstamo
+     */
+    public static final class Aviso {
+
+        private final TipoAviso tipo;
+        private final long prestamoId;
+        private final long usuarioId;
+        private final Date fechaDevolucionPrevista;
+
+        /**
+         * Constructor con todos los datos del aviso.
+         *
+         * @param tipo Tipo de aviso
+         * @param prestamoId ID del préstamo
+         * @param usuarioId ID del usuario
+         * @param fechaDevolucionPrevista Fecha en que debe devolverse el préstamo
+         */
+        public Aviso(TipoAviso tipo, long prestamoId, long usuarioId, Date fechaDevolucionPrevista) {
+            this.tipo = tipo;
+            this.prestamoId = prestamoId;
+            this.usuarioId = usuarioId;
+            this.fechaDevolucionPrevista = fechaDevolucionPrevista;
+        }
+
+        public TipoAviso getTipo() {
+            return tipo;
+        }
+
+        public long getPrestamoId() {
+            return prestamoId;
+        }
+
+        public long getUsuarioId() {
+            return usuarioId;
+        }
+
+        public Date getFechaDevolucionPrevista() {
+            return fechaDevolucionPrevista;
+        }
+    }
+}
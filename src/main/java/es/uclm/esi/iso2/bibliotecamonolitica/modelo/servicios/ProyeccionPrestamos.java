@@ -0,0 +1,223 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EventoPrestamo;
+
+/**
+ * Proyección del diario de préstamos: los contadores de préstamos de cada
+ * usuario obtenidos aplicando en orden los eventos del diario. Los préstamos
+ * solo se siguen mientras tienen ejemplares sin devolver, de modo que la
+ * proyección crece con los usuarios y los préstamos en curso, no con la
+ * longitud del diario.
+ * <p>
+ * Los importes de las multas no se proyectan. Como el diario puede perder
+ * eventos, los préstamos activos se toman de la base de datos al cargar y se
+ * concilian después con ella; el resto de contadores cuentan los eventos
+ * aplicados desde la carga.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ProyeccionPrestamos {
+
+    private final Map<Long, Contadores> usuarios = new HashMap<>();
+    /** Ejemplares sin devolver de cada préstamo en curso */
+    private final Map<Long, Integer> pendientes = new HashMap<>();
+    /** Usuarios con eventos aplicados durante la conciliación en curso, o null si no hay ninguna */
+    private Set<Long> modificados;
+
+    /**
+     * Aplica un evento del diario.
+     *
+     * @param evento Evento a aplicar
+     */
+    public synchronized void aplicar(EventoPrestamo evento) {
+        Contadores contadores = usuarios.computeIfAbsent(evento.getUsuarioId(), id -> new Contadores());
+        if (modificados != null) {
+            modificados.add(evento.getUsuarioId());
+        }
+        switch (evento.getTipo()) {
+            case EJEMPLAR_PRESTADO:
+                if (pendientes.merge(evento.getPrestamoId(), 1, Integer::sum) == 1) {
+                    contadores.prestamosActivos++;
+                }
+                contadores.ejemplaresPrestados++;
+                break;
+            case EJEMPLAR_DEVUELTO:
+                // Los préstamos anteriores a la carga no tienen ejemplares pendientes que descontar
+                Integer restantes = pendientes.get(evento.getPrestamoId());
+                if (restantes != null) {
+                    if (restantes == 1) {
+                        pendientes.remove(evento.getPrestamoId());
+                        contadores.prestamosActivos--;
+                    } else {
+                        pendientes.put(evento.getPrestamoId(), restantes - 1);
+                    }
+                    contadores.ejemplaresPrestados--;
+                }
+                break;
+            case PRESTAMO_RENOVADO:
+                contadores.renovaciones++;
+                break;
+            case MULTA_GENERADA:
+                contadores.multas++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Aplica un lote de eventos recién escritos en el diario.
+     *
+     * @param eventos Eventos en el orden en que se escribieron
+     */
+    public synchronized void aplicar(List<EventoPrestamo> eventos) {
+        for (EventoPrestamo evento : eventos) {
+            aplicar(evento);
+        }
+    }
+
+    /**
+     * Empieza a anotar los usuarios cuyos eventos se aplican, para que
+     * {@link #terminarConciliacion} no corrija con datos ya superados.
+     */
+    public synchronized void iniciarConciliacion() {
+        modificados = new HashSet<>();
+    }
+
+    /**
+     * Sustituye los préstamos activos de los usuarios por los leídos de la
+     * base de datos, salvo los de usuarios con eventos aplicados desde
+     * {@link #iniciarConciliacion} o todavía por aplicar, que se dejan para
+     * la siguiente conciliación.
+     *
+     * @param leidos Préstamos activos leídos de cada usuario
+     * @param excluidos Usuarios con eventos todavía por aplicar
+     * @return Número de usuarios corregidos
+     */
+    public synchronized int terminarConciliacion(Map<Long, Integer> leidos, Collection<Long> excluidos) {
+        int corregidos = 0;
+        for (Map.Entry<Long, Integer> entrada : leidos.entrySet()) {
+            long usuarioId = entrada.getKey();
+            if (modificados.contains(usuarioId) || excluidos.contains(usuarioId)) {
+                continue;
+            }
+            Contadores contadores = usuarios.get(usuarioId);
+            if (contadores == null) {
+                if (entrada.getValue() == 0) {
+                    continue;
+                }
+                contadores = new Contadores();
+                usuarios.put(usuarioId, contadores);
+            }
+            if (contadores.prestamosActivos != entrada.getValue()) {
+                contadores.prestamosActivos = entrada.getValue();
+                corregidos++;
+            }
+        }
+        modificados = null;
+        return corregidos;
+    }
+
+    /**
+     * Obtiene los contadores de un usuario.
+     *
+     * @param usuarioId ID del usuario
+     * @return Contadores del usuario, a cero si no tiene eventos
+     */
+    public synchronized ResumenUsuario consultar(long usuarioId) {
+        Contadores contadores = usuarios.get(usuarioId);
+        if (contadores == null) {
+            return new ResumenUsuario(usuarioId, 0, 0, 0, 0);
+        }
+        return new ResumenUsuario(usuarioId, contadores.prestamosActivos, contadores.ejemplaresPrestados,
+                contadores.renovaciones, contadores.multas);
+    }
+
+    /**
+     * Obtiene el número de usuarios con contadores.
+     *
+     * @return Usuarios de la proyección
+     */
+    public synchronized int getNumeroUsuarios() {
+        return usuarios.size();
+    }
+
+    /**
+     * Obtiene el número de préstamos con ejemplares sin devolver.
+     *
+     * @return Préstamos en curso
+     */
+    public synchronized int getPrestamosEnCurso() {
+        return pendientes.size();
+    }
+
+    private static final class Contadores {
+        int prestamosActivos;
+        int ejemplaresPrestados;
+        int renovaciones;
+        int multas;
+    }
+
+    /**
+     * Contadores de préstamos de un usuario
+     */
+    public static final class ResumenUsuario {
+
+        private final long usuarioId;
+        private final int prestamosActivos;
+        private final int ejemplaresPrestados;
+        private final int renovaciones;
+        private final int multas;
+
+        ResumenUsuario(long usuarioId, int prestamosActivos, int ejemplaresPrestados, int renovaciones, int multas) {
+            this.usuarioId = usuarioId;
+            this.prestamosActivos = prestamosActivos;
+            this.ejemplaresPrestados = ejemplaresPrestados;
+            this.renovaciones = renovaciones;
+            this.multas = multas;
+        }
+
+        public long getUsuarioId() {
+            return usuarioId;
+        }
+
+        /**
+         * Obtiene el número de préstamos con algún ejemplar sin devolver.
+         *
+         * @return Préstamos activos
+         */
+        public int getPrestamosActivos() {
+            return prestamosActivos;
+        }
+
+        public int getEjemplaresPrestados() {
+            return ejemplaresPrestados;
+        }
+
+        /**
+         * Obtiene el número de renovaciones desde la carga, incluidas las de préstamos ya devueltos.
+         *
+         * @return Renovaciones
+         */
+        public int getRenovaciones() {
+            return renovaciones;
+        }
+
+        /**
+         * Obtiene el número de multas generadas desde la carga.
+         *
+         * @return Multas
+         */
+        public int getMultas() {
+            return multas;
+        }
+    }
+}
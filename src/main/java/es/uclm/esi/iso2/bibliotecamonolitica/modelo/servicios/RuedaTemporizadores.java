@@ -0,0 +1,230 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rueda jerárquica de temporizadores. Programar, reprogramar y cancelar un
+ * temporizador cuesta O(1), y avanzar el reloj cuesta O(1) por tic más O(1)
+ * por temporizador que vence, sin recorrer los temporizadores pendientes.
+ * <p>
+ * El tiempo se mide en tics de duración fija. Hay {@value #NIVELES} niveles
+ * de {@value #RANURAS} ranuras; cada ranura del nivel {@code n} abarca
+ * {@code 64^n} tics. Un temporizador se guarda en el nivel más bajo en el que
+ * su tic de vencimiento y el tic actual solo difieren en ese dígito, y baja
+ * de nivel cuando el reloj llega a su ranura, hasta vencer en el nivel 0.
+ * <p>
+ * Cada temporizador se identifica con una clave; programar una clave que ya
+ * existe sustituye su temporizador. Todos los métodos son seguros entre hilos.
+ *
+ * @param <T> Tipo del valor asociado a cada temporizador
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+class RuedaTemporizadores<T> {
+
+    static final int NIVELES = 4;
+    static final int RANURAS = 64;
+    private static final int BITS_RANURA = 6;
+    private static final int MASCARA_RANURA = RANURAS - 1;
+
+    private final long duracionTic;
+    private final Nodo<T>[][] ranuras;
+    private final Map<Long, Nodo<T>> porClave = new HashMap<>();
+    /** Temporizadores programados en el pasado, que vencen en el siguiente avance */
+    private final Nodo<T> atrasados = new Nodo<>(0, 0, null);
+    /** Temporizadores que caen tras la próxima vuelta del nivel más alto */
+    private final Nodo<T> lejanos = new Nodo<>(0, 0, null);
+    private long ticActual;
+
+    /**
+     * Crea una rueda vacía.
+     *
+     * @param duracionTic Duración de un tic en milisegundos
+     * @param inicio Instante inicial del reloj en milisegundos
+     */
+    @SuppressWarnings("unchecked")
+    RuedaTemporizadores(long duracionTic, long inicio) {
+        if (duracionTic <= 0) {
+            throw new IllegalArgumentException("Duración de tic no válida: " + duracionTic);
+        }
+        this.duracionTic = duracionTic;
+        this.ticActual = inicio / duracionTic;
+        this.ranuras = new Nodo[NIVELES][RANURAS];
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            for (int ranura = 0; ranura < RANURAS; ranura++) {
+                ranuras[nivel][ranura] = new Nodo<>(0, 0, null);
+            }
+        }
+    }
+
+    /**
+     * Programa un temporizador, sustituyendo el que tuviera la misma clave.
+     * Si el instante ya ha pasado, vence en el siguiente avance.
+     *
+     * @param clave Clave del temporizador
+     * @param instante Instante de vencimiento en milisegundos
+     * @param valor Valor que se devuelve al vencer
+     * @return false si el instante está más allá del alcance de la rueda y no se ha programado
+     */
+    synchronized boolean programar(long clave, long instante, T valor) {
+        long tic = instante / duracionTic;
+        if (tic - ticActual >= getAlcanceTics()) {
+            return false;
+        }
+        Nodo<T> anterior = porClave.remove(clave);
+        if (anterior != null) {
+            anterior.desenlazar();
+        }
+        Nodo<T> nodo = new Nodo<>(clave, tic, valor);
+        porClave.put(clave, nodo);
+        colocar(nodo);
+        return true;
+    }
+
+    /**
+     * Cancela un temporizador.
+     *
+     * @param clave Clave del temporizador
+     * @return true si estaba programado
+     */
+    synchronized boolean cancelar(long clave) {
+        Nodo<T> nodo = porClave.remove(clave);
+        if (nodo == null) {
+            return false;
+        }
+        nodo.desenlazar();
+        return true;
+    }
+
+    /**
+     * Avanza el reloj hasta el instante indicado y retira los temporizadores vencidos.
+     *
+     * @param ahora Instante actual en milisegundos
+     * @return Valores de los temporizadores vencidos, por orden de vencimiento
+     */
+    synchronized List<T> avanzar(long ahora) {
+        List<T> vencidos = new ArrayList<>();
+        vaciar(atrasados, vencidos);
+        long objetivo = ahora / duracionTic;
+        while (ticActual < objetivo) {
+            ticActual++;
+            if ((ticActual & (getAlcanceTics() - 1)) == 0) {
+                // Vuelta completa del nivel más alto: los lejanos ya caben en la rueda
+                while (lejanos.siguiente != lejanos) {
+                    Nodo<T> nodo = lejanos.siguiente;
+                    nodo.desenlazar();
+                    colocar(nodo);
+                }
+            }
+            // Bajar de nivel las ranuras a las que llega el reloj, de la más alta a la más baja
+            int nivel = 0;
+            while (nivel + 1 < NIVELES && (ticActual & ((1L << (BITS_RANURA * (nivel + 1))) - 1)) == 0) {
+                nivel++;
+            }
+            for (; nivel > 0; nivel--) {
+                Nodo<T> ranura = ranuras[nivel][indice(ticActual, nivel)];
+                while (ranura.siguiente != ranura) {
+                    Nodo<T> nodo = ranura.siguiente;
+                    nodo.desenlazar();
+                    colocar(nodo);
+                }
+            }
+            vaciar(ranuras[0][indice(ticActual, 0)], vencidos);
+            // Los que bajan justo al tic actual se colocan como atrasados
+            vaciar(atrasados, vencidos);
+        }
+        return vencidos;
+    }
+
+    /**
+     * Obtiene el número de temporizadores programados.
+     *
+     * @return Temporizadores pendientes
+     */
+    synchronized int size() {
+        return porClave.size();
+    }
+
+    /**
+     * Obtiene el tiempo máximo hasta el vencimiento de un temporizador.
+     *
+     * @return Milisegundos
+     */
+    long getAlcance() {
+        return getAlcanceTics() * duracionTic;
+    }
+
+    private static long getAlcanceTics() {
+        return 1L << (BITS_RANURA * NIVELES);
+    }
+
+    /**
+     * Coloca un nodo en su ranura según la distancia entre su tic y el actual.
+     */
+    private void colocar(Nodo<T> nodo) {
+        if (nodo.tic <= ticActual) {
+            atrasados.enlazar(nodo);
+            return;
+        }
+        int nivel = 0;
+        while (nivel < NIVELES && (nodo.tic ^ ticActual) >>> (BITS_RANURA * (nivel + 1)) != 0) {
+            nivel++;
+        }
+        if (nivel == NIVELES) {
+            lejanos.enlazar(nodo);
+        } else {
+            ranuras[nivel][indice(nodo.tic, nivel)].enlazar(nodo);
+        }
+    }
+
+    private void vaciar(Nodo<T> lista, List<T> vencidos) {
+        while (lista.siguiente != lista) {
+            Nodo<T> nodo = lista.siguiente;
+            nodo.desenlazar();
+            porClave.remove(nodo.clave);
+            vencidos.add(nodo.valor);
+        }
+    }
+
+    private static int indice(long tic, int nivel) {
+        return (int) (tic >>> (BITS_RANURA * nivel)) & MASCARA_RANURA;
+    }
+
+    /**
+     * Nodo de una lista circular doblemente enlazada. Cada ranura tiene un
+     * nodo centinela sin valor.
+     */
+    private static final class Nodo<T> {
+        private final long clave;
+        private final long tic;
+        private final T valor;
+        private Nodo<T> anterior = this;
+        private Nodo<T> siguiente = this;
+
+        Nodo(long clave, long tic, T valor) {
+            this.clave = clave;
+            this.tic = tic;
+            this.valor = valor;
+        }
+
+        /**
+         * Añade un nodo al final de la lista de este centinela.
+         */
+        void enlazar(Nodo<T> nodo) {
+            nodo.anterior = anterior;
+            nodo.siguiente = this;
+            anterior.siguiente = nodo;
+            anterior = nodo;
+        }
+
+        void desenlazar() {
+            anterior.siguiente = siguiente;
+            siguiente.anterior = anterior;
+            anterior = this;
+            siguiente = this;
+        }
+    }
+}
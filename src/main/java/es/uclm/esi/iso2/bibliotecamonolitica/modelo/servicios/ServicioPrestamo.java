@@ -1,6 +1,691 @@
 package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.*;
-import es.uclm.esi.iso2.bibliotecamonolitica.modelo.interfaces.*;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.DetallePrestamDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.EjemplarDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.PrestamoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.PrestamoLoteDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceDisponibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.*;
-import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.Date
\ No newline at end of file
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Gestiona las operaciones relacionadas con los préstamos de libros.
+ * Esta clase implementa la lógica de negocio para realizar préstamos,
+ * devoluciones y renovaciones, además de gestionar multas.
+ * <p>
+ * Cada préstamo y devolución se refleja en el {@link IndiceDisponibilidad},
+ * de modo que las búsquedas pueden saber qué libros tienen ejemplares
+ * disponibles sin consultar la base de datos.
+ * <p>
+ * Los préstamos y las devoluciones de los buzones se registran por conjuntos
+ * con {@link PrestamoLoteDAO}: el número de consultas no depende del número
+ * de ejemplares prestados o devueltos.
+ * <p>
+ * Las operaciones de un mismo usuario se serializan con {@link CerrojosUsuario},
+ * para que dos préstamos simultáneos no superen juntos el máximo de préstamos
+ * tras pasar cada uno la comprobación por separado.
+ * <p>
+ * Los préstamos activos, las multas y las renovaciones que se comprueban en
+ * cada operación se leen del {@link IndiceElegibilidad}, que estas mismas
+ * operaciones mantienen al día. Solo se consulta la base de datos para los
+ * usuarios y préstamos que aún no están en el índice.
+ * <p>
+ * Cada préstamo, renovación y devolución actualiza los avisos de vencimiento
+ * del préstamo en el {@link PlanificadorVencimientos}.
+ * <p>
+ * Cada ejemplar devuelto se ofrece a {@link ServicioReserva}, que lo aparta
+ * para la primera reserva de su libro si la hay. Un ejemplar apartado solo
+ * puede prestarse al usuario de la reserva.
+ * <p>
+ * Cada ejemplar prestado o devuelto, renovación y multa se registra además
+ * como evento en el {@link DiarioPrestamos}, una vez confirmada la operación.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ * @see es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Prestamo
+ * @see es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.DetallePrestamo
+ */
+public class ServicioPrestamo {
+
+    private static final LogHelper logger = LogHelper.getLogger(ServicioPrestamo.class);
+
+    private static final int DIAS_DURACION_POR_DEFECTO = 15;
+    private static final int MAX_PRESTAMOS_USUARIO_POR_DEFECTO = 5;
+    private static final int MAX_RENOVACIONES_POR_DEFECTO = 2;
+    private static final int DIAS_RENOVACION_POR_DEFECTO = 15;
+    private static final BigDecimal IMPORTE_DIA_RETRASO_POR_DEFECTO = new BigDecimal("0.50");
+
+    private final PrestamoDAO prestamoDAO;
+    private final DetallePrestamDAO detallePrestamoDAO;
+    private final UsuarioDAO usuarioDAO;
+    private final EjemplarDAO ejemplarDAO;
+    private final MultaDAO multaDAO;
+    private final PrestamoLoteDAO prestamoLoteDAO;
+    private final MultaVencimientoDAO multaVencimientoDAO;
+
+    private final int diasDuracion;
+    private final int maxPrestamosUsuario;
+    private final int maxRenovaciones;
+    private final int diasRenovacion;
+    private final BigDecimal importeDiaRetraso;
+
+    private IndiceDisponibilidad indiceDisponibilidad = IndiceDisponibilidad.getInstance();
+    private CerrojosUsuario cerrojosUsuario = CerrojosUsuario.getInstance();
+    private IndiceElegibilidad indiceElegibilidad = IndiceElegibilidad.getInstance();
+    private PlanificadorVencimientos planificadorVencimientos = PlanificadorVencimientos.getInstance();
+    private ServicioReserva servicioReserva;
+    private DiarioPrestamos diarioPrestamos = DiarioPrestamos.getInstance();
+
+    /**
+     * Constructor que crea los DAOs necesarios y el servicio de reservas
+     *
+     * @throws DAOException Si no se pueden inicializar los DAOs
+     */
+    public ServicioPrestamo() throws DAOException {
+        this(new PrestamoDAO(), new DetallePrestamDAO(), new UsuarioDAO(), new EjemplarDAO(), new MultaDAO(),
+                new PrestamoLoteDAO(), new MultaVencimientoDAO());
+        this.servicioReserva = new ServicioReserva();
+    }
+
+    /**
+     * Constructor con los DAOs a utilizar
+     *
+     * @param prestamoDAO DAO de préstamos
+     * @param detallePrestamoDAO DAO de detalles de préstamo
+     * @param usuarioDAO DAO de usuarios
+     * @param ejemplarDAO DAO de ejemplares
+     * @param multaDAO DAO de multas
+     * @param prestamoLoteDAO DAO de las operaciones de préstamo por conjuntos
+     * @param multaVencimientoDAO DAO de las multas devengadas por préstamos vencidos
+     */
+    public ServicioPrestamo(PrestamoDAO prestamoDAO, DetallePrestamDAO detallePrestamoDAO, UsuarioDAO usuarioDAO,
+            EjemplarDAO ejemplarDAO, MultaDAO multaDAO, PrestamoLoteDAO prestamoLoteDAO,
+            MultaVencimientoDAO multaVencimientoDAO) {
+        this.prestamoDAO = prestamoDAO;
+        this.detallePrestamoDAO = detallePrestamoDAO;
+        this.usuarioDAO = usuarioDAO;
+        this.ejemplarDAO = ejemplarDAO;
+        this.multaDAO = multaDAO;
+        this.prestamoLoteDAO = prestamoLoteDAO;
+        this.multaVencimientoDAO = multaVencimientoDAO;
+
+        Properties props = leerConfiguracion();
+        this.diasDuracion = leerEntero(props, "prestamo.dias_duracion", DIAS_DURACION_POR_DEFECTO);
+        this.maxPrestamosUsuario = leerEntero(props, "prestamo.max_prestamos_usuario", MAX_PRESTAMOS_USUARIO_POR_DEFECTO);
+        this.maxRenovaciones = leerEntero(props, "prestamo.max_renovaciones", MAX_RENOVACIONES_POR_DEFECTO);
+        this.diasRenovacion = leerEntero(props, "prestamo.dias_renovacion", DIAS_RENOVACION_POR_DEFECTO);
+        this.importeDiaRetraso = leerImporte(props, "multa.importe_dia_retraso", IMPORTE_DIA_RETRASO_POR_DEFECTO);
+    }
+
+    /**
+     * Sustituye el índice de disponibilidad que se mantiene al prestar y devolver.
+     *
+     * @param indiceDisponibilidad Índice a actualizar
+     */
+    public void setIndiceDisponibilidad(IndiceDisponibilidad indiceDisponibilidad) {
+        this.indiceDisponibilidad = indiceDisponibilidad;
+    }
+
+    /**
+     * Sustituye los cerrojos con los que se serializan las operaciones de cada usuario.
+     *
+     * @param cerrojosUsuario Cerrojos por usuario
+     */
+    public void setCerrojosUsuario(CerrojosUsuario cerrojosUsuario) {
+        this.cerrojosUsuario = cerrojosUsuario;
+    }
+
+    /**
+     * Sustituye el índice del que se leen y en el que se registran los
+     * préstamos, multas y renovaciones de cada usuario.
+     *
+     * @param indiceElegibilidad Índice a usar, o null para consultar siempre la base de datos
+     */
+    public void setIndiceElegibilidad(IndiceElegibilidad indiceElegibilidad) {
+        this.indiceElegibilidad = indiceElegibilidad;
+    }
+
+    /**
+     * Sustituye el planificador en el que se programan los avisos de vencimiento.
+     *
+     * @param planificadorVencimientos Planificador a usar, o null para no programar avisos
+     */
+    public void setPlanificadorVencimientos(PlanificadorVencimientos planificadorVencimientos) {
+        this.planificadorVencimientos = planificadorVencimientos;
+    }
+
+    /**
+     * Sustituye el servicio al que se ofrecen los ejemplares devueltos.
+     *
+     * @param servicioReserva Servicio de reservas, o null para no atender reservas
+     */
+    public void setServicioReserva(ServicioReserva servicioReserva) {
+        this.servicioReserva = servicioReserva;
+    }
+
+    /**
+     * Sustituye el diario en el que se registran los eventos de los préstamos.
+     *
+     * @param diarioPrestamos Diario a usar, o null para no registrar eventos
+     */
+    public void setDiarioPrestamos(DiarioPrestamos diarioPrestamos) {
+        this.diarioPrestamos = diarioPrestamos;
+    }
+
+    /**
+     * Realiza un préstamo de varios ejemplares a un usuario. Los ejemplares se
+     * recuperan con una sola consulta y el préstamo, sus detalles y el cambio
+     * de estado de los ejemplares se registran en una única transacción. La
+     * comprobación de disponibilidad previa solo descarta pronto los casos
+     * evidentes: es la transacción la que reclama los ejemplares, y si otro
+     * préstamo simultáneo se adelanta no se presta ninguno.
+     *
+     * @param usuarioId ID del usuario
+     * @param ejemplarIds IDs de los ejemplares a prestar; los repetidos se prestan una vez
+     * @return Préstamo creado
+     * @throws PrestamoException Si el usuario no puede recibir el préstamo, algún
+     *         ejemplar no está disponible o falla la persistencia
+     */
+    public Prestamo realizarPrestamo(Long usuarioId, List<Long> ejemplarIds) throws PrestamoException {
+        if (usuarioId == null) {
+            throw new PrestamoException("El ID del usuario es obligatorio");
+        }
+        try (CerrojosUsuario.Cerrojo cerrojo = cerrojosUsuario.adquirir(usuarioId)) {
+            Usuario usuario = usuarioDAO.findById(usuarioId)
+                    .orElseThrow(() -> new PrestamoException("Usuario no encontrado: " + usuarioId));
+            if (usuario.getEstado() != EstadoUsuario.ACTIVO) {
+                throw new PrestamoException("El usuario no está activo: " + usuarioId);
+            }
+            comprobarElegibilidad(usuario);
+
+            List<Ejemplar> ejemplares = buscarEjemplaresDisponibles(ejemplarIds);
+
+            Prestamo prestamo = new Prestamo(usuario);
+            prestamo.setFechaDevolucionPrevista(sumarDias(prestamo.getFecha(), diasDuracion));
+            for (Ejemplar ejemplar : ejemplares) {
+                prestamo.addEjemplar(ejemplar);
+            }
+            prestamo = prestamoLoteDAO.registrarPrestamo(prestamo);
+
+            for (Ejemplar ejemplar : ejemplares) {
+                cambiarEstado(ejemplar, EstadoEjemplar.PRESTADO);
+                registrarEvento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, prestamo.getId(), usuarioId, ejemplar.getId(),
+                        null, prestamo.getFecha());
+            }
+            actualizarDisponibilidad(ejemplares);
+            if (indiceElegibilidad != null) {
+                indiceElegibilidad.prestamoRealizado(usuarioId);
+            }
+            if (planificadorVencimientos != null && prestamo.getId() != null) {
+                planificadorVencimientos.programar(prestamo.getId(), usuarioId, prestamo.getFechaDevolucionPrevista());
+            }
+
+            logger.info("Préstamo {} realizado al usuario {} con {} ejemplares",
+                    prestamo.getId(), usuarioId, ejemplares.size());
+            return prestamo;
+
+        } catch (EjemplarNoDisponibleException e) {
+            logger.warn("Préstamo al usuario {} rechazado: {}", usuarioId, e.getMessage());
+            throw new PrestamoException("Algún ejemplar ha sido prestado por otra operación", e);
+        } catch (DAOException e) {
+            logger.error("Error al realizar el préstamo al usuario: {}", usuarioId, e);
+            throw new PrestamoException("No se pudo realizar el préstamo", e);
+        }
+    }
+
+    /**
+     * Comprueba que un usuario activo no tiene multas sin resolver ni ha
+     * alcanzado el máximo de préstamos. Si el usuario no está en el índice de
+     * elegibilidad, o el índice le atribuye multas activas, se consulta la base
+     * de datos y se actualiza el índice. El bloqueo del índice lo mantienen
+     * los cambios de estado del usuario; aquí solo se corrige cuando el índice
+     * lo da por bloqueado y el usuario recién leído está activo.
+     *
+     * @param usuario Usuario recién leído de la base de datos
+     * @throws PrestamoException Si el usuario no puede recibir más préstamos
+     * @throws DAOException Si falla la consulta
+     */
+    private void comprobarElegibilidad(Usuario usuario) throws PrestamoException, DAOException {
+        Long usuarioId = usuario.getId();
+        if (indiceElegibilidad != null) {
+            IndiceElegibilidad.Resultado resultado = indiceElegibilidad.comprobarPrestamo(usuarioId, maxPrestamosUsuario);
+            if (resultado == IndiceElegibilidad.Resultado.BLOQUEADO && usuario.getEstado() == EstadoUsuario.ACTIVO) {
+                // El índice no supo del desbloqueo: se corrige con el estado recién leído
+                indiceElegibilidad.actualizarBloqueo(usuarioId, false);
+                resultado = indiceElegibilidad.comprobarPrestamo(usuarioId, maxPrestamosUsuario);
+            }
+            switch (resultado) {
+                case APTO:
+                    return;
+                case MULTA_ACTIVA:
+                    // La multa puede haberse pagado desde que se anotó: lo confirma la base de datos
+                    break;
+                case MAXIMO_PRESTAMOS:
+                    throw new PrestamoException("El usuario ha alcanzado el máximo de préstamos: " + maxPrestamosUsuario);
+                default:
+                    break;
+            }
+        }
+
+        if (multaDAO.existeMultaActivaUsuario(usuarioId)) {
+            throw new PrestamoException("El usuario tiene multas activas: " + usuarioId);
+        }
+        int prestamosActivos = prestamoDAO.contarPrestamosActivosUsuario(usuarioId);
+        // Solo se sabe si hay multas, no cuántas: se registra el usuario cuando no tiene ninguna
+        if (indiceElegibilidad != null) {
+            indiceElegibilidad.registrarUsuario(usuarioId, false, prestamosActivos, 0);
+            indiceElegibilidad.multasResueltas(usuarioId);
+        }
+        if (prestamosActivos >= maxPrestamosUsuario) {
+            throw new PrestamoException("El usuario ha alcanzado el máximo de préstamos: " + maxPrestamosUsuario);
+        }
+    }
+
+    /**
+     * Recupera con una sola consulta los ejemplares a prestar y comprueba que
+     * existen y están disponibles o apartados para una reserva. Que un
+     * ejemplar apartado lo esté para este usuario lo comprueba la transacción
+     * del préstamo.
+     *
+     * @param ejemplarIds IDs de los ejemplares
+     * @return Ejemplares en el orden de los IDs, sin repetir
+     * @throws PrestamoException Si no hay ejemplares, alguno no existe o no está disponible
+     * @throws DAOException Si falla la consulta
+     */
+    private List<Ejemplar> buscarEjemplaresDisponibles(List<Long> ejemplarIds) throws PrestamoException, DAOException {
+        if (ejemplarIds == null || ejemplarIds.isEmpty()) {
+            throw new PrestamoException("El préstamo no tiene ejemplares");
+        }
+        Map<Long, Ejemplar> porId = new HashMap<>();
+        for (Ejemplar ejemplar : prestamoLoteDAO.findEjemplaresByIds(ejemplarIds)) {
+            porId.put(ejemplar.getId(), ejemplar);
+        }
+
+        List<Ejemplar> ejemplares = new ArrayList<>(porId.size());
+        for (Long ejemplarId : new LinkedHashSet<>(ejemplarIds)) {
+            Ejemplar ejemplar = porId.get(ejemplarId);
+            if (ejemplar == null) {
+                throw new PrestamoException("Ejemplar no encontrado: " + ejemplarId);
+            }
+            if (!ejemplar.isDisponible() && ejemplar.getEstado() != EstadoEjemplar.RESERVADO) {
+                throw new PrestamoException("El ejemplar no está disponible: " + ejemplarId);
+            }
+            ejemplares.add(ejemplar);
+        }
+        return ejemplares;
+    }
+
+    /**
+     * Renueva un préstamo activo, ampliando su fecha de devolución prevista.
+     * La renovación se hace con el cerrojo del usuario, como los préstamos,
+     * para que dos renovaciones simultáneas no superen el máximo.
+     *
+     * @param prestamoId ID del préstamo
+     * @return Préstamo renovado
+     * @throws PrestamoException Si el préstamo no existe, no está activo, ha
+     *         alcanzado el máximo de renovaciones o falla la persistencia
+     */
+    public Prestamo renovarPrestamo(Long prestamoId) throws PrestamoException {
+        try {
+            Usuario usuario = buscarPrestamoActivo(prestamoId).getUsuario();
+            if (usuario == null || usuario.getId() == null) {
+                throw new PrestamoException("El préstamo no tiene usuario: " + prestamoId);
+            }
+            Long usuarioId = usuario.getId();
+            
+            try (CerrojosUsuario.Cerrojo cerrojo = cerrojosUsuario.adquirir(usuarioId)) {
+                // Releer con el cerrojo: otra renovación puede haberse adelantado
+                Prestamo prestamo = buscarPrestamoActivo(prestamoId);
+                int renovaciones = contarRenovaciones(prestamoId);
+                if (renovaciones >= maxRenovaciones) {
+                    throw new PrestamoException("El préstamo ha alcanzado el máximo de renovaciones: " + maxRenovaciones);
+                }
+
+                prestamo.setFechaDevolucionPrevista(sumarDias(prestamo.getFechaDevolucionPrevista(), diasRenovacion));
+                prestamo.setEstado(EstadoPrestamo.RENOVADO);
+                Prestamo renovado = prestamoDAO.update(prestamo);
+                if (indiceElegibilidad != null) {
+                    indiceElegibilidad.registrarRenovaciones(prestamoId, renovaciones + 1);
+                }
+                if (planificadorVencimientos != null) {
+                    planificadorVencimientos.programar(prestamoId, usuarioId, prestamo.getFechaDevolucionPrevista());
+                }
+                registrarEvento(TipoEventoPrestamo.PRESTAMO_RENOVADO, prestamoId, usuarioId, null, null, new Date());
+
+                logger.info("Préstamo {} renovado hasta {}", prestamoId, prestamo.getFechaDevolucionPrevista());
+                return renovado;
+            }
+
+        } catch (DAOException e) {
+            logger.error("Error al renovar el préstamo: {}", prestamoId, e);
+            throw new PrestamoException("No se pudo renovar el préstamo", e);
+        }
+    }
+
+    /**
+     * Recupera un préstamo y comprueba que sigue activo.
+     *
+     * @param prestamoId ID del préstamo
+     * @return Préstamo activo
+     * @throws PrestamoException Si el préstamo no existe o no está activo
+     * @throws DAOException Si falla la consulta
+     */
+    private Prestamo buscarPrestamoActivo(Long prestamoId) throws PrestamoException, DAOException {
+        Prestamo prestamo = prestamoDAO.findById(prestamoId)
+                .orElseThrow(() -> new PrestamoException("Préstamo no encontrado: " + prestamoId));
+        if (!prestamo.isActivo()) {
+            throw new PrestamoException("El préstamo no está activo: " + prestamoId);
+        }
+        return prestamo;
+    }
+
+    /**
+     * Obtiene las renovaciones de un préstamo del índice de elegibilidad o, si
+     * no están en él, de la base de datos.
+     *
+     * @param prestamoId ID del préstamo
+     * @return Renovaciones del préstamo
+     * @throws DAOException Si falla la consulta
+     */
+    private int contarRenovaciones(Long prestamoId) throws DAOException {
+        if (indiceElegibilidad != null) {
+            int renovaciones = indiceElegibilidad.getRenovaciones(prestamoId);
+            if (renovaciones >= 0) {
+                return renovaciones;
+            }
+        }
+        return prestamoDAO.contarRenovacionesPrestamo(prestamoId);
+    }
+
+    /**
+     * Registra la devolución de todos los ejemplares pendientes de un préstamo
+     * y, si se devuelven con retraso, genera la multa correspondiente. Si
+     * {@link TareaMultasVencidas} ya había creado la multa del préstamo, solo
+     * se fija su importe final.
+     *
+     * @param prestamoId ID del préstamo
+     * @param fechaDevolucion Fecha de la devolución
+     * @return Préstamo devuelto
+     * @throws PrestamoException Si el préstamo no existe, no está activo o falla
+     *         la persistencia
+     */
+    public Prestamo registrarDevolucion(Long prestamoId, Date fechaDevolucion) throws PrestamoException {
+        try {
+            Prestamo prestamo = buscarPrestamoActivo(prestamoId);
+
+            List<Ejemplar> devueltos = new ArrayList<>();
+            for (DetallePrestamo detalle : prestamo.getDetalles()) {
+                if (detalle.isDevuelto()) {
+                    continue;
+                }
+                Ejemplar ejemplar = detalle.getEjemplar();
+                cambiarEstado(ejemplar, EstadoEjemplar.DISPONIBLE);
+                ejemplarDAO.update(ejemplar);
+                detalle.devolver(fechaDevolucion);
+                detallePrestamoDAO.update(detalle);
+                devueltos.add(ejemplar);
+            }
+
+            prestamo.setEstado(EstadoPrestamo.DEVUELTO);
+            prestamo = prestamoDAO.update(prestamo);
+            asignarReservas(devueltos);
+            actualizarDisponibilidad(devueltos);
+            Long usuarioId = prestamo.getUsuario() != null ? prestamo.getUsuario().getId() : null;
+            for (Ejemplar ejemplar : devueltos) {
+                registrarEvento(TipoEventoPrestamo.EJEMPLAR_DEVUELTO, prestamoId, usuarioId, ejemplar.getId(), null,
+                        fechaDevolucion);
+            }
+            if (indiceElegibilidad != null && usuarioId != null) {
+                indiceElegibilidad.prestamoDevuelto(usuarioId, prestamoId);
+            }
+            if (planificadorVencimientos != null) {
+                planificadorVencimientos.cancelar(prestamoId);
+            }
+
+            long diasRetraso = calcularDiasRetraso(prestamo.getFechaDevolucionPrevista(), fechaDevolucion);
+            if (diasRetraso > 0) {
+                BigDecimal importe = calcularImporte(importeDiaRetraso, diasRetraso);
+                // Si la tarea de multas vencidas ya la había creado, solo se fija el importe final
+                switch (multaVencimientoDAO.registrarMultaDevolucion(prestamoId, importe, fechaDevolucion)) {
+                    case ACTUALIZADA:
+                        registrarEvento(TipoEventoPrestamo.MULTA_ACTUALIZADA, prestamoId, usuarioId, null, importe,
+                                fechaDevolucion);
+                        logger.info("Multa devengada del préstamo {} fijada en {} por {} días de retraso",
+                                prestamoId, importe, diasRetraso);
+                        break;
+                    case CREADA:
+                        if (indiceElegibilidad != null && usuarioId != null) {
+                            indiceElegibilidad.multaGenerada(usuarioId);
+                        }
+                        registrarEvento(TipoEventoPrestamo.MULTA_GENERADA, prestamoId, usuarioId, null, importe,
+                                fechaDevolucion);
+                        logger.info("Multa de {} generada por {} días de retraso en el préstamo {}",
+                                importe, diasRetraso, prestamoId);
+                        break;
+                    default:
+                        logger.info("La multa devengada del préstamo {} ya estaba resuelta; no se crea otra",
+                                prestamoId);
+                        break;
+                }
+            }
+            return prestamo;
+
+        } catch (DAOException e) {
+            logger.error("Error al registrar la devolución del préstamo: {}", prestamoId, e);
+            throw new PrestamoException("No se pudo registrar la devolución", e);
+        }
+    }
+
+    /**
+     * Registra por conjuntos la devolución de los ejemplares leídos por un
+     * buzón de devolución. Cada ejemplar prestado se devuelve por separado; el
+     * préstamo queda devuelto, con su multa si hay retraso, cuando se devuelve
+     * su último ejemplar. Los códigos que no corresponden a un ejemplar
+     * prestado no impiden devolver el resto.
+     *
+     * @param codigosBarras Códigos de barras leídos
+     * @param fechaDevolucion Fecha de la devolución
+     * @return Resultado de cada código, en el mismo orden
+     * @throws PrestamoException Si falla la persistencia; los bloques de
+     *         códigos anteriores al fallo quedan devueltos
+     */
+    public List<PrestamoLoteDAO.Devolucion> registrarDevoluciones(List<String> codigosBarras, Date fechaDevolucion)
+            throws PrestamoException {
+        if (codigosBarras == null || codigosBarras.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<PrestamoLoteDAO.Devolucion> devoluciones = prestamoLoteDAO.registrarDevoluciones(codigosBarras,
+                    fechaDevolucion, fechaPrevista -> calcularImporte(importeDiaRetraso,
+                            calcularDiasRetraso(fechaPrevista, fechaDevolucion)));
+
+            int devueltas = 0;
+            for (PrestamoLoteDAO.Devolucion devolucion : devoluciones) {
+                if (devolucion.getResultado() != PrestamoLoteDAO.Devolucion.Resultado.DEVUELTO) {
+                    continue;
+                }
+                devueltas++;
+                boolean apartado = servicioReserva != null
+                        && servicioReserva.asignarEjemplar(devolucion.getEjemplarId(), devolucion.getLibroId());
+                if (indiceDisponibilidad != null) {
+                    indiceDisponibilidad.actualizar(devolucion.getEjemplarId(), devolucion.getLibroId(), !apartado);
+                }
+                if (planificadorVencimientos != null && devolucion.isPrestamoCerrado()) {
+                    planificadorVencimientos.cancelar(devolucion.getPrestamoId());
+                }
+                registrarEvento(TipoEventoPrestamo.EJEMPLAR_DEVUELTO, devolucion.getPrestamoId(),
+                        devolucion.getUsuarioId(), devolucion.getEjemplarId(), null, fechaDevolucion);
+                if (devolucion.isPrestamoCerrado() && devolucion.getImporteMulta() != null) {
+                    registrarEvento(devolucion.isMultaNueva() ? TipoEventoPrestamo.MULTA_GENERADA
+                            : TipoEventoPrestamo.MULTA_ACTUALIZADA, devolucion.getPrestamoId(),
+                            devolucion.getUsuarioId(), null, devolucion.getImporteMulta(), fechaDevolucion);
+                }
+                if (indiceElegibilidad != null && devolucion.isPrestamoCerrado()) {
+                    indiceElegibilidad.prestamoDevuelto(devolucion.getUsuarioId(), devolucion.getPrestamoId());
+                    if (devolucion.isMultaNueva()) {
+                        indiceElegibilidad.multaGenerada(devolucion.getUsuarioId());
+                    }
+                }
+            }
+
+            logger.info("Devolución por lotes: {} de {} códigos de barras devueltos", devueltas, codigosBarras.size());
+            return devoluciones;
+
+        } catch (DAOException e) {
+            logger.error("Error al registrar la devolución de {} códigos de barras", codigosBarras.size(), e);
+            throw new PrestamoException("No se pudieron registrar las devoluciones", e);
+        }
+    }
+
+    /**
+     * Aparta cada ejemplar devuelto para la primera reserva de su libro, si la hay.
+     *
+     * @param devueltos Ejemplares devueltos, ya disponibles
+     */
+    private void asignarReservas(List<Ejemplar> devueltos) {
+        if (servicioReserva == null) {
+            return;
+        }
+        for (Ejemplar ejemplar : devueltos) {
+            if (ejemplar.getLibro() != null && ejemplar.getLibro().getId() != null
+                    && servicioReserva.asignarEjemplar(ejemplar.getId(), ejemplar.getLibro().getId())) {
+                cambiarEstado(ejemplar, EstadoEjemplar.RESERVADO);
+            }
+        }
+    }
+
+    /**
+     * Encola un evento en el diario de préstamos. Los eventos de préstamos o
+     * usuarios sin ID no se registran.
+     *
+     * @param tipo Tipo de evento
+     * @param prestamoId ID del préstamo
+     * @param usuarioId ID del usuario
+     * @param ejemplarId ID del ejemplar, o null si no corresponde
+     * @param importe Importe de la multa, o null si no corresponde
+     * @param fecha Fecha de la operación
+     */
+    private void registrarEvento(TipoEventoPrestamo tipo, Long prestamoId, Long usuarioId, Long ejemplarId,
+            BigDecimal importe, Date fecha) {
+        if (diarioPrestamos == null || prestamoId == null || usuarioId == null) {
+            return;
+        }
+        diarioPrestamos.registrar(new EventoPrestamo(tipo, prestamoId, usuarioId,
+                ejemplarId != null ? ejemplarId : 0, importe, fecha != null ? fecha : new Date()));
+    }
+
+    /**
+     * Cambia el estado de un ejemplar a través de su libro, para que los
+     * contadores de ejemplares por estado del libro no se desajusten.
+     *
+     * @param ejemplar Ejemplar a cambiar
+     * @param estado Nuevo estado
+     */
+    private static void cambiarEstado(Ejemplar ejemplar, EstadoEjemplar estado) {
+        Libro libro = ejemplar.getLibro();
+        if (libro != null) {
+            libro.cambiarEstadoEjemplar(ejemplar, estado);
+        } else {
+            ejemplar.setEstado(estado);
+        }
+    }
+
+    /**
+     * Refleja en el índice de disponibilidad el estado actual de unos ejemplares.
+     *
+     * @param ejemplares Ejemplares prestados o devueltos
+     */
+    private void actualizarDisponibilidad(List<Ejemplar> ejemplares) {
+        if (indiceDisponibilidad == null) {
+            return;
+        }
+        for (Ejemplar ejemplar : ejemplares) {
+            indiceDisponibilidad.actualizar(ejemplar);
+        }
+    }
+
+    /**
+     * Calcula los días completos o parciales transcurridos desde la fecha prevista.
+     *
+     * @param fechaPrevista Fecha de devolución prevista
+     * @param fechaDevolucion Fecha de devolución real
+     * @return Días de retraso, o 0 si se devolvió a tiempo
+     */
+    static long calcularDiasRetraso(Date fechaPrevista, Date fechaDevolucion) {
+        long retraso = fechaDevolucion.getTime() - fechaPrevista.getTime();
+        if (retraso <= 0) {
+            return 0;
+        }
+        return (retraso + TimeUnit.DAYS.toMillis(1) - 1) / TimeUnit.DAYS.toMillis(1);
+    }
+
+    /**
+     * Calcula el importe de una multa por retraso.
+     *
+     * @param importeDia Importe por día de retraso
+     * @param diasRetraso Días de retraso
+     * @return Importe de la multa
+     */
+    static BigDecimal calcularImporte(BigDecimal importeDia, long diasRetraso) {
+        return importeDia.multiply(BigDecimal.valueOf(diasRetraso));
+    }
+
+    private static Date sumarDias(Date fecha, int dias) {
+        Calendar calendario = Calendar.getInstance();
+        calendario.setTime(fecha);
+        calendario.add(Calendar.DAY_OF_MONTH, dias);
+        return calendario.getTime();
+    }
+
+    private static Properties leerConfiguracion() {
+        try {
+            return ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de préstamos, se usan los valores por defecto", e);
+            return new Properties();
+        }
+    }
+
+    private static int leerEntero(Properties props, String clave, int porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido para {}: {}, se usa {}", clave, valor, porDefecto);
+            return porDefecto;
+        }
+    }
+
+    private static BigDecimal leerImporte(Properties props, String clave, BigDecimal porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return new BigDecimal(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido para {}: {}, se usa {}", clave, valor, porDefecto);
+            return porDefecto;
+        }
+    }
+}
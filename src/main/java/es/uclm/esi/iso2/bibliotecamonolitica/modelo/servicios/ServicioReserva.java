@@ -0,0 +1,226 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.util.Date;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.ColasReserva;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceDisponibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.PrestamoException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.ReservaException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Gestiona las reservas de libros sin ejemplares disponibles. Cada reserva
+ * entra en la lista de espera de su libro en {@link ColasReserva}, con una
+ * prioridad según el tipo de usuario: el profesorado va por delante del
+ * personal, y este por delante de los estudiantes y el resto de usuarios.
+ * <p>
+ * Cuando se devuelve un ejemplar, {@link ServicioPrestamo} llama a
+ * {@link #asignarEjemplar} y el ejemplar queda apartado para la primera
+ * reserva de su libro hasta que el usuario lo recoge en préstamo.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ServicioReserva {
+
+    private static final LogHelper logger = LogHelper.getLogger(ServicioReserva.class);
+
+    private final UsuarioDAO usuarioDAO;
+    private final ReservaDAO reservaDAO;
+
+    private ColasReserva colasReserva = ColasReserva.getInstance();
+    private IndiceDisponibilidad indiceDisponibilidad = IndiceDisponibilidad.getInstance();
+    private CerrojosUsuario cerrojosUsuario = CerrojosUsuario.getInstance();
+
+    /**
+     * Constructor que crea los DAOs necesarios
+     *
+     * @throws DAOException Si no se pueden inicializar los DAOs
+     */
+    public ServicioReserva() throws DAOException {
+        this(new UsuarioDAO(), new ReservaDAO());
+    }
+
+    /**
+     * Constructor con los DAOs a utilizar
+     *
+     * @param usuarioDAO DAO de usuarios
+     * @param reservaDAO DAO de reservas
+     */
+    public ServicioReserva(UsuarioDAO usuarioDAO, ReservaDAO reservaDAO) {
+        this.usuarioDAO = usuarioDAO;
+        this.reservaDAO = reservaDAO;
+    }
+
+    /**
+     * Sustituye las listas de espera en las que se ordenan las reservas.
+     *
+     * @param colasReserva Listas de espera
+     */
+    public void setColasReserva(ColasReserva colasReserva) {
+        this.colasReserva = colasReserva;
+    }
+
+    /**
+     * Sustituye el índice con el que se comprueba que un libro no tiene
+     * ejemplares disponibles antes de reservarlo.
+     *
+     * @param indiceDisponibilidad Índice a consultar, o null para no comprobarlo
+     */
+    public void setIndiceDisponibilidad(IndiceDisponibilidad indiceDisponibilidad) {
+        this.indiceDisponibilidad = indiceDisponibilidad;
+    }
+
+    /**
+     * Sustituye los cerrojos con los que se serializan las operaciones de cada usuario.
+     *
+     * @param cerrojosUsuario Cerrojos por usuario
+     */
+    public void setCerrojosUsuario(CerrojosUsuario cerrojosUsuario) {
+        this.cerrojosUsuario = cerrojosUsuario;
+    }
+
+    /**
+     * Reserva un libro sin ejemplares disponibles para un usuario activo.
+     *
+     * @param usuarioId ID del usuario
+     * @param libroId ID del libro
+     * @return ID de la reserva creada
+     * @throws ReservaException Si el usuario no puede reservar el libro o
+     *         falla la persistencia
+     */
+    public long reservar(Long usuarioId, Long libroId) throws ReservaException {
+        if (usuarioId == null) {
+            throw new ReservaException("El ID del usuario es obligatorio");
+        }
+        try (CerrojosUsuario.Cerrojo cerrojo = cerrojosUsuario.adquirir(usuarioId)) {
+            Usuario usuario = usuarioDAO.findById(usuarioId)
+                    .orElseThrow(() -> new ReservaException("Usuario no encontrado: " + usuarioId));
+            if (usuario.getEstado() != EstadoUsuario.ACTIVO) {
+                throw new ReservaException("El usuario no está activo: " + usuarioId);
+            }
+            if (indiceDisponibilidad != null && indiceDisponibilidad.isCargado()
+                    && indiceDisponibilidad.tieneDisponibles(libroId)) {
+                throw new ReservaException("El libro tiene ejemplares disponibles: " + libroId);
+            }
+            if (reservaDAO.existeReservaAbierta(usuarioId, libroId)) {
+                throw new ReservaException("El usuario ya tiene una reserva del libro: " + libroId);
+            }
+
+            int prioridad = calcularPrioridad(usuario.getTipoUsuario());
+            long reservaId = reservaDAO.crear(libroId, usuarioId, prioridad, new Date());
+            colasReserva.anadir(reservaId, libroId, usuarioId, prioridad);
+
+            logger.info("Reserva {} del libro {} para el usuario {} con prioridad {}; {} en espera",
+                    reservaId, libroId, usuarioId, prioridad, colasReserva.contarPendientes(libroId));
+            return reservaId;
+
+        } catch (PrestamoException e) {
+            throw new ReservaException("No se pudo reservar el libro", e);
+        } catch (DAOException e) {
+            logger.error("Error al reservar el libro {} para el usuario {}", libroId, usuarioId, e);
+            throw new ReservaException("No se pudo reservar el libro", e);
+        }
+    }
+
+    /**
+     * Cancela la reserva pendiente de un usuario sobre un libro.
+     *
+     * @param usuarioId ID del usuario
+     * @param libroId ID del libro
+     * @throws ReservaException Si el usuario no tiene reservas pendientes del
+     *         libro o falla la persistencia
+     */
+    public void cancelarReserva(Long usuarioId, Long libroId) throws ReservaException {
+        try {
+            long reservaId = reservaDAO.cancelar(usuarioId, libroId);
+            if (reservaId < 0) {
+                throw new ReservaException("El usuario no tiene reservas pendientes del libro: " + libroId);
+            }
+            colasReserva.retirar(libroId, reservaId);
+            logger.info("Reserva {} del libro {} cancelada por el usuario {}", reservaId, libroId, usuarioId);
+
+        } catch (DAOException e) {
+            logger.error("Error al cancelar la reserva del libro {} del usuario {}", libroId, usuarioId, e);
+            throw new ReservaException("No se pudo cancelar la reserva", e);
+        }
+    }
+
+    /**
+     * Aparta un ejemplar recién devuelto para la primera reserva pendiente de
+     * su libro. Si el libro no tiene reservas no se consulta la base de datos.
+     * Las reservas que ya no estaban pendientes se retiran y se prueba con la
+     * siguiente. Un fallo de la base de datos se registra y deja el ejemplar
+     * disponible, porque la devolución ya está hecha.
+     * <p>
+     * La asignación va en su propia transacción, tras confirmarse la
+     * devolución, así que un préstamo en el mostrador puede llevarse antes el
+     * ejemplar. En ese caso se registra un aviso y la reserva sigue la primera
+     * de su lista de espera para la próxima devolución.
+     *
+     * @param ejemplarId ID del ejemplar devuelto
+     * @param libroId ID de su libro
+     * @return true si el ejemplar ha quedado apartado para una reserva
+     */
+    public boolean asignarEjemplar(long ejemplarId, long libroId) {
+        ColasReserva.Turno turno;
+        while ((turno = colasReserva.primera(libroId)) != null) {
+            ReservaDAO.ResultadoAsignacion resultado;
+            try {
+                resultado = reservaDAO.asignar(turno.getReservaId(), ejemplarId, new Date());
+            } catch (DAOException e) {
+                logger.error("Error al asignar el ejemplar {} a la reserva {}", ejemplarId, turno.getReservaId(), e);
+                return false;
+            }
+            if (resultado == ReservaDAO.ResultadoAsignacion.EJEMPLAR_NO_DISPONIBLE) {
+                logger.warn("El ejemplar {} dejó de estar disponible antes de apartarlo para la reserva {} "
+                        + "del usuario {}; la reserva sigue pendiente", ejemplarId, turno.getReservaId(),
+                        turno.getUsuarioId());
+                return false;
+            }
+            colasReserva.retirar(libroId, turno.getReservaId());
+            if (resultado == ReservaDAO.ResultadoAsignacion.ASIGNADA) {
+                logger.info("Ejemplar {} apartado para la reserva {} del usuario {}",
+                        ejemplarId, turno.getReservaId(), turno.getUsuarioId());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cuenta las reservas pendientes de un libro.
+     *
+     * @param libroId ID del libro
+     * @return Número de reservas en su lista de espera
+     */
+    public int contarReservasPendientes(long libroId) {
+        return colasReserva.contarPendientes(libroId);
+    }
+
+    /**
+     * Obtiene el nivel de prioridad de las reservas de un tipo de usuario.
+     *
+     * @param tipoUsuario Tipo de usuario
+     * @return Nivel de prioridad; 0 es el más alto
+     */
+    static int calcularPrioridad(TipoUsuario tipoUsuario) {
+        if (tipoUsuario == null) {
+            return ColasReserva.NIVELES_PRIORIDAD - 1;
+        }
+        switch (tipoUsuario) {
+            case PROFESOR:
+                return 0;
+            case PERSONAL:
+                return 1;
+            default:
+                return ColasReserva.NIVELES_PRIORIDAD - 1;
+        }
+    }
+}
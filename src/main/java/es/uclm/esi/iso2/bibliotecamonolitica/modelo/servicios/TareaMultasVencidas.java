@@ -0,0 +1,410 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoEventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.EventoPrestamoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO.PrestamoVencido;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Tarea por lotes que devenga las multas de los préstamos vencidos que aún no
+ * se han devuelto, para que los usuarios con libros muy retrasados tengan su
+ * multa y los informes del día la incluyan sin esperar a la devolución.
+ * <p>
+ * Recorre los préstamos activos y renovados vencidos por bloques ordenados
+ * por ID. Un hilo lee los bloques y los reparte a un {@link ForkJoinPool}, que
+ * calcula las multas de cada bloque y las escribe en su propia transacción;
+ * el número de bloques leídos y pendientes está limitado para acotar la
+ * memoria. Tras cada bloque se guarda como punto de control el ID hasta el que
+ * todos los bloques están escritos, de modo que una ejecución interrumpida se
+ * reanuda desde ahí. Escribir dos veces un bloque no tiene efecto: la multa de
+ * cada préstamo se crea una vez y después solo se actualiza su importe.
+ * <p>
+ * Las multas nuevas se registran en el {@link DiarioPrestamos}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class TareaMultasVencidas {
+
+    private static final LogHelper logger = LogHelper.getLogger(TareaMultasVencidas.class);
+
+    /** Prefijo del nombre de la tarea en los puntos de control */
+    static final String TAREA = "multas_vencidas";
+
+    private static final int TAMANO_BLOQUE_POR_DEFECTO = 2000;
+    private static final BigDecimal IMPORTE_DIA_RETRASO_POR_DEFECTO = new BigDecimal("0.50");
+
+    /** Bloques leídos por adelantado por cada hilo de escritura */
+    private static final int BLOQUES_POR_HILO = 2;
+
+    /** Estados de los préstamos que siguen sin devolver */
+    private static final EstadoPrestamo[] ESTADOS = { EstadoPrestamo.ACTIVO, EstadoPrestamo.RENOVADO };
+
+    private final MultaVencimientoDAO multaVencimientoDAO;
+    private final BigDecimal importeDiaRetraso;
+    private final int tamanoBloque;
+    private final int paralelismo;
+
+    private IndiceElegibilidad indiceElegibilidad = IndiceElegibilidad.getInstance();
+    private DiarioPrestamos diarioPrestamos = DiarioPrestamos.getInstance();
+
+    /**
+     * Ejecuta la tarea para la fecha indicada en formato {@code yyyy-MM-dd},
+     * o para hoy si no se indica ninguna.
+     *
+     * @param args Fecha de referencia opcional
+     */
+    public static void main(String[] args) {
+        try {
+            ConfigManager.getInstance().cargarConfiguracion();
+            Date fecha = args.length > 0 ? new SimpleDateFormat("yyyy-MM-dd").parse(args[0]) : new Date();
+            // Fuera de la aplicación el diario solo escribe: no hace falta reconstruir sus proyecciones
+            DiarioPrestamos diario = DiarioPrestamos.getInstance();
+            diario.iniciar(new EventoPrestamoDAO());
+            new TareaMultasVencidas().ejecutar(fecha);
+            if (!diario.detener(TimeUnit.MINUTES.toMillis(1))) {
+                logger.warn("Quedan eventos de multas sin escribir en el diario de préstamos");
+            }
+        } catch (DAOException | ParseException e) {
+            logger.error("Error al generar las multas de los préstamos vencidos", e);
+            System.exit(1);
+        } catch (Exception e) {
+            logger.error("Error al cargar la configuración", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Constructor que crea el DAO y lee la configuración: el importe por día
+     * de {@code multa.importe_dia_retraso}, el tamaño de bloque de
+     * {@code multa.vencidas.tamano_bloque} y los hilos de
+     * {@code multa.vencidas.hilos}.
+     *
+     * @throws DAOException Si no se puede inicializar el DAO
+     */
+    public TareaMultasVencidas() throws DAOException {
+        this(new MultaVencimientoDAO(), leerConfiguracion());
+    }
+
+    private TareaMultasVencidas(MultaVencimientoDAO multaVencimientoDAO, Properties props) {
+        this(multaVencimientoDAO,
+                leerImporte(props.getProperty("multa.importe_dia_retraso")),
+                leerEntero(props.getProperty("multa.vencidas.tamano_bloque"), TAMANO_BLOQUE_POR_DEFECTO),
+                leerEntero(props.getProperty("multa.vencidas.hilos"), Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructor con el DAO y los parámetros de la tarea.
+     *
+     * @param multaVencimientoDAO DAO de las multas devengadas
+     * @param importeDiaRetraso Importe por día de retraso
+     * @param tamanoBloque Préstamos por bloque
+     * @param paralelismo Bloques que se escriben a la vez
+     */
+    public TareaMultasVencidas(MultaVencimientoDAO multaVencimientoDAO, BigDecimal importeDiaRetraso,
+            int tamanoBloque, int paralelismo) {
+        this.multaVencimientoDAO = multaVencimientoDAO;
+        this.importeDiaRetraso = importeDiaRetraso;
+        this.tamanoBloque = Math.max(1, tamanoBloque);
+        this.paralelismo = Math.max(1, paralelismo);
+    }
+
+    /**
+     * Sustituye el índice en el que se registran las multas nuevas.
+     *
+     * @param indiceElegibilidad Índice a actualizar, o null para no actualizar ninguno
+     */
+    public void setIndiceElegibilidad(IndiceElegibilidad indiceElegibilidad) {
+        this.indiceElegibilidad = indiceElegibilidad;
+    }
+
+    /**
+     * Sustituye el diario en el que se registran las multas nuevas.
+     *
+     * @param diarioPrestamos Diario a usar, o null para no registrar eventos
+     */
+    public void setDiarioPrestamos(DiarioPrestamos diarioPrestamos) {
+        this.diarioPrestamos = diarioPrestamos;
+    }
+
+    /**
+     * Devenga las multas de los préstamos vencidos antes del día indicado,
+     * con el retraso acumulado hasta ese día. Si ya hay una ejecución
+     * interrumpida para el mismo día, continúa desde su punto de control; si
+     * ya se completó, no hace nada.
+     *
+     * @param fecha Día de referencia; se ignora la hora
+     * @return Resumen de la ejecución
+     * @throws DAOException Si falla la lectura o la escritura de algún bloque;
+     *         el punto de control queda en el último bloque escrito sin huecos
+     */
+    public Resumen ejecutar(Date fecha) throws DAOException {
+        Date dia = inicioDelDia(fecha);
+        Resumen resumen = new Resumen();
+        long inicio = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            for (EstadoPrestamo estado : ESTADOS) {
+                procesar(pool, estado, dia, resumen);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        resumen.milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+        logger.info("Multas de préstamos vencidos: {} préstamos en {} bloques, {} multas nuevas, {} ms",
+                resumen.getPrestamos(), resumen.getBloques(), resumen.getMultasNuevas(), resumen.milisegundos);
+        return resumen;
+    }
+
+    /**
+     * Recorre los préstamos vencidos en un estado, con su propio punto de control.
+     */
+    private void procesar(ForkJoinPool pool, EstadoPrestamo estado, Date dia, Resumen resumen)
+            throws DAOException {
+        String tarea = TAREA + "." + estado.name().toLowerCase();
+        long desdeId = multaVencimientoDAO.leerPuntoControl(tarea, dia);
+        if (desdeId < 0) {
+            logger.info("La tarea {} ya se completó para el día {}", tarea, dia);
+            return;
+        }
+        if (desdeId > 0) {
+            logger.info("Reanudando la tarea {} desde el préstamo {}", tarea, desdeId);
+        }
+
+        int maxEnCurso = paralelismo * BLOQUES_POR_HILO;
+        Semaphore enCurso = new Semaphore(maxEnCurso);
+        Avance avance = new Avance(tarea, dia, desdeId);
+        try {
+            List<PrestamoVencido> bloque;
+            do {
+                bloque = multaVencimientoDAO.buscarPrestamosVencidos(estado, dia, desdeId, tamanoBloque);
+                if (bloque.isEmpty() || avance.getFallo() != null) {
+                    break;
+                }
+                desdeId = bloque.get(bloque.size() - 1).getPrestamoId();
+                enCurso.acquireUninterruptibly();
+                Avance.Bloque pendiente = avance.abrir(desdeId);
+                List<PrestamoVencido> prestamos = bloque;
+                pool.execute(() -> {
+                    try {
+                        escribir(prestamos, dia, resumen);
+                        avance.cerrar(pendiente);
+                    } catch (DAOException | RuntimeException e) {
+                        avance.fallar(e);
+                    } finally {
+                        enCurso.release();
+                    }
+                });
+            } while (bloque.size() == tamanoBloque);
+        } finally {
+            // Esperar a los bloques en curso antes de terminar o propagar un error
+            enCurso.acquireUninterruptibly(maxEnCurso);
+        }
+
+        if (avance.getFallo() != null) {
+            throw new DAOException("La tarea " + tarea + " se detuvo en el préstamo " + avance.getUltimoId(),
+                    avance.getFallo());
+        }
+        multaVencimientoDAO.guardarPuntoControl(tarea, dia, desdeId, true);
+    }
+
+    /**
+     * Calcula y escribe las multas de un bloque y registra las nuevas en el
+     * índice de elegibilidad y en el diario. Si el controlador no informa de
+     * las filas insertadas, la conciliación del índice las recogerá más tarde.
+     */
+    private void escribir(List<PrestamoVencido> prestamos, Date dia, Resumen resumen) throws DAOException {
+        BigDecimal[] importes = new BigDecimal[prestamos.size()];
+        for (int i = 0; i < importes.length; i++) {
+            long diasRetraso = ServicioPrestamo.calcularDiasRetraso(prestamos.get(i).getFechaDevolucionPrevista(), dia);
+            importes[i] = ServicioPrestamo.calcularImporte(importeDiaRetraso, diasRetraso);
+        }
+
+        boolean[] creadas = multaVencimientoDAO.registrarMultas(prestamos, importes, dia);
+
+        int nuevas = 0;
+        for (int i = 0; i < creadas.length; i++) {
+            if (creadas[i]) {
+                nuevas++;
+                if (indiceElegibilidad != null) {
+                    indiceElegibilidad.multaGenerada(prestamos.get(i).getUsuarioId());
+                }
+                if (diarioPrestamos != null) {
+                    diarioPrestamos.registrar(new EventoPrestamo(TipoEventoPrestamo.MULTA_GENERADA,
+                            prestamos.get(i).getPrestamoId(), prestamos.get(i).getUsuarioId(), 0, importes[i], dia));
+                }
+            }
+        }
+        resumen.prestamos.add(prestamos.size());
+        resumen.multasNuevas.add(nuevas);
+        resumen.bloques.increment();
+    }
+
+    private static Date inicioDelDia(Date fecha) {
+        Calendar calendario = Calendar.getInstance();
+        calendario.setTime(fecha);
+        calendario.set(Calendar.HOUR_OF_DAY, 0);
+        calendario.set(Calendar.MINUTE, 0);
+        calendario.set(Calendar.SECOND, 0);
+        calendario.set(Calendar.MILLISECOND, 0);
+        return calendario.getTime();
+    }
+
+    private static Properties leerConfiguracion() {
+        try {
+            return ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de multas, se usan los valores por defecto", e);
+            return new Properties();
+        }
+    }
+
+    private static int leerEntero(String valor, int porDefecto) {
+        try {
+            return valor == null ? porDefecto : Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido: {}, se usa {}", valor, porDefecto);
+            return porDefecto;
+        }
+    }
+
+    private static BigDecimal leerImporte(String valor) {
+        try {
+            return valor == null ? IMPORTE_DIA_RETRASO_POR_DEFECTO : new BigDecimal(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Importe no válido: {}, se usa {}", valor, IMPORTE_DIA_RETRASO_POR_DEFECTO);
+            return IMPORTE_DIA_RETRASO_POR_DEFECTO;
+        }
+    }
+
+    /**
+     * Sigue los bloques en curso de un recorrido y guarda como punto de
+     * control el ID final del último bloque escrito sin bloques anteriores
+     * pendientes, ya que los bloques pueden terminar en cualquier orden.
+     */
+    private final class Avance {
+
+        private final String tarea;
+        private final Date dia;
+        private final ArrayDeque<Bloque> pendientes = new ArrayDeque<>();
+        private long ultimoId;
+        private volatile Throwable fallo;
+
+        Avance(String tarea, Date dia, long desdeId) {
+            this.tarea = tarea;
+            this.dia = dia;
+            this.ultimoId = desdeId;
+        }
+
+        synchronized Bloque abrir(long hastaId) {
+            Bloque bloque = new Bloque(hastaId);
+            pendientes.addLast(bloque);
+            return bloque;
+        }
+
+        synchronized void cerrar(Bloque bloque) throws DAOException {
+            bloque.escrito = true;
+            long anterior = ultimoId;
+            while (!pendientes.isEmpty() && pendientes.peekFirst().escrito) {
+                ultimoId = pendientes.pollFirst().hastaId;
+            }
+            if (ultimoId != anterior && fallo == null) {
+                multaVencimientoDAO.guardarPuntoControl(tarea, dia, ultimoId, false);
+            }
+        }
+
+        void fallar(Throwable e) {
+            synchronized (this) {
+                if (fallo == null) {
+                    fallo = e;
+                }
+            }
+            logger.error("Error al escribir un bloque de la tarea {}", tarea, e);
+        }
+
+        Throwable getFallo() {
+            return fallo;
+        }
+
+        synchronized long getUltimoId() {
+            return ultimoId;
+        }
+
+        private final class Bloque {
+            private final long hastaId;
+            private boolean escrito;
+
+            Bloque(long hastaId) {
+                this.hastaId = hastaId;
+            }
+        }
+    }
+
+    /**
+     * Resumen de una ejecución de la tarea
+     */
+    public static final class Resumen {
+
+        private final LongAdder prestamos = new LongAdder();
+        private final LongAdder multasNuevas = new LongAdder();
+        private final LongAdder bloques = new LongAdder();
+        private long milisegundos;
+
+        /**
+         * Obtiene el número de préstamos vencidos procesados.
+         *
+         * @return Préstamos procesados
+         */
+        public long getPrestamos() {
+            return prestamos.sum();
+        }
+
+        /**
+         * Obtiene el número de multas creadas; el resto de préstamos ya tenían multa.
+         *
+         * @return Multas nuevas
+         */
+        public long getMultasNuevas() {
+            return multasNuevas.sum();
+        }
+
+        /**
+         * Obtiene el número de bloques escritos.
+         *
+         * @return Bloques escritos
+         */
+        public long getBloques() {
+            return bloques.sum();
+        }
+
+        /**
+         * Obtiene la duración de la ejecución.
+         *
+         * @return Milisegundos
+         */
+        public long getMilisegundos() {
+            return milisegundos;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Agrupa las lecturas idénticas que se solicitan de forma concurrente para que
+ * compartan una única consulta en curso contra la base de datos.
+ * <p>
+ * El primer llamante para una clave ejecuta la consulta; los que llegan mientras
+ * sigue en curso esperan a su resultado en lugar de lanzar otra. En cuanto la
+ * consulta termina, la clave se libera y la siguiente llamada vuelve a ir a la
+ * base de datos, por lo que no se sirven datos obsoletos. Si existe una caché de
+ * entidades, debe consultarse antes que el agrupador: solo los fallos de caché
+ * llegan hasta aquí.
+ * <p>
+ * La espera se realiza sobre un {@link CompletableFuture} y no sobre monitores
+ * {@code synchronized}, de modo que puede usarse desde hilos virtuales sin
+ * bloquear el hilo portador.
+ * <p>
+ * El llamante que ejecuta la consulta recibe el resultado original y cada
+ * uno de los que esperan recibe su propia copia, hecha con la función de copia
+ * del agrupador, para que modificar una entidad no afecte a los demás.
+ *
+ * @param <K> Tipo de la clave de la consulta
+ * @param <V> Tipo del resultado de la consulta
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class AgrupadorConsultas<K, V> {
+
+    /**
+     * Consulta que se ejecuta contra la base de datos.
+     *
+     * @param <V> Tipo del resultado
+     */
+    @FunctionalInterface
+    public interface Consulta<V> {
+
+        /**
+         * Ejecuta la consulta.
+         *
+         * @return Resultado de la consulta
+         * @throws DAOException Si ocurre un error en la operación
+         */
+        V ejecutar() throws DAOException;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copia;
+    private final LongAdder consultasEjecutadas = new LongAdder();
+    private final LongAdder consultasSuprimidas = new LongAdder();
+
+    /**
+     * Crea un agrupador cuyos llamantes comparten el mismo resultado, para
+     * resultados inmutables.
+     */
+    public AgrupadorConsultas() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * Crea un agrupador que entrega a cada llamante en espera una copia del
+     * resultado.
+     *
+     * @param copia Función que copia un resultado
+     */
+    public AgrupadorConsultas(UnaryOperator<V> copia) {
+        this.copia = copia;
+    }
+
+    /**
+     * Ejecuta la consulta asociada a la clave o, si ya hay una en curso para la
+     * misma clave, espera a su resultado.
+     *
+     * @param clave Clave que identifica la consulta
+     * @param consulta Consulta a ejecutar si no hay ninguna en curso
+     * @return Resultado de la consulta
+     * @throws DAOException Si la consulta falla o se interrumpe la espera
+     */
+    public V ejecutar(K clave, Consulta<V> consulta) throws DAOException {
+        CompletableFuture<V> propio = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propio);
+
+        if (existente != null) {
+            consultasSuprimidas.increment();
+            return esperar(clave, existente);
+        }
+
+        consultasEjecutadas.increment();
+        try {
+            V resultado = consulta.ejecutar();
+            propio.complete(resultado);
+            return resultado;
+        } catch (DAOException | RuntimeException e) {
+            propio.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, propio);
+        }
+    }
+
+    /**
+     * Espera al resultado de una consulta iniciada por otro llamante.
+     *
+     * @param clave Clave de la consulta
+     * @param futuro Resultado pendiente de la consulta en curso
+     * @return Resultado de la consulta
+     * @throws DAOException Si la consulta falla o se interrumpe la espera
+     */
+    private V esperar(K clave, CompletableFuture<V> futuro) throws DAOException {
+        try {
+            return copia.apply(futuro.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DAOException("Interrumpida la espera de la consulta: " + clave, e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new DAOException("Falló la consulta compartida: " + clave, causa);
+        }
+    }
+
+    /**
+     * Obtiene el número de consultas que se han ejecutado realmente.
+     *
+     * @return Consultas lanzadas contra la base de datos
+     */
+    public long getConsultasEjecutadas() {
+        return consultasEjecutadas.sum();
+    }
+
+    /**
+     * Obtiene el número de llamadas que se han resuelto esperando a una consulta
+     * ya en curso en lugar de lanzar una nueva.
+     *
+     * @return Consultas duplicadas suprimidas
+     */
+    public long getConsultasSuprimidas() {
+        return consultasSuprimidas.sum();
+    }
+
+    /**
+     * Obtiene el número de claves con una consulta en curso en este momento.
+     *
+     * @return Consultas en curso
+     */
+    public int getConsultasEnCurso() {
+        return enCurso.size();
+    }
+}
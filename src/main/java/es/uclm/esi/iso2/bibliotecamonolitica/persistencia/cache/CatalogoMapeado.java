@@ -0,0 +1,191 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Catálogo completo en proceso para los quioscos y los análisis, sin consultas
+ * a la base de datos ni datos en el montículo: mantiene publicada la última
+ * generación de {@link InstantaneaCatalogo}, proyectada en memoria desde un
+ * directorio de ficheros {@code catalogo-<generación>.col}.
+ * <p>
+ * Al refrescar se escribe la siguiente generación en un fichero nuevo y se
+ * publica con una sola escritura volátil. Quien siga usando la generación
+ * anterior continúa leyendo una instantánea coherente hasta que la suelte,
+ * aunque su fichero ya se haya borrado; cada consulta que necesite varios
+ * datos debe obtener la instantánea con {@link #getActual()} una sola vez.
+ * Al arrancar, {@link #abrirUltima()} proyecta la generación más reciente del
+ * directorio sin leerla.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class CatalogoMapeado {
+
+    private static final LogHelper logger = LogHelper.getLogger(CatalogoMapeado.class);
+
+    private static final String PREFIJO = "catalogo-";
+    private static final String EXTENSION = ".col";
+
+    /** Instancia compartida por la aplicación */
+    private static CatalogoMapeado instance;
+
+    private final Path directorio;
+
+    /** Generación publicada, o null si aún no hay ninguna */
+    private volatile InstantaneaCatalogo actual;
+
+    /**
+     * Obtiene la instancia compartida, con los ficheros en el directorio de la
+     * propiedad {@code catalogo.instantanea.directorio}.
+     *
+     * @return Catálogo mapeado de la aplicación
+     */
+    public static synchronized CatalogoMapeado getInstance() {
+        if (instance == null) {
+            instance = new CatalogoMapeado(leerDirectorio());
+        }
+        return instance;
+    }
+
+    /**
+     * Crea un catálogo sin ninguna generación publicada.
+     *
+     * @param directorio Directorio de los ficheros de instantánea
+     */
+    public CatalogoMapeado(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    /**
+     * Obtiene la generación publicada.
+     *
+     * @return Instantánea actual, o null si aún no se ha abierto ni generado ninguna
+     */
+    public InstantaneaCatalogo getActual() {
+        return actual;
+    }
+
+    /**
+     * Proyecta la generación más reciente del directorio y borra las anteriores.
+     *
+     * @return true si había alguna generación válida que abrir
+     * @throws IOException Si no se puede recorrer el directorio
+     */
+    public synchronized boolean abrirUltima() throws IOException {
+        Path ultima = buscarUltima();
+        if (ultima == null) {
+            return false;
+        }
+        try {
+            publicar(InstantaneaCatalogo.abrir(ultima));
+        } catch (IOException e) {
+            logger.warn("No se pudo abrir la instantánea del catálogo {}", ultima, e);
+            return false;
+        }
+        borrarAnteriores(leerGeneracion(ultima));
+        return true;
+    }
+
+    /**
+     * Genera la siguiente generación desde la base de datos y la publica.
+     *
+     * @param libroDAO DAO del que leer el catálogo
+     * @return Instantánea publicada
+     * @throws DAOException Si ocurre un error al leer el catálogo
+     * @throws IOException Si ocurre un error al escribir o proyectar el fichero
+     */
+    public synchronized InstantaneaCatalogo refrescar(LibroDAO libroDAO) throws DAOException, IOException {
+        // Continuar tras la última generación del directorio aunque no se haya abierto
+        Path ultima = buscarUltima();
+        long generacion = Math.max(actual != null ? actual.getGeneracion() : 0,
+                ultima != null ? leerGeneracion(ultima) : 0) + 1;
+        Files.createDirectories(directorio);
+        Path fichero = directorio.resolve(PREFIJO + generacion + EXTENSION);
+        EscritorInstantaneaCatalogo.generar(libroDAO, generacion, fichero);
+        InstantaneaCatalogo nueva = InstantaneaCatalogo.abrir(fichero);
+        publicar(nueva);
+        borrarAnteriores(generacion);
+        return nueva;
+    }
+
+    private void publicar(InstantaneaCatalogo nueva) {
+        actual = nueva;
+        logger.info("Publicada la instantánea {} del catálogo: {} libros, {} KB", nueva.getGeneracion(),
+                nueva.getNumeroLibros(), nueva.getTamano() / 1024);
+    }
+
+    private Path buscarUltima() throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return null;
+        }
+        Path ultima = null;
+        long generacionUltima = -1;
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+            for (Path fichero : ficheros) {
+                long generacion = leerGeneracion(fichero);
+                if (generacion > generacionUltima) {
+                    generacionUltima = generacion;
+                    ultima = fichero;
+                }
+            }
+        }
+        return ultima;
+    }
+
+    private void borrarAnteriores(long generacion) throws IOException {
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+            for (Path fichero : ficheros) {
+                long otra = leerGeneracion(fichero);
+                if (otra >= 0 && otra < generacion) {
+                    borrar(fichero);
+                }
+            }
+        }
+    }
+
+    /**
+     * Borra el fichero de una generación retirada. Las proyecciones abiertas
+     * siguen siendo válidas; en los sistemas que no permiten borrar un fichero
+     * proyectado queda para el siguiente arranque.
+     */
+    private static void borrar(Path fichero) {
+        try {
+            Files.deleteIfExists(fichero);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar la instantánea retirada {}", fichero, e);
+        }
+    }
+
+    private static long leerGeneracion(Path fichero) {
+        String nombre = fichero.getFileName().toString();
+        try {
+            return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static Path leerDirectorio() {
+        String valor = null;
+        try {
+            Properties props = ConfigManager.getInstance().getDatabaseProperties();
+            valor = props.getProperty("catalogo.instantanea.directorio");
+        } catch (Exception e) {
+            logger.warn("No se pudo leer el directorio de las instantáneas del catálogo, se usa el temporal", e);
+        }
+        if (valor == null || valor.trim().isEmpty()) {
+            return Paths.get(System.getProperty("java.io.tmpdir"), "biblioteca-catalogo");
+        }
+        return Paths.get(valor.trim());
+    }
+}
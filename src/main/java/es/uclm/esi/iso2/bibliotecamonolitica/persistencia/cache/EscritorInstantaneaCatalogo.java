@@ -0,0 +1,236 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Genera los ficheros columnares que lee {@link InstantaneaCatalogo}. Los
+ * libros se añaden en orden de ID, como los entrega
+ * {@link LibroDAO#recorrer}, y se escriben de una vez al final, cuando ya se
+ * conoce el diccionario completo de títulos y autores.
+ * <p>
+ * No es seguro para hilos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class EscritorInstantaneaCatalogo {
+
+    private static final LogHelper logger = LogHelper.getLogger(EscritorInstantaneaCatalogo.class);
+
+    /** Número de libros y ejemplares leídos por consulta al generar desde la base de datos */
+    private static final int TAMANO_BLOQUE = 5000;
+
+    private long[] ids = new long[1024];
+    private long[] categorias = new long[1024];
+    private int[] anios = new int[1024];
+    private int[] disponibles = new int[1024];
+    private int[] titulos = new int[1024];
+    private int[] autores = new int[1024];
+    private byte[] isbns = new byte[1024 * InstantaneaCatalogo.ANCHO_ISBN];
+    private int numeroLibros;
+
+    /** Índice provisional de cada cadena, en orden de aparición */
+    private final Map<String, Integer> indicesCadenas = new HashMap<>();
+
+    /**
+     * Genera la instantánea del catálogo completo leyendo primero los
+     * ejemplares disponibles y después los libros, ambos por bloques. Los
+     * libros dados de alta durante la lectura pueden aparecer sin ejemplares
+     * disponibles; la siguiente generación los corrige.
+     *
+     * @param libroDAO DAO del que leer el catálogo
+     * @param generacion Número de generación de la instantánea
+     * @param destino Fichero a escribir; se sustituye de forma atómica si existe
+     * @return Número de libros escritos
+     * @throws DAOException Si ocurre un error al leer el catálogo
+     * @throws IOException Si ocurre un error al escribir el fichero
+     */
+    public static int generar(LibroDAO libroDAO, long generacion, Path destino) throws DAOException, IOException {
+        long inicio = System.nanoTime();
+        Map<Long, Integer> disponiblesPorLibro = new HashMap<>();
+        libroDAO.recorrerEjemplaresDisponibles(TAMANO_BLOQUE,
+                (idEjemplar, idLibro) -> disponiblesPorLibro.merge(idLibro, 1, Integer::sum));
+
+        EscritorInstantaneaCatalogo escritor = new EscritorInstantaneaCatalogo();
+        libroDAO.recorrer(TAMANO_BLOQUE,
+                libro -> escritor.anadir(libro, disponiblesPorLibro.getOrDefault(libro.getId(), 0)));
+        escritor.escribir(destino, generacion);
+
+        logger.info("Instantánea {} del catálogo generada: {} libros, {} cadenas en {} ms", generacion,
+                escritor.numeroLibros, escritor.indicesCadenas.size(), (System.nanoTime() - inicio) / 1_000_000);
+        return escritor.numeroLibros;
+    }
+
+    /**
+     * Añade un libro a la instantánea.
+     *
+     * @param libro Libro con ID mayor que el de todos los añadidos antes
+     * @param ejemplaresDisponibles Número de ejemplares disponibles del libro
+     */
+    public void anadir(Libro libro, int ejemplaresDisponibles) {
+        anadir(libro.getId(),
+                libro.getCategoria() != null && libro.getCategoria().getId() != null
+                        ? libro.getCategoria().getId() : InstantaneaCatalogo.SIN_CATEGORIA,
+                libro.getAnioPublicacion() != null ? libro.getAnioPublicacion() : InstantaneaCatalogo.SIN_ANIO,
+                ejemplaresDisponibles, libro.getTitulo(), libro.getAutor(), libro.getIsbn());
+    }
+
+    /**
+     * Añade un libro a la instantánea.
+     *
+     * @param id ID del libro, mayor que el de todos los añadidos antes
+     * @param categoriaId ID de la categoría, o {@link InstantaneaCatalogo#SIN_CATEGORIA}
+     * @param anioPublicacion Año de publicación, o {@link InstantaneaCatalogo#SIN_ANIO}
+     * @param ejemplaresDisponibles Número de ejemplares disponibles
+     * @param titulo Título
+     * @param autor Autor
+     * @param isbn ISBN de hasta {@value InstantaneaCatalogo#ANCHO_ISBN} caracteres ASCII, o null
+     */
+    public void anadir(long id, long categoriaId, int anioPublicacion, int ejemplaresDisponibles, String titulo,
+            String autor, String isbn) {
+        if (numeroLibros > 0 && id <= ids[numeroLibros - 1]) {
+            throw new IllegalArgumentException("Los libros deben añadirse en orden de ID: " + id
+                    + " después de " + ids[numeroLibros - 1]);
+        }
+        byte[] bytesIsbn = isbn != null ? isbn.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        if (bytesIsbn.length > InstantaneaCatalogo.ANCHO_ISBN) {
+            throw new IllegalArgumentException("ISBN demasiado largo para la instantánea: " + isbn);
+        }
+        if (numeroLibros == ids.length) {
+            int capacidad = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacidad);
+            categorias = Arrays.copyOf(categorias, capacidad);
+            anios = Arrays.copyOf(anios, capacidad);
+            disponibles = Arrays.copyOf(disponibles, capacidad);
+            titulos = Arrays.copyOf(titulos, capacidad);
+            autores = Arrays.copyOf(autores, capacidad);
+            isbns = Arrays.copyOf(isbns, capacidad * InstantaneaCatalogo.ANCHO_ISBN);
+        }
+        ids[numeroLibros] = id;
+        categorias[numeroLibros] = categoriaId;
+        anios[numeroLibros] = anioPublicacion;
+        disponibles[numeroLibros] = ejemplaresDisponibles;
+        titulos[numeroLibros] = indiceCadena(titulo);
+        autores[numeroLibros] = indiceCadena(autor);
+        System.arraycopy(bytesIsbn, 0, isbns, numeroLibros * InstantaneaCatalogo.ANCHO_ISBN, bytesIsbn.length);
+        numeroLibros++;
+    }
+
+    public int getNumeroLibros() {
+        return numeroLibros;
+    }
+
+    /**
+     * Escribe la instantánea en un fichero temporal junto al destino y lo
+     * mueve después sobre el destino, de modo que nunca se abre un fichero a
+     * medio escribir.
+     *
+     * @param destino Fichero a escribir
+     * @param generacion Número de generación de la instantánea
+     * @throws IOException Si ocurre un error al escribir el fichero
+     */
+    public void escribir(Path destino, long generacion) throws IOException {
+        // Ordenar el diccionario por bytes para poder buscar en él sin decodificarlo
+        byte[][] cadenas = new byte[indicesCadenas.size()][];
+        String[] originales = new String[cadenas.length];
+        for (Map.Entry<String, Integer> entrada : indicesCadenas.entrySet()) {
+            originales[entrada.getValue()] = entrada.getKey();
+        }
+        Integer[] orden = new Integer[cadenas.length];
+        byte[][] porIndice = new byte[cadenas.length][];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+            porIndice[i] = originales[i].getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(orden, (a, b) -> Arrays.compareUnsigned(porIndice[a], porIndice[b]));
+        int[] indiceFinal = new int[orden.length];
+        for (int i = 0; i < orden.length; i++) {
+            indiceFinal[orden[i]] = i;
+            cadenas[i] = porIndice[orden[i]];
+        }
+
+        long tamano = InstantaneaCatalogo.TAMANO_CABECERA
+                + (8L + 8 + 4 + 4 + 4 + 4 + InstantaneaCatalogo.ANCHO_ISBN) * numeroLibros
+                + 4L * (cadenas.length + 1);
+        for (byte[] cadena : cadenas) {
+            tamano += cadena.length;
+        }
+        if (tamano > Integer.MAX_VALUE) {
+            throw new IOException("La instantánea ocuparía " + tamano + " bytes y no se podría proyectar");
+        }
+
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+            salida.writeInt(InstantaneaCatalogo.MAGICO);
+            salida.writeInt(InstantaneaCatalogo.VERSION);
+            salida.writeInt(numeroLibros);
+            salida.writeInt(cadenas.length);
+            salida.writeLong(generacion);
+            salida.writeLong(System.currentTimeMillis());
+            salida.write(new byte[InstantaneaCatalogo.TAMANO_CABECERA - 32]);
+
+            for (int i = 0; i < numeroLibros; i++) {
+                salida.writeLong(ids[i]);
+            }
+            for (int i = 0; i < numeroLibros; i++) {
+                salida.writeLong(categorias[i]);
+            }
+            for (int i = 0; i < numeroLibros; i++) {
+                salida.writeInt(anios[i]);
+            }
+            for (int i = 0; i < numeroLibros; i++) {
+                salida.writeInt(disponibles[i]);
+            }
+            for (int i = 0; i < numeroLibros; i++) {
+                salida.writeInt(titulos[i] != InstantaneaCatalogo.SIN_CADENA
+                        ? indiceFinal[titulos[i]] : InstantaneaCatalogo.SIN_CADENA);
+            }
+            for (int i = 0; i < numeroLibros; i++) {
+                salida.writeInt(autores[i] != InstantaneaCatalogo.SIN_CADENA
+                        ? indiceFinal[autores[i]] : InstantaneaCatalogo.SIN_CADENA);
+            }
+            salida.write(isbns, 0, numeroLibros * InstantaneaCatalogo.ANCHO_ISBN);
+
+            int desplazamiento = 0;
+            for (byte[] cadena : cadenas) {
+                salida.writeInt(desplazamiento);
+                desplazamiento += cadena.length;
+            }
+            salida.writeInt(desplazamiento);
+            for (byte[] cadena : cadenas) {
+                salida.write(cadena);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int indiceCadena(String cadena) {
+        if (cadena == null) {
+            return InstantaneaCatalogo.SIN_CADENA;
+        }
+        Integer indice = indicesCadenas.get(cadena);
+        if (indice == null) {
+            indice = indicesCadenas.size();
+            indicesCadenas.put(cadena, indice);
+        }
+        return indice;
+    }
+}
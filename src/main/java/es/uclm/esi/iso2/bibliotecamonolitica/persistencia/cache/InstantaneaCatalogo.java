@@ -0,0 +1,412 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Instantánea de solo lectura del catálogo completo, proyectada en memoria
+ * desde un fichero columnar con {@link FileChannel#map}. Los datos no ocupan
+ * montículo: las consultas leen directamente de las páginas del fichero, que
+ * el sistema operativo carga bajo demanda y comparte entre procesos, de modo
+ * que abrir una instantánea es casi instantáneo.
+ * <p>
+ * El fichero lo escribe {@link EscritorInstantaneaCatalogo} y tiene este formato,
+ * con todos los enteros en orden de bytes big-endian:
+ * <ul>
+ * <li>Cabecera de {@value #TAMANO_CABECERA} bytes: número mágico, versión,
+ * número de libros, número de cadenas, generación y fecha de creación.</li>
+ * <li>Columnas de ancho fijo, una por campo y en el orden de los IDs: ID y
+ * categoría ({@code long}), año, ejemplares disponibles, título y autor
+ * ({@code int}, los dos últimos como índices en el diccionario) e ISBN
+ * ({@value #ANCHO_ISBN} bytes ASCII rellenos con ceros).</li>
+ * <li>Diccionario de cadenas: los desplazamientos de cada cadena
+ * ({@code int}) seguidos de sus bytes UTF-8. Las cadenas están ordenadas por
+ * sus bytes y sin repetir, así que cada autor se guarda una sola vez y se
+ * busca por búsqueda binaria.</li>
+ * </ul>
+ * <p>
+ * Es inmutable y segura para hilos: todas las lecturas usan posiciones
+ * absolutas sobre el buffer proyectado.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class InstantaneaCatalogo {
+
+    /** Número mágico que identifica los ficheros de instantánea ("CATB") */
+    static final int MAGICO = 0x43415442;
+
+    /** Versión del formato */
+    static final int VERSION = 1;
+
+    /** Bytes de la cabecera, múltiplo de 8 para alinear las columnas */
+    static final int TAMANO_CABECERA = 64;
+
+    /** Bytes de la columna de ISBN por libro */
+    static final int ANCHO_ISBN = 20;
+
+    /** Valor de {@link #getAnioPublicacion(int)} para los libros sin año */
+    public static final int SIN_ANIO = Integer.MIN_VALUE;
+
+    /** Valor de {@link #getCategoriaId(int)} para los libros sin categoría */
+    public static final long SIN_CATEGORIA = 0;
+
+    /** Índice en el diccionario de las cadenas nulas */
+    static final int SIN_CADENA = -1;
+
+    private final ByteBuffer datos;
+    private final int numeroLibros;
+    private final int numeroCadenas;
+    private final long generacion;
+    private final long fechaCreacion;
+
+    private final int columnaIds;
+    private final int columnaCategorias;
+    private final int columnaAnios;
+    private final int columnaDisponibles;
+    private final int columnaTitulos;
+    private final int columnaAutores;
+    private final int columnaIsbns;
+    private final int desplazamientosCadenas;
+    private final int bytesCadenas;
+
+    private InstantaneaCatalogo(ByteBuffer datos) throws IOException {
+        this.datos = datos;
+        if (datos.capacity() < TAMANO_CABECERA || datos.getInt(0) != MAGICO) {
+            throw new IOException("El fichero no es una instantánea del catálogo");
+        }
+        int version = datos.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Versión de instantánea no soportada: " + version);
+        }
+        this.numeroLibros = datos.getInt(8);
+        this.numeroCadenas = datos.getInt(12);
+        this.generacion = datos.getLong(16);
+        this.fechaCreacion = datos.getLong(24);
+        if (numeroLibros < 0 || numeroCadenas < 0) {
+            throw new IOException("Cabecera de instantánea no válida");
+        }
+
+        long posicion = TAMANO_CABECERA;
+        this.columnaIds = (int) posicion;
+        posicion += 8L * numeroLibros;
+        this.columnaCategorias = (int) posicion;
+        posicion += 8L * numeroLibros;
+        this.columnaAnios = (int) posicion;
+        posicion += 4L * numeroLibros;
+        this.columnaDisponibles = (int) posicion;
+        posicion += 4L * numeroLibros;
+        this.columnaTitulos = (int) posicion;
+        posicion += 4L * numeroLibros;
+        this.columnaAutores = (int) posicion;
+        posicion += 4L * numeroLibros;
+        this.columnaIsbns = (int) posicion;
+        posicion += (long) ANCHO_ISBN * numeroLibros;
+        this.desplazamientosCadenas = (int) posicion;
+        posicion += 4L * (numeroCadenas + 1);
+        this.bytesCadenas = (int) posicion;
+        if (posicion > datos.capacity()
+                || bytesCadenas + (long) datos.getInt(desplazamientosCadenas + 4 * numeroCadenas) != datos.capacity()) {
+            throw new IOException("La instantánea está truncada o dañada");
+        }
+    }
+
+    /**
+     * Proyecta en memoria un fichero de instantánea. El fichero puede borrarse
+     * o sustituirse después sin afectar a la instantánea abierta.
+     *
+     * @param fichero Fichero escrito por {@link EscritorInstantaneaCatalogo}
+     * @return Instantánea abierta
+     * @throws IOException Si no se puede leer el fichero o su formato no es válido
+     */
+    public static InstantaneaCatalogo abrir(Path fichero) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE) {
+                throw new IOException("La instantánea supera los 2 GB que se pueden proyectar: " + tamano + " bytes");
+            }
+            // La proyección sigue siendo válida tras cerrar el canal
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+            return new InstantaneaCatalogo(buffer);
+        }
+    }
+
+    public int getNumeroLibros() {
+        return numeroLibros;
+    }
+
+    /**
+     * Obtiene el número de cadenas distintas del diccionario.
+     *
+     * @return Títulos y autores distintos
+     */
+    public int getNumeroCadenas() {
+        return numeroCadenas;
+    }
+
+    public long getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Obtiene el momento en que se generó la instantánea.
+     *
+     * @return Milisegundos desde 1970-01-01
+     */
+    public long getFechaCreacion() {
+        return fechaCreacion;
+    }
+
+    /**
+     * Obtiene el tamaño del fichero proyectado.
+     *
+     * @return Bytes de la instantánea
+     */
+    public int getTamano() {
+        return datos.capacity();
+    }
+
+    /**
+     * Busca la posición de un libro por búsqueda binaria en la columna de IDs.
+     *
+     * @param id ID del libro
+     * @return Posición del libro, o -1 si no está en la instantánea
+     */
+    public int buscar(long id) {
+        int bajo = 0;
+        int alto = numeroLibros - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            long actual = getId(medio);
+            if (actual < id) {
+                bajo = medio + 1;
+            } else if (actual > id) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Busca la posición de un libro por su ISBN recorriendo la columna de ISBN
+     * sin decodificarla.
+     *
+     * @param isbn ISBN exacto
+     * @return Posición del libro, o -1 si no está en la instantánea
+     */
+    public int buscarPorIsbn(String isbn) {
+        byte[] buscado = isbn.getBytes(StandardCharsets.US_ASCII);
+        if (buscado.length == 0 || buscado.length > ANCHO_ISBN) {
+            return -1;
+        }
+        for (int i = 0; i < numeroLibros; i++) {
+            int base = columnaIsbns + i * ANCHO_ISBN;
+            int j = 0;
+            while (j < buscado.length && datos.get(base + j) == buscado[j]) {
+                j++;
+            }
+            if (j == buscado.length && (j == ANCHO_ISBN || datos.get(base + j) == 0)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Obtiene los IDs de los libros de un autor. El autor se resuelve una vez
+     * en el diccionario y después solo se comparan enteros.
+     *
+     * @param autor Autor exacto
+     * @return IDs de sus libros en orden ascendente
+     */
+    public long[] buscarPorAutor(String autor) {
+        int indice = buscarCadena(autor);
+        if (indice < 0) {
+            return new long[0];
+        }
+        long[] ids = new long[16];
+        int encontrados = 0;
+        for (int i = 0; i < numeroLibros; i++) {
+            if (datos.getInt(columnaAutores + 4 * i) == indice) {
+                if (encontrados == ids.length) {
+                    ids = Arrays.copyOf(ids, encontrados * 2);
+                }
+                ids[encontrados++] = getId(i);
+            }
+        }
+        return Arrays.copyOf(ids, encontrados);
+    }
+
+    /**
+     * Obtiene los IDs de los libros de una categoría.
+     *
+     * @param categoriaId ID de la categoría
+     * @param soloDisponibles true para incluir solo los libros con algún ejemplar disponible
+     * @return IDs de los libros en orden ascendente
+     */
+    public long[] buscarPorCategoria(long categoriaId, boolean soloDisponibles) {
+        long[] ids = new long[16];
+        int encontrados = 0;
+        for (int i = 0; i < numeroLibros; i++) {
+            if (datos.getLong(columnaCategorias + 8 * i) == categoriaId
+                    && (!soloDisponibles || getDisponibles(i) > 0)) {
+                if (encontrados == ids.length) {
+                    ids = Arrays.copyOf(ids, encontrados * 2);
+                }
+                ids[encontrados++] = getId(i);
+            }
+        }
+        return Arrays.copyOf(ids, encontrados);
+    }
+
+    /**
+     * Cuenta los libros con algún ejemplar disponible.
+     *
+     * @return Libros disponibles
+     */
+    public int contarLibrosDisponibles() {
+        int disponibles = 0;
+        for (int i = 0; i < numeroLibros; i++) {
+            if (getDisponibles(i) > 0) {
+                disponibles++;
+            }
+        }
+        return disponibles;
+    }
+
+    public long getId(int posicion) {
+        return datos.getLong(columnaIds + 8 * comprobar(posicion));
+    }
+
+    /**
+     * Obtiene la categoría de un libro.
+     *
+     * @param posicion Posición del libro
+     * @return ID de la categoría, o {@link #SIN_CATEGORIA}
+     */
+    public long getCategoriaId(int posicion) {
+        return datos.getLong(columnaCategorias + 8 * comprobar(posicion));
+    }
+
+    /**
+     * Obtiene el año de publicación de un libro.
+     *
+     * @param posicion Posición del libro
+     * @return Año de publicación, o {@link #SIN_ANIO}
+     */
+    public int getAnioPublicacion(int posicion) {
+        return datos.getInt(columnaAnios + 4 * comprobar(posicion));
+    }
+
+    /**
+     * Obtiene los ejemplares disponibles de un libro cuando se generó la instantánea.
+     *
+     * @param posicion Posición del libro
+     * @return Ejemplares disponibles
+     */
+    public int getDisponibles(int posicion) {
+        return datos.getInt(columnaDisponibles + 4 * comprobar(posicion));
+    }
+
+    public String getTitulo(int posicion) {
+        return leerCadena(datos.getInt(columnaTitulos + 4 * comprobar(posicion)));
+    }
+
+    public String getAutor(int posicion) {
+        return leerCadena(datos.getInt(columnaAutores + 4 * comprobar(posicion)));
+    }
+
+    /**
+     * Obtiene el ISBN de un libro.
+     *
+     * @param posicion Posición del libro
+     * @return ISBN, o null si no tiene
+     */
+    public String getIsbn(int posicion) {
+        int base = columnaIsbns + comprobar(posicion) * ANCHO_ISBN;
+        int longitud = 0;
+        while (longitud < ANCHO_ISBN && datos.get(base + longitud) != 0) {
+            longitud++;
+        }
+        if (longitud == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        for (int i = 0; i < longitud; i++) {
+            bytes[i] = datos.get(base + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return "InstantaneaCatalogo [generacion=" + generacion + ", libros=" + numeroLibros
+                + ", cadenas=" + numeroCadenas + ", bytes=" + datos.capacity() + "]";
+    }
+
+    private int comprobar(int posicion) {
+        if (posicion < 0 || posicion >= numeroLibros) {
+            throw new IndexOutOfBoundsException("Posición fuera de la instantánea: " + posicion);
+        }
+        return posicion;
+    }
+
+    /**
+     * Busca una cadena en el diccionario comparando sus bytes UTF-8 sin signo,
+     * el mismo orden con el que se escribió.
+     */
+    private int buscarCadena(String cadena) {
+        if (cadena == null) {
+            return -1;
+        }
+        byte[] buscada = cadena.getBytes(StandardCharsets.UTF_8);
+        int bajo = 0;
+        int alto = numeroCadenas - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int comparacion = compararCadena(medio, buscada);
+            if (comparacion < 0) {
+                bajo = medio + 1;
+            } else if (comparacion > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -1;
+    }
+
+    private int compararCadena(int indice, byte[] otra) {
+        int inicio = bytesCadenas + datos.getInt(desplazamientosCadenas + 4 * indice);
+        int longitud = datos.getInt(desplazamientosCadenas + 4 * (indice + 1)) - datos.getInt(desplazamientosCadenas + 4 * indice);
+        int comun = Math.min(longitud, otra.length);
+        for (int i = 0; i < comun; i++) {
+            int diferencia = Byte.toUnsignedInt(datos.get(inicio + i)) - Byte.toUnsignedInt(otra[i]);
+            if (diferencia != 0) {
+                return diferencia;
+            }
+        }
+        return longitud - otra.length;
+    }
+
+    private String leerCadena(int indice) {
+        if (indice == SIN_CADENA) {
+            return null;
+        }
+        int inicio = bytesCadenas + datos.getInt(desplazamientosCadenas + 4 * indice);
+        int fin = bytesCadenas + datos.getInt(desplazamientosCadenas + 4 * (indice + 1));
+        byte[] bytes = new byte[fin - inicio];
+        ByteBuffer vista = datos.duplicate();
+        vista.position(inicio);
+        vista.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Deduplica cadenas que se repiten mucho entre entidades, como los autores y
+ * las editoriales del catálogo: todas las apariciones de un mismo valor
+ * comparten una única instancia de {@link String}.
+ * <p>
+ * A diferencia de {@link String#intern()}, las cadenas viven mientras viva el
+ * internador, de modo que al descartar una caché se liberan con ella.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class InternadorCadenas {
+
+    private final ConcurrentMap<String, String> cadenas = new ConcurrentHashMap<>();
+
+    /**
+     * Obtiene la instancia compartida de una cadena.
+     *
+     * @param cadena Cadena a deduplicar
+     * @return Instancia igual a la cadena compartida por todas sus apariciones, o null si es null
+     */
+    public String internar(String cadena) {
+        if (cadena == null) {
+            return null;
+        }
+        String existente = cadenas.putIfAbsent(cadena, cadena);
+        return existente != null ? existente : cadena;
+    }
+
+    /**
+     * Obtiene el número de cadenas distintas internadas.
+     *
+     * @return Cadenas distintas
+     */
+    public int getNumeroCadenas() {
+        return cadenas.size();
+    }
+}
@@ -0,0 +1,197 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
+
+/**
+ * Representación de solo lectura de un libro para tenerlo en caché con poca
+ * memoria: el ID, la categoría, el año y la fecha de alta se guardan como
+ * primitivos en lugar de {@link Long}, {@link Integer} y {@link Date}, no se
+ * reserva ninguna lista de ejemplares, y el autor y la editorial se
+ * deduplican con un {@link InternadorCadenas}.
+ * <p>
+ * Es inmutable y puede compartirse entre hilos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class LibroCompacto {
+
+    /** Valor de {@link #getAnioPublicacion()} para los libros sin año */
+    public static final int SIN_ANIO = Integer.MIN_VALUE;
+
+    /** Valor de {@link #getCategoriaId()} para los libros sin categoría */
+    public static final long SIN_CATEGORIA = 0;
+
+    /** Valor de {@link #getDiaAlta()} para los libros sin fecha de alta */
+    public static final int SIN_FECHA = Integer.MIN_VALUE;
+
+    private final long id;
+    private final long categoriaId;
+    private final int anioPublicacion;
+    /** Fecha de alta en días desde 1970-01-01 */
+    private final int diaAlta;
+    private final String titulo;
+    private final String autor;
+    private final String editorial;
+    private final String isbn;
+    private final String descripcion;
+
+    /**
+     * Constructor con todos los campos.
+     *
+     * @param id ID del libro
+     * @param categoriaId ID de la categoría, o {@link #SIN_CATEGORIA}
+     * @param anioPublicacion Año de publicación, o {@link #SIN_ANIO}
+     * @param diaAlta Fecha de alta en días desde 1970-01-01, o {@link #SIN_FECHA}
+     * @param titulo Título
+     * @param autor Autor, ya deduplicado
+     * @param editorial Editorial, ya deduplicada
+     * @param isbn ISBN
+     * @param descripcion Descripción
+     */
+    public LibroCompacto(long id, long categoriaId, int anioPublicacion, int diaAlta, String titulo, String autor,
+            String editorial, String isbn, String descripcion) {
+        this.id = id;
+        this.categoriaId = categoriaId;
+        this.anioPublicacion = anioPublicacion;
+        this.diaAlta = diaAlta;
+        this.titulo = titulo;
+        this.autor = autor;
+        this.editorial = editorial;
+        this.isbn = isbn;
+        this.descripcion = descripcion;
+    }
+
+    /**
+     * Crea la representación compacta de un libro.
+     *
+     * @param libro Libro con ID
+     * @param internador Internador del autor y la editorial
+     * @return Libro compacto
+     */
+    public static LibroCompacto desde(Libro libro, InternadorCadenas internador) {
+        Categoria categoria = libro.getCategoria();
+        return new LibroCompacto(
+                libro.getId(),
+                categoria != null && categoria.getId() != null ? categoria.getId() : SIN_CATEGORIA,
+                libro.getAnioPublicacion() != null ? libro.getAnioPublicacion() : SIN_ANIO,
+                aDia(libro.getFechaAlta()),
+                libro.getTitulo(),
+                internador.internar(libro.getAutor()),
+                internador.internar(libro.getEditorial()),
+                libro.getIsbn(),
+                libro.getDescripcion());
+    }
+
+    /**
+     * Reconstruye la entidad. La categoría solo lleva su ID y el libro no tiene ejemplares.
+     *
+     * @return Libro nuevo con los datos de este
+     * @throws NotNullValueAllowedException Si algún valor obligatorio es nulo
+     */
+    public Libro aLibro() throws NotNullValueAllowedException {
+        Libro libro = new Libro();
+        libro.setId(id);
+        libro.setTitulo(titulo);
+        libro.setAutor(autor);
+        libro.setEditorial(editorial);
+        libro.setAnioPublicacion(anioPublicacion != SIN_ANIO ? anioPublicacion : null);
+        libro.setIsbn(isbn);
+        libro.setDescripcion(descripcion);
+        libro.setFechaAlta(aFecha(diaAlta));
+        if (categoriaId != SIN_CATEGORIA) {
+            Categoria categoria = new Categoria();
+            categoria.setId(categoriaId);
+            libro.setCategoria(categoria);
+        }
+        return libro;
+    }
+
+    /**
+     * Convierte una fecha al número de días desde 1970-01-01 en la zona horaria del sistema.
+     *
+     * @param fecha Fecha, o null
+     * @return Días desde 1970-01-01, o {@link #SIN_FECHA}
+     */
+    static int aDia(Date fecha) {
+        if (fecha == null) {
+            return SIN_FECHA;
+        }
+        return (int) Instant.ofEpochMilli(fecha.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Convierte un número de días desde 1970-01-01 en la fecha a las 00:00 de la zona horaria del sistema.
+     *
+     * @param dia Días desde 1970-01-01, o {@link #SIN_FECHA}
+     * @return Fecha, o null
+     */
+    static Date aFecha(int dia) {
+        if (dia == SIN_FECHA) {
+            return null;
+        }
+        return Date.from(LocalDate.ofEpochDay(dia).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getCategoriaId() {
+        return categoriaId;
+    }
+
+    public int getAnioPublicacion() {
+        return anioPublicacion;
+    }
+
+    /**
+     * Obtiene la fecha de alta sin crear ningún objeto.
+     *
+     * @return Días desde 1970-01-01, o {@link #SIN_FECHA}
+     */
+    public int getDiaAlta() {
+        return diaAlta;
+    }
+
+    /**
+     * Obtiene la fecha de alta.
+     *
+     * @return Fecha nueva a las 00:00, o null si no tiene
+     */
+    public Date getFechaAlta() {
+        return aFecha(diaAlta);
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+
+    public String getAutor() {
+        return autor;
+    }
+
+    public String getEditorial() {
+        return editorial;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    @Override
+    public String toString() {
+        return "LibroCompacto [id=" + id + ", titulo=" + titulo + ", autor=" + autor + ", isbn=" + isbn + "]";
+    }
+}
@@ -0,0 +1,122 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
+
+/**
+ * Representación de solo lectura de un usuario para tenerlo en caché con poca
+ * memoria: el ID y la fecha de alta se guardan como primitivos, no se reservan
+ * las listas de préstamos y multas, y el nombre se deduplica con un
+ * {@link InternadorCadenas}.
+ * <p>
+ * Es inmutable y puede compartirse entre hilos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class UsuarioCompacto {
+
+    private final long id;
+    /** Fecha de alta en días desde 1970-01-01 */
+    private final int diaAlta;
+    private final TipoUsuario tipoUsuario;
+    private final EstadoUsuario estado;
+    private final String nombre;
+    private final String apellidos;
+    private final String dniNif;
+    private final String direccion;
+    private final String telefono;
+    private final String email;
+
+    private UsuarioCompacto(Usuario usuario, InternadorCadenas internador) {
+        this.id = usuario.getId();
+        this.diaAlta = LibroCompacto.aDia(usuario.getFechaAlta());
+        this.tipoUsuario = usuario.getTipoUsuario();
+        this.estado = usuario.getEstado();
+        this.nombre = internador.internar(usuario.getNombre());
+        this.apellidos = usuario.getApellidos();
+        this.dniNif = usuario.getDniNif();
+        this.direccion = usuario.getDireccion();
+        this.telefono = usuario.getTelefono();
+        this.email = usuario.getEmail();
+    }
+
+    /**
+     * Crea la representación compacta de un usuario.
+     *
+     * @param usuario Usuario con ID
+     * @param internador Internador del nombre
+     * @return Usuario compacto
+     */
+    public static UsuarioCompacto desde(Usuario usuario, InternadorCadenas internador) {
+        return new UsuarioCompacto(usuario, internador);
+    }
+
+    /**
+     * Reconstruye la entidad, sin préstamos ni multas.
+     *
+     * @return Usuario nuevo con los datos de este
+     * @throws NotNullValueAllowedException Si algún valor obligatorio es nulo
+     */
+    public Usuario aUsuario() throws NotNullValueAllowedException {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setNombre(nombre);
+        usuario.setApellidos(apellidos);
+        usuario.setDniNif(dniNif);
+        usuario.setDireccion(direccion);
+        usuario.setTelefono(telefono);
+        usuario.setEmail(email);
+        usuario.setTipoUsuario(tipoUsuario);
+        usuario.setEstado(estado);
+        usuario.setFechaAlta(LibroCompacto.aFecha(diaAlta));
+        return usuario;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene la fecha de alta sin crear ningún objeto.
+     *
+     * @return Días desde 1970-01-01, o {@link LibroCompacto#SIN_FECHA}
+     */
+    public int getDiaAlta() {
+        return diaAlta;
+    }
+
+    public TipoUsuario getTipoUsuario() {
+        return tipoUsuario;
+    }
+
+    public EstadoUsuario getEstado() {
+        return estado;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getApellidos() {
+        return apellidos;
+    }
+
+    public String getDniNif() {
+        return dniNif;
+    }
+
+    public String getDireccion() {
+        return direccion;
+    }
+
+    public String getTelefono() {
+        return telefono;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
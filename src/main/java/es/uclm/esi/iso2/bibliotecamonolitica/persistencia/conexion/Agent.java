@@ -78,13 +78,27 @@ public abstract class Agent {
      * 
      * @param sql Sentencia SQL a ejecutar
      * @param params Parámetros para la sentencia preparada
-     * @return Número de filas afectadas o ID generado para INSERTs
+     * @return Número de filas afectadas o ID generado para INSERTs; si el ID no
+     *         cabe en un int se devuelven las filas afectadas, y para leerlo hay
+     *         que usar {@link #executeInsert(String, Object...)}
      * @throws SQLException Si ocurre un error al ejecutar la operación
      * @throws DatabaseConnectionException Si ocurre un error de conexión
      */
     public abstract int executeUpdate(String sql, Object... params) 
             throws SQLException, DatabaseConnectionException;
     
+    /**
+     * Ejecuta un INSERT de una fila y devuelve la clave que ha generado la base de datos.
+     * 
+     * @param sql Sentencia INSERT a ejecutar
+     * @param params Parámetros para la sentencia preparada
+     * @return ID generado para la fila insertada
+     * @throws SQLException Si ocurre un error al ejecutar la operación o no se genera ninguna clave
+     * @throws DatabaseConnectionException Si ocurre un error de conexión
+     */
+    public abstract long executeInsert(String sql, Object... params) 
+            throws SQLException, DatabaseConnectionException;
+    
     /**
      * Inicia una transacción.
      * 
@@ -122,11 +122,15 @@ public class AgentMySQL extends Agent {
             int result = statement.executeUpdate();
             logger.debug("Operación de actualización ejecutada: {}", sql);
             
-            // Para operaciones INSERT, devolver el ID generado si existe
+            // Para operaciones INSERT, devolver el ID generado si existe y cabe en un int;
+            // la fila ya está escrita, así que un ID mayor no es un error
             if (sql.trim().toLowerCase().startsWith("insert")) {
-                ResultSet generatedKeys = statement.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    result = generatedKeys.getInt(1);
+                long id = leerClaveGenerada(statement);
+                if (id > Integer.MAX_VALUE) {
+                    logger.warn("El ID generado {} no cabe en un int, se devuelven las filas afectadas "
+                            + "(usar executeInsert): {}", id, sql);
+                } else if (id >= 0) {
+                    result = (int) id;
                 }
             }
             
@@ -137,6 +141,46 @@ public class AgentMySQL extends Agent {
         }
     }
     
+    @Override
+    public long executeInsert(String sql, Object... params) throws SQLException, DatabaseConnectionException {
+        Connection connection = null;
+        
+        try {
+            connection = connect();
+            try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < params.length; i++) {
+                    statement.setObject(i + 1, params[i]);
+                }
+                
+                statement.executeUpdate();
+                logger.debug("Inserción ejecutada: {}", sql);
+                
+                long id = leerClaveGenerada(statement);
+                if (id < 0) {
+                    throw new SQLException("La inserción no generó ningún ID: " + sql);
+                }
+                return id;
+            }
+            
+        } finally {
+            disconnect(connection);
+        }
+    }
+    
+    /**
+     * Lee la primera clave generada por una sentencia como long, para que los
+     * IDs BIGINT mayores que 2^31 no se desborden.
+     * 
+     * @param statement Sentencia ya ejecutada
+     * @return Clave generada, o -1 si no se generó ninguna
+     * @throws SQLException Si ocurre un error al leer las claves
+     */
+    private long leerClaveGenerada(PreparedStatement statement) throws SQLException {
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            return generatedKeys.next() ? generatedKeys.getLong(1) : -1;
+        }
+    }
+    
     @Override
     public Connection beginTransaction() throws SQLException, DatabaseConnectionException {
         Connection connection = connect();
@@ -0,0 +1,257 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Asignador de IDs en el cliente por bloques (hi-lo): reserva en la tabla de
+ * secuencias un bloque de IDs consecutivos y los reparte en memoria, de modo
+ * que las inserciones llevan su ID y no necesitan leer la clave generada ni
+ * pueden desbordar un int. Las inserciones por lotes reciben todos sus IDs
+ * antes de empezar.
+ * <p>
+ * El tamaño del bloque se adapta al ritmo de inserciones: si un bloque se
+ * agota en menos de la mitad de la duración objetivo, el siguiente es el
+ * doble de grande, y si dura más del doble, la mitad, siempre entre el mínimo
+ * y el máximo configurados. Así una carga masiva hace pocas reservas y el
+ * alta ocasional de un libro no deja grandes huecos.
+ * <p>
+ * La reserva de un bloque nuevo se hace fuera del monitor del asignador,
+ * detrás de un cerrojo de recarga propio: mientras un hilo espera a la base
+ * de datos, los demás pueden seguir leyendo el estado del asignador, y los
+ * que también necesitan IDs esperan al nuevo bloque en lugar de reservar
+ * otro.
+ * <p>
+ * Los IDs de un bloque que no se llegan a usar, por ejemplo al parar la
+ * aplicación, se pierden: los IDs son únicos y crecientes dentro de cada
+ * instancia, pero no consecutivos. Todas las inserciones en una tabla deben
+ * tomar su ID del asignador, porque el autoincremento no conoce los bloques
+ * reservados.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class AsignadorIds {
+
+    private static final LogHelper logger = LogHelper.getLogger(AsignadorIds.class);
+
+    private static final int BLOQUE_MINIMO_POR_DEFECTO = 20;
+    private static final int BLOQUE_MAXIMO_POR_DEFECTO = 10000;
+    private static final int DURACION_BLOQUE_MS_POR_DEFECTO = 10000;
+
+    /** Asignador de cada tabla */
+    private static final Map<String, AsignadorIds> instancias = new HashMap<>();
+
+    private final String tabla;
+    private final SecuenciaDAO secuenciaDAO;
+    private final int bloqueMinimo;
+    private final int bloqueMaximo;
+    private final long duracionObjetivoNanos;
+    private final LongSupplier reloj;
+    /** Cerrojo de las reservas: solo un hilo a la vez reserva un bloque nuevo */
+    private final Object recarga = new Object();
+
+    private int tamanoBloque;
+    /** Siguiente ID a repartir del bloque actual */
+    private long siguiente;
+    /** Primer ID fuera del bloque actual */
+    private long limite;
+    /** Instante de la última reserva, en nanosegundos */
+    private long instanteReserva;
+    private long reservas;
+
+    /**
+     * Obtiene el asignador de IDs de una tabla, configurado por las
+     * propiedades {@code db.ids.bloque_minimo}, {@code db.ids.bloque_maximo}
+     * y {@code db.ids.duracion_bloque_ms}.
+     *
+     * @param tabla Tabla cuyos IDs se asignan
+     * @return Asignador compartido de la tabla
+     * @throws DAOException Si no se puede inicializar el DAO de secuencias
+     */
+    public static synchronized AsignadorIds getInstance(String tabla) throws DAOException {
+        AsignadorIds asignador = instancias.get(tabla);
+        if (asignador == null) {
+            Properties props = leerConfiguracion();
+            asignador = new AsignadorIds(tabla, new SecuenciaDAO(),
+                    leerEntero(props, "db.ids.bloque_minimo", BLOQUE_MINIMO_POR_DEFECTO),
+                    leerEntero(props, "db.ids.bloque_maximo", BLOQUE_MAXIMO_POR_DEFECTO),
+                    leerEntero(props, "db.ids.duracion_bloque_ms", DURACION_BLOQUE_MS_POR_DEFECTO));
+            instancias.put(tabla, asignador);
+        }
+        return asignador;
+    }
+
+    /**
+     * Crea un asignador sin ningún bloque reservado.
+     *
+     * @param tabla Tabla cuyos IDs se asignan
+     * @param secuenciaDAO DAO del que se reservan los bloques
+     * @param bloqueMinimo Tamaño mínimo y inicial de los bloques
+     * @param bloqueMaximo Tamaño máximo de los bloques
+     * @param duracionBloqueMs Tiempo que debería durar cada bloque
+     */
+    public AsignadorIds(String tabla, SecuenciaDAO secuenciaDAO, int bloqueMinimo, int bloqueMaximo,
+            int duracionBloqueMs) {
+        this(tabla, secuenciaDAO, bloqueMinimo, bloqueMaximo, duracionBloqueMs, System::nanoTime);
+    }
+
+    /**
+     * Crea un asignador sin ningún bloque reservado que mide la duración de
+     * los bloques con un reloj dado.
+     *
+     * @param reloj Reloj en nanosegundos
+     */
+    AsignadorIds(String tabla, SecuenciaDAO secuenciaDAO, int bloqueMinimo, int bloqueMaximo,
+            int duracionBloqueMs, LongSupplier reloj) {
+        this.reloj = reloj;
+        this.tabla = tabla;
+        this.secuenciaDAO = secuenciaDAO;
+        this.bloqueMinimo = Math.max(1, bloqueMinimo);
+        this.bloqueMaximo = Math.max(this.bloqueMinimo, bloqueMaximo);
+        this.duracionObjetivoNanos = Math.max(1, duracionBloqueMs) * 1_000_000L;
+        this.tamanoBloque = this.bloqueMinimo;
+    }
+
+    /**
+     * Asigna un ID nuevo. Solo consulta la base de datos cuando se agota el bloque actual.
+     *
+     * @return ID sin usar
+     * @throws DAOException Si no se puede reservar un bloque nuevo
+     */
+    public long siguiente() throws DAOException {
+        synchronized (this) {
+            if (siguiente < limite) {
+                return siguiente++;
+            }
+        }
+        synchronized (recarga) {
+            // Otro hilo puede haber reservado un bloque mientras se esperaba
+            synchronized (this) {
+                if (siguiente < limite) {
+                    return siguiente++;
+                }
+            }
+            return reservar(1);
+        }
+    }
+
+    /**
+     * Asigna los IDs de una inserción por lotes, con a lo sumo una reserva
+     * además del resto del bloque actual.
+     *
+     * @param cantidad Número de IDs
+     * @return IDs sin usar en orden creciente
+     * @throws DAOException Si no se puede reservar un bloque nuevo
+     */
+    public long[] siguientes(int cantidad) throws DAOException {
+        long[] ids = new long[cantidad];
+        int asignados = tomar(ids, 0);
+        if (asignados < cantidad) {
+            synchronized (recarga) {
+                asignados = tomar(ids, asignados);
+                if (asignados < cantidad) {
+                    long inicio = reservar(cantidad - asignados);
+                    while (asignados < cantidad) {
+                        ids[asignados++] = inicio++;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Toma del bloque actual los IDs que quedan, hasta completar el array.
+     *
+     * @return Número de IDs asignados en el array
+     */
+    private synchronized int tomar(long[] ids, int asignados) {
+        while (asignados < ids.length && siguiente < limite) {
+            ids[asignados++] = siguiente++;
+        }
+        return asignados;
+    }
+
+    /**
+     * Reserva un bloque nuevo, ajustando su tamaño según lo que ha durado el
+     * anterior. Se llama con el cerrojo de recarga, y la consulta a la base
+     * de datos se hace fuera del monitor del asignador.
+     *
+     * @param necesarios IDs que hacen falta como mínimo; se entregan al llamante
+     * @return Primero de los IDs entregados al llamante
+     */
+    private long reservar(int necesarios) throws DAOException {
+        long ahora = reloj.getAsLong();
+        int tamano;
+        synchronized (this) {
+            if (reservas > 0) {
+                long duracion = ahora - instanteReserva;
+                if (duracion < duracionObjetivoNanos / 2) {
+                    tamanoBloque = (int) Math.min((long) tamanoBloque * 2, bloqueMaximo);
+                } else if (duracion > duracionObjetivoNanos * 2) {
+                    tamanoBloque = Math.max(tamanoBloque / 2, bloqueMinimo);
+                }
+            }
+            tamano = Math.max(tamanoBloque, necesarios);
+        }
+
+        long inicio = secuenciaDAO.reservarBloque(tabla, tamano);
+
+        synchronized (this) {
+            // Los IDs del llamante no pasan por el bloque compartido
+            siguiente = inicio + necesarios;
+            limite = inicio + tamano;
+            instanteReserva = ahora;
+            reservas++;
+        }
+        logger.debug("Bloque de {} IDs de {} reservado desde {}", tamano, tabla, inicio);
+        return inicio;
+    }
+
+    /**
+     * Obtiene el tamaño que tendrá el próximo bloque si no se adapta.
+     *
+     * @return Tamaño del bloque actual
+     */
+    public synchronized int getTamanoBloque() {
+        return tamanoBloque;
+    }
+
+    /**
+     * Obtiene el número de bloques reservados en la base de datos.
+     *
+     * @return Reservas realizadas
+     */
+    public synchronized long getReservas() {
+        return reservas;
+    }
+
+    private static Properties leerConfiguracion() {
+        try {
+            return ConfigManager.getInstance().getDatabaseProperties();
+        } catch (Exception e) {
+            logger.warn("No se pudo leer la configuración de los bloques de IDs, se usan los valores por defecto", e);
+            return new Properties();
+        }
+    }
+
+    private static int leerEntero(Properties props, String clave, int porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido para {}: {}, se usa {}", clave, valor, porDefecto);
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Cerrojos con nombre de MySQL ({@code GET_LOCK}) por usuario, para
+ * serializar las operaciones de un mismo usuario entre varias instancias de la
+ * aplicación.
+ * <p>
+ * Un cerrojo con nombre pertenece a la sesión que lo adquiere, por lo que cada
+ * cerrojo mantiene abierta su propia conexión hasta que se libera. Si la
+ * conexión se pierde, MySQL libera el cerrojo automáticamente.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class CerrojoUsuarioDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(CerrojoUsuarioDAO.class);
+
+    /** Prefijo de los nombres de cerrojo, que MySQL limita a 64 caracteres */
+    private static final String PREFIJO = "biblioteca.usuario.";
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public CerrojoUsuarioDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar CerrojoUsuarioDAO", e);
+            throw new DAOException("No se pudo inicializar CerrojoUsuarioDAO", e);
+        }
+    }
+
+    /**
+     * Adquiere el cerrojo de un usuario, esperando como mucho el tiempo indicado.
+     *
+     * @param usuarioId ID del usuario
+     * @param esperaSegundos Segundos máximos de espera
+     * @return Conexión que posee el cerrojo, que debe pasarse a {@link #liberar}
+     * @throws DAOException Si se agota la espera o falla la operación
+     */
+    public Connection adquirir(long usuarioId, int esperaSegundos) throws DAOException {
+        Connection connection = null;
+        try {
+            connection = dbAgent.connect();
+            Integer resultado = ejecutar(connection, "SELECT GET_LOCK(?, ?)", PREFIJO + usuarioId, esperaSegundos);
+            if (resultado == null || resultado != 1) {
+                dbAgent.disconnect(connection);
+                throw new DAOException("No se pudo adquirir el cerrojo del usuario " + usuarioId
+                        + " en " + esperaSegundos + " s");
+            }
+            return connection;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            dbAgent.disconnect(connection);
+            logger.error("Error al adquirir el cerrojo del usuario: {}", usuarioId, e);
+            throw new DAOException("No se pudo adquirir el cerrojo del usuario", e);
+        }
+    }
+
+    /**
+     * Libera el cerrojo de un usuario y cierra la conexión que lo poseía. Los
+     * errores solo se registran: al cerrar la conexión MySQL libera el cerrojo
+     * en cualquier caso.
+     *
+     * @param connection Conexión devuelta por {@link #adquirir}
+     * @param usuarioId ID del usuario
+     */
+    public void liberar(Connection connection, long usuarioId) {
+        try {
+            Integer resultado = ejecutar(connection, "SELECT RELEASE_LOCK(?)", PREFIJO + usuarioId);
+            if (resultado == null || resultado != 1) {
+                logger.warn("El cerrojo del usuario {} no estaba en posesión de la conexión", usuarioId);
+            }
+        } catch (SQLException e) {
+            logger.warn("Error al liberar el cerrojo del usuario {}", usuarioId, e);
+        } finally {
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Ejecuta una función de cerrojo y devuelve su resultado.
+     *
+     * @return 1 o 0 según la función, o null si MySQL devuelve NULL
+     */
+    private static Integer ejecutar(Connection connection, String sql, Object... params) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int resultado = rs.getInt(1);
+                return rs.wasNull() ? null : resultado;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * DAO del diario de préstamos: una tabla de eventos a la que solo se añaden
+ * filas, siempre al final del índice primario.
+ * <p>
+ * Los eventos se escriben por lotes JDBC en una única transacción, de modo
+ * que muchas operaciones simultáneas comparten una sola confirmación. El ID
+ * autoincremental de cada evento da su orden en el diario. La aplicación no
+ * lee la tabla: el diario puede perder eventos y no sirve como historial.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class EventoPrestamoDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(EventoPrestamoDAO.class);
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public EventoPrestamoDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar EventoPrestamoDAO", e);
+            throw new DAOException("No se pudo inicializar EventoPrestamoDAO", e);
+        }
+    }
+
+    /**
+     * Añade un lote de eventos al diario en una única transacción.
+     *
+     * @param eventos Eventos en el orden en que deben quedar en el diario
+     * @throws DAOException Si falla la operación; no se escribe ningún evento del lote
+     */
+    public void insertar(List<EventoPrestamo> eventos) throws DAOException {
+        String sql = "INSERT INTO eventos_prestamo (tipo, prestamo_id, usuario_id, ejemplar_id, importe, fecha) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (EventoPrestamo evento : eventos) {
+                    statement.setString(1, evento.getTipo().name());
+                    statement.setLong(2, evento.getPrestamoId());
+                    statement.setLong(3, evento.getUsuarioId());
+                    if (evento.getEjemplarId() > 0) {
+                        statement.setLong(4, evento.getEjemplarId());
+                    } else {
+                        statement.setNull(4, Types.BIGINT);
+                    }
+                    if (evento.getImporte() != null) {
+                        statement.setBigDecimal(5, evento.getImporte());
+                    } else {
+                        statement.setNull(5, Types.DECIMAL);
+                    }
+                    statement.setTimestamp(6, new Timestamp(evento.getFecha().getTime()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al escribir un lote de {} eventos en el diario de préstamos", eventos.size(), e);
+            throw new DAOException("No se pudieron escribir los eventos de préstamo", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+}
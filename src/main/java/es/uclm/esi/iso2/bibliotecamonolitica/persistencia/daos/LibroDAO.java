@@ -1,20 +1,34 @@
 package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
 import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache.AgrupadorConsultas;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceInvertido;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoIsbn;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.NormalizadorTexto;
 
 /**
  * Implementación del DAO para la entidad Libro.
@@ -26,53 +40,288 @@ import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
 public class LibroDAO implements GenericDAO<Libro, Long> {
     
     private static final LogHelper logger = LogHelper.getLogger(LibroDAO.class);
+    
+    /** Número máximo de IDs por consulta {@code IN (...)} */
+    private static final int MAX_IDS_POR_CONSULTA = 1000;
+    
+    /** Componentes que se mantienen sincronizados con las escrituras de libros */
+    private static final List<ObservadorDAO<Libro, Long>> observadores = new CopyOnWriteArrayList<>();
+    
+    /** Longitud mínima de un término en los índices FULLTEXT (innodb_ft_min_token_size) */
+    private static final int MIN_LONGITUD_TERMINO_FULLTEXT = 3;
+    
+    /** Tabla de la que se reservan los IDs de los libros */
+    private static final String TABLA = "libros";
+    
+    /** Inserción de un libro con el ID ya asignado */
+    private static final String SQL_INSERTAR = "INSERT INTO libros (id, titulo, autor, editorial, anio_publicacion, " +
+            "isbn, categoria_id, descripcion, fecha_alta) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    /** Columnas del índice FULLTEXT ft_libros_texto */
+    private static final String COLUMNAS_TEXTO = "titulo, autor, descripcion";
+    
     private final Agent dbAgent;
     private final CategoriaDAO categoriaDAO;
     
+    /** Búsquedas por ISBN en curso en este DAO; cada llamante en espera recibe su copia */
+    private final AgrupadorConsultas<String, Optional<Libro>> consultasPorIsbn =
+            new AgrupadorConsultas<>(libro -> libro.map(LibroDAO::copiar));
+    private final ModoBusqueda modoBusqueda;
+    private IndiceInvertido indice;
+    private AsignadorIds asignadorIds;
+    
     /**
-     * Constructor que inicializa el agente de base de datos.
+     * Constructor que inicializa el agente de base de datos y toma el modo de
+     * búsqueda de la propiedad {@code db.mysql.busqueda.modo}.
      * 
      * @throws DAOException Si hay un error al inicializar el agente
      */
     public LibroDAO() throws DAOException {
+        this(leerModoBusqueda());
+    }
+    
+    /**
+     * Constructor que inicializa el agente de base de datos con un modo de
+     * búsqueda concreto.
+     * 
+     * @param modoBusqueda Estrategia para las búsquedas de texto
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public LibroDAO(ModoBusqueda modoBusqueda) throws DAOException {
+        this.modoBusqueda = modoBusqueda;
         try {
             this.dbAgent = Agent.getInstance("mysql");
             this.categoriaDAO = new CategoriaDAO();
+            this.indice = IndiceInvertido.getInstance();
         } catch (DatabaseConnectionException e) {
             logger.error("Error al inicializar LibroDAO", e);
             throw new DAOException("No se pudo inicializar LibroDAO", e);
         }
     }
     
+    /**
+     * Lee el modo de búsqueda de la configuración de base de datos.
+     * 
+     * @return Modo configurado, o {@link ModoBusqueda#INDICE} si no hay ninguno válido
+     */
+    private static ModoBusqueda leerModoBusqueda() {
+        try {
+            Properties props = ConfigManager.getInstance().getDatabaseProperties();
+            return ModoBusqueda.desdeConfiguracion(props.getProperty("db.mysql.busqueda.modo"), ModoBusqueda.INDICE);
+        } catch (Exception e) {
+            logger.warn("No se pudo leer el modo de búsqueda, se usa {}", ModoBusqueda.INDICE, e);
+            return ModoBusqueda.INDICE;
+        }
+    }
+    
+    /**
+     * Obtiene el modo de búsqueda de texto de este DAO.
+     * 
+     * @return Modo de búsqueda
+     */
+    public ModoBusqueda getModoBusqueda() {
+        return modoBusqueda;
+    }
+    
+    /**
+     * {@inheritDoc}
+     * El ID se asigna en el cliente con el {@link AsignadorIds} de la tabla,
+     * así que la inserción no pide las claves generadas: con ellas, un ID
+     * mayor que 2^31 fallaría después de insertar la fila.
+     */
     @Override
     public Libro create(Libro libro) throws DAOException {
-        String sql = "INSERT INTO libros (titulo, autor, editorial, anio_publicacion, isbn, " +
-                     "categoria_id, descripcion, fecha_alta) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        
+        long id = asignadorIds().siguiente();
+        Connection connection = null;
         try {
-            Long categoriaId = null;
-            if (libro.getCategoria() != null) {
-                categoriaId = libro.getCategoria().getId();
+            connection = dbAgent.connect();
+            try (PreparedStatement statement = connection.prepareStatement(SQL_INSERTAR)) {
+                asignarParametrosInsercion(statement, id, libro);
+                statement.executeUpdate();
             }
             
-            int id = dbAgent.executeUpdate(sql, 
-                    libro.getTitulo(), 
-                    libro.getAutor(),
-                    libro.getEditorial(), 
-                    libro.getAnioPublicacion(),
-                    libro.getIsbn(),
-                    categoriaId,
-                    libro.getDescripcion(),
-                    new java.sql.Date(libro.getFechaAlta().getTime()));
-            
-            libro.setId((long) id);
-            logger.info("Libro creado con ID: {}", id);
-            return libro;
-            
         } catch (SQLException | DatabaseConnectionException e) {
             logger.error("Error al crear libro", e);
             throw new DAOException("No se pudo crear el libro en la base de datos", e);
+        } finally {
+            dbAgent.disconnect(connection);
+        }
+        
+        libro.setId(id);
+        logger.info("Libro creado con ID: {}", id);
+        notificarGuardado(libro);
+        return libro;
+    }
+    
+    /**
+     * Asigna a la sentencia {@code SQL_INSERTAR} los valores de un libro.
+     */
+    private static void asignarParametrosInsercion(PreparedStatement statement, long id, Libro libro)
+            throws SQLException {
+        statement.setLong(1, id);
+        statement.setString(2, libro.getTitulo());
+        statement.setString(3, libro.getAutor());
+        statement.setString(4, libro.getEditorial());
+        statement.setObject(5, libro.getAnioPublicacion());
+        statement.setString(6, libro.getIsbn());
+        statement.setObject(7, libro.getCategoria() != null ? libro.getCategoria().getId() : null);
+        statement.setString(8, libro.getDescripcion());
+        statement.setDate(9, new java.sql.Date(libro.getFechaAlta().getTime()));
+    }
+    
+    /**
+     * Crea varios libros con un lote JDBC en una única transacción. Todos los
+     * IDs se asignan antes de empezar, así que no hace falta leer las claves
+     * generadas y el controlador puede enviar el lote de una vez.
+     * 
+     * @param libros Libros sin ID
+     * @return Los mismos libros con sus IDs asignados
+     * @throws DAOException Si falla la operación; no se crea ningún libro del lote
+     */
+    public List<Libro> crearLote(List<Libro> libros) throws DAOException {
+        if (libros.isEmpty()) {
+            return libros;
+        }
+        long[] ids = asignadorIds().siguientes(libros.size());
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            try (PreparedStatement statement = connection.prepareStatement(SQL_INSERTAR)) {
+                for (int i = 0; i < libros.size(); i++) {
+                    asignarParametrosInsercion(statement, ids[i], libros.get(i));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al crear un lote de {} libros", libros.size(), e);
+            throw new DAOException("No se pudieron crear los libros en la base de datos", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+        
+        for (int i = 0; i < libros.size(); i++) {
+            libros.get(i).setId(ids[i]);
+            notificarGuardado(libros.get(i));
+        }
+        logger.info("Creados {} libros con IDs desde {}", libros.size(), ids[0]);
+        return libros;
+    }
+    
+    /**
+     * Actualiza varios libros con un lote JDBC en una única transacción. La
+     * fecha de alta no se modifica, y los datos opcionales que faltan en un
+     * libro (editorial, año, ISBN, categoría y descripción) conservan el valor
+     * guardado en lugar de borrarse. Como los libros pueden estar incompletos,
+     * los observadores reciben los libros releídos de la base de datos.
+     * 
+     * @param libros Libros con ID
+     * @throws DAOException Si falla la operación; no se actualiza ningún libro del lote
+     */
+    public void actualizarLote(List<Libro> libros) throws DAOException {
+        if (libros.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE libros SET titulo = ?, autor = ?, editorial = COALESCE(?, editorial), " +
+                     "anio_publicacion = COALESCE(?, anio_publicacion), isbn = COALESCE(?, isbn), " +
+                     "categoria_id = COALESCE(?, categoria_id), descripcion = COALESCE(?, descripcion) WHERE id = ?";
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Libro libro : libros) {
+                    statement.setString(1, libro.getTitulo());
+                    statement.setString(2, libro.getAutor());
+                    statement.setString(3, libro.getEditorial());
+                    statement.setObject(4, libro.getAnioPublicacion());
+                    statement.setString(5, libro.getIsbn());
+                    statement.setObject(6, libro.getCategoria() != null ? libro.getCategoria().getId() : null);
+                    statement.setString(7, libro.getDescripcion());
+                    statement.setLong(8, libro.getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al actualizar un lote de {} libros", libros.size(), e);
+            throw new DAOException("No se pudieron actualizar los libros en la base de datos", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+        
+        if (observadores.isEmpty()) {
+            return;
+        }
+        long[] ids = new long[libros.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = libros.get(i).getId();
+        }
+        try {
+            for (Libro libro : findByIds(ids)) {
+                notificarGuardado(libro);
+            }
+        } catch (DAOException e) {
+            logger.warn("No se pudieron releer los {} libros actualizados para notificarlos", ids.length, e);
+        }
+    }
+    
+    /**
+     * Busca los IDs de los libros con alguno de los ISBN indicados, con una
+     * consulta {@code IN} por cada bloque de ISBN.
+     * 
+     * @param isbns ISBN a buscar, ya normalizados
+     * @return ID de cada ISBN que existe en el catálogo
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public Map<String, Long> buscarIdsPorIsbn(List<String> isbns) throws DAOException {
+        Map<String, Long> ids = new HashMap<>(isbns.size() * 2);
+        
+        for (int desde = 0; desde < isbns.size(); desde += MAX_IDS_POR_CONSULTA) {
+            int hasta = Math.min(isbns.size(), desde + MAX_IDS_POR_CONSULTA);
+            Object[] params = isbns.subList(desde, hasta).toArray();
+            StringBuilder sql = new StringBuilder("SELECT id, isbn FROM libros WHERE isbn IN (");
+            for (int i = desde; i < hasta; i++) {
+                sql.append(i > desde ? ", ?" : "?");
+            }
+            sql.append(")");
+            
+            try (ResultSet rs = dbAgent.executeQuery(sql.toString(), params)) {
+                while (rs.next()) {
+                    ids.put(rs.getString("isbn"), rs.getLong("id"));
+                }
+            } catch (SQLException | DatabaseConnectionException e) {
+                logger.error("Error al buscar {} libros por ISBN", isbns.size(), e);
+                throw new DAOException("No se pudieron buscar los libros por ISBN", e);
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Obtiene el asignador de IDs de los libros la primera vez que se necesita.
+     * 
+     * @return Asignador de IDs de la tabla de libros
+     * @throws DAOException Si no se puede inicializar el asignador
+     */
+    private synchronized AsignadorIds asignadorIds() throws DAOException {
+        if (asignadorIds == null) {
+            asignadorIds = AsignadorIds.getInstance(TABLA);
         }
+        return asignadorIds;
     }
     
     @Override
@@ -114,6 +363,7 @@ public class LibroDAO implements GenericDAO<Libro, Long> {
                     libro.getId());
             
             logger.info("Libro actualizado con ID: {}", libro.getId());
+            notificarGuardado(libro);
             return libro;
             
         } catch (SQLException | DatabaseConnectionException e) {
@@ -132,6 +382,7 @@ public class LibroDAO implements GenericDAO<Libro, Long> {
                 throw new DAOException("No se pudo eliminar el libro, ID no encontrado: " + id);
             }
             logger.info("Libro eliminado con ID: {}", id);
+            notificarEliminado(id);
             
         } catch (SQLException | DatabaseConnectionException e) {
             logger.error("Error al eliminar libro con ID: {}", id, e);
@@ -158,14 +409,38 @@ public class LibroDAO implements GenericDAO<Libro, Long> {
     }
     
     /**
-     * Busca libros por título (búsqueda parcial).
+     * Busca libros por título según el modo de búsqueda configurado. Con el
+     * índice invertido cargado se buscan las palabras completas del texto, sin
+     * distinguir mayúsculas ni tildes, y los resultados se ordenan por
+     * relevancia BM25; en los modos FULLTEXT se ordenan por la relevancia de
+     * MySQL; en otro caso se recurre a una búsqueda parcial con {@code LIKE}.
      * 
      * @param titulo Texto a buscar en el título
      * @return Lista de libros que coinciden
      * @throws DAOException Si ocurre un error en la operación
      */
     public List<Libro> findByTitulo(String titulo) throws DAOException {
-        String sql = "SELECT * FROM libros WHERE titulo LIKE ?";
+        return findByTitulo(titulo, 0);
+    }
+    
+    /**
+     * Busca los libros más relevantes por título, con los mismos criterios que
+     * {@link #findByTitulo(String)}. Con el índice invertido solo se
+     * seleccionan los mejores resultados, sin ordenar todas las coincidencias.
+     * 
+     * @param titulo Texto a buscar en el título
+     * @param limite Número máximo de resultados, o 0 para no limitar
+     * @return Lista de libros que coinciden, los más relevantes primero
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Libro> findByTitulo(String titulo, int limite) throws DAOException {
+        if (modoBusqueda.isFullText()) {
+            return buscarPorRelevancia("titulo", titulo, limite);
+        }
+        if (usarIndice()) {
+            return findByIds(indice.buscarRelevantes(IndiceInvertido.Campo.TITULO, titulo, limite));
+        }
+        String sql = "SELECT * FROM libros WHERE titulo LIKE ?" + (limite > 0 ? " LIMIT " + limite : "");
         List<Libro> libros = new ArrayList<>();
         
         try (ResultSet rs = dbAgent.executeQuery(sql, "%" + titulo + "%")) {
@@ -182,13 +457,462 @@ public class LibroDAO implements GenericDAO<Libro, Long> {
     }
     
     /**
-     * Busca un libro por su ISBN.
+     * Busca libros por autor según el modo de búsqueda configurado, con los
+     * mismos criterios que {@link #findByTitulo(String)}.
+     * 
+     * @param autor Texto a buscar en el autor
+     * @return Lista de libros que coinciden
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Libro> findByAutor(String autor) throws DAOException {
+        if (modoBusqueda.isFullText()) {
+            return buscarPorRelevancia("autor", autor, 0);
+        }
+        if (usarIndice()) {
+            return findByIds(indice.buscarRelevantes(IndiceInvertido.Campo.AUTOR, autor, 0));
+        }
+        String sql = "SELECT * FROM libros WHERE autor LIKE ?";
+        List<Libro> libros = new ArrayList<>();
+        
+        try (ResultSet rs = dbAgent.executeQuery(sql, "%" + autor + "%")) {
+            while (rs.next()) {
+                Libro libro = mapResultSetToLibro(rs);
+                libros.add(libro);
+            }
+            return libros;
+            
+        } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+            logger.error("Error al buscar libros por autor: {}", autor, e);
+            throw new DAOException("No se pudieron buscar los libros por autor", e);
+        }
+    }
+    
+    /**
+     * Busca libros cuyo título, autor o descripción contengan el texto,
+     * ordenados por relevancia. Con el índice invertido se busca también en la
+     * editorial y la relevancia pondera más el título que el autor, y este más
+     * que la descripción.
+     * 
+     * @param texto Texto a buscar
+     * @param limite Número máximo de resultados, o 0 (o negativo) para no limitar en ningún modo
+     * @return Lista de libros que coinciden
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Libro> buscarPorTexto(String texto, int limite) throws DAOException {
+        int maximo = Math.max(limite, 0);
+        if (modoBusqueda.isFullText()) {
+            return buscarPorRelevancia(COLUMNAS_TEXTO, texto, maximo);
+        }
+        if (usarIndice()) {
+            return findByIds(indice.buscarRelevantes(texto, maximo));
+        }
+        String sql = "SELECT * FROM libros WHERE titulo LIKE ? OR autor LIKE ? OR descripcion LIKE ?"
+                + (maximo > 0 ? " LIMIT " + maximo : "");
+        String patron = "%" + texto + "%";
+        List<Libro> libros = new ArrayList<>();
+        
+        try (ResultSet rs = dbAgent.executeQuery(sql, patron, patron, patron)) {
+            while (rs.next()) {
+                libros.add(mapResultSetToLibro(rs));
+            }
+            return libros;
+            
+        } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+            logger.error("Error al buscar libros por texto: {}", texto, e);
+            throw new DAOException("No se pudieron buscar los libros por texto", e);
+        }
+    }
+    
+    /**
+     * Indica si las búsquedas deben resolverse con el índice invertido.
+     * 
+     * @return true si el modo es INDICE y el índice está cargado
+     */
+    private boolean usarIndice() {
+        return modoBusqueda == ModoBusqueda.INDICE && indice != null && indice.isCargado();
+    }
+    
+    /**
+     * Busca libros con {@code MATCH ... AGAINST} sobre un índice FULLTEXT y los
+     * devuelve ordenados por relevancia.
+     * 
+     * @param columnas Columnas de un índice FULLTEXT existente
+     * @param texto Texto a buscar
+     * @param limite Número máximo de resultados, o 0 para no limitar
+     * @return Lista de libros ordenada por relevancia descendente
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    private List<Libro> buscarPorRelevancia(String columnas, String texto, int limite) throws DAOException {
+        boolean booleano = modoBusqueda == ModoBusqueda.FULLTEXT_BOOLEANO;
+        String consulta = booleano ? prepararConsultaBooleana(texto) : texto;
+        List<Libro> libros = new ArrayList<>();
+        if (consulta == null || consulta.trim().isEmpty()) {
+            return libros;
+        }
+        
+        String match = "MATCH (" + columnas + ") AGAINST (? IN "
+                + (booleano ? "BOOLEAN" : "NATURAL LANGUAGE") + " MODE)";
+        String sql = "SELECT *, " + match + " AS relevancia FROM libros WHERE " + match
+                + " ORDER BY relevancia DESC" + (limite > 0 ? " LIMIT " + limite : "");
+        
+        try (ResultSet rs = dbAgent.executeQuery(sql, consulta, consulta)) {
+            while (rs.next()) {
+                libros.add(mapResultSetToLibro(rs));
+            }
+            return libros;
+            
+        } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+            logger.error("Error al buscar libros por relevancia: {}", texto, e);
+            throw new DAOException("No se pudieron buscar los libros por relevancia", e);
+        }
+    }
+    
+    /**
+     * Prepara el texto del usuario para el modo booleano de FULLTEXT. Solo se
+     * respetan como operadores los que preceden a un término ({@code + - ~ < >}),
+     * las frases entre comillas y el comodín {@code *} al final de una palabra;
+     * cualquier otro signo se trata como separador, de modo que un título como
+     * "Spider-Man" se busca como la frase "spider man" y no como una exclusión.
+     * Si ningún término lleva operador, todos se marcan como obligatorios. Las
+     * palabras más cortas que el mínimo indexado por InnoDB se descartan, porque
+     * al ser obligatorias impedirían cualquier coincidencia.
+     * 
+     * @param texto Texto introducido por el usuario
+     * @return Consulta en sintaxis booleana de MySQL
+     */
+    static String prepararConsultaBooleana(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        List<String> operadores = new ArrayList<>();
+        List<String> terminos = new ArrayList<>();
+        boolean explicita = false;
+        int i = 0;
+        int n = texto.length();
+        while (i < n) {
+            if (Character.isWhitespace(texto.charAt(i))) {
+                i++;
+                continue;
+            }
+            String operador = "";
+            if ("+-~<>".indexOf(texto.charAt(i)) >= 0) {
+                operador = String.valueOf(texto.charAt(i++));
+            }
+            boolean frase = i < n && texto.charAt(i) == '"';
+            String cuerpo;
+            if (frase) {
+                int cierre = texto.indexOf('"', i + 1);
+                int fin = cierre < 0 ? n : cierre;
+                cuerpo = texto.substring(i + 1, fin);
+                i = Math.min(n, fin + 1);
+            } else {
+                int inicio = i;
+                while (i < n && !Character.isWhitespace(texto.charAt(i))) {
+                    i++;
+                }
+                cuerpo = texto.substring(inicio, i);
+            }
+            boolean comodin = !frase && cuerpo.endsWith("*");
+            
+            List<String> palabras = new ArrayList<>();
+            for (String palabra : NormalizadorTexto.tokenizar(cuerpo)) {
+                if (palabra.length() >= MIN_LONGITUD_TERMINO_FULLTEXT) {
+                    palabras.add(palabra);
+                }
+            }
+            if (palabras.isEmpty()) {
+                continue;
+            }
+            explicita |= !operador.isEmpty() || frase || comodin;
+            operadores.add(operador);
+            if (palabras.size() == 1 && !frase) {
+                terminos.add(palabras.get(0) + (comodin ? "*" : ""));
+            } else {
+                // Los signos dentro de un término separan palabras de una misma frase
+                terminos.add('"' + String.join(" ", palabras) + '"');
+            }
+        }
+        
+        StringBuilder consulta = new StringBuilder();
+        for (int t = 0; t < terminos.size(); t++) {
+            if (consulta.length() > 0) {
+                consulta.append(' ');
+            }
+            consulta.append(explicita ? operadores.get(t) : "+").append(terminos.get(t));
+        }
+        return consulta.toString();
+    }
+    
+    /**
+     * Recupera varios libros por sus IDs con una consulta {@code IN} por cada
+     * bloque de IDs, en lugar de una consulta por libro.
+     * 
+     * @param ids IDs de los libros a recuperar
+     * @return Lista de libros encontrados, en el mismo orden que los IDs
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Libro> findByIds(long[] ids) throws DAOException {
+        Map<Long, Libro> porId = new HashMap<>(ids.length * 2);
+        
+        for (int desde = 0; desde < ids.length; desde += MAX_IDS_POR_CONSULTA) {
+            int hasta = Math.min(ids.length, desde + MAX_IDS_POR_CONSULTA);
+            Object[] params = new Object[hasta - desde];
+            StringBuilder sql = new StringBuilder("SELECT * FROM libros WHERE id IN (");
+            for (int i = desde; i < hasta; i++) {
+                sql.append(i > desde ? ", ?" : "?");
+                params[i - desde] = ids[i];
+            }
+            sql.append(")");
+            
+            try (ResultSet rs = dbAgent.executeQuery(sql.toString(), params)) {
+                while (rs.next()) {
+                    Libro libro = mapResultSetToLibro(rs);
+                    porId.put(libro.getId(), libro);
+                }
+            } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+                logger.error("Error al recuperar libros por IDs", e);
+                throw new DAOException("No se pudieron recuperar los libros por IDs", e);
+            }
+        }
+        
+        List<Libro> libros = new ArrayList<>(porId.size());
+        for (long id : ids) {
+            Libro libro = porId.get(id);
+            if (libro != null) {
+                libros.add(libro);
+            }
+        }
+        return libros;
+    }
+    
+    /**
+     * Carga en cada libro su número de ejemplares disponibles con una consulta
+     * agrupada por cada bloque de libros, sin recuperar los ejemplares.
+     * 
+     * @param libros Libros con ID; los que no tienen ejemplares disponibles quedan a cero
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public void cargarEjemplaresDisponibles(List<Libro> libros) throws DAOException {
+        Map<Long, Integer> disponibles = new HashMap<>(libros.size() * 2);
+        
+        for (int desde = 0; desde < libros.size(); desde += MAX_IDS_POR_CONSULTA) {
+            int hasta = Math.min(libros.size(), desde + MAX_IDS_POR_CONSULTA);
+            Object[] params = new Object[hasta - desde + 1];
+            params[0] = EstadoEjemplar.DISPONIBLE.name();
+            StringBuilder sql = new StringBuilder(
+                    "SELECT libro_id, COUNT(*) AS disponibles FROM ejemplares WHERE estado = ? AND libro_id IN (");
+            for (int i = desde; i < hasta; i++) {
+                sql.append(i > desde ? ", ?" : "?");
+                params[i - desde + 1] = libros.get(i).getId();
+            }
+            sql.append(") GROUP BY libro_id");
+            
+            try (ResultSet rs = dbAgent.executeQuery(sql.toString(), params)) {
+                while (rs.next()) {
+                    disponibles.put(rs.getLong("libro_id"), rs.getInt("disponibles"));
+                }
+            } catch (SQLException | DatabaseConnectionException e) {
+                logger.error("Error al contar los ejemplares disponibles de {} libros", libros.size(), e);
+                throw new DAOException("No se pudieron contar los ejemplares disponibles", e);
+            }
+        }
+        
+        for (Libro libro : libros) {
+            libro.cargarEjemplaresDisponibles(disponibles.getOrDefault(libro.getId(), 0));
+        }
+    }
+    
+    /**
+     * Recupera varios libros por sus IDs.
+     * 
+     * @param ids IDs de los libros a recuperar
+     * @return Lista de libros encontrados, en el mismo orden que los IDs
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Libro> findByIds(Collection<Long> ids) throws DAOException {
+        long[] array = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            array[i++] = id;
+        }
+        return findByIds(array);
+    }
+    
+    /**
+     * Recorre el catálogo completo por bloques ordenados por ID, de modo que
+     * nunca hay más de un bloque en memoria. Los libros se entregan sin resolver
+     * su categoría: solo llevan una categoría con el ID asignado.
+     * 
+     * @param tamanoBloque Número de libros leídos por consulta
+     * @param consumidor Función que recibe cada libro
+     * @return Número de libros recorridos
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long recorrer(int tamanoBloque, Consumer<Libro> consumidor) throws DAOException {
+        String sql = "SELECT * FROM libros WHERE id > ? ORDER BY id LIMIT ?";
+        long ultimoId = 0;
+        long total = 0;
+        int leidos;
+        
+        do {
+            leidos = 0;
+            try (ResultSet rs = dbAgent.executeQuery(sql, ultimoId, tamanoBloque)) {
+                while (rs.next()) {
+                    Libro libro = mapResultSetToLibroSinCategoria(rs);
+                    consumidor.accept(libro);
+                    ultimoId = libro.getId();
+                    leidos++;
+                }
+            } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+                logger.error("Error al recorrer el catálogo desde el ID: {}", ultimoId, e);
+                throw new DAOException("No se pudo recorrer el catálogo", e);
+            }
+            total += leidos;
+        } while (leidos == tamanoBloque);
+        
+        return total;
+    }
+    
+    /**
+     * Recorre los ejemplares disponibles del catálogo por bloques ordenados por
+     * ID, leyendo solo su ID y el de su libro.
+     * 
+     * @param tamanoBloque Número de ejemplares leídos por consulta
+     * @param consumidor Función que recibe el ID de cada ejemplar y el de su libro
+     * @return Número de ejemplares recorridos
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long recorrerEjemplaresDisponibles(int tamanoBloque, BiConsumer<Long, Long> consumidor)
+            throws DAOException {
+        String sql = "SELECT id, libro_id FROM ejemplares WHERE estado = ? AND id > ? ORDER BY id LIMIT ?";
+        long ultimoId = 0;
+        long total = 0;
+        int leidos;
+        
+        do {
+            leidos = 0;
+            try (ResultSet rs = dbAgent.executeQuery(sql, EstadoEjemplar.DISPONIBLE.name(), ultimoId, tamanoBloque)) {
+                while (rs.next()) {
+                    ultimoId = rs.getLong("id");
+                    consumidor.accept(ultimoId, rs.getLong("libro_id"));
+                    leidos++;
+                }
+            } catch (SQLException | DatabaseConnectionException e) {
+                logger.error("Error al recorrer los ejemplares disponibles desde el ID: {}", ultimoId, e);
+                throw new DAOException("No se pudieron recorrer los ejemplares disponibles", e);
+            }
+            total += leidos;
+        } while (leidos == tamanoBloque);
+        
+        return total;
+    }
+    
+    /**
+     * Registra un componente que debe recibir las escrituras de libros.
+     * 
+     * @param observador Observador a registrar
+     */
+    public static void registrarObservador(ObservadorDAO<Libro, Long> observador) {
+        if (!observadores.contains(observador)) {
+            observadores.add(observador);
+        }
+    }
+    
+    /**
+     * Da de baja un componente registrado con {@link #registrarObservador}.
+     * 
+     * @param observador Observador a dar de baja
+     */
+    public static void eliminarObservador(ObservadorDAO<Libro, Long> observador) {
+        observadores.remove(observador);
+    }
+    
+    /**
+     * Notifica a los observadores que un libro se ha creado o actualizado.
+     * 
+     * @param libro Libro guardado
+     */
+    private void notificarGuardado(Libro libro) {
+        for (ObservadorDAO<Libro, Long> observador : observadores) {
+            try {
+                observador.entidadGuardada(libro);
+            } catch (RuntimeException e) {
+                logger.warn("Error al notificar el libro guardado con ID: {}", libro.getId(), e);
+            }
+        }
+    }
+    
+    /**
+     * Notifica a los observadores que un libro se ha eliminado.
+     * 
+     * @param id ID del libro eliminado
+     */
+    private void notificarEliminado(Long id) {
+        for (ObservadorDAO<Libro, Long> observador : observadores) {
+            try {
+                observador.entidadEliminada(id);
+            } catch (RuntimeException e) {
+                logger.warn("Error al notificar el libro eliminado con ID: {}", id, e);
+            }
+        }
+    }
+    
+    /**
+     * Busca un libro por su ISBN. El ISBN se normaliza como se guarda, así
+     * que se admiten guiones e ISBN-10. Las búsquedas concurrentes del mismo
+     * ISBN comparten una única consulta a la base de datos.
      * 
      * @param isbn ISBN del libro
      * @return Optional que contiene el libro si existe
      * @throws DAOException Si ocurre un error en la operación
      */
     public Optional<Libro> findByIsbn(String isbn) throws DAOException {
+        if (isbn == null) {
+            return consultarPorIsbn(null);
+        }
+        String normalizado = CodigoIsbn.normalizar(isbn);
+        return consultasPorIsbn.ejecutar(normalizado, () -> consultarPorIsbn(normalizado));
+    }
+    
+    /**
+     * Obtiene el agrupador de búsquedas por ISBN, que expone cuántas consultas
+     * concurrentes idénticas se han suprimido.
+     * 
+     * @return Agrupador de consultas por ISBN
+     */
+    public AgrupadorConsultas<String, Optional<Libro>> getConsultasPorIsbn() {
+        return consultasPorIsbn;
+    }
+    
+    /**
+     * Copia los datos de un libro recién leído para un llamante agrupado. La
+     * categoría se comparte.
+     * 
+     * @param libro Libro leído de la base de datos
+     * @return Copia independiente del libro
+     */
+    private static Libro copiar(Libro libro) {
+        Libro copia = new Libro();
+        copia.setId(libro.getId());
+        copia.setTitulo(libro.getTitulo());
+        copia.setAutor(libro.getAutor());
+        copia.setEditorial(libro.getEditorial());
+        copia.setAnioPublicacion(libro.getAnioPublicacion());
+        copia.setIsbn(libro.getIsbn());
+        copia.setCategoria(libro.getCategoria());
+        copia.setDescripcion(libro.getDescripcion());
+        copia.setFechaAlta(libro.getFechaAlta() != null ? new Date(libro.getFechaAlta().getTime()) : null);
+        return copia;
+    }
+    
+    /**
+     * Ejecuta la búsqueda por ISBN contra la base de datos.
+     * 
+     * @param isbn ISBN del libro
+     * @return Optional que contiene el libro si existe
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    private Optional<Libro> consultarPorIsbn(String isbn) throws DAOException {
         String sql = "SELECT * FROM libros WHERE isbn = ?";
         
         try (ResultSet rs = dbAgent.executeQuery(sql, isbn)) {
@@ -238,6 +962,49 @@ public class LibroDAO implements GenericDAO<Libro, Long> {
      * @throws NotNullValueAllowedException Si algún valor obligatorio es nulo
      */
     private Libro mapResultSetToLibro(ResultSet rs) throws SQLException, DAOException, NotNullValueAllowedException {
+        Libro libro = mapColumnasLibro(rs);
+        
+        // Recuperar la categoría si existe
+        Long categoriaId = rs.getLong("categoria_id");
+        if (!rs.wasNull()) {
+            Optional<Categoria> categoria = categoriaDAO.findById(categoriaId);
+            categoria.ifPresent(libro::setCategoria);
+        }
+        
+        return libro;
+    }
+    
+    /**
+     * Convierte un ResultSet en un objeto Libro sin consultar su categoría, que
+     * queda representada solo por su ID. Se usa en los recorridos masivos.
+     * 
+     * @param rs ResultSet con los datos del libro
+     * @return Objeto Libro construido
+     * @throws SQLException Si ocurre un error al acceder al ResultSet
+     * @throws NotNullValueAllowedException Si algún valor obligatorio es nulo
+     */
+    private Libro mapResultSetToLibroSinCategoria(ResultSet rs) throws SQLException, NotNullValueAllowedException {
+        Libro libro = mapColumnasLibro(rs);
+        
+        long categoriaId = rs.getLong("categoria_id");
+        if (!rs.wasNull()) {
+            Categoria categoria = new Categoria();
+            categoria.setId(categoriaId);
+            libro.setCategoria(categoria);
+        }
+        
+        return libro;
+    }
+    
+    /**
+     * Asigna a un nuevo Libro las columnas propias de la tabla de libros.
+     * 
+     * @param rs ResultSet con los datos del libro
+     * @return Objeto Libro sin categoría
+     * @throws SQLException Si ocurre un error al acceder al ResultSet
+     * @throws NotNullValueAllowedException Si algún valor obligatorio es nulo
+     */
+    private Libro mapColumnasLibro(ResultSet rs) throws SQLException, NotNullValueAllowedException {
         Libro libro = new Libro();
         
         libro.setId(rs.getLong("id"));
@@ -249,13 +1016,6 @@ public class LibroDAO implements GenericDAO<Libro, Long> {
         libro.setDescripcion(rs.getString("descripcion"));
         libro.setFechaAlta(new Date(rs.getDate("fecha_alta").getTime()));
         
-        // Recuperar la categoría si existe
-        Long categoriaId = rs.getLong("categoria_id");
-        if (!rs.wasNull()) {
-            Optional<Categoria> categoria = categoriaDAO.findById(categoriaId);
-            categoria.ifPresent(libro::setCategoria);
-        }
-        
         return libro;
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+/**
+ * Enumeración que representa las estrategias de búsqueda de texto en el
+ * catálogo. Se configura con la propiedad {@code db.mysql.busqueda.modo}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public enum ModoBusqueda {
+    /** Búsqueda parcial con {@code LIKE '%texto%'} (recorre la tabla completa) */
+    LIKE,
+    /** Índice invertido en memoria; usa LIKE mientras el índice no esté cargado */
+    INDICE,
+    /** Índice FULLTEXT de MySQL en modo de lenguaje natural */
+    FULLTEXT_NATURAL,
+    /** Índice FULLTEXT de MySQL en modo booleano: deben aparecer todas las palabras */
+    FULLTEXT_BOOLEANO;
+
+    /**
+     * Obtiene el modo correspondiente a un valor de configuración.
+     *
+     * @param valor Valor de la propiedad (puede ser null)
+     * @param porDefecto Modo a usar si el valor es null o no es válido
+     * @return Modo de búsqueda
+     */
+    public static ModoBusqueda desdeConfiguracion(String valor, ModoBusqueda porDefecto) {
+        if (valor == null || valor.trim().isEmpty()) {
+            return porDefecto;
+        }
+        try {
+            return ModoBusqueda.valueOf(valor.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Indica si el modo usa los índices FULLTEXT de MySQL.
+     *
+     * @return true si es un modo FULLTEXT
+     */
+    public boolean isFullText() {
+        return this == FULLTEXT_NATURAL || this == FULLTEXT_BOOLEANO;
+    }
+}
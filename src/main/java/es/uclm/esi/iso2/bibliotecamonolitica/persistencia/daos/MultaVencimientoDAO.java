@@ -0,0 +1,363 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * DAO de las multas que se devengan por los préstamos vencidos y aún no
+ * devueltos. Cada préstamo vencido tiene como mucho una multa, que se crea la
+ * primera vez que se procesa y cuyo importe se actualiza en cada pasada
+ * mientras siga activa; al devolver el préstamo se fija el importe final.
+ * La clave única de {@code multas.prestamo_id} impide que un préstamo tenga
+ * dos multas aunque dos escrituras se crucen.
+ * <p>
+ * Los préstamos se recorren por bloques ordenados por ID y las multas de cada
+ * bloque se escriben con lotes JDBC en una única transacción. Las sentencias
+ * comprueban que el préstamo sigue activo, por lo que una devolución
+ * simultánea nunca acaba con dos multas.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class MultaVencimientoDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(MultaVencimientoDAO.class);
+
+    /** Estado de las multas pendientes de pago */
+    public static final String MULTA_ACTIVA = "ACTIVA";
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public MultaVencimientoDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar MultaVencimientoDAO", e);
+            throw new DAOException("No se pudo inicializar MultaVencimientoDAO", e);
+        }
+    }
+
+    /**
+     * Recupera un bloque de préstamos en un estado, vencidos antes de una
+     * fecha, con ID mayor que el indicado y ordenados por ID. Con un único
+     * estado la consulta recorre el índice de estado en orden de ID, sin
+     * ordenar filas, por muy avanzado que esté el recorrido.
+     *
+     * @param estado Estado de los préstamos
+     * @param fecha Fecha de referencia; se incluyen los préstamos con fecha prevista anterior
+     * @param desdeId ID a partir del cual continuar, sin incluirlo
+     * @param tamanoBloque Número máximo de préstamos
+     * @return Préstamos vencidos, con el estado de su multa si la tienen
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<PrestamoVencido> buscarPrestamosVencidos(EstadoPrestamo estado, Date fecha, long desdeId,
+            int tamanoBloque) throws DAOException {
+        String sql = "SELECT p.id, p.usuario_id, p.fecha_devolucion_prevista, "
+                + "(SELECT m.estado FROM multas m WHERE m.prestamo_id = p.id ORDER BY m.id DESC LIMIT 1) AS estado_multa "
+                + "FROM prestamos p WHERE p.estado = ? AND p.id > ? AND p.fecha_devolucion_prevista < ? "
+                + "ORDER BY p.id LIMIT ?";
+
+        List<PrestamoVencido> prestamos = new ArrayList<>(tamanoBloque);
+        try (ResultSet rs = dbAgent.executeQuery(sql, estado.name(), desdeId, new Timestamp(fecha.getTime()),
+                tamanoBloque)) {
+            while (rs.next()) {
+                prestamos.add(new PrestamoVencido(rs.getLong("id"), rs.getLong("usuario_id"),
+                        rs.getTimestamp("fecha_devolucion_prevista"), rs.getString("estado_multa")));
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al recuperar préstamos vencidos desde el ID: {}", desdeId, e);
+            throw new DAOException("No se pudieron recuperar los préstamos vencidos", e);
+        }
+        return prestamos;
+    }
+
+    /**
+     * Crea o actualiza en una transacción las multas de un bloque de
+     * préstamos vencidos: un lote de inserciones para los préstamos sin multa
+     * y otro de actualizaciones para los que tienen una multa activa. Los
+     * préstamos cuya multa ya se pagó o condonó no se modifican.
+     *
+     * @param prestamos Préstamos vencidos
+     * @param importes Importe de la multa de cada préstamo, en el mismo orden
+     * @param fecha Fecha de inicio de las multas nuevas
+     * @return Para cada préstamo, true si se le ha creado una multa nueva
+     * @throws DAOException Si falla la operación; no se escribe ninguna multa del bloque
+     */
+    public boolean[] registrarMultas(List<PrestamoVencido> prestamos, BigDecimal[] importes, Date fecha)
+            throws DAOException {
+        String insertar = "INSERT INTO multas (usuario_id, prestamo_id, importe, estado, fecha_inicio) "
+                + "SELECT p.usuario_id, p.id, ?, ?, ? FROM prestamos p WHERE p.id = ? AND p.estado IN (?, ?) "
+                + "AND NOT EXISTS (SELECT 1 FROM multas m WHERE m.prestamo_id = p.id)";
+        String actualizar = "UPDATE multas m JOIN prestamos p ON p.id = m.prestamo_id SET m.importe = ? "
+                + "WHERE m.prestamo_id = ? AND m.estado = ? AND p.estado IN (?, ?)";
+
+        boolean[] creadas = new boolean[prestamos.size()];
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            java.sql.Date fechaInicio = new java.sql.Date(fecha.getTime());
+
+            List<Integer> insertadas = new ArrayList<>();
+            try (PreparedStatement inserciones = connection.prepareStatement(insertar);
+                    PreparedStatement actualizaciones = connection.prepareStatement(actualizar)) {
+                for (int i = 0; i < prestamos.size(); i++) {
+                    PrestamoVencido prestamo = prestamos.get(i);
+                    if (prestamo.getEstadoMulta() == null) {
+                        inserciones.setBigDecimal(1, importes[i]);
+                        inserciones.setString(2, MULTA_ACTIVA);
+                        inserciones.setDate(3, fechaInicio);
+                        inserciones.setLong(4, prestamo.getPrestamoId());
+                        inserciones.setString(5, EstadoPrestamo.ACTIVO.name());
+                        inserciones.setString(6, EstadoPrestamo.RENOVADO.name());
+                        inserciones.addBatch();
+                        insertadas.add(i);
+                    } else if (MULTA_ACTIVA.equals(prestamo.getEstadoMulta())) {
+                        actualizaciones.setBigDecimal(1, importes[i]);
+                        actualizaciones.setLong(2, prestamo.getPrestamoId());
+                        actualizaciones.setString(3, MULTA_ACTIVA);
+                        actualizaciones.setString(4, EstadoPrestamo.ACTIVO.name());
+                        actualizaciones.setString(5, EstadoPrestamo.RENOVADO.name());
+                        actualizaciones.addBatch();
+                    }
+                }
+                if (!insertadas.isEmpty()) {
+                    int[] filas = inserciones.executeBatch();
+                    for (int i = 0; i < filas.length; i++) {
+                        // Algunos controladores no informan de las filas de cada sentencia del lote
+                        creadas[insertadas.get(i)] = filas[i] > 0 || filas[i] == Statement.SUCCESS_NO_INFO;
+                    }
+                }
+                if (insertadas.size() < prestamos.size()) {
+                    actualizaciones.executeBatch();
+                }
+            }
+
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            return creadas;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al registrar las multas de {} préstamos vencidos", prestamos.size(), e);
+            throw new DAOException("No se pudieron registrar las multas de los préstamos vencidos", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Fija la multa de un préstamo que se acaba de devolver con retraso, en
+     * una transacción: actualiza el importe de su multa activa o, si el
+     * préstamo no tiene ninguna, la crea. Si la multa que devengó ya se pagó
+     * o condonó no se crea otra.
+     *
+     * @param prestamoId ID del préstamo
+     * @param importe Importe final
+     * @param fecha Fecha de inicio si se crea la multa
+     * @return Qué se ha hecho con la multa del préstamo
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public MultaDevolucion registrarMultaDevolucion(long prestamoId, BigDecimal importe, Date fecha)
+            throws DAOException {
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            MultaDevolucion resultado = registrarMultasDevolucion(connection, new long[] {prestamoId},
+                    new BigDecimal[] {importe}, new java.sql.Date(fecha.getTime()))[0];
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            return resultado;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al registrar la multa del préstamo: {}", prestamoId, e);
+            throw new DAOException("No se pudo registrar la multa del préstamo", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Fija las multas de varios préstamos devueltos con retraso con dos lotes
+     * JDBC en la transacción de la conexión: primero se actualizan las multas
+     * activas y después se insertan las de los préstamos que no tienen
+     * ninguna, de modo que un préstamo nunca recibe una segunda multa. Lo usan
+     * tanto la devolución de un préstamo como la devolución por lotes.
+     *
+     * @param connection Conexión con la transacción en curso
+     * @param prestamoIds IDs de los préstamos
+     * @param importes Importe final de cada préstamo, en el mismo orden
+     * @param fecha Fecha de inicio de las multas nuevas
+     * @return Qué se ha hecho con la multa de cada préstamo, en el mismo orden
+     * @throws SQLException Si falla alguna sentencia
+     */
+    static MultaDevolucion[] registrarMultasDevolucion(Connection connection, long[] prestamoIds,
+            BigDecimal[] importes, java.sql.Date fecha) throws SQLException {
+        String actualizar = "UPDATE multas SET importe = ? WHERE prestamo_id = ? AND estado = ?";
+        String insertar = "INSERT INTO multas (usuario_id, prestamo_id, importe, estado, fecha_inicio) "
+                + "SELECT p.usuario_id, p.id, ?, ?, ? FROM prestamos p WHERE p.id = ? "
+                + "AND NOT EXISTS (SELECT 1 FROM multas m WHERE m.prestamo_id = p.id)";
+
+        MultaDevolucion[] resultados = new MultaDevolucion[prestamoIds.length];
+        try (PreparedStatement actualizaciones = connection.prepareStatement(actualizar);
+                PreparedStatement inserciones = connection.prepareStatement(insertar)) {
+            for (int i = 0; i < prestamoIds.length; i++) {
+                actualizaciones.setBigDecimal(1, importes[i]);
+                actualizaciones.setLong(2, prestamoIds[i]);
+                actualizaciones.setString(3, MULTA_ACTIVA);
+                actualizaciones.addBatch();
+
+                inserciones.setBigDecimal(1, importes[i]);
+                inserciones.setString(2, MULTA_ACTIVA);
+                inserciones.setDate(3, fecha);
+                inserciones.setLong(4, prestamoIds[i]);
+                inserciones.addBatch();
+            }
+            // Primero se actualizan las multas devengadas, que la inserción ya no duplica
+            int[] actualizadas = actualizaciones.executeBatch();
+            int[] insertadas = inserciones.executeBatch();
+            for (int i = 0; i < resultados.length; i++) {
+                if (afectada(insertadas, i)) {
+                    resultados[i] = MultaDevolucion.CREADA;
+                } else if (afectada(actualizadas, i)) {
+                    resultados[i] = MultaDevolucion.ACTUALIZADA;
+                } else {
+                    resultados[i] = MultaDevolucion.RESUELTA;
+                }
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Indica si una sentencia de un lote ha modificado alguna fila. Algunos
+     * controladores no informan de las filas de cada sentencia del lote.
+     */
+    private static boolean afectada(int[] filas, int indice) {
+        return filas != null && indice < filas.length
+                && (filas[indice] > 0 || filas[indice] == Statement.SUCCESS_NO_INFO);
+    }
+
+    /**
+     * Lee el punto de control de una tarea.
+     *
+     * @param tarea Nombre de la tarea
+     * @param fecha Fecha de referencia de la ejecución
+     * @return Último ID procesado en una ejecución con la misma fecha, 0 si no
+     *         hay ninguna y -1 si esa ejecución se completó
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long leerPuntoControl(String tarea, Date fecha) throws DAOException {
+        String sql = "SELECT ultimo_id, completada FROM puntos_control WHERE tarea = ? AND fecha_referencia = ?";
+        try (ResultSet rs = dbAgent.executeQuery(sql, tarea, new java.sql.Date(fecha.getTime()))) {
+            if (!rs.next()) {
+                return 0;
+            }
+            return rs.getBoolean("completada") ? -1 : rs.getLong("ultimo_id");
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al leer el punto de control de la tarea: {}", tarea, e);
+            throw new DAOException("No se pudo leer el punto de control", e);
+        }
+    }
+
+    /**
+     * Guarda el punto de control de una tarea, sustituyendo el anterior.
+     *
+     * @param tarea Nombre de la tarea
+     * @param fecha Fecha de referencia de la ejecución
+     * @param ultimoId Último ID procesado: todos los anteriores también lo están
+     * @param completada true si la ejecución ha terminado
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public void guardarPuntoControl(String tarea, Date fecha, long ultimoId, boolean completada)
+            throws DAOException {
+        String sql = "INSERT INTO puntos_control (tarea, fecha_referencia, ultimo_id, completada) VALUES (?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE fecha_referencia = VALUES(fecha_referencia), "
+                + "ultimo_id = VALUES(ultimo_id), completada = VALUES(completada)";
+        try {
+            dbAgent.executeUpdate(sql, tarea, new java.sql.Date(fecha.getTime()), ultimoId, completada);
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al guardar el punto de control de la tarea: {}", tarea, e);
+            throw new DAOException("No se pudo guardar el punto de control", e);
+        }
+    }
+
+    /**
+     * Resultado de fijar la multa de un préstamo devuelto con retraso
+     */
+    public enum MultaDevolucion {
+        /** Se ha fijado el importe final de la multa activa que devengó el préstamo */
+        ACTUALIZADA,
+        /** El préstamo no tenía multa y se ha creado */
+        CREADA,
+        /** La multa del préstamo ya se pagó o condonó, y no se ha creado otra */
+        RESUELTA
+    }
+
+    /**
+     * Préstamo vencido y no devuelto
+     */
+    public static final class PrestamoVencido {
+
+        private final long prestamoId;
+        private final long usuarioId;
+        private final Date fechaDevolucionPrevista;
+        private final String estadoMulta;
+
+        /**
+         * Constructor con todos los datos del préstamo.
+         *
+         * @param prestamoId ID del préstamo
+         * @param usuarioId ID del usuario
+         * @param fechaDevolucionPrevista Fecha en que debía devolverse
+         * @param estadoMulta Estado de su multa, o null si no tiene
+         */
+        public PrestamoVencido(long prestamoId, long usuarioId, Date fechaDevolucionPrevista, String estadoMulta) {
+            this.prestamoId = prestamoId;
+            this.usuarioId = usuarioId;
+            this.fechaDevolucionPrevista = fechaDevolucionPrevista;
+            this.estadoMulta = estadoMulta;
+        }
+
+        public long getPrestamoId() {
+            return prestamoId;
+        }
+
+        public long getUsuarioId() {
+            return usuarioId;
+        }
+
+        public Date getFechaDevolucionPrevista() {
+            return fechaDevolucionPrevista;
+        }
+
+        public String getEstadoMulta() {
+            return estadoMulta;
+        }
+    }
+}
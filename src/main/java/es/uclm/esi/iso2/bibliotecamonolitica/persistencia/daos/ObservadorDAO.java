@@ -0,0 +1,30 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+/**
+ * Interfaz para los componentes que deben mantenerse sincronizados con las
+ * escrituras de un DAO (índices en memoria, cachés, etc.).
+ * Los DAOs notifican a sus observadores después de que la operación se haya
+ * completado correctamente en la base de datos.
+ *
+ * @param <T> Tipo de entidad
+ * @param <ID> Tipo del identificador de la entidad
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public interface ObservadorDAO<T, ID> {
+
+    /**
+     * Notifica que una entidad se ha creado o actualizado.
+     *
+     * @param entity Entidad con su estado actual
+     */
+    void entidadGuardada(T entity);
+
+    /**
+     * Notifica que una entidad se ha eliminado.
+     *
+     * @param id Identificador de la entidad eliminada
+     */
+    void entidadEliminada(ID id);
+}
@@ -0,0 +1,784 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.DetallePrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Ejemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoDetallePrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoReserva;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Prestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.EjemplarNoDisponibleException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * DAO para las operaciones de préstamo que afectan a varios ejemplares a la vez.
+ * Trabaja por conjuntos en lugar de por entidades: recupera todos los
+ * ejemplares de un préstamo con una sola consulta y registra el préstamo, sus
+ * detalles y el cambio de estado de los ejemplares en una única transacción,
+ * con un número de sentencias que no depende del número de ejemplares.
+ * <p>
+ * Los ejemplares se reclaman con un {@code UPDATE} condicional a que sigan
+ * disponibles, de modo que dos préstamos simultáneos nunca se llevan el mismo
+ * ejemplar: el que llega después no encuentra la fila disponible y se revierte.
+ * Las filas se bloquean siempre en orden ascendente de ID, así que dos
+ * préstamos con ejemplares comunes se esperan en lugar de interbloquearse.
+ * <p>
+ * Las devoluciones también se registran por conjuntos: los códigos de barras
+ * leídos por los buzones de devolución se resuelven con una consulta y los
+ * detalles, ejemplares, préstamos y multas se actualizan con un número fijo de
+ * sentencias por bloque de códigos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class PrestamoLoteDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(PrestamoLoteDAO.class);
+
+    /** Intentos de una transacción que la base de datos revierte por un interbloqueo */
+    private static final int MAX_INTENTOS = 3;
+
+    /** SQLSTATE de una transacción revertida por interbloqueo o serialización */
+    private static final String SQLSTATE_REVERTIDA = "40001";
+
+    /** Códigos de error de MySQL para interbloqueo y espera de bloqueo agotada */
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    /** Códigos de barras que se devuelven en cada transacción */
+    static final int TAMANO_BLOQUE_DEVOLUCIONES = 500;
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public PrestamoLoteDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar PrestamoLoteDAO", e);
+            throw new DAOException("No se pudo inicializar PrestamoLoteDAO", e);
+        }
+    }
+
+    /**
+     * Recupera varios ejemplares con una sola consulta {@code IN}. El libro de
+     * cada ejemplar queda representado solo por su ID.
+     *
+     * @param ids IDs de los ejemplares; los repetidos se consultan una vez
+     * @return Ejemplares encontrados, en el orden de los IDs y sin repetir
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Ejemplar> findEjemplaresByIds(Collection<Long> ids) throws DAOException {
+        Set<Long> distintos = new LinkedHashSet<>(ids);
+        if (distintos.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, libro_id, codigo_barras, estado, ubicacion, fecha_adquisicion FROM ejemplares WHERE id IN (");
+        agregarMarcadores(sql, distintos.size());
+        sql.append(")");
+
+        Map<Long, Ejemplar> porId = new HashMap<>(distintos.size() * 2);
+        try (ResultSet rs = dbAgent.executeQuery(sql.toString(), distintos.toArray())) {
+            while (rs.next()) {
+                Ejemplar ejemplar = mapResultSetToEjemplar(rs);
+                porId.put(ejemplar.getId(), ejemplar);
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al recuperar ejemplares por IDs", e);
+            throw new DAOException("No se pudieron recuperar los ejemplares por IDs", e);
+        }
+
+        List<Ejemplar> ejemplares = new ArrayList<>(porId.size());
+        for (Long id : distintos) {
+            Ejemplar ejemplar = porId.get(id);
+            if (ejemplar != null) {
+                ejemplares.add(ejemplar);
+            }
+        }
+        return ejemplares;
+    }
+
+    /**
+     * Registra un préstamo nuevo con todos sus detalles en una transacción de
+     * tres sentencias: un único {@code UPDATE} que reclama los ejemplares
+     * pasando a {@link EstadoEjemplar#PRESTADO} los que siguen
+     * {@link EstadoEjemplar#DISPONIBLE}, la inserción del préstamo y una
+     * inserción de varias filas con los detalles. Si algún ejemplar ya no
+     * estaba disponible no se modifica nada.
+     * <p>
+     * Los ejemplares que llegan en estado {@link EstadoEjemplar#RESERVADO} se
+     * reclaman con un segundo {@code UPDATE}, que solo los acepta si están
+     * apartados para una reserva del usuario del préstamo, y esas reservas
+     * pasan a {@link EstadoReserva#CUMPLIDA} en la misma transacción.
+     * <p>
+     * Si la base de datos elige la transacción como víctima de un
+     * interbloqueo, se repite hasta {@value #MAX_INTENTOS} veces. Asigna los
+     * IDs generados al préstamo y a sus detalles, pero no cambia el estado de
+     * los objetos Ejemplar.
+     *
+     * @param prestamo Préstamo sin ID, con un detalle por ejemplar distinto
+     * @return El mismo préstamo con los IDs asignados
+     * @throws EjemplarNoDisponibleException Si algún ejemplar no está disponible
+     * @throws DAOException Si falla la operación
+     */
+    public Prestamo registrarPrestamo(Prestamo prestamo) throws DAOException {
+        List<DetallePrestamo> detalles = prestamo.getDetalles();
+        if (detalles.isEmpty()) {
+            throw new DAOException("El préstamo no tiene ejemplares");
+        }
+        long[] ejemplarIds = new long[detalles.size()];
+        long[] reservados = new long[detalles.size()];
+        int numeroDisponibles = 0;
+        int numeroReservados = 0;
+        for (DetallePrestamo detalle : detalles) {
+            Ejemplar ejemplar = detalle.getEjemplar();
+            if (ejemplar.getEstado() == EstadoEjemplar.RESERVADO) {
+                reservados[numeroReservados++] = ejemplar.getId();
+            } else {
+                ejemplarIds[numeroDisponibles++] = ejemplar.getId();
+            }
+        }
+        ejemplarIds = Arrays.copyOf(ejemplarIds, numeroDisponibles);
+        reservados = Arrays.copyOf(reservados, numeroReservados);
+        Arrays.sort(ejemplarIds);
+        Arrays.sort(reservados);
+
+        for (int intento = 1; ; intento++) {
+            try {
+                return registrarPrestamo(prestamo, ejemplarIds, reservados);
+            } catch (SQLException e) {
+                if (intento == MAX_INTENTOS || !esTransaccionRevertida(e)) {
+                    logger.error("Error al registrar el préstamo", e);
+                    throw new DAOException("No se pudo registrar el préstamo en la base de datos", e);
+                }
+                logger.warn("Préstamo revertido por la base de datos (intento {} de {}): {}",
+                        intento, MAX_INTENTOS, e.getMessage());
+            } catch (DatabaseConnectionException e) {
+                logger.error("Error al registrar el préstamo", e);
+                throw new DAOException("No se pudo registrar el préstamo en la base de datos", e);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta un intento de la transacción de {@link #registrarPrestamo(Prestamo)}.
+     *
+     * @param prestamo Préstamo a registrar
+     * @param ejemplarIds IDs de sus ejemplares disponibles en orden ascendente
+     * @param reservados IDs de sus ejemplares apartados para el usuario en orden ascendente
+     */
+    private Prestamo registrarPrestamo(Prestamo prestamo, long[] ejemplarIds, long[] reservados)
+            throws SQLException, DatabaseConnectionException, EjemplarNoDisponibleException {
+        List<DetallePrestamo> detalles = prestamo.getDetalles();
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+
+            int reclamados = ejemplarIds.length > 0 ? reclamarEjemplares(connection, ejemplarIds) : 0;
+            if (reservados.length > 0 && reclamados == ejemplarIds.length) {
+                reclamados += reclamarReservados(connection, prestamo.getUsuario().getId(), reservados);
+            }
+            if (reclamados != detalles.size()) {
+                throw new EjemplarNoDisponibleException("Algún ejemplar ya no está disponible: se podían prestar "
+                        + reclamados + " de " + detalles.size());
+            }
+            long prestamoId = insertarPrestamo(connection, prestamo);
+            long[] detalleIds = insertarDetalles(connection, prestamoId, detalles);
+
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+
+            prestamo.setId(prestamoId);
+            for (int i = 0; i < detalles.size(); i++) {
+                detalles.get(i).setId(detalleIds[i]);
+            }
+            logger.info("Préstamo creado con ID: {} y {} ejemplares", prestamoId, detalles.size());
+            return prestamo;
+
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Indica si la base de datos ha revertido la transacción por un
+     * interbloqueo o por agotar la espera de un bloqueo, casos en los que
+     * basta con repetirla.
+     */
+    private static boolean esTransaccionRevertida(SQLException e) {
+        return SQLSTATE_REVERTIDA.equals(e.getSQLState()) || e.getErrorCode() == ER_LOCK_DEADLOCK
+                || e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT;
+    }
+
+    private long insertarPrestamo(Connection connection, Prestamo prestamo) throws SQLException {
+        String sql = "INSERT INTO prestamos (usuario_id, fecha, fecha_devolucion_prevista, estado) VALUES (?, ?, ?, ?)";
+
+        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setLong(1, prestamo.getUsuario().getId());
+            statement.setDate(2, new java.sql.Date(prestamo.getFecha().getTime()));
+            statement.setTimestamp(3, new Timestamp(prestamo.getFechaDevolucionPrevista().getTime()));
+            statement.setString(4, prestamo.getEstado().name());
+            statement.executeUpdate();
+
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No se generó el ID del préstamo");
+                }
+                return keys.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Pasa a prestados, con una sola sentencia, los ejemplares que siguen
+     * disponibles. El {@code ORDER BY} fija el orden en que se bloquean las
+     * filas.
+     *
+     * @param ejemplarIds IDs de los ejemplares en orden ascendente
+     * @return Número de ejemplares reclamados
+     */
+    private int reclamarEjemplares(Connection connection, long[] ejemplarIds) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE ejemplares SET estado = ? WHERE estado = ? AND id IN (");
+        agregarMarcadores(sql, ejemplarIds.length);
+        sql.append(") ORDER BY id");
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            statement.setString(1, EstadoEjemplar.PRESTADO.name());
+            statement.setString(2, EstadoEjemplar.DISPONIBLE.name());
+            for (int i = 0; i < ejemplarIds.length; i++) {
+                statement.setLong(i + 3, ejemplarIds[i]);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Pasa a prestados los ejemplares apartados para reservas del usuario y da
+     * esas reservas por cumplidas. Los ejemplares apartados para otro usuario
+     * no se reclaman.
+     *
+     * @param usuarioId ID del usuario del préstamo
+     * @param ejemplarIds IDs de los ejemplares apartados en orden ascendente
+     * @return Número de ejemplares reclamados
+     */
+    private int reclamarReservados(Connection connection, long usuarioId, long[] ejemplarIds) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE ejemplares SET estado = ? WHERE estado = ? AND id IN (");
+        agregarMarcadores(sql, ejemplarIds.length);
+        sql.append(") AND id IN (SELECT ejemplar_id FROM reservas WHERE usuario_id = ? AND estado = ?) ORDER BY id");
+
+        int reclamados;
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            statement.setString(1, EstadoEjemplar.PRESTADO.name());
+            statement.setString(2, EstadoEjemplar.RESERVADO.name());
+            for (int i = 0; i < ejemplarIds.length; i++) {
+                statement.setLong(i + 3, ejemplarIds[i]);
+            }
+            statement.setLong(ejemplarIds.length + 3, usuarioId);
+            statement.setString(ejemplarIds.length + 4, EstadoReserva.ASIGNADA.name());
+            reclamados = statement.executeUpdate();
+        }
+        if (reclamados != ejemplarIds.length) {
+            return reclamados;
+        }
+
+        StringBuilder cumplidas = new StringBuilder(
+                "UPDATE reservas SET estado = ? WHERE usuario_id = ? AND estado = ? AND ejemplar_id IN (");
+        agregarMarcadores(cumplidas, ejemplarIds.length);
+        cumplidas.append(")");
+        try (PreparedStatement statement = connection.prepareStatement(cumplidas.toString())) {
+            statement.setString(1, EstadoReserva.CUMPLIDA.name());
+            statement.setLong(2, usuarioId);
+            statement.setString(3, EstadoReserva.ASIGNADA.name());
+            for (int i = 0; i < ejemplarIds.length; i++) {
+                statement.setLong(i + 4, ejemplarIds[i]);
+            }
+            statement.executeUpdate();
+        }
+        return reclamados;
+    }
+
+    /**
+     * Inserta todos los detalles con una sentencia {@code INSERT} de varias
+     * filas. MySQL asigna IDs consecutivos a las filas de una misma sentencia y
+     * los devuelve en orden.
+     *
+     * @return IDs generados, en el orden de los detalles
+     */
+    private long[] insertarDetalles(Connection connection, long prestamoId, List<DetallePrestamo> detalles)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO detalle_prestamos (prestamo_id, ejemplar_id, fecha_devolucion_real, estado) VALUES ");
+        for (int i = 0; i < detalles.size(); i++) {
+            sql.append(i > 0 ? ", (?, ?, NULL, ?)" : "(?, ?, NULL, ?)");
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                Statement.RETURN_GENERATED_KEYS)) {
+            int parametro = 1;
+            for (DetallePrestamo detalle : detalles) {
+                statement.setLong(parametro++, prestamoId);
+                statement.setLong(parametro++, detalle.getEjemplar().getId());
+                statement.setString(parametro++, detalle.getEstado().name());
+            }
+            statement.executeUpdate();
+
+            long[] ids = new long[detalles.size()];
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (!keys.next()) {
+                        throw new SQLException("No se generaron los IDs de todos los detalles del préstamo");
+                    }
+                    ids[i] = keys.getLong(1);
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Registra la devolución de los ejemplares con los códigos de barras
+     * indicados. Los códigos se procesan en bloques de
+     * {@value #TAMANO_BLOQUE_DEVOLUCIONES}, cada uno en una transacción con un
+     * número fijo de sentencias:
+     * <ol>
+     * <li>una consulta que resuelve los códigos a sus detalles de préstamo
+     * abiertos y bloquea las filas,</li>
+     * <li>la actualización de los detalles y la de los ejemplares,</li>
+     * <li>la consulta de los préstamos que aún tienen ejemplares pendientes y
+     * la actualización de los que quedan devueltos,</li>
+     * <li>dos lotes JDBC con las multas de los préstamos devueltos con retraso:
+     * se actualiza la multa activa que ya hubiera devengado el préstamo o, si
+     * no tiene ninguna, se crea.</li>
+     * </ol>
+     * Si la base de datos revierte un bloque por un interbloqueo, se repite
+     * hasta {@value #MAX_INTENTOS} veces.
+     *
+     * @param codigosBarras Códigos de barras leídos, en el orden de lectura
+     * @param fechaDevolucion Fecha de la devolución
+     * @param calculadora Importe de la multa de cada préstamo que queda devuelto
+     * @return Resultado de cada código, en el mismo orden
+     * @throws DAOException Si falla algún bloque; los bloques anteriores quedan registrados
+     */
+    public List<Devolucion> registrarDevoluciones(List<String> codigosBarras, Date fechaDevolucion,
+            CalculadoraMulta calculadora) throws DAOException {
+        List<Devolucion> devoluciones = new ArrayList<>(codigosBarras.size());
+        List<String> distintos = new ArrayList<>();
+        Set<String> vistos = new LinkedHashSet<>();
+        for (String codigo : codigosBarras) {
+            String normalizado = codigo != null ? codigo.trim() : "";
+            if (normalizado.isEmpty()) {
+                devoluciones.add(new Devolucion(codigo, Devolucion.Resultado.NO_ENCONTRADO));
+            } else if (!vistos.add(normalizado)) {
+                devoluciones.add(new Devolucion(normalizado, Devolucion.Resultado.REPETIDO));
+            } else {
+                distintos.add(normalizado);
+                devoluciones.add(null);
+            }
+        }
+
+        Map<String, Devolucion> porCodigo = new HashMap<>(distintos.size() * 2);
+        for (int desde = 0; desde < distintos.size(); desde += TAMANO_BLOQUE_DEVOLUCIONES) {
+            List<String> bloque = distintos.subList(desde,
+                    Math.min(desde + TAMANO_BLOQUE_DEVOLUCIONES, distintos.size()));
+            porCodigo.putAll(registrarBloqueDevoluciones(bloque, fechaDevolucion, calculadora));
+        }
+
+        int indice = 0;
+        for (int i = 0; i < devoluciones.size(); i++) {
+            if (devoluciones.get(i) == null) {
+                devoluciones.set(i, porCodigo.get(distintos.get(indice++)));
+            }
+        }
+        return devoluciones;
+    }
+
+    private Map<String, Devolucion> registrarBloqueDevoluciones(List<String> codigos, Date fechaDevolucion,
+            CalculadoraMulta calculadora) throws DAOException {
+        for (int intento = 1; ; intento++) {
+            try {
+                return ejecutarBloqueDevoluciones(codigos, fechaDevolucion, calculadora);
+            } catch (SQLException e) {
+                if (intento == MAX_INTENTOS || !esTransaccionRevertida(e)) {
+                    logger.error("Error al registrar {} devoluciones", codigos.size(), e);
+                    throw new DAOException("No se pudieron registrar las devoluciones en la base de datos", e);
+                }
+                logger.warn("Devoluciones revertidas por la base de datos (intento {} de {}): {}",
+                        intento, MAX_INTENTOS, e.getMessage());
+            } catch (DatabaseConnectionException e) {
+                logger.error("Error al registrar {} devoluciones", codigos.size(), e);
+                throw new DAOException("No se pudieron registrar las devoluciones en la base de datos", e);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta un intento de la transacción de devolución de un bloque de
+     * códigos de barras distintos.
+     *
+     * @return Resultado de cada código
+     */
+    private Map<String, Devolucion> ejecutarBloqueDevoluciones(List<String> codigos, Date fechaDevolucion,
+            CalculadoraMulta calculadora) throws SQLException, DatabaseConnectionException {
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+
+            Map<String, Devolucion> devoluciones = bloquearDetallesAbiertos(connection, codigos);
+            List<Devolucion> devueltas = new ArrayList<>(devoluciones.size());
+            for (Devolucion devolucion : devoluciones.values()) {
+                if (devolucion.getResultado() == Devolucion.Resultado.DEVUELTO) {
+                    devueltas.add(devolucion);
+                }
+            }
+
+            if (!devueltas.isEmpty()) {
+                java.sql.Date fecha = new java.sql.Date(fechaDevolucion.getTime());
+                long[] detalleIds = new long[devueltas.size()];
+                long[] ejemplarIds = new long[devueltas.size()];
+                // Última devolución de cada préstamo del bloque
+                Map<Long, Devolucion> porPrestamo = new LinkedHashMap<>();
+                for (int i = 0; i < detalleIds.length; i++) {
+                    Devolucion devolucion = devueltas.get(i);
+                    detalleIds[i] = devolucion.detalleId;
+                    ejemplarIds[i] = devolucion.getEjemplarId();
+                    porPrestamo.put(devolucion.getPrestamoId(), devolucion);
+                }
+                Arrays.sort(detalleIds);
+                Arrays.sort(ejemplarIds);
+
+                actualizarPorIds(connection, "UPDATE detalle_prestamos SET estado = ?, fecha_devolucion_real = ?",
+                        detalleIds, EstadoDetallePrestamo.DEVUELTO.name(), fecha);
+                actualizarPorIds(connection, "UPDATE ejemplares SET estado = ?", ejemplarIds,
+                        EstadoEjemplar.DISPONIBLE.name());
+
+                porPrestamo.keySet().removeAll(buscarPrestamosPendientes(connection, porPrestamo.keySet()));
+                if (!porPrestamo.isEmpty()) {
+                    long[] prestamoIds = new long[porPrestamo.size()];
+                    int i = 0;
+                    for (Long prestamoId : porPrestamo.keySet()) {
+                        prestamoIds[i++] = prestamoId;
+                    }
+                    Arrays.sort(prestamoIds);
+                    actualizarPorIds(connection, "UPDATE prestamos SET estado = ?", prestamoIds,
+                            EstadoPrestamo.DEVUELTO.name());
+                    for (Devolucion devolucion : porPrestamo.values()) {
+                        devolucion.prestamoCerrado = true;
+                    }
+                    registrarMultas(connection, porPrestamo.values(), fecha, calculadora);
+                }
+            }
+
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            logger.info("Registradas {} devoluciones de {} códigos de barras", devueltas.size(), codigos.size());
+            return devoluciones;
+
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Resuelve los códigos de barras a los detalles de préstamo abiertos de
+     * sus ejemplares y bloquea los ejemplares, los detalles y los préstamos.
+     * Las filas se bloquean en el orden del índice único de códigos de barras,
+     * de modo que dos devoluciones con códigos comunes se esperan en lugar de
+     * interbloquearse.
+     */
+    private Map<String, Devolucion> bloquearDetallesAbiertos(Connection connection, List<String> codigos)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT e.id, e.libro_id, e.codigo_barras, d.id AS detalle_id, "
+                + "d.prestamo_id, p.usuario_id, p.fecha_devolucion_prevista FROM ejemplares e "
+                + "LEFT JOIN detalle_prestamos d ON d.ejemplar_id = e.id AND d.estado = ? "
+                + "LEFT JOIN prestamos p ON p.id = d.prestamo_id WHERE e.codigo_barras IN (");
+        agregarMarcadores(sql, codigos.size());
+        sql.append(") FOR UPDATE");
+
+        Map<String, Devolucion> devoluciones = new HashMap<>(codigos.size() * 2);
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            statement.setString(1, EstadoDetallePrestamo.PRESTADO.name());
+            for (int i = 0; i < codigos.size(); i++) {
+                statement.setString(i + 2, codigos.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String codigo = rs.getString("codigo_barras");
+                    long detalleId = rs.getLong("detalle_id");
+                    Devolucion devolucion;
+                    if (rs.wasNull()) {
+                        devolucion = new Devolucion(codigo, Devolucion.Resultado.NO_PRESTADO);
+                    } else {
+                        devolucion = new Devolucion(codigo, Devolucion.Resultado.DEVUELTO);
+                        devolucion.detalleId = detalleId;
+                        devolucion.prestamoId = rs.getLong("prestamo_id");
+                        devolucion.usuarioId = rs.getLong("usuario_id");
+                        devolucion.fechaDevolucionPrevista = rs.getTimestamp("fecha_devolucion_prevista");
+                    }
+                    devolucion.ejemplarId = rs.getLong("id");
+                    devolucion.libroId = rs.getLong("libro_id");
+                    // Un ejemplar solo puede tener un detalle abierto: se ignoran los demás
+                    devoluciones.putIfAbsent(codigo, devolucion);
+                }
+            }
+        }
+
+        for (String codigo : codigos) {
+            devoluciones.putIfAbsent(codigo, new Devolucion(codigo, Devolucion.Resultado.NO_ENCONTRADO));
+        }
+        return devoluciones;
+    }
+
+    /**
+     * Consulta cuáles de los préstamos indicados tienen aún ejemplares sin devolver.
+     */
+    private Set<Long> buscarPrestamosPendientes(Connection connection, Collection<Long> prestamoIds)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT DISTINCT prestamo_id FROM detalle_prestamos WHERE estado = ? AND prestamo_id IN (");
+        agregarMarcadores(sql, prestamoIds.size());
+        sql.append(")");
+
+        Set<Long> pendientes = new LinkedHashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            statement.setString(1, EstadoDetallePrestamo.PRESTADO.name());
+            int parametro = 2;
+            for (Long prestamoId : prestamoIds) {
+                statement.setLong(parametro++, prestamoId);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    pendientes.add(rs.getLong("prestamo_id"));
+                }
+            }
+        }
+        return pendientes;
+    }
+
+    /**
+     * Fija o crea las multas de los préstamos devueltos con retraso con
+     * {@link MultaVencimientoDAO#registrarMultasDevolucion}. Los préstamos
+     * cuya multa ya se pagó o condonó no reciben otra.
+     */
+    private void registrarMultas(Connection connection, Collection<Devolucion> cerradas, java.sql.Date fecha,
+            CalculadoraMulta calculadora) throws SQLException {
+        List<Devolucion> conMulta = new ArrayList<>();
+        for (Devolucion devolucion : cerradas) {
+            BigDecimal importe = calculadora.calcular(devolucion.fechaDevolucionPrevista);
+            if (importe != null && importe.signum() > 0) {
+                devolucion.importeMulta = importe;
+                conMulta.add(devolucion);
+            }
+        }
+        if (conMulta.isEmpty()) {
+            return;
+        }
+
+        long[] prestamoIds = new long[conMulta.size()];
+        BigDecimal[] importes = new BigDecimal[conMulta.size()];
+        for (int i = 0; i < prestamoIds.length; i++) {
+            prestamoIds[i] = conMulta.get(i).getPrestamoId();
+            importes[i] = conMulta.get(i).importeMulta;
+        }
+        MultaVencimientoDAO.MultaDevolucion[] resultados =
+                MultaVencimientoDAO.registrarMultasDevolucion(connection, prestamoIds, importes, fecha);
+        for (int i = 0; i < resultados.length; i++) {
+            conMulta.get(i).multaNueva = resultados[i] == MultaVencimientoDAO.MultaDevolucion.CREADA;
+        }
+    }
+
+    /**
+     * Ejecuta una sentencia {@code UPDATE} sobre las filas con los IDs indicados.
+     *
+     * @param sentencia Sentencia sin la cláusula {@code WHERE}
+     * @param ids IDs de las filas
+     * @param valores Valores de los parámetros de la sentencia
+     * @return Número de filas modificadas
+     */
+    private static int actualizarPorIds(Connection connection, String sentencia, long[] ids, Object... valores)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(sentencia).append(" WHERE id IN (");
+        agregarMarcadores(sql, ids.length);
+        sql.append(")");
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            int parametro = 1;
+            for (Object valor : valores) {
+                statement.setObject(parametro++, valor);
+            }
+            for (long id : ids) {
+                statement.setLong(parametro++, id);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    private static void agregarMarcadores(StringBuilder sql, int numero) {
+        for (int i = 0; i < numero; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+    }
+
+    /**
+     * Convierte un ResultSet en un objeto Ejemplar cuyo libro solo tiene ID.
+     *
+     * @param rs ResultSet con los datos del ejemplar
+     * @return Objeto Ejemplar construido
+     * @throws SQLException Si ocurre un error al acceder al ResultSet
+     */
+    private Ejemplar mapResultSetToEjemplar(ResultSet rs) throws SQLException {
+        Ejemplar ejemplar = new Ejemplar();
+        ejemplar.setId(rs.getLong("id"));
+
+        Libro libro = new Libro();
+        libro.setId(rs.getLong("libro_id"));
+        ejemplar.setLibro(libro);
+
+        ejemplar.setCodigoBarras(rs.getString("codigo_barras"));
+        ejemplar.setEstado(EstadoEjemplar.valueOf(rs.getString("estado")));
+        ejemplar.setUbicacion(rs.getString("ubicacion"));
+        ejemplar.setFechaAdquisicion(rs.getDate("fecha_adquisicion"));
+        return ejemplar;
+    }
+
+    /**
+     * Calcula el importe de la multa de un préstamo que queda devuelto.
+     */
+    @FunctionalInterface
+    public interface CalculadoraMulta {
+
+        /**
+         * Calcula el importe de la multa de un préstamo.
+         *
+         * @param fechaDevolucionPrevista Fecha en que debía devolverse el préstamo
+         * @return Importe de la multa, o cero si se devolvió a tiempo
+         */
+        BigDecimal calcular(Date fechaDevolucionPrevista);
+    }
+
+    /**
+     * Resultado de la devolución de un código de barras
+     */
+    public static final class Devolucion {
+
+        /**
+         * Resultado de la lectura de un código de barras
+         */
+        public enum Resultado {
+            /** El ejemplar estaba prestado y se ha devuelto */
+            DEVUELTO,
+            /** No hay ningún ejemplar con ese código */
+            NO_ENCONTRADO,
+            /** El ejemplar no estaba prestado */
+            NO_PRESTADO,
+            /** El código ya se había leído antes en la misma tanda */
+            REPETIDO
+        }
+
+        private final String codigoBarras;
+        private final Resultado resultado;
+        private long ejemplarId;
+        private long libroId;
+        private long detalleId;
+        private long prestamoId;
+        private long usuarioId;
+        private Date fechaDevolucionPrevista;
+        private boolean prestamoCerrado;
+        private BigDecimal importeMulta;
+        private boolean multaNueva;
+
+        Devolucion(String codigoBarras, Resultado resultado) {
+            this.codigoBarras = codigoBarras;
+            this.resultado = resultado;
+        }
+
+        public String getCodigoBarras() {
+            return codigoBarras;
+        }
+
+        public Resultado getResultado() {
+            return resultado;
+        }
+
+        public long getEjemplarId() {
+            return ejemplarId;
+        }
+
+        public long getLibroId() {
+            return libroId;
+        }
+
+        public long getPrestamoId() {
+            return prestamoId;
+        }
+
+        public long getUsuarioId() {
+            return usuarioId;
+        }
+
+        /**
+         * Indica si con esta devolución el préstamo ha quedado devuelto. Si se
+         * devuelven a la vez varios ejemplares de un préstamo, solo se indica
+         * en el último.
+         *
+         * @return true si el préstamo ha quedado devuelto
+         */
+        public boolean isPrestamoCerrado() {
+            return prestamoCerrado;
+        }
+
+        /**
+         * Obtiene el importe de la multa del préstamo devuelto con retraso.
+         *
+         * @return Importe de la multa, o null si no hay multa
+         */
+        public BigDecimal getImporteMulta() {
+            return importeMulta;
+        }
+
+        /**
+         * Indica si se ha creado la multa; si no, se ha fijado el importe de
+         * la que ya había devengado el préstamo.
+         *
+         * @return true si la multa es nueva
+         */
+        public boolean isMultaNueva() {
+            return multaNueva;
+        }
+    }
+}
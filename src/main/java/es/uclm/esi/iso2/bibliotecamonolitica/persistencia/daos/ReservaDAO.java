@@ -0,0 +1,259 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoReserva;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * DAO de las reservas de libros. Cada reserva pendiente ocupa un puesto en la
+ * lista de espera de su libro; al devolverse un ejemplar se asigna a la
+ * primera reserva, que lo aparta hasta que el usuario lo recoge.
+ * <p>
+ * Los cambios de estado se hacen con {@code UPDATE} condicionales al estado
+ * esperado, de modo que una reserva cancelada mientras se le asignaba un
+ * ejemplar, o un ejemplar prestado mientras se apartaba, se detectan sin
+ * bloquear filas de antemano.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ReservaDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(ReservaDAO.class);
+
+    /** Resultado de asignar un ejemplar devuelto a una reserva */
+    public enum ResultadoAsignacion {
+        /** El ejemplar queda apartado para la reserva */
+        ASIGNADA,
+        /** La reserva ya no está pendiente; hay que probar con la siguiente */
+        RESERVA_NO_PENDIENTE,
+        /** El ejemplar ya no está disponible; la reserva sigue esperando */
+        EJEMPLAR_NO_DISPONIBLE
+    }
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public ReservaDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar ReservaDAO", e);
+            throw new DAOException("No se pudo inicializar ReservaDAO", e);
+        }
+    }
+
+    /**
+     * Crea una reserva pendiente.
+     *
+     * @param libroId ID del libro reservado
+     * @param usuarioId ID del usuario
+     * @param prioridad Prioridad de la reserva; 0 es la más alta
+     * @param fecha Fecha de la reserva
+     * @return ID de la reserva creada
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long crear(long libroId, long usuarioId, int prioridad, Date fecha) throws DAOException {
+        String sql = "INSERT INTO reservas (libro_id, usuario_id, prioridad, estado, fecha_reserva) "
+                + "VALUES (?, ?, ?, ?, ?)";
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            long reservaId;
+            try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                statement.setLong(1, libroId);
+                statement.setLong(2, usuarioId);
+                statement.setInt(3, prioridad);
+                statement.setString(4, EstadoReserva.PENDIENTE.name());
+                statement.setTimestamp(5, new Timestamp(fecha.getTime()));
+                statement.executeUpdate();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("No se generó el ID de la reserva");
+                    }
+                    reservaId = keys.getLong(1);
+                }
+            }
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            logger.info("Reserva creada con ID: {} del libro {} para el usuario {}", reservaId, libroId, usuarioId);
+            return reservaId;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al crear la reserva del libro {} para el usuario {}", libroId, usuarioId, e);
+            throw new DAOException("No se pudo crear la reserva en la base de datos", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Comprueba si un usuario ya tiene una reserva pendiente o asignada de un libro.
+     *
+     * @param usuarioId ID del usuario
+     * @param libroId ID del libro
+     * @return true si la reserva existe
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public boolean existeReservaAbierta(long usuarioId, long libroId) throws DAOException {
+        String sql = "SELECT 1 FROM reservas WHERE usuario_id = ? AND libro_id = ? AND estado IN (?, ?) LIMIT 1";
+
+        try (ResultSet rs = dbAgent.executeQuery(sql, usuarioId, libroId,
+                EstadoReserva.PENDIENTE.name(), EstadoReserva.ASIGNADA.name())) {
+            return rs.next();
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al buscar la reserva del libro {} del usuario {}", libroId, usuarioId, e);
+            throw new DAOException("No se pudo comprobar la reserva", e);
+        }
+    }
+
+    /**
+     * Cancela la reserva pendiente de un usuario sobre un libro.
+     *
+     * @param usuarioId ID del usuario
+     * @param libroId ID del libro
+     * @return ID de la reserva cancelada, o -1 si no había ninguna pendiente
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long cancelar(long usuarioId, long libroId) throws DAOException {
+        String consulta = "SELECT id FROM reservas WHERE usuario_id = ? AND libro_id = ? AND estado = ?";
+        String sql = "UPDATE reservas SET estado = ? WHERE id = ? AND estado = ?";
+
+        try (ResultSet rs = dbAgent.executeQuery(consulta, usuarioId, libroId, EstadoReserva.PENDIENTE.name())) {
+            if (!rs.next()) {
+                return -1;
+            }
+            long reservaId = rs.getLong("id");
+            // Si entretanto se le ha asignado un ejemplar, ya no se cancela
+            int filas = dbAgent.executeUpdate(sql, EstadoReserva.CANCELADA.name(), reservaId,
+                    EstadoReserva.PENDIENTE.name());
+            return filas == 1 ? reservaId : -1;
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al cancelar la reserva del libro {} del usuario {}", libroId, usuarioId, e);
+            throw new DAOException("No se pudo cancelar la reserva", e);
+        }
+    }
+
+    /**
+     * Asigna un ejemplar devuelto a una reserva pendiente en una transacción
+     * de dos sentencias: aparta el ejemplar si sigue disponible y pasa la
+     * reserva a asignada si sigue pendiente. Si alguna no modifica su fila
+     * no se cambia nada.
+     *
+     * @param reservaId ID de la reserva
+     * @param ejemplarId ID del ejemplar devuelto
+     * @param fecha Fecha de la asignación
+     * @return Resultado de la asignación
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public ResultadoAsignacion asignar(long reservaId, long ejemplarId, Date fecha) throws DAOException {
+        String apartar = "UPDATE ejemplares SET estado = ? WHERE id = ? AND estado = ?";
+        String asignar = "UPDATE reservas SET estado = ?, ejemplar_id = ?, fecha_asignacion = ? "
+                + "WHERE id = ? AND estado = ?";
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            try (PreparedStatement statement = connection.prepareStatement(apartar)) {
+                statement.setString(1, EstadoEjemplar.RESERVADO.name());
+                statement.setLong(2, ejemplarId);
+                statement.setString(3, EstadoEjemplar.DISPONIBLE.name());
+                if (statement.executeUpdate() != 1) {
+                    return ResultadoAsignacion.EJEMPLAR_NO_DISPONIBLE;
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(asignar)) {
+                statement.setString(1, EstadoReserva.ASIGNADA.name());
+                statement.setLong(2, ejemplarId);
+                statement.setTimestamp(3, new Timestamp(fecha.getTime()));
+                statement.setLong(4, reservaId);
+                statement.setString(5, EstadoReserva.PENDIENTE.name());
+                if (statement.executeUpdate() != 1) {
+                    return ResultadoAsignacion.RESERVA_NO_PENDIENTE;
+                }
+            }
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            return ResultadoAsignacion.ASIGNADA;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al asignar el ejemplar {} a la reserva {}", ejemplarId, reservaId, e);
+            throw new DAOException("No se pudo asignar el ejemplar a la reserva", e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Recorre por bloques ordenados por ID las reservas pendientes, es decir,
+     * cada lista de espera en orden de llegada.
+     *
+     * @param tamanoBloque Número de reservas leídas por consulta
+     * @param consumidor Función que recibe cada reserva
+     * @return Número de reservas recorridas
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long recorrerPendientes(int tamanoBloque, ConsumidorReserva consumidor) throws DAOException {
+        String sql = "SELECT id, libro_id, usuario_id, prioridad FROM reservas "
+                + "WHERE estado = ? AND id > ? ORDER BY id LIMIT ?";
+        long total = 0;
+        long ultimoId = 0;
+        int leidos;
+        do {
+            leidos = 0;
+            try (ResultSet rs = dbAgent.executeQuery(sql, EstadoReserva.PENDIENTE.name(), ultimoId, tamanoBloque)) {
+                while (rs.next()) {
+                    ultimoId = rs.getLong("id");
+                    consumidor.aceptar(ultimoId, rs.getLong("libro_id"), rs.getLong("usuario_id"),
+                            rs.getInt("prioridad"));
+                    leidos++;
+                }
+            } catch (SQLException | DatabaseConnectionException e) {
+                logger.error("Error al recorrer las reservas pendientes desde la reserva: {}", ultimoId, e);
+                throw new DAOException("No se pudieron recorrer las reservas pendientes", e);
+            }
+            total += leidos;
+        } while (leidos == tamanoBloque);
+        return total;
+    }
+
+    /**
+     * Función que recibe una reserva pendiente durante
+     * {@link ReservaDAO#recorrerPendientes}.
+     */
+    @FunctionalInterface
+    public interface ConsumidorReserva {
+
+        /**
+         * Recibe una reserva pendiente.
+         *
+         * @param reservaId ID de la reserva
+         * @param libroId ID del libro reservado
+         * @param usuarioId ID del usuario
+         * @param prioridad Prioridad de la reserva
+         */
+        void aceptar(long reservaId, long libroId, long usuarioId, int prioridad);
+    }
+}
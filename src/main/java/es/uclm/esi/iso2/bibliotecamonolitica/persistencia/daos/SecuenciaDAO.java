@@ -0,0 +1,134 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * DAO de la tabla de secuencias, de la que se reservan bloques de IDs para
+ * asignarlos en el cliente sin pedir a la base de datos la clave generada de
+ * cada inserción.
+ * <p>
+ * Cada secuencia se llama como la tabla cuyos IDs reparte. Su fila guarda el
+ * primer ID aún no reservado y se bloquea durante la reserva, de modo que dos
+ * instancias de la aplicación nunca reciben bloques solapados.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ * @see AsignadorIds
+ */
+public class SecuenciaDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(SecuenciaDAO.class);
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public SecuenciaDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar SecuenciaDAO", e);
+            throw new DAOException("No se pudo inicializar SecuenciaDAO", e);
+        }
+    }
+
+    /**
+     * Reserva un bloque de IDs consecutivos de una secuencia. Si la tabla ya
+     * tiene filas con IDs iguales o mayores que el siguiente de la secuencia,
+     * por ejemplo insertadas por una carga inicial con autoincremento, el
+     * bloque empieza después del mayor de ellos. La primera reserva de una
+     * secuencia crea su fila.
+     *
+     * @param tabla Tabla cuyos IDs se reservan; debe ser una constante del código, no un valor externo
+     * @param tamano Número de IDs del bloque
+     * @return Primer ID del bloque; el bloque llega hasta {@code inicio + tamano - 1}
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long reservarBloque(String tabla, int tamano) throws DAOException {
+        Connection connection = null;
+        boolean confirmada = false;
+        try {
+            connection = dbAgent.beginTransaction();
+            Long siguiente = leerSiguiente(connection, tabla);
+            if (siguiente == null) {
+                crearSecuencia(connection, tabla);
+                siguiente = leerSiguiente(connection, tabla);
+                if (siguiente == null) {
+                    throw new SQLException("No se pudo crear la secuencia " + tabla);
+                }
+            }
+            long inicio = Math.max(siguiente, siguienteIdDeTabla(connection, tabla));
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE secuencias SET siguiente = ? WHERE nombre = ?")) {
+                statement.setLong(1, inicio + tamano);
+                statement.setString(2, tabla);
+                statement.executeUpdate();
+            }
+            dbAgent.commitTransaction(connection);
+            confirmada = true;
+            logger.debug("Reservados {} IDs de {} desde {}", tamano, tabla, inicio);
+            return inicio;
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al reservar un bloque de {} IDs de la secuencia: {}", tamano, tabla, e);
+            throw new DAOException("No se pudo reservar un bloque de IDs de " + tabla, e);
+        } finally {
+            if (!confirmada) {
+                dbAgent.rollbackTransaction(connection);
+            }
+            dbAgent.disconnect(connection);
+        }
+    }
+
+    /**
+     * Lee y bloquea hasta el final de la transacción la fila de una secuencia.
+     *
+     * @return Siguiente ID sin reservar, o null si la secuencia no existe
+     */
+    private Long leerSiguiente(Connection connection, String tabla) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT siguiente FROM secuencias WHERE nombre = ? FOR UPDATE")) {
+            statement.setString(1, tabla);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Crea la fila de una secuencia. Si otra instancia la crea a la vez, la
+     * inserción se ignora y ambas leen después la misma fila.
+     */
+    private void crearSecuencia(Connection connection, String tabla) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT IGNORE INTO secuencias (nombre, siguiente) VALUES (?, 1)")) {
+            statement.setString(1, tabla);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Obtiene el ID siguiente al mayor de la tabla. InnoDB lo resuelve leyendo
+     * el final del índice primario.
+     */
+    private long siguienteIdDeTabla(Connection connection, String tabla) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT COALESCE(MAX(id), 0) + 1 FROM " + tabla)) {
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 1;
+            }
+        }
+    }
+}
@@ -4,16 +4,23 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoUsuario;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
 import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache.AgrupadorConsultas;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceTrigramas;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoDniNif;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
 
 /**
@@ -26,8 +33,28 @@ import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
 public class UsuarioDAO implements GenericDAO<Usuario, Long> {
     
     private static final LogHelper logger = LogHelper.getLogger(UsuarioDAO.class);
+    
+    /** Componentes que se mantienen sincronizados con las escrituras de usuarios */
+    private static final List<ObservadorDAO<Usuario, Long>> observadores = new CopyOnWriteArrayList<>();
+    
+    /** Fracción mínima de trigramas de la consulta que debe contener un nombre */
+    public static final double UMBRAL_SIMILITUD = 0.4;
+    
+    /** Número máximo de usuarios devueltos por una búsqueda por nombre */
+    public static final int MAX_RESULTADOS_NOMBRE = 100;
+    
+    /** Número máximo de IDs por consulta {@code IN (...)} */
+    private static final int MAX_IDS_POR_CONSULTA = 1000;
+    
     private final Agent dbAgent;
     
+    /** Búsquedas por ID en curso en este DAO; cada llamante en espera recibe su copia */
+    private final AgrupadorConsultas<Long, Optional<Usuario>> consultasPorId =
+            new AgrupadorConsultas<>(usuario -> usuario.map(UsuarioDAO::copiar));
+    
+    /** Índice de trigramas de nombres; se usa cuando ha terminado de cargarse */
+    private IndiceTrigramas indice;
+    
     /**
      * Constructor que inicializa el agente de base de datos.
      * 
@@ -40,6 +67,7 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
             logger.error("Error al inicializar UsuarioDAO", e);
             throw new DAOException("No se pudo inicializar UsuarioDAO", e);
         }
+        this.indice = IndiceTrigramas.getInstance();
     }
     
     @Override
@@ -48,7 +76,7 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
                      "tipo_usuario, estado, fecha_alta) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
         try {
-            int id = dbAgent.executeUpdate(sql, 
+            long id = dbAgent.executeInsert(sql, 
                     usuario.getNombre(), 
                     usuario.getApellidos(),
                     usuario.getDniNif(), 
@@ -59,8 +87,9 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
                     usuario.getEstado().toString(),
                     new java.sql.Date(usuario.getFechaAlta().getTime()));
             
-            usuario.setId((long) id);
+            usuario.setId(id);
             logger.info("Usuario creado con ID: {}", id);
+            notificarGuardado(usuario);
             return usuario;
             
         } catch (SQLException | DatabaseConnectionException e) {
@@ -69,8 +98,63 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
         }
     }
     
+    /**
+     * {@inheritDoc}
+     * Las búsquedas concurrentes del mismo ID comparten una única consulta a la
+     * base de datos.
+     */
     @Override
     public Optional<Usuario> findById(Long id) throws DAOException {
+        if (id == null) {
+            return consultarPorId(null);
+        }
+        return consultasPorId.ejecutar(id, () -> consultarPorId(id));
+    }
+    
+    /**
+     * Obtiene el agrupador de búsquedas por ID, que expone cuántas consultas
+     * concurrentes idénticas se han suprimido.
+     * 
+     * @return Agrupador de consultas por ID
+     */
+    public AgrupadorConsultas<Long, Optional<Usuario>> getConsultasPorId() {
+        return consultasPorId;
+    }
+    
+    /**
+     * Copia los datos de un usuario recién leído para un llamante agrupado.
+     * 
+     * @param usuario Usuario leído de la base de datos
+     * @return Copia independiente del usuario
+     */
+    private static Usuario copiar(Usuario usuario) {
+        Usuario copia = new Usuario();
+        try {
+            copia.setId(usuario.getId());
+            copia.setNombre(usuario.getNombre());
+            copia.setApellidos(usuario.getApellidos());
+            copia.setDniNif(usuario.getDniNif());
+            copia.setDireccion(usuario.getDireccion());
+            copia.setTelefono(usuario.getTelefono());
+            copia.setEmail(usuario.getEmail());
+            copia.setTipoUsuario(usuario.getTipoUsuario());
+            copia.setEstado(usuario.getEstado());
+            copia.setFechaAlta(usuario.getFechaAlta() != null ? new Date(usuario.getFechaAlta().getTime()) : null);
+        } catch (NotNullValueAllowedException e) {
+            // El original ya pasó las mismas validaciones al leerse
+            throw new IllegalStateException("No se pudo copiar el usuario con ID: " + usuario.getId(), e);
+        }
+        return copia;
+    }
+    
+    /**
+     * Ejecuta la búsqueda por ID contra la base de datos.
+     * 
+     * @param id Identificador del usuario
+     * @return Optional que contiene el usuario si existe
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    private Optional<Usuario> consultarPorId(Long id) throws DAOException {
         String sql = "SELECT * FROM usuarios WHERE id = ?";
         
         try (ResultSet rs = dbAgent.executeQuery(sql, id)) {
@@ -104,6 +188,7 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
                     usuario.getId());
             
             logger.info("Usuario actualizado con ID: {}", usuario.getId());
+            notificarGuardado(usuario);
             return usuario;
             
         } catch (SQLException | DatabaseConnectionException e) {
@@ -122,6 +207,7 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
                 throw new DAOException("No se pudo eliminar el usuario, ID no encontrado: " + id);
             }
             logger.info("Usuario eliminado con ID: {}", id);
+            notificarEliminado(id);
             
         } catch (SQLException | DatabaseConnectionException e) {
             logger.error("Error al eliminar usuario con ID: {}", id, e);
@@ -148,7 +234,8 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
     }
     
     /**
-     * Busca un usuario por su DNI/NIF.
+     * Busca un usuario por su DNI/NIF, normalizado como se guarda: sin
+     * separadores y con las letras en mayúscula.
      * 
      * @param dniNif DNI/NIF del usuario
      * @return Optional que contiene el usuario si existe
@@ -157,7 +244,7 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
     public Optional<Usuario> findByDniNif(String dniNif) throws DAOException {
         String sql = "SELECT * FROM usuarios WHERE dni_nif = ?";
         
-        try (ResultSet rs = dbAgent.executeQuery(sql, dniNif)) {
+        try (ResultSet rs = dbAgent.executeQuery(sql, CodigoDniNif.normalizar(dniNif))) {
             if (rs.next()) {
                 Usuario usuario = mapResultSetToUsuario(rs);
                 return Optional.of(usuario);
@@ -171,13 +258,19 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
     }
     
     /**
-     * Busca usuarios por nombre y/o apellidos (búsqueda parcial).
+     * Busca usuarios por nombre y/o apellidos. Con el índice de trigramas
+     * cargado la búsqueda es aproximada: tolera errores de escritura, tildes y
+     * apellidos en otro orden, y devuelve primero los nombres más parecidos.
+     * Mientras tanto se usa una búsqueda parcial con {@code LIKE}.
      * 
      * @param texto Texto a buscar en nombre o apellidos
      * @return Lista de usuarios que coinciden
      * @throws DAOException Si ocurre un error en la operación
      */
     public List<Usuario> findByNombreOrApellidos(String texto) throws DAOException {
+        if (indice != null && indice.isCargado()) {
+            return buscarSimilares(texto, UMBRAL_SIMILITUD, MAX_RESULTADOS_NOMBRE);
+        }
         String sql = "SELECT * FROM usuarios WHERE nombre LIKE ? OR apellidos LIKE ?";
         List<Usuario> usuarios = new ArrayList<>();
         
@@ -194,6 +287,205 @@ public class UsuarioDAO implements GenericDAO<Usuario, Long> {
         }
     }
     
+    /**
+     * Busca usuarios con un nombre completo parecido al texto mediante el
+     * índice de trigramas.
+     * 
+     * @param texto Nombre, apellidos o parte de ellos
+     * @param umbral Fracción mínima de trigramas coincidentes, entre 0 y 1
+     * @param limite Número máximo de resultados
+     * @return Usuarios ordenados del más al menos parecido
+     * @throws DAOException Si el índice no está cargado o falla la consulta
+     */
+    public List<Usuario> buscarSimilares(String texto, double umbral, int limite) throws DAOException {
+        if (indice == null || !indice.isCargado()) {
+            throw new DAOException("El índice de nombres de usuario no está cargado");
+        }
+        return findByIds(indice.buscar(texto, umbral, limite));
+    }
+    
+    /**
+     * Recupera varios usuarios por ID con consultas {@code IN (...)} de como
+     * mucho {@value #MAX_IDS_POR_CONSULTA} IDs.
+     * 
+     * @param ids IDs de los usuarios
+     * @return Usuarios encontrados, en el mismo orden que los IDs
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public List<Usuario> findByIds(long[] ids) throws DAOException {
+        Map<Long, Usuario> porId = new HashMap<>(ids.length * 2);
+        
+        for (int desde = 0; desde < ids.length; desde += MAX_IDS_POR_CONSULTA) {
+            int hasta = Math.min(ids.length, desde + MAX_IDS_POR_CONSULTA);
+            Object[] params = new Object[hasta - desde];
+            StringBuilder sql = new StringBuilder("SELECT * FROM usuarios WHERE id IN (");
+            for (int i = desde; i < hasta; i++) {
+                sql.append(i > desde ? ", ?" : "?");
+                params[i - desde] = ids[i];
+            }
+            sql.append(")");
+            
+            try (ResultSet rs = dbAgent.executeQuery(sql.toString(), params)) {
+                while (rs.next()) {
+                    Usuario usuario = mapResultSetToUsuario(rs);
+                    porId.put(usuario.getId(), usuario);
+                }
+            } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+                logger.error("Error al recuperar usuarios por IDs", e);
+                throw new DAOException("No se pudieron recuperar los usuarios por IDs", e);
+            }
+        }
+        
+        List<Usuario> usuarios = new ArrayList<>(porId.size());
+        for (long id : ids) {
+            Usuario usuario = porId.get(id);
+            if (usuario != null) {
+                usuarios.add(usuario);
+            }
+        }
+        return usuarios;
+    }
+    
+    /**
+     * Recorre todos los usuarios por bloques ordenados por ID, de modo que
+     * nunca hay más de un bloque en memoria.
+     * 
+     * @param tamanoBloque Número de usuarios leídos por consulta
+     * @param consumidor Función que recibe cada usuario
+     * @return Número de usuarios recorridos
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long recorrer(int tamanoBloque, Consumer<Usuario> consumidor) throws DAOException {
+        String sql = "SELECT * FROM usuarios WHERE id > ? ORDER BY id LIMIT ?";
+        long ultimoId = 0;
+        long total = 0;
+        int leidos;
+        
+        do {
+            leidos = 0;
+            try (ResultSet rs = dbAgent.executeQuery(sql, ultimoId, tamanoBloque)) {
+                while (rs.next()) {
+                    Usuario usuario = mapResultSetToUsuario(rs);
+                    consumidor.accept(usuario);
+                    ultimoId = usuario.getId();
+                    leidos++;
+                }
+            } catch (SQLException | DatabaseConnectionException | NotNullValueAllowedException e) {
+                logger.error("Error al recorrer los usuarios desde el ID: {}", ultimoId, e);
+                throw new DAOException("No se pudieron recorrer los usuarios", e);
+            }
+            total += leidos;
+        } while (leidos == tamanoBloque);
+        
+        return total;
+    }
+    
+    /**
+     * Recorre por bloques ordenados por ID el estado de préstamo de todos los
+     * usuarios: si están activos, cuántos préstamos tienen en curso y cuántas
+     * multas sin resolver. Cada bloque se resuelve con una sola consulta.
+     *
+     * @param tamanoBloque Número de usuarios leídos por consulta
+     * @param consumidor Función que recibe el estado de cada usuario
+     * @return Número de usuarios recorridos
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long recorrerElegibilidad(int tamanoBloque, ConsumidorElegibilidad consumidor) throws DAOException {
+        String sql = "SELECT u.id, u.estado, "
+                + "(SELECT COUNT(*) FROM prestamos p WHERE p.usuario_id = u.id AND p.estado IN (?, ?)) AS prestamos_activos, "
+                + "(SELECT COUNT(*) FROM multas m WHERE m.usuario_id = u.id AND m.estado = ?) AS multas_activas "
+                + "FROM usuarios u WHERE u.id > ? ORDER BY u.id LIMIT ?";
+        long ultimoId = 0;
+        long total = 0;
+        int leidos;
+        
+        do {
+            leidos = 0;
+            try (ResultSet rs = dbAgent.executeQuery(sql, "ACTIVO", "RENOVADO", "ACTIVA", ultimoId, tamanoBloque)) {
+                while (rs.next()) {
+                    ultimoId = rs.getLong("id");
+                    consumidor.aceptar(ultimoId, EstadoUsuario.ACTIVO.name().equals(rs.getString("estado")),
+                            rs.getInt("prestamos_activos"), rs.getInt("multas_activas"));
+                    leidos++;
+                }
+            } catch (SQLException | DatabaseConnectionException e) {
+                logger.error("Error al recorrer la elegibilidad de los usuarios desde el ID: {}", ultimoId, e);
+                throw new DAOException("No se pudo recorrer la elegibilidad de los usuarios", e);
+            }
+            total += leidos;
+        } while (leidos == tamanoBloque);
+        
+        return total;
+    }
+    
+    /**
+     * Función que recibe el estado de préstamo de un usuario durante
+     * {@link UsuarioDAO#recorrerElegibilidad}.
+     */
+    @FunctionalInterface
+    public interface ConsumidorElegibilidad {
+        
+        /**
+         * Recibe el estado de un usuario.
+         *
+         * @param usuarioId ID del usuario
+         * @param activo true si el usuario está en estado ACTIVO
+         * @param prestamosActivos Préstamos activos o renovados
+         * @param multasActivas Multas sin resolver
+         */
+        void aceptar(long usuarioId, boolean activo, int prestamosActivos, int multasActivas);
+    }
+    
+    /**
+     * Registra un componente que debe recibir las escrituras de usuarios.
+     * 
+     * @param observador Observador a registrar
+     */
+    public static void registrarObservador(ObservadorDAO<Usuario, Long> observador) {
+        if (!observadores.contains(observador)) {
+            observadores.add(observador);
+        }
+    }
+    
+    /**
+     * Da de baja un componente registrado con {@link #registrarObservador}.
+     * 
+     * @param observador Observador a dar de baja
+     */
+    public static void eliminarObservador(ObservadorDAO<Usuario, Long> observador) {
+        observadores.remove(observador);
+    }
+    
+    /**
+     * Notifica a los observadores que un usuario se ha creado o actualizado.
+     * 
+     * @param usuario Usuario guardado
+     */
+    private void notificarGuardado(Usuario usuario) {
+        for (ObservadorDAO<Usuario, Long> observador : observadores) {
+            try {
+                observador.entidadGuardada(usuario);
+            } catch (RuntimeException e) {
+                logger.warn("Error al notificar el usuario guardado con ID: {}", usuario.getId(), e);
+            }
+        }
+    }
+    
+    /**
+     * Notifica a los observadores que un usuario se ha eliminado.
+     * 
+     * @param id ID del usuario eliminado
+     */
+    private void notificarEliminado(Long id) {
+        for (ObservadorDAO<Usuario, Long> observador : observadores) {
+            try {
+                observador.entidadEliminada(id);
+            } catch (RuntimeException e) {
+                logger.warn("Error al notificar el usuario eliminado con ID: {}", id, e);
+            }
+        }
+    }
+    
     /**
      * Convierte un ResultSet en un objeto Usuario.
      * 
@@ -0,0 +1,116 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * DAO con las fechas de devolución previstas de los préstamos en curso, con
+ * el que se reconstruye en memoria la planificación de avisos de vencimiento
+ * al arrancar la aplicación, y con la marca de los préstamos cuyo aviso de
+ * bloqueo ya se aplicó, para no repetirlo en el siguiente arranque.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class VencimientoDAO {
+
+    private static final LogHelper logger = LogHelper.getLogger(VencimientoDAO.class);
+
+    /** Estados de los préstamos que siguen sin devolver */
+    private static final EstadoPrestamo[] ESTADOS = { EstadoPrestamo.ACTIVO, EstadoPrestamo.RENOVADO };
+
+    private final Agent dbAgent;
+
+    /**
+     * Constructor que inicializa el agente de base de datos
+     *
+     * @throws DAOException Si hay un error al inicializar el agente
+     */
+    public VencimientoDAO() throws DAOException {
+        try {
+            this.dbAgent = Agent.getInstance("mysql");
+        } catch (DatabaseConnectionException e) {
+            logger.error("Error al inicializar VencimientoDAO", e);
+            throw new DAOException("No se pudo inicializar VencimientoDAO", e);
+        }
+    }
+
+    /**
+     * Recorre por bloques ordenados por ID los préstamos activos y renovados,
+     * un estado detrás de otro, de modo que cada consulta recorre el índice de
+     * estado en orden de ID sin ordenar filas.
+     *
+     * @param tamanoBloque Número de préstamos leídos por consulta
+     * @param consumidor Función que recibe cada préstamo
+     * @return Número de préstamos recorridos
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public long recorrerVencimientos(int tamanoBloque, ConsumidorVencimiento consumidor) throws DAOException {
+        String sql = "SELECT id, usuario_id, fecha_devolucion_prevista, bloqueo_aplicado FROM prestamos "
+                + "WHERE estado = ? AND id > ? ORDER BY id LIMIT ?";
+        long total = 0;
+
+        for (EstadoPrestamo estado : ESTADOS) {
+            long ultimoId = 0;
+            int leidos;
+            do {
+                leidos = 0;
+                try (ResultSet rs = dbAgent.executeQuery(sql, estado.name(), ultimoId, tamanoBloque)) {
+                    while (rs.next()) {
+                        ultimoId = rs.getLong("id");
+                        consumidor.aceptar(ultimoId, rs.getLong("usuario_id"),
+                                rs.getTimestamp("fecha_devolucion_prevista"), rs.getBoolean("bloqueo_aplicado"));
+                        leidos++;
+                    }
+                } catch (SQLException | DatabaseConnectionException e) {
+                    logger.error("Error al recorrer los vencimientos desde el préstamo: {}", ultimoId, e);
+                    throw new DAOException("No se pudieron recorrer los vencimientos de los préstamos", e);
+                }
+                total += leidos;
+            } while (leidos == tamanoBloque);
+        }
+        return total;
+    }
+
+    /**
+     * Marca que el aviso de bloqueo de un préstamo ya se aplicó, de modo que
+     * no vuelva a planificarse al arrancar aunque un administrador haya
+     * desbloqueado después al usuario.
+     *
+     * @param prestamoId ID del préstamo
+     * @throws DAOException Si ocurre un error en la operación
+     */
+    public void marcarBloqueoAplicado(long prestamoId) throws DAOException {
+        try {
+            dbAgent.executeUpdate("UPDATE prestamos SET bloqueo_aplicado = TRUE WHERE id = ?", prestamoId);
+        } catch (SQLException | DatabaseConnectionException e) {
+            logger.error("Error al marcar el bloqueo aplicado del préstamo: {}", prestamoId, e);
+            throw new DAOException("No se pudo marcar el bloqueo aplicado del préstamo", e);
+        }
+    }
+
+    /**
+     * Función que recibe un préstamo en curso durante
+     * {@link VencimientoDAO#recorrerVencimientos}.
+     */
+    @FunctionalInterface
+    public interface ConsumidorVencimiento {
+
+        /**
+         * Recibe un préstamo en curso.
+         *
+         * @param prestamoId ID del préstamo
+         * @param usuarioId ID del usuario
+         * @param fechaDevolucionPrevista Fecha y hora en que debe devolverse
+         * @param bloqueoAplicado true si el aviso de bloqueo del préstamo ya se aplicó
+         */
+        void aceptar(long prestamoId, long usuarioId, Date fechaDevolucionPrevista, boolean bloqueoAplicado);
+    }
+}
@@ -0,0 +1,204 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.List;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ObservadorDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Sugerencias de autocompletado para los campos de búsqueda de la interfaz:
+ * títulos y autores de libros y nombres completos de usuarios. Evita lanzar
+ * una consulta {@code LIKE} por cada tecla pulsada.
+ * <p>
+ * Los índices se construyen recorriendo las tablas por bloques y se mantienen
+ * al día como observadores de {@link LibroDAO} y {@link UsuarioDAO}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class AutocompletadoCatalogo {
+
+    private static final LogHelper logger = LogHelper.getLogger(AutocompletadoCatalogo.class);
+
+    /** Número de filas leídas por consulta durante la carga inicial */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    /** Instancia compartida por la aplicación */
+    private static AutocompletadoCatalogo instance;
+
+    private final IndiceAutocompletado titulos = new IndiceAutocompletado();
+    private final IndiceAutocompletado autores = new IndiceAutocompletado();
+    private final IndiceAutocompletado usuarios = new IndiceAutocompletado();
+
+    private final ObservadorDAO<Libro, Long> observadorLibros = new ObservadorDAO<Libro, Long>() {
+        @Override
+        public void entidadGuardada(Libro libro) {
+            agregarLibro(libro);
+        }
+
+        @Override
+        public void entidadEliminada(Long id) {
+            if (id != null) {
+                titulos.eliminar(id);
+                autores.eliminar(id);
+            }
+        }
+    };
+
+    private final ObservadorDAO<Usuario, Long> observadorUsuarios = new ObservadorDAO<Usuario, Long>() {
+        @Override
+        public void entidadGuardada(Usuario usuario) {
+            agregarUsuario(usuario);
+        }
+
+        @Override
+        public void entidadEliminada(Long id) {
+            if (id != null) {
+                usuarios.eliminar(id);
+            }
+        }
+    };
+
+    private volatile boolean cargado;
+
+    /**
+     * Obtiene la instancia compartida.
+     *
+     * @return Autocompletado del catálogo
+     */
+    public static synchronized AutocompletadoCatalogo getInstance() {
+        if (instance == null) {
+            instance = new AutocompletadoCatalogo();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye los índices recorriendo libros y usuarios y los registra como
+     * observadores de los DAOs. El registro se hace antes de recorrer las
+     * tablas para no perder escrituras concurrentes.
+     *
+     * @param libroDAO DAO con el que recorrer el catálogo
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     * @throws DAOException Si ocurre un error al leer las tablas
+     */
+    public void cargar(LibroDAO libroDAO, UsuarioDAO usuarioDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        LibroDAO.registrarObservador(observadorLibros);
+        UsuarioDAO.registrarObservador(observadorUsuarios);
+        libroDAO.recorrer(TAMANO_BLOQUE_CARGA, this::agregarLibro);
+        usuarioDAO.recorrer(TAMANO_BLOQUE_CARGA, this::agregarUsuario);
+        titulos.compactar();
+        autores.compactar();
+        usuarios.compactar();
+        cargado = true;
+        logger.info("Autocompletado cargado: {} títulos, {} autores, {} usuarios, {} KB en {} ms",
+                titulos.getNumeroEntradas(), autores.getNumeroEntradas(), usuarios.getNumeroEntradas(),
+                estimarMemoria() / 1024, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si los índices han terminado su carga inicial.
+     *
+     * @return true si están cargados
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Añade o actualiza el título y el autor de un libro.
+     *
+     * @param libro Libro a indexar
+     */
+    public void agregarLibro(Libro libro) {
+        if (libro == null || libro.getId() == null) {
+            return;
+        }
+        titulos.agregar(libro.getId(), libro.getTitulo());
+        autores.agregar(libro.getId(), libro.getAutor());
+    }
+
+    /**
+     * Añade o actualiza el nombre completo de un usuario.
+     *
+     * @param usuario Usuario a indexar
+     */
+    public void agregarUsuario(Usuario usuario) {
+        if (usuario == null || usuario.getId() == null) {
+            return;
+        }
+        usuarios.agregar(usuario.getId(), usuario.getNombre() + " " + usuario.getApellidos());
+    }
+
+    /**
+     * Obtiene los títulos más populares que empiezan por un prefijo.
+     *
+     * @param prefijo Texto escrito por el usuario
+     * @return Hasta {@link IndiceAutocompletado#MAX_SUGERENCIAS} títulos
+     */
+    public List<String> completarTitulo(String prefijo) {
+        return titulos.completar(prefijo, IndiceAutocompletado.MAX_SUGERENCIAS);
+    }
+
+    /**
+     * Obtiene los autores más populares que empiezan por un prefijo.
+     *
+     * @param prefijo Texto escrito por el usuario
+     * @return Hasta {@link IndiceAutocompletado#MAX_SUGERENCIAS} autores
+     */
+    public List<String> completarAutor(String prefijo) {
+        return autores.completar(prefijo, IndiceAutocompletado.MAX_SUGERENCIAS);
+    }
+
+    /**
+     * Obtiene los nombres completos de usuario que empiezan por un prefijo.
+     *
+     * @param prefijo Texto escrito por el usuario
+     * @return Hasta {@link IndiceAutocompletado#MAX_SUGERENCIAS} nombres
+     */
+    public List<String> completarUsuario(String prefijo) {
+        return usuarios.completar(prefijo, IndiceAutocompletado.MAX_SUGERENCIAS);
+    }
+
+    /**
+     * Obtiene el índice de títulos, por ejemplo para registrar selecciones.
+     *
+     * @return Índice de títulos
+     */
+    public IndiceAutocompletado getTitulos() {
+        return titulos;
+    }
+
+    /**
+     * Obtiene el índice de autores.
+     *
+     * @return Índice de autores
+     */
+    public IndiceAutocompletado getAutores() {
+        return autores;
+    }
+
+    /**
+     * Obtiene el índice de nombres de usuario.
+     *
+     * @return Índice de usuarios
+     */
+    public IndiceAutocompletado getUsuarios() {
+        return usuarios;
+    }
+
+    /**
+     * Estima la memoria ocupada por los tres índices.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        return titulos.estimarMemoria() + autores.estimarMemoria() + usuarios.estimarMemoria();
+    }
+}
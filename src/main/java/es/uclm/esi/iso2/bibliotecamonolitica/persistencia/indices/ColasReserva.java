@@ -0,0 +1,315 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Listas de espera en memoria de las reservas pendientes de cada libro. Al
+ * devolverse un ejemplar, la primera reserva de su libro se obtiene en O(1)
+ * sin consultar la base de datos ni recorrer la lista.
+ * <p>
+ * Cada libro tiene una cola por nivel de prioridad, y dentro de cada nivel las
+ * reservas se atienden por orden de llegada. Cada cola es un búfer circular de
+ * {@code long} con los IDs de reserva y de usuario, sin un objeto por reserva,
+ * que dobla su capacidad cuando se llena; así miles de reservas sobre unos
+ * pocos libros en semanas de exámenes ocupan unos pocos KB por libro. Una
+ * reserva cancelada deja un hueco en su posición, que se salta al llegar a la
+ * cabeza, de modo que cancelar también cuesta O(1).
+ * <p>
+ * Las operaciones sobre un mismo libro se sincronizan en su lista de espera;
+ * las de libros distintos no se esperan entre sí. Las colas solo reflejan el
+ * orden: quien asigna un ejemplar confirma en la base de datos que la reserva
+ * sigue pendiente antes de retirarla.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ColasReserva {
+
+    private static final LogHelper logger = LogHelper.getLogger(ColasReserva.class);
+
+    /** Número de reservas leídas por consulta durante la carga inicial */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    /** Número de niveles de prioridad; 0 es el más alto */
+    public static final int NIVELES_PRIORIDAD = 3;
+
+    /** Instancia compartida por la aplicación */
+    private static ColasReserva instance;
+
+    /** Lista de espera de cada libro con reservas, indexada por ID de libro */
+    private final ConcurrentHashMap<Long, ListaEspera> listas = new ConcurrentHashMap<>();
+
+    private final AtomicLong pendientes = new AtomicLong();
+
+    private volatile boolean cargado;
+
+    /**
+     * Obtiene la instancia compartida de las listas de espera.
+     *
+     * @return Listas de espera de las reservas
+     */
+    public static synchronized ColasReserva getInstance() {
+        if (instance == null) {
+            instance = new ColasReserva();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye las listas de espera recorriendo las reservas pendientes en
+     * orden de llegada. Las reservas creadas durante la carga se añaden sin
+     * repetirse, pero pueden quedar por delante de reservas más antiguas que
+     * aún no se habían leído.
+     *
+     * @param reservaDAO DAO con el que recorrer las reservas
+     * @throws DAOException Si ocurre un error al leer las reservas
+     */
+    public void cargar(ReservaDAO reservaDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        long reservas = reservaDAO.recorrerPendientes(TAMANO_BLOQUE_CARGA, this::anadir);
+        cargado = true;
+        logger.info("Listas de espera cargadas: {} reservas pendientes de {} libros, {} KB en {} ms",
+                reservas, listas.size(), estimarMemoria() / 1024, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si las listas de espera han terminado su carga inicial.
+     *
+     * @return true si están cargadas
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Añade una reserva al final de su nivel de prioridad en la lista de
+     * espera de su libro.
+     *
+     * @param reservaId ID de la reserva, mayor que 0
+     * @param libroId ID del libro reservado
+     * @param usuarioId ID del usuario
+     * @param prioridad Nivel de prioridad entre 0 y {@link #NIVELES_PRIORIDAD} - 1
+     * @return false si la reserva ya estaba en la lista
+     */
+    public boolean anadir(long reservaId, long libroId, long usuarioId, int prioridad) {
+        if (reservaId <= 0) {
+            throw new IllegalArgumentException("ID de reserva no válido: " + reservaId);
+        }
+        if (prioridad < 0 || prioridad >= NIVELES_PRIORIDAD) {
+            throw new IllegalArgumentException("Prioridad fuera de rango: " + prioridad);
+        }
+        boolean anadida = listas.computeIfAbsent(libroId, id -> new ListaEspera()).anadir(reservaId, usuarioId,
+                prioridad);
+        if (anadida) {
+            pendientes.incrementAndGet();
+        }
+        return anadida;
+    }
+
+    /**
+     * Obtiene la primera reserva de la lista de espera de un libro sin retirarla.
+     *
+     * @param libroId ID del libro
+     * @return Primera reserva, o null si el libro no tiene reservas pendientes
+     */
+    public Turno primera(long libroId) {
+        ListaEspera lista = listas.get(libroId);
+        return lista != null ? lista.primera() : null;
+    }
+
+    /**
+     * Retira una reserva asignada o cancelada de la lista de espera de su libro.
+     *
+     * @param libroId ID del libro
+     * @param reservaId ID de la reserva
+     * @return true si la reserva estaba en la lista
+     */
+    public boolean retirar(long libroId, long reservaId) {
+        ListaEspera lista = listas.get(libroId);
+        if (lista == null || !lista.retirar(reservaId)) {
+            return false;
+        }
+        pendientes.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Cuenta las reservas pendientes de un libro.
+     *
+     * @param libroId ID del libro
+     * @return Número de reservas en su lista de espera
+     */
+    public int contarPendientes(long libroId) {
+        ListaEspera lista = listas.get(libroId);
+        return lista != null ? lista.size() : 0;
+    }
+
+    /**
+     * Obtiene el número total de reservas pendientes.
+     *
+     * @return Reservas en todas las listas de espera
+     */
+    public long getNumeroReservas() {
+        return pendientes.get();
+    }
+
+    /**
+     * Estima la memoria ocupada por las listas de espera.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        long bytes = 0;
+        for (ListaEspera lista : listas.values()) {
+            bytes += lista.estimarMemoria();
+        }
+        return bytes;
+    }
+
+    /**
+     * Primera reserva de una lista de espera.
+     */
+    public static final class Turno {
+
+        private final long reservaId;
+        private final long usuarioId;
+
+        Turno(long reservaId, long usuarioId) {
+            this.reservaId = reservaId;
+            this.usuarioId = usuarioId;
+        }
+
+        public long getReservaId() {
+            return reservaId;
+        }
+
+        public long getUsuarioId() {
+            return usuarioId;
+        }
+    }
+
+    /**
+     * Lista de espera de un libro: un búfer circular por nivel de prioridad.
+     * Las posiciones se numeran con una secuencia creciente por nivel, de la
+     * que la máscara de la capacidad obtiene la celda; así la posición de cada
+     * reserva sigue siendo válida cuando el búfer crece.
+     */
+    private static final class ListaEspera {
+
+        private static final int CAPACIDAD_INICIAL = 8;
+
+        /** Bits de la secuencia en la posición guardada de cada reserva; el resto es el nivel */
+        private static final int BITS_SECUENCIA = 28;
+        private static final int MASCARA_SECUENCIA = (1 << BITS_SECUENCIA) - 1;
+
+        /** ID de reserva de una celda vacía o de una reserva retirada */
+        private static final long HUECO = 0;
+
+        private static final int AUSENTE = -1;
+
+        private final long[][] reservas = new long[NIVELES_PRIORIDAD][];
+        private final long[][] usuarios = new long[NIVELES_PRIORIDAD][];
+        /** Secuencia de la primera posición ocupada de cada nivel */
+        private final int[] cabezas = new int[NIVELES_PRIORIDAD];
+        /** Secuencia de la siguiente posición libre de cada nivel */
+        private final int[] finales = new int[NIVELES_PRIORIDAD];
+        /** Nivel y secuencia de cada reserva, indexados por ID de reserva */
+        private final MapaLongInt posiciones = new MapaLongInt();
+        private int tamano;
+
+        synchronized boolean anadir(long reservaId, long usuarioId, int nivel) {
+            if (posiciones.get(reservaId, AUSENTE) != AUSENTE) {
+                return false;
+            }
+            if (reservas[nivel] == null) {
+                reservas[nivel] = new long[CAPACIDAD_INICIAL];
+                usuarios[nivel] = new long[CAPACIDAD_INICIAL];
+            } else if (finales[nivel] - cabezas[nivel] == reservas[nivel].length) {
+                crecer(nivel);
+            }
+            int secuencia = finales[nivel]++;
+            int celda = secuencia & (reservas[nivel].length - 1);
+            reservas[nivel][celda] = reservaId;
+            usuarios[nivel][celda] = usuarioId;
+            posiciones.put(reservaId, nivel << BITS_SECUENCIA | (secuencia & MASCARA_SECUENCIA));
+            tamano++;
+            return true;
+        }
+
+        synchronized Turno primera() {
+            for (int nivel = 0; nivel < NIVELES_PRIORIDAD; nivel++) {
+                saltarHuecos(nivel);
+                if (cabezas[nivel] != finales[nivel]) {
+                    int celda = cabezas[nivel] & (reservas[nivel].length - 1);
+                    return new Turno(reservas[nivel][celda], usuarios[nivel][celda]);
+                }
+            }
+            return null;
+        }
+
+        synchronized boolean retirar(long reservaId) {
+            int posicion = posiciones.remove(reservaId, AUSENTE);
+            if (posicion == AUSENTE) {
+                return false;
+            }
+            int nivel = posicion >>> BITS_SECUENCIA;
+            reservas[nivel][posicion & (reservas[nivel].length - 1)] = HUECO;
+            tamano--;
+            saltarHuecos(nivel);
+            return true;
+        }
+
+        synchronized int size() {
+            return tamano;
+        }
+
+        synchronized long estimarMemoria() {
+            long bytes = posiciones.estimarMemoria();
+            for (long[] nivel : reservas) {
+                if (nivel != null) {
+                    bytes += 2L * Long.BYTES * nivel.length;
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * Avanza la cabeza de un nivel hasta la primera reserva que sigue en la lista.
+         */
+        private void saltarHuecos(int nivel) {
+            long[] celdas = reservas[nivel];
+            if (celdas == null) {
+                return;
+            }
+            int mascara = celdas.length - 1;
+            while (cabezas[nivel] != finales[nivel] && celdas[cabezas[nivel] & mascara] == HUECO) {
+                cabezas[nivel]++;
+            }
+        }
+
+        /**
+         * Dobla la capacidad de un nivel manteniendo cada reserva en la celda
+         * que corresponde a su secuencia.
+         */
+        private void crecer(int nivel) {
+            int capacidad = reservas[nivel].length * 2;
+            if (capacidad > 1 << BITS_SECUENCIA) {
+                throw new IllegalStateException("Lista de espera llena en el nivel " + nivel);
+            }
+            long[] nuevasReservas = new long[capacidad];
+            long[] nuevosUsuarios = new long[capacidad];
+            int mascaraAnterior = reservas[nivel].length - 1;
+            for (int secuencia = cabezas[nivel]; secuencia != finales[nivel]; secuencia++) {
+                nuevasReservas[secuencia & (capacidad - 1)] = reservas[nivel][secuencia & mascaraAnterior];
+                nuevosUsuarios[secuencia & (capacidad - 1)] = usuarios[nivel][secuencia & mascaraAnterior];
+            }
+            reservas[nivel] = nuevasReservas;
+            usuarios[nivel] = nuevosUsuarios;
+        }
+    }
+}
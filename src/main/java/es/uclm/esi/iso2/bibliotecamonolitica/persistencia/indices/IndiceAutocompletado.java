@@ -0,0 +1,527 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.NormalizadorTexto;
+
+/**
+ * Índice de autocompletado por prefijo sobre los valores de un campo de texto
+ * (títulos, autores, nombres de usuario...).
+ * <p>
+ * Cada valor distinto es una entrada con un peso de popularidad: el número de
+ * entidades que lo tienen más las veces que se ha elegido como sugerencia. Las
+ * entradas se guardan en arrays paralelos y un array de posiciones ordenado por
+ * la clave normalizada, de modo que los valores con un prefijo forman un rango
+ * contiguo que se localiza con dos búsquedas binarias.
+ * <p>
+ * Las entradas nuevas van a un mapa ordenado pequeño que se fusiona con el
+ * array cuando crece. Para los prefijos cortos, cuyo rango abarca miles de
+ * entradas, se guarda la lista de mejores resultados y se actualiza con cada
+ * escritura, así que ninguna consulta recorre rangos grandes más de una vez.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class IndiceAutocompletado {
+
+    /** Número máximo de sugerencias que se guardan por prefijo */
+    public static final int MAX_SUGERENCIAS = 10;
+
+    /** Tamaño de rango a partir del cual se guardan los mejores resultados del prefijo */
+    private static final int UMBRAL_RANGO = 512;
+
+    /**
+     * Número mínimo de entradas recientes que provoca la fusión con el array
+     * ordenado. El umbral crece con el array para que la carga inicial no
+     * fusione un array enorme cada pocas inserciones.
+     */
+    private static final int UMBRAL_FUSION = 4096;
+
+    private static final int SIN_ENTRADA = -1;
+
+    /** Texto original de cada entrada; null si la entrada está libre */
+    private String[] textos = new String[16];
+
+    /** Texto normalizado de cada entrada */
+    private String[] claves = new String[16];
+
+    /** Número de entidades con el valor de cada entrada */
+    private int[] ocurrencias = new int[16];
+
+    /** Número de veces que se ha elegido cada entrada */
+    private int[] selecciones = new int[16];
+
+    private int numEntradas;
+    private int entradasActivas;
+
+    /** Entradas liberadas que pueden reutilizarse tras la próxima fusión */
+    private final List<Integer> libres = new ArrayList<>();
+    private final List<Integer> pendientesLiberar = new ArrayList<>();
+
+    /** Entradas ordenadas por clave */
+    private int[] orden = new int[0];
+
+    /** Entradas creadas desde la última fusión, por clave */
+    private final TreeMap<String, Integer> recientes = new TreeMap<>();
+
+    /** Entrada asociada a cada entidad de origen */
+    private final MapaLongInt entradaPorOrigen = new MapaLongInt();
+
+    /** Mejores entradas de los prefijos con rangos grandes */
+    private final Map<String, int[]> mejoresPorPrefijo = new HashMap<>();
+    private int longitudMaximaPrefijoGuardado;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Asocia un valor a una entidad. Si la entidad ya tenía otro valor, se
+     * retira primero.
+     *
+     * @param idOrigen ID de la entidad
+     * @param texto Valor del campo
+     */
+    public void agregar(long idOrigen, String texto) {
+        String clave = NormalizadorTexto.normalizar(texto).trim();
+        lock.writeLock().lock();
+        try {
+            int anterior = entradaPorOrigen.get(idOrigen, SIN_ENTRADA);
+            if (anterior != SIN_ENTRADA && clave.equals(claves[anterior])) {
+                return;
+            }
+            retirar(idOrigen);
+            if (clave.isEmpty()) {
+                return;
+            }
+            int entrada = buscarEntrada(clave);
+            if (entrada == SIN_ENTRADA || textos[entrada] == null) {
+                entrada = crearEntrada(entrada, clave, texto.trim());
+            }
+            ocurrencias[entrada]++;
+            entradaPorOrigen.put(idOrigen, entrada);
+            promocionar(entrada);
+            if (recientes.size() >= Math.max(UMBRAL_FUSION, orden.length / 8)) {
+                fusionar();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retira el valor asociado a una entidad.
+     *
+     * @param idOrigen ID de la entidad
+     */
+    public void eliminar(long idOrigen) {
+        lock.writeLock().lock();
+        try {
+            retirar(idOrigen);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registra que el usuario ha elegido una sugerencia, lo que la hace subir
+     * en las siguientes consultas.
+     *
+     * @param texto Texto de la sugerencia elegida
+     */
+    public void registrarSeleccion(String texto) {
+        String clave = NormalizadorTexto.normalizar(texto).trim();
+        lock.writeLock().lock();
+        try {
+            int entrada = buscarEntrada(clave);
+            if (entrada != SIN_ENTRADA && textos[entrada] != null) {
+                selecciones[entrada]++;
+                promocionar(entrada);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene las sugerencias más populares que empiezan por un prefijo. El
+     * prefijo se normaliza igual que los valores, así que no distingue
+     * mayúsculas ni tildes.
+     *
+     * @param prefijo Texto escrito por el usuario
+     * @param limite Número máximo de sugerencias
+     * @return Textos sugeridos, del más al menos popular
+     */
+    public List<String> completar(String prefijo, int limite) {
+        String clave = NormalizadorTexto.normalizar(prefijo);
+        if (limite <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] mejores = mejoresPorPrefijo.get(clave);
+            if (mejores != null && limite <= MAX_SUGERENCIAS) {
+                return textosDe(mejores, limite);
+            }
+            Seleccion seleccion = seleccionarMejores(clave, Math.max(limite, MAX_SUGERENCIAS));
+            if (seleccion.examinadas < UMBRAL_RANGO || limite > MAX_SUGERENCIAS) {
+                return textosDe(seleccion.entradas, limite);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Prefijo con un rango grande: se calcula una vez y se guarda
+        lock.writeLock().lock();
+        try {
+            int[] mejores = mejoresPorPrefijo.get(clave);
+            if (mejores == null) {
+                mejores = seleccionarMejores(clave, MAX_SUGERENCIAS).entradas;
+                mejoresPorPrefijo.put(clave, mejores);
+                longitudMaximaPrefijoGuardado = Math.max(longitudMaximaPrefijoGuardado, clave.length());
+            }
+            return textosDe(mejores, limite);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el número de valores distintos del índice.
+     *
+     * @return Número de entradas
+     */
+    public int getNumeroEntradas() {
+        lock.readLock().lock();
+        try {
+            return entradasActivas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estima la memoria ocupada por el índice para una JVM de 64 bits con
+     * referencias comprimidas.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        lock.readLock().lock();
+        try {
+            // Arrays paralelos y de orden
+            long bytes = 4L * 16 + 4L * (textos.length * 4L + orden.length);
+            for (int i = 0; i < numEntradas; i++) {
+                if (textos[i] != null) {
+                    // Texto y clave: String + array de bytes
+                    bytes += 2L * (24 + 16) + textos[i].length() + claves[i].length();
+                }
+            }
+            bytes += entradaPorOrigen.estimarMemoria();
+            // Entradas del TreeMap con su Integer
+            bytes += recientes.size() * (40L + 16);
+            for (Map.Entry<String, int[]> mejores : mejoresPorPrefijo.entrySet()) {
+                bytes += 32 + 24 + 16 + mejores.getKey().length() + 16 + 4L * mejores.getValue().length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Funde las entradas recientes con el array ordenado y descarta las
+     * entradas sin ocurrencias ni selecciones.
+     */
+    public void compactar() {
+        lock.writeLock().lock();
+        try {
+            fusionar();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retira la asociación de una entidad. Debe llamarse con el cerrojo de
+     * escritura adquirido.
+     *
+     * @param idOrigen ID de la entidad
+     */
+    private void retirar(long idOrigen) {
+        int entrada = entradaPorOrigen.remove(idOrigen, SIN_ENTRADA);
+        if (entrada == SIN_ENTRADA) {
+            return;
+        }
+        ocurrencias[entrada]--;
+        if (ocurrencias[entrada] == 0) {
+            // La entrada deja de existir aunque tuviera selecciones
+            textos[entrada] = null;
+            selecciones[entrada] = 0;
+            entradasActivas--;
+            pendientesLiberar.add(entrada);
+        }
+        degradar(entrada);
+    }
+
+    /**
+     * Busca la entrada de una clave en el array ordenado y en las recientes.
+     *
+     * @param clave Clave normalizada
+     * @return Posición de la entrada (puede estar libre) o {@link #SIN_ENTRADA}
+     */
+    private int buscarEntrada(String clave) {
+        int posicion = limiteInferior(clave);
+        if (posicion < orden.length && claves[orden[posicion]].equals(clave)) {
+            return orden[posicion];
+        }
+        Integer reciente = recientes.get(clave);
+        return reciente != null ? reciente : SIN_ENTRADA;
+    }
+
+    /**
+     * Crea una entrada o reactiva una liberada que sigue en el array ordenado.
+     *
+     * @param liberada Entrada liberada con la misma clave o {@link #SIN_ENTRADA}
+     * @param clave Clave normalizada
+     * @param texto Texto original
+     * @return Posición de la entrada
+     */
+    private int crearEntrada(int liberada, String clave, String texto) {
+        int entrada = liberada;
+        if (entrada == SIN_ENTRADA) {
+            if (!libres.isEmpty()) {
+                entrada = libres.remove(libres.size() - 1);
+            } else {
+                if (numEntradas == textos.length) {
+                    int capacidad = textos.length * 2;
+                    textos = Arrays.copyOf(textos, capacidad);
+                    claves = Arrays.copyOf(claves, capacidad);
+                    ocurrencias = Arrays.copyOf(ocurrencias, capacidad);
+                    selecciones = Arrays.copyOf(selecciones, capacidad);
+                }
+                entrada = numEntradas++;
+            }
+            claves[entrada] = clave;
+            recientes.put(clave, entrada);
+        } else {
+            pendientesLiberar.remove(Integer.valueOf(entrada));
+        }
+        textos[entrada] = texto;
+        ocurrencias[entrada] = 0;
+        selecciones[entrada] = 0;
+        entradasActivas++;
+        return entrada;
+    }
+
+    /**
+     * Actualiza las listas guardadas de los prefijos de una entrada cuyo peso
+     * ha aumentado.
+     *
+     * @param entrada Entrada modificada
+     */
+    private void promocionar(int entrada) {
+        String clave = claves[entrada];
+        int longitud = Math.min(clave.length(), longitudMaximaPrefijoGuardado);
+        for (int i = 0; i <= longitud; i++) {
+            String prefijo = clave.substring(0, i);
+            int[] mejores = mejoresPorPrefijo.get(prefijo);
+            if (mejores != null) {
+                mejoresPorPrefijo.put(prefijo, insertar(mejores, entrada));
+            }
+        }
+    }
+
+    /**
+     * Invalida las listas guardadas que contienen una entrada cuyo peso ha
+     * disminuido, ya que otra entrada no guardada podría superarla.
+     *
+     * @param entrada Entrada modificada
+     */
+    private void degradar(int entrada) {
+        String clave = claves[entrada];
+        int longitud = Math.min(clave.length(), longitudMaximaPrefijoGuardado);
+        for (int i = 0; i <= longitud; i++) {
+            String prefijo = clave.substring(0, i);
+            int[] mejores = mejoresPorPrefijo.get(prefijo);
+            if (mejores != null && contiene(mejores, entrada)) {
+                mejoresPorPrefijo.remove(prefijo);
+            }
+        }
+    }
+
+    /**
+     * Inserta o recoloca una entrada en una lista de mejores resultados.
+     *
+     * @param mejores Lista ordenada por peso descendente
+     * @param entrada Entrada a insertar
+     * @return Nueva lista, con como mucho {@link #MAX_SUGERENCIAS} entradas
+     */
+    private int[] insertar(int[] mejores, int entrada) {
+        List<Integer> lista = new ArrayList<>(mejores.length + 1);
+        for (int actual : mejores) {
+            if (actual != entrada) {
+                lista.add(actual);
+            }
+        }
+        lista.add(entrada);
+        lista.sort((a, b) -> comparar(a, b));
+        int tamano = Math.min(lista.size(), MAX_SUGERENCIAS);
+        int[] resultado = new int[tamano];
+        for (int i = 0; i < tamano; i++) {
+            resultado[i] = lista.get(i);
+        }
+        return resultado;
+    }
+
+    /**
+     * Selecciona las entradas de mayor peso que empiezan por un prefijo, tanto
+     * del array ordenado como de las entradas recientes.
+     *
+     * @param prefijo Prefijo normalizado
+     * @param limite Número de entradas a seleccionar
+     * @return Entradas ordenadas por peso descendente y tamaño del rango examinado
+     */
+    private Seleccion seleccionarMejores(String prefijo, int limite) {
+        String fin = prefijo + Character.MAX_VALUE;
+        int desde = limiteInferior(prefijo);
+        int hasta = limiteInferior(fin);
+        int examinadas = hasta - desde;
+
+        // Montículo de mínimos: la cima es la peor de las seleccionadas
+        PriorityQueue<Integer> monticulo = new PriorityQueue<>(limite + 1, (a, b) -> comparar(b, a));
+        for (int i = desde; i < hasta; i++) {
+            ofrecer(monticulo, orden[i], limite);
+        }
+        for (Integer entrada : recientes.subMap(prefijo, fin).values()) {
+            ofrecer(monticulo, entrada, limite);
+            examinadas++;
+        }
+        int[] entradas = new int[monticulo.size()];
+        for (int i = entradas.length - 1; i >= 0; i--) {
+            entradas[i] = monticulo.poll();
+        }
+        return new Seleccion(entradas, examinadas);
+    }
+
+    private void ofrecer(PriorityQueue<Integer> monticulo, int entrada, int limite) {
+        if (textos[entrada] == null) {
+            return;
+        }
+        if (monticulo.size() < limite) {
+            monticulo.add(entrada);
+        } else if (comparar(entrada, monticulo.peek()) < 0) {
+            monticulo.poll();
+            monticulo.add(entrada);
+        }
+    }
+
+    /**
+     * Compara dos entradas: primero la de mayor peso, después la más corta y
+     * por último en orden alfabético.
+     */
+    private int comparar(int a, int b) {
+        int porPeso = Integer.compare(ocurrencias[b] + selecciones[b], ocurrencias[a] + selecciones[a]);
+        if (porPeso != 0) {
+            return porPeso;
+        }
+        int porLongitud = Integer.compare(claves[a].length(), claves[b].length());
+        return porLongitud != 0 ? porLongitud : claves[a].compareTo(claves[b]);
+    }
+
+    /**
+     * Obtiene la primera posición del array ordenado cuya clave no es menor
+     * que la dada.
+     *
+     * @param clave Clave normalizada
+     * @return Posición en el array ordenado
+     */
+    private int limiteInferior(String clave) {
+        int bajo = 0;
+        int alto = orden.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (claves[orden[medio]].compareTo(clave) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Funde las entradas recientes con el array ordenado. Debe llamarse con el
+     * cerrojo de escritura adquirido.
+     */
+    private void fusionar() {
+        int[] nuevo = new int[entradasActivas];
+        int n = 0;
+        int i = 0;
+        for (Integer reciente : recientes.values()) {
+            String clave = claves[reciente];
+            while (i < orden.length && claves[orden[i]].compareTo(clave) < 0) {
+                n = copiarSiActiva(nuevo, n, orden[i++]);
+            }
+            n = copiarSiActiva(nuevo, n, reciente);
+        }
+        while (i < orden.length) {
+            n = copiarSiActiva(nuevo, n, orden[i++]);
+        }
+        orden = n == nuevo.length ? nuevo : Arrays.copyOf(nuevo, n);
+        recientes.clear();
+
+        // Las entradas liberadas ya no están en el array y pueden reutilizarse
+        for (Integer entrada : pendientesLiberar) {
+            claves[entrada] = null;
+            libres.add(entrada);
+        }
+        pendientesLiberar.clear();
+    }
+
+    private int copiarSiActiva(int[] destino, int n, int entrada) {
+        if (textos[entrada] != null) {
+            destino[n++] = entrada;
+        }
+        return n;
+    }
+
+    private List<String> textosDe(int[] entradas, int limite) {
+        int tamano = Math.min(limite, entradas.length);
+        List<String> resultado = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            resultado.add(textos[entradas[i]]);
+        }
+        return resultado;
+    }
+
+    private static boolean contiene(int[] entradas, int entrada) {
+        for (int actual : entradas) {
+            if (actual == entrada) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resultado de seleccionar las mejores entradas de un prefijo
+     */
+    private static final class Seleccion {
+        final int[] entradas;
+        final int examinadas;
+
+        Seleccion(int[] entradas, int examinadas) {
+            this.entradas = entradas;
+            this.examinadas = examinadas;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Ejemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Índice en memoria de la disponibilidad de los libros: el conjunto comprimido
+ * ({@link MapaBits}) de los libros con algún ejemplar
+ * {@link EstadoEjemplar#DISPONIBLE} y el número de ejemplares disponibles de
+ * cada libro. Permite filtrar o anotar un resultado de búsqueda completo sin
+ * consultar la base de datos por cada libro.
+ * <p>
+ * Guarda el libro de cada ejemplar disponible, de modo que aplicar dos veces
+ * el mismo cambio de estado no descuadra los contadores. Se construye con los
+ * ejemplares disponibles de la base de datos y lo mantienen al día las
+ * operaciones de préstamo y devolución.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class IndiceDisponibilidad {
+
+    private static final LogHelper logger = LogHelper.getLogger(IndiceDisponibilidad.class);
+
+    /** Número de ejemplares leídos por consulta durante la carga inicial */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    /** Valor devuelto por {@link MapaLongInt} cuando falta una clave */
+    private static final int AUSENTE = -1;
+
+    /** Instancia compartida por la aplicación */
+    private static IndiceDisponibilidad instance;
+
+    /** Libros con al menos un ejemplar disponible */
+    private final MapaBits librosDisponibles = new MapaBits();
+
+    /** Número de ejemplares disponibles por ID de libro */
+    private final MapaLongInt disponiblesPorLibro = new MapaLongInt();
+
+    /** ID del libro de cada ejemplar disponible, indexado por ID de ejemplar */
+    private final MapaLongInt libroPorEjemplar = new MapaLongInt();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean cargado;
+
+    /**
+     * Obtiene la instancia compartida del índice.
+     *
+     * @return Índice de disponibilidad del catálogo
+     */
+    public static synchronized IndiceDisponibilidad getInstance() {
+        if (instance == null) {
+            instance = new IndiceDisponibilidad();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye el índice recorriendo los ejemplares disponibles del catálogo.
+     * Los préstamos y devoluciones que lleguen durante la carga se aplican
+     * sobre lo ya cargado y los ejemplares que aún no se han leído se ven ya
+     * con su estado final.
+     *
+     * @param libroDAO DAO con el que recorrer los ejemplares
+     * @throws DAOException Si ocurre un error al leer los ejemplares
+     */
+    public void cargar(LibroDAO libroDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        long ejemplares = libroDAO.recorrerEjemplaresDisponibles(TAMANO_BLOQUE_CARGA,
+                (idEjemplar, idLibro) -> actualizar(idEjemplar, idLibro, true));
+        cargado = true;
+        logger.info("Índice de disponibilidad cargado: {} ejemplares disponibles de {} libros, {} KB en {} ms",
+                ejemplares, getNumeroLibrosDisponibles(), estimarMemoria() / 1024,
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si el índice ha terminado su carga inicial y puede usarse.
+     *
+     * @return true si el índice está cargado
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Registra el estado actual de un ejemplar. Los ejemplares sin ID o sin
+     * libro se ignoran.
+     *
+     * @param ejemplar Ejemplar cuyo estado ha cambiado
+     */
+    public void actualizar(Ejemplar ejemplar) {
+        if (ejemplar == null || ejemplar.getId() == null || ejemplar.getLibro() == null
+                || ejemplar.getLibro().getId() == null) {
+            return;
+        }
+        actualizar(ejemplar.getId(), ejemplar.getLibro().getId(),
+                ejemplar.getEstado() == EstadoEjemplar.DISPONIBLE);
+    }
+
+    /**
+     * Registra si un ejemplar está disponible.
+     *
+     * @param idEjemplar ID del ejemplar
+     * @param idLibro ID del libro al que pertenece, entre 0 y {@link Integer#MAX_VALUE}
+     * @param disponible true si el ejemplar está disponible
+     */
+    public void actualizar(long idEjemplar, long idLibro, boolean disponible) {
+        if (idLibro < 0 || idLibro > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ID de libro fuera de rango: " + idLibro);
+        }
+        lock.writeLock().lock();
+        try {
+            int anterior = libroPorEjemplar.get(idEjemplar, AUSENTE);
+            if (disponible && anterior == AUSENTE) {
+                libroPorEjemplar.put(idEjemplar, (int) idLibro);
+                sumar(idLibro, 1);
+            } else if (!disponible && anterior != AUSENTE) {
+                libroPorEjemplar.remove(idEjemplar, AUSENTE);
+                sumar(anterior, -1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retira un ejemplar dado de baja o eliminado.
+     *
+     * @param idEjemplar ID del ejemplar
+     */
+    public void eliminarEjemplar(long idEjemplar) {
+        lock.writeLock().lock();
+        try {
+            int anterior = libroPorEjemplar.remove(idEjemplar, AUSENTE);
+            if (anterior != AUSENTE) {
+                sumar(anterior, -1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suma una cantidad a los ejemplares disponibles de un libro y lo añade o
+     * retira del conjunto de libros disponibles. Debe llamarse con el cerrojo
+     * de escritura adquirido.
+     *
+     * @param idLibro ID del libro
+     * @param cantidad Cantidad a sumar (1 o -1)
+     */
+    private void sumar(long idLibro, int cantidad) {
+        int total = disponiblesPorLibro.get(idLibro, 0) + cantidad;
+        if (total > 0) {
+            disponiblesPorLibro.put(idLibro, total);
+            librosDisponibles.agregar(idLibro);
+        } else {
+            disponiblesPorLibro.remove(idLibro, 0);
+            librosDisponibles.eliminar(idLibro);
+        }
+    }
+
+    /**
+     * Indica si un libro tiene algún ejemplar disponible.
+     *
+     * @param idLibro ID del libro
+     * @return true si hay al menos un ejemplar disponible
+     */
+    public boolean tieneDisponibles(long idLibro) {
+        lock.readLock().lock();
+        try {
+            return librosDisponibles.contiene(idLibro);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el número de ejemplares disponibles de un libro.
+     *
+     * @param idLibro ID del libro
+     * @return Ejemplares disponibles
+     */
+    public int contarDisponibles(long idLibro) {
+        lock.readLock().lock();
+        try {
+            return disponiblesPorLibro.get(idLibro, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene los ejemplares disponibles de varios libros con un solo acceso
+     * al índice, para anotar un resultado de búsqueda.
+     *
+     * @param idsLibros IDs de los libros
+     * @return Ejemplares disponibles de cada libro, en el mismo orden
+     */
+    public int[] contarDisponibles(long[] idsLibros) {
+        int[] disponibles = new int[idsLibros.length];
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < idsLibros.length; i++) {
+                disponibles[i] = disponiblesPorLibro.get(idsLibros[i], 0);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return disponibles;
+    }
+
+    /**
+     * Se queda con los libros que tienen algún ejemplar disponible,
+     * conservando el orden, por ejemplo el de relevancia.
+     *
+     * @param idsLibros IDs de los libros
+     * @return IDs de los libros con ejemplares disponibles
+     */
+    public long[] filtrarDisponibles(long[] idsLibros) {
+        long[] resultado = new long[idsLibros.length];
+        int tamano = 0;
+        lock.readLock().lock();
+        try {
+            for (long idLibro : idsLibros) {
+                if (librosDisponibles.contiene(idLibro)) {
+                    resultado[tamano++] = idLibro;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.copyOf(resultado, tamano);
+    }
+
+    /**
+     * Obtiene el número de libros con algún ejemplar disponible.
+     *
+     * @return Número de libros disponibles
+     */
+    public int getNumeroLibrosDisponibles() {
+        lock.readLock().lock();
+        try {
+            return librosDisponibles.cardinalidad();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estima la memoria ocupada por el índice.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        lock.readLock().lock();
+        try {
+            return librosDisponibles.estimarMemoria() + disponiblesPorLibro.estimarMemoria()
+                    + libroPorEjemplar.estimarMemoria();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.config.app.ConfigManager;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ObservadorDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Índice en memoria de lo que decide si un usuario puede recibir préstamos:
+ * sus préstamos activos, sus multas sin resolver y si está bloqueado, además
+ * de las renovaciones de cada préstamo activo. Convierte las comprobaciones
+ * de cada préstamo y renovación en lecturas de memoria.
+ * <p>
+ * El estado de cada usuario se guarda empaquetado en un {@code int} de un
+ * {@link MapaLongIntConcurrente}, y cada evento (préstamo, devolución,
+ * renovación, multa) lo modifica atómicamente. Los eventos sobre usuarios que
+ * no están en el índice se ignoran: quien lo consulta recurre entonces a la
+ * base de datos y registra el resultado con {@link #registrarUsuario}.
+ * <p>
+ * Una conciliación periódica vuelve a leer todos los usuarios y corrige las
+ * desviaciones, por ejemplo las escrituras hechas desde otra instancia de la
+ * aplicación. Los usuarios que reciben algún evento mientras se concilia no se
+ * sobrescriben en esa pasada, porque la fila leída podría no incluirlo.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class IndiceElegibilidad implements ObservadorDAO<Usuario, Long> {
+
+    private static final LogHelper logger = LogHelper.getLogger(IndiceElegibilidad.class);
+
+    /** Número de usuarios leídos por consulta durante la conciliación */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    private static final long CONCILIACION_MIN_POR_DEFECTO = 60;
+
+    /** Valor devuelto por los mapas cuando falta una clave */
+    private static final int AUSENTE = -1;
+
+    /** Bits de cada contador; los valores mayores se saturan */
+    private static final int BITS_CONTADOR = 12;
+    private static final int MAX_CONTADOR = (1 << BITS_CONTADOR) - 1;
+    private static final int DESPLAZAMIENTO_MULTAS = BITS_CONTADOR;
+    private static final int BLOQUEADO = 1 << (2 * BITS_CONTADOR);
+    /**
+     * Marcas de los usuarios modificados durante una conciliación; se alternan
+     * entre pasadas para distinguir las marcas de la pasada anterior
+     */
+    private static final int MODIFICADO_PAR = BLOQUEADO << 1;
+    private static final int MODIFICADO_IMPAR = BLOQUEADO << 2;
+    private static final int MODIFICADO = MODIFICADO_PAR | MODIFICADO_IMPAR;
+
+    /** Resultado de comprobar si un usuario puede recibir un préstamo */
+    public enum Resultado {
+        /** Puede recibir el préstamo */
+        APTO,
+        /** El usuario no está en el índice; hay que consultar la base de datos */
+        DESCONOCIDO,
+        /** El usuario no está activo */
+        BLOQUEADO,
+        /** El usuario tiene multas sin resolver */
+        MULTA_ACTIVA,
+        /** El usuario ha alcanzado el máximo de préstamos */
+        MAXIMO_PRESTAMOS
+    }
+
+    /** Instancia compartida por la aplicación */
+    private static IndiceElegibilidad instance;
+
+    /** Estado empaquetado de cada usuario, indexado por ID de usuario */
+    private final MapaLongIntConcurrente usuarios = new MapaLongIntConcurrente();
+
+    /** Renovaciones de cada préstamo activo, indexadas por ID de préstamo */
+    private final MapaLongIntConcurrente renovaciones = new MapaLongIntConcurrente();
+
+    private final AtomicLong conciliaciones = new AtomicLong();
+    private final AtomicLong correcciones = new AtomicLong();
+
+    /** Marca de la conciliación en curso, o 0 si no hay ninguna */
+    private volatile int marca;
+    private volatile boolean cargado;
+    private ScheduledExecutorService programador;
+
+    /**
+     * Obtiene la instancia compartida del índice.
+     *
+     * @return Índice de elegibilidad de los usuarios
+     */
+    public static synchronized IndiceElegibilidad getInstance() {
+        if (instance == null) {
+            instance = new IndiceElegibilidad();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye el índice leyendo el estado de todos los usuarios y lo
+     * registra como observador de {@link UsuarioDAO} para seguir sus cambios
+     * de estado. El registro se hace antes de recorrer la tabla para no perder
+     * escrituras concurrentes.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     * @throws DAOException Si ocurre un error al leer los usuarios
+     */
+    public void cargar(UsuarioDAO usuarioDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        UsuarioDAO.registrarObservador(this);
+        conciliar(usuarioDAO);
+        cargado = true;
+        logger.info("Índice de elegibilidad cargado: {} usuarios, {} KB en {} ms",
+                getNumeroUsuarios(), estimarMemoria() / 1024, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si el índice ha terminado su carga inicial.
+     *
+     * @return true si el índice está cargado
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Vuelve a leer el estado de todos los usuarios y corrige el de los que no
+     * coinciden. Las renovaciones guardadas se descartan y se vuelven a leer
+     * de la base de datos cuando se necesitan.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     * @return Número de usuarios cuyo estado se ha corregido o añadido
+     * @throws DAOException Si ocurre un error al leer los usuarios
+     */
+    public synchronized long conciliar(UsuarioDAO usuarioDAO) throws DAOException {
+        long[] corregidos = new long[1];
+        marca = (conciliaciones.get() & 1) == 0 ? MODIFICADO_PAR : MODIFICADO_IMPAR;
+        try {
+            renovaciones.vaciar();
+            usuarioDAO.recorrerElegibilidad(TAMANO_BLOQUE_CARGA, (usuarioId, activo, prestamos, multas) -> {
+                if (conciliarUsuario(usuarioId, empaquetar(!activo, prestamos, multas))) {
+                    corregidos[0]++;
+                }
+            });
+        } finally {
+            marca = 0;
+        }
+        conciliaciones.incrementAndGet();
+        correcciones.addAndGet(corregidos[0]);
+        if (corregidos[0] > 0) {
+            logger.info("Conciliación del índice de elegibilidad: {} usuarios corregidos", corregidos[0]);
+        }
+        return corregidos[0];
+    }
+
+    /**
+     * Sustituye el estado de un usuario por el leído de la base de datos,
+     * salvo que haya cambiado durante esta conciliación: entonces se conserva
+     * y se corrige en la siguiente pasada.
+     *
+     * @return true si el estado se ha corregido o añadido
+     */
+    private boolean conciliarUsuario(long usuarioId, int leido) {
+        if (usuarios.putSiAusente(usuarioId, leido, AUSENTE)) {
+            return true;
+        }
+        int marcaActual = marca;
+        boolean[] corregido = new boolean[1];
+        usuarios.actualizarSiPresente(usuarioId, actual -> {
+            if ((actual & marcaActual) != 0) {
+                // Retirar solo la marca de la pasada anterior
+                return actual & ~(MODIFICADO ^ marcaActual);
+            }
+            corregido[0] = (actual & ~MODIFICADO) != leido;
+            return leido;
+        }, AUSENTE);
+        return corregido[0];
+    }
+
+    /**
+     * Programa una conciliación periódica en un hilo en segundo plano, con
+     * el periodo de la propiedad {@code prestamo.elegibilidad.conciliacion_min}.
+     * Las llamadas posteriores no tienen efecto.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     */
+    public synchronized void programarConciliacion(UsuarioDAO usuarioDAO) {
+        if (programador != null) {
+            return;
+        }
+        long periodo = leerPeriodoConciliacion();
+        programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "conciliacion-elegibilidad");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                conciliar(usuarioDAO);
+            } catch (DAOException | RuntimeException e) {
+                logger.error("Error en la conciliación del índice de elegibilidad", e);
+            }
+        }, periodo, periodo, TimeUnit.MINUTES);
+    }
+
+    private static long leerPeriodoConciliacion() {
+        try {
+            Properties props = ConfigManager.getInstance().getDatabaseProperties();
+            long periodo = Long.parseLong(props.getProperty("prestamo.elegibilidad.conciliacion_min",
+                    String.valueOf(CONCILIACION_MIN_POR_DEFECTO)).trim());
+            return Math.max(1, periodo);
+        } catch (Exception e) {
+            logger.warn("No se pudo leer el periodo de conciliación, se usa el valor por defecto", e);
+            return CONCILIACION_MIN_POR_DEFECTO;
+        }
+    }
+
+    /**
+     * Comprueba si un usuario puede recibir un préstamo más.
+     *
+     * @param usuarioId ID del usuario
+     * @param maxPrestamos Máximo de préstamos activos por usuario
+     * @return Resultado de la comprobación
+     */
+    public Resultado comprobarPrestamo(long usuarioId, int maxPrestamos) {
+        int estado = usuarios.get(usuarioId, AUSENTE);
+        if (estado == AUSENTE) {
+            return Resultado.DESCONOCIDO;
+        }
+        if ((estado & BLOQUEADO) != 0) {
+            return Resultado.BLOQUEADO;
+        }
+        if (multas(estado) > 0) {
+            return Resultado.MULTA_ACTIVA;
+        }
+        if (prestamos(estado) >= maxPrestamos) {
+            return Resultado.MAXIMO_PRESTAMOS;
+        }
+        return Resultado.APTO;
+    }
+
+    /**
+     * Añade un usuario cuyo estado se acaba de leer de la base de datos. Si el
+     * usuario ya estaba en el índice no se modifica.
+     *
+     * @param usuarioId ID del usuario
+     * @param bloqueado true si el usuario no está activo
+     * @param prestamosActivos Préstamos activos
+     * @param multasActivas Multas sin resolver
+     */
+    public void registrarUsuario(long usuarioId, boolean bloqueado, int prestamosActivos, int multasActivas) {
+        usuarios.putSiAusente(usuarioId, empaquetar(bloqueado, prestamosActivos, multasActivas), AUSENTE);
+    }
+
+    /**
+     * Registra un préstamo nuevo de un usuario.
+     *
+     * @param usuarioId ID del usuario
+     */
+    public void prestamoRealizado(long usuarioId) {
+        usuarios.actualizarSiPresente(usuarioId, estado -> marcar(sumar(estado, 0, 1)), AUSENTE);
+    }
+
+    /**
+     * Registra la devolución de un préstamo y olvida sus renovaciones.
+     *
+     * @param usuarioId ID del usuario
+     * @param prestamoId ID del préstamo devuelto
+     */
+    public void prestamoDevuelto(long usuarioId, long prestamoId) {
+        renovaciones.remove(prestamoId, AUSENTE);
+        usuarios.actualizarSiPresente(usuarioId, estado -> marcar(sumar(estado, 0, -1)), AUSENTE);
+    }
+
+    /**
+     * Obtiene las renovaciones de un préstamo activo.
+     *
+     * @param prestamoId ID del préstamo
+     * @return Renovaciones, o -1 si no se conocen
+     */
+    public int getRenovaciones(long prestamoId) {
+        return renovaciones.get(prestamoId, AUSENTE);
+    }
+
+    /**
+     * Guarda las renovaciones de un préstamo activo, tras leerlas de la base
+     * de datos o tras renovarlo.
+     *
+     * @param prestamoId ID del préstamo
+     * @param numero Renovaciones del préstamo
+     */
+    public void registrarRenovaciones(long prestamoId, int numero) {
+        renovaciones.put(prestamoId, Math.max(0, numero));
+    }
+
+    /**
+     * Registra una multa nueva de un usuario.
+     *
+     * @param usuarioId ID del usuario
+     */
+    public void multaGenerada(long usuarioId) {
+        usuarios.actualizarSiPresente(usuarioId, estado -> marcar(sumar(estado, DESPLAZAMIENTO_MULTAS, 1)), AUSENTE);
+    }
+
+    /**
+     * Registra que una multa de un usuario se ha pagado o condonado.
+     *
+     * @param usuarioId ID del usuario
+     */
+    public void multaResuelta(long usuarioId) {
+        usuarios.actualizarSiPresente(usuarioId, estado -> marcar(sumar(estado, DESPLAZAMIENTO_MULTAS, -1)), AUSENTE);
+    }
+
+    /**
+     * Registra que un usuario ya no tiene multas sin resolver, por ejemplo
+     * porque la base de datos lo confirma tras pagarlas.
+     *
+     * @param usuarioId ID del usuario
+     */
+    public void multasResueltas(long usuarioId) {
+        usuarios.actualizarSiPresente(usuarioId,
+                estado -> marcar(sumar(estado, DESPLAZAMIENTO_MULTAS, -MAX_CONTADOR)), AUSENTE);
+    }
+
+    /**
+     * Registra si un usuario está bloqueado, es decir, si no está activo.
+     *
+     * @param usuarioId ID del usuario
+     * @param bloqueado true si el usuario no puede recibir préstamos
+     */
+    public void actualizarBloqueo(long usuarioId, boolean bloqueado) {
+        usuarios.actualizarSiPresente(usuarioId,
+                estado -> marcar(bloqueado ? estado | BLOQUEADO : estado & ~BLOQUEADO), AUSENTE);
+    }
+
+    @Override
+    public void entidadGuardada(Usuario usuario) {
+        if (usuario != null && usuario.getId() != null) {
+            actualizarBloqueo(usuario.getId(), usuario.getEstado() != EstadoUsuario.ACTIVO);
+        }
+    }
+
+    @Override
+    public void entidadEliminada(Long id) {
+        if (id != null) {
+            usuarios.remove(id, AUSENTE);
+        }
+    }
+
+    /**
+     * Obtiene los préstamos activos de un usuario.
+     *
+     * @param usuarioId ID del usuario
+     * @return Préstamos activos, o -1 si el usuario no está en el índice
+     */
+    public int getPrestamosActivos(long usuarioId) {
+        int estado = usuarios.get(usuarioId, AUSENTE);
+        return estado == AUSENTE ? AUSENTE : prestamos(estado);
+    }
+
+    /**
+     * Obtiene las multas sin resolver de un usuario.
+     *
+     * @param usuarioId ID del usuario
+     * @return Multas activas, o -1 si el usuario no está en el índice
+     */
+    public int getMultasActivas(long usuarioId) {
+        int estado = usuarios.get(usuarioId, AUSENTE);
+        return estado == AUSENTE ? AUSENTE : multas(estado);
+    }
+
+    /**
+     * Indica si un usuario está en el índice y bloqueado.
+     *
+     * @param usuarioId ID del usuario
+     * @return true si el usuario está bloqueado
+     */
+    public boolean isBloqueado(long usuarioId) {
+        int estado = usuarios.get(usuarioId, AUSENTE);
+        return estado != AUSENTE && (estado & BLOQUEADO) != 0;
+    }
+
+    /**
+     * Obtiene el número de usuarios del índice.
+     *
+     * @return Número de usuarios
+     */
+    public int getNumeroUsuarios() {
+        return usuarios.size();
+    }
+
+    /**
+     * Obtiene el número de conciliaciones completadas.
+     *
+     * @return Conciliaciones
+     */
+    public long getConciliaciones() {
+        return conciliaciones.get();
+    }
+
+    /**
+     * Obtiene el número total de usuarios corregidos o añadidos por las
+     * conciliaciones.
+     *
+     * @return Usuarios corregidos
+     */
+    public long getCorrecciones() {
+        return correcciones.get();
+    }
+
+    /**
+     * Estima la memoria ocupada por el índice.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        return usuarios.estimarMemoria() + renovaciones.estimarMemoria();
+    }
+
+    /**
+     * Marca un estado como modificado si hay una conciliación en curso.
+     */
+    private int marcar(int estado) {
+        return estado | marca;
+    }
+
+    private static int empaquetar(boolean bloqueado, int prestamos, int multas) {
+        return limitar(prestamos) | limitar(multas) << DESPLAZAMIENTO_MULTAS | (bloqueado ? BLOQUEADO : 0);
+    }
+
+    /**
+     * Suma una cantidad a uno de los contadores de un estado, sin salir del
+     * rango del contador.
+     */
+    private static int sumar(int estado, int desplazamiento, int cantidad) {
+        int valor = limitar(((estado >>> desplazamiento) & MAX_CONTADOR) + cantidad);
+        return (estado & ~(MAX_CONTADOR << desplazamiento)) | valor << desplazamiento;
+    }
+
+    private static int limitar(int valor) {
+        return Math.max(0, Math.min(MAX_CONTADOR, valor));
+    }
+
+    private static int prestamos(int estado) {
+        return estado & MAX_CONTADOR;
+    }
+
+    private static int multas(int estado) {
+        return (estado >>> DESPLAZAMIENTO_MULTAS) & MAX_CONTADOR;
+    }
+}
@@ -0,0 +1,368 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ObservadorDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.NormalizadorTexto;
+
+/**
+ * Índice de facetas del catálogo: para cada categoría, década de publicación y
+ * editorial guarda el conjunto comprimido ({@link MapaBits}) de IDs de los
+ * libros que la tienen. Los recuentos por faceta de un resultado de búsqueda
+ * se obtienen intersectando esos conjuntos con el de los IDs del resultado,
+ * sin lanzar un {@code GROUP BY} por faceta.
+ * <p>
+ * Se mantiene al día como observador de {@link LibroDAO}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class IndiceFacetas implements ObservadorDAO<Libro, Long> {
+
+    /**
+     * Facetas disponibles
+     */
+    public enum Faceta {
+        CATEGORIA,
+        DECADA,
+        EDITORIAL
+    }
+
+    private static final LogHelper logger = LogHelper.getLogger(IndiceFacetas.class);
+
+    /** Número de libros leídos por consulta durante la carga inicial */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    private static final int SIN_VALOR = -1;
+
+    /**
+     * Coste relativo de intersectar un bloque de un conjunto frente a consultar
+     * el valor de un libro del resultado
+     */
+    private static final int COSTE_BLOQUE = 64;
+
+    /** Instancia compartida por la aplicación */
+    private static IndiceFacetas instance;
+
+    private final Map<Faceta, ValoresFaceta> facetas = new EnumMap<>(Faceta.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean cargado;
+
+    /**
+     * Constructor que crea un índice vacío
+     */
+    public IndiceFacetas() {
+        for (Faceta faceta : Faceta.values()) {
+            facetas.put(faceta, new ValoresFaceta());
+        }
+    }
+
+    /**
+     * Obtiene la instancia compartida del índice.
+     *
+     * @return Índice de facetas del catálogo
+     */
+    public static synchronized IndiceFacetas getInstance() {
+        if (instance == null) {
+            instance = new IndiceFacetas();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye el índice recorriendo el catálogo completo y lo registra como
+     * observador de {@link LibroDAO}. El registro se hace antes de recorrer la
+     * tabla para no perder escrituras concurrentes.
+     *
+     * @param libroDAO DAO con el que recorrer el catálogo
+     * @throws DAOException Si ocurre un error al leer el catálogo
+     */
+    public void cargar(LibroDAO libroDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        LibroDAO.registrarObservador(this);
+        libroDAO.recorrer(TAMANO_BLOQUE_CARGA, this::indexar);
+        cargado = true;
+        logger.info("Índice de facetas cargado: {} KB en {} ms",
+                estimarMemoria() / 1024, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si el índice ha terminado su carga inicial y puede usarse.
+     *
+     * @return true si el índice está cargado
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Añade un libro al índice o, si ya estaba, sustituye sus valores.
+     *
+     * @param libro Libro a indexar
+     */
+    public void indexar(Libro libro) {
+        if (libro == null || libro.getId() == null) {
+            return;
+        }
+        String categoria = libro.getCategoria() != null && libro.getCategoria().getId() != null
+                ? String.valueOf(libro.getCategoria().getId()) : null;
+        String decada = libro.getAnioPublicacion() != null && libro.getAnioPublicacion() > 0
+                ? String.valueOf(libro.getAnioPublicacion() / 10 * 10) : null;
+        String editorial = libro.getEditorial() != null && !libro.getEditorial().trim().isEmpty()
+                ? libro.getEditorial().trim() : null;
+
+        lock.writeLock().lock();
+        try {
+            facetas.get(Faceta.CATEGORIA).asignar(libro.getId(), categoria, categoria);
+            facetas.get(Faceta.DECADA).asignar(libro.getId(), decada, decada);
+            facetas.get(Faceta.EDITORIAL).asignar(libro.getId(),
+                    editorial != null ? NormalizadorTexto.normalizar(editorial) : null, editorial);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un libro del índice.
+     *
+     * @param id ID del libro
+     */
+    public void eliminar(Long id) {
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (ValoresFaceta valores : facetas.values()) {
+                valores.asignar(id, null, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void entidadGuardada(Libro libro) {
+        indexar(libro);
+    }
+
+    @Override
+    public void entidadEliminada(Long id) {
+        eliminar(id);
+    }
+
+    /**
+     * Cuenta los libros de un resultado de búsqueda por cada valor de cada
+     * faceta. Los valores de categoría son los IDs de las categorías y los de
+     * década, el primer año de la década ("1990").
+     *
+     * @param libros Libros del resultado de búsqueda
+     * @param maxValores Número máximo de valores por faceta
+     * @return Recuentos de los valores con más libros de cada faceta, de mayor
+     *         a menor; no incluye los valores sin libros
+     */
+    public Map<Faceta, Map<String, Integer>> contar(Collection<Libro> libros, int maxValores) {
+        long[] ids = new long[libros.size()];
+        int n = 0;
+        for (Libro libro : libros) {
+            if (libro.getId() != null) {
+                ids[n++] = libro.getId();
+            }
+        }
+        return contar(n == ids.length ? ids : Arrays.copyOf(ids, n), maxValores);
+    }
+
+    /**
+     * Cuenta los libros de un resultado de búsqueda por cada valor de cada faceta.
+     *
+     * @param idsResultado IDs de los libros del resultado (mejor si están ordenados)
+     * @param maxValores Número máximo de valores por faceta
+     * @return Recuentos de los valores con más libros de cada faceta, de mayor
+     *         a menor; no incluye los valores sin libros
+     */
+    public Map<Faceta, Map<String, Integer>> contar(long[] idsResultado, int maxValores) {
+        Map<Faceta, Map<String, Integer>> recuentos = new EnumMap<>(Faceta.class);
+        MapaBits resultado = null;
+
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Faceta, ValoresFaceta> faceta : facetas.entrySet()) {
+                ValoresFaceta valores = faceta.getValue();
+                if (valores.convieneIntersectar(idsResultado.length)) {
+                    if (resultado == null) {
+                        resultado = crearConjunto(idsResultado);
+                    }
+                    recuentos.put(faceta.getKey(), valores.contarIntersectando(resultado, maxValores));
+                } else {
+                    recuentos.put(faceta.getKey(), valores.contarRecorriendo(idsResultado, maxValores));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return recuentos;
+    }
+
+    /**
+     * Crea el conjunto comprimido de un resultado, ordenando los IDs solo si
+     * no lo están ya (los índices de búsqueda los devuelven ordenados).
+     *
+     * @param ids IDs del resultado
+     * @return Conjunto con los IDs
+     */
+    private static MapaBits crearConjunto(long[] ids) {
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i - 1] > ids[i]) {
+                long[] ordenados = ids.clone();
+                Arrays.sort(ordenados);
+                return MapaBits.desde(ordenados);
+            }
+        }
+        return MapaBits.desde(ids);
+    }
+
+    /**
+     * Estima la memoria ocupada por el índice.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (ValoresFaceta valores : facetas.values()) {
+                bytes += valores.estimarMemoria();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Valores de una faceta con el conjunto de libros de cada uno y, por libro,
+     * la posición de su valor
+     */
+    private static final class ValoresFaceta {
+        /** Posición de cada valor por su clave normalizada */
+        private final Map<String, Integer> posiciones = new HashMap<>();
+        private final List<String> etiquetas = new ArrayList<>();
+        private final List<MapaBits> libros = new ArrayList<>();
+        /** Posición del valor de cada libro más uno, indexado por ID; 0 si no tiene */
+        private int[] valorPorLibro = new int[1024];
+
+        void asignar(long idLibro, String clave, String etiqueta) {
+            if (idLibro < 0 || idLibro >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("ID de libro fuera de rango: " + idLibro);
+            }
+            int id = (int) idLibro;
+            int anterior = id < valorPorLibro.length ? valorPorLibro[id] - 1 : SIN_VALOR;
+            int nuevo = SIN_VALOR;
+            if (clave != null) {
+                Integer posicion = posiciones.get(clave);
+                if (posicion == null) {
+                    posicion = etiquetas.size();
+                    posiciones.put(clave, posicion);
+                    etiquetas.add(etiqueta);
+                    libros.add(new MapaBits());
+                }
+                nuevo = posicion;
+            }
+            if (anterior == nuevo) {
+                return;
+            }
+            if (anterior != SIN_VALOR) {
+                libros.get(anterior).eliminar(id);
+            }
+            if (id >= valorPorLibro.length) {
+                valorPorLibro = Arrays.copyOf(valorPorLibro,
+                        (int) Math.min(Integer.MAX_VALUE - 8L, Math.max(id + 1L, valorPorLibro.length * 2L)));
+            }
+            valorPorLibro[id] = nuevo + 1;
+            if (nuevo != SIN_VALOR) {
+                libros.get(nuevo).agregar(id);
+            }
+        }
+
+        /**
+         * Indica si para un resultado de cierto tamaño sale más barato
+         * intersectar el conjunto de cada valor con el del resultado que
+         * recorrer los IDs del resultado y consultar el valor de cada libro.
+         * Compensa con resultados grandes y facetas con pocos valores, como las
+         * categorías o las décadas.
+         */
+        boolean convieneIntersectar(int tamanoResultado) {
+            long bloquesResultado = Math.min(tamanoResultado, (valorPorLibro.length >>> 16) + 1);
+            return (long) libros.size() * bloquesResultado * COSTE_BLOQUE < tamanoResultado;
+        }
+
+        Map<String, Integer> contarIntersectando(MapaBits resultado, int maxValores) {
+            int[] totales = new int[libros.size()];
+            for (int i = 0; i < totales.length; i++) {
+                totales[i] = libros.get(i).cardinalidadInterseccion(resultado);
+            }
+            return seleccionar(totales, maxValores);
+        }
+
+        Map<String, Integer> contarRecorriendo(long[] ids, int maxValores) {
+            int[] totales = new int[libros.size()];
+            for (long id : ids) {
+                if (id >= 0 && id < valorPorLibro.length && valorPorLibro[(int) id] > 0) {
+                    totales[valorPorLibro[(int) id] - 1]++;
+                }
+            }
+            return seleccionar(totales, maxValores);
+        }
+
+        /**
+         * Selecciona los valores con más libros mediante un montículo acotado,
+         * sin ordenar todos los valores de la faceta.
+         */
+        private Map<String, Integer> seleccionar(int[] totales, int maxValores) {
+            PriorityQueue<int[]> mejores = new PriorityQueue<>(Math.min(maxValores, 1024) + 1,
+                    (a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(b[0], a[0]));
+            for (int i = 0; i < totales.length; i++) {
+                if (totales[i] > 0 && (mejores.size() < maxValores || totales[i] > mejores.peek()[1])) {
+                    mejores.add(new int[] {i, totales[i]});
+                    if (mejores.size() > maxValores) {
+                        mejores.poll();
+                    }
+                }
+            }
+            int[][] ordenados = new int[mejores.size()][];
+            for (int i = ordenados.length - 1; i >= 0; i--) {
+                ordenados[i] = mejores.poll();
+            }
+            Map<String, Integer> porEtiqueta = new LinkedHashMap<>();
+            for (int[] recuento : ordenados) {
+                porEtiqueta.put(etiquetas.get(recuento[0]), recuento[1]);
+            }
+            return porEtiqueta;
+        }
+
+        long estimarMemoria() {
+            long bytes = 16 + 4L * valorPorLibro.length;
+            for (int i = 0; i < libros.size(); i++) {
+                // Entrada del mapa de posiciones + etiqueta + conjunto
+                bytes += 32 + 16 + 40 + etiquetas.get(i).length() + libros.get(i).estimarMemoria();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ObservadorDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.NormalizadorTexto;
+
+/**
+ * Índice invertido en memoria sobre el título, el autor, la editorial y la
+ * descripción de los libros del catálogo. Sustituye a las búsquedas
+ * {@code LIKE '%texto%'}, que no pueden usar índices de MySQL y recorren la
+ * tabla completa.
+ * <p>
+ * Los textos se normalizan con {@link NormalizadorTexto} (minúsculas y sin
+ * tildes), de modo que "García" y "garcia" son el mismo término. Una consulta
+ * con varios términos devuelve los libros que contienen todos ellos.
+ * <p>
+ * Los resultados pueden ordenarse por relevancia con BM25F: cada término
+ * suma según su rareza en el catálogo y sus apariciones en cada campo,
+ * ponderadas por el peso del campo y normalizadas por la longitud del campo
+ * en ese libro. Solo se conservan los mejores resultados en un montículo
+ * acotado, sin ordenar el conjunto completo.
+ * <p>
+ * El índice se construye recorriendo la tabla de libros por bloques y se
+ * mantiene al día registrándose como observador de {@link LibroDAO}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class IndiceInvertido implements ObservadorDAO<Libro, Long> {
+
+    /**
+     * Campos indexados de un libro, con su peso en la relevancia
+     */
+    public enum Campo {
+        TITULO(3.0),
+        AUTOR(2.0),
+        EDITORIAL(0.5),
+        DESCRIPCION(1.0);
+
+        private final double peso;
+
+        Campo(double peso) {
+            this.peso = peso;
+        }
+
+        /**
+         * Obtiene el peso de una aparición en este campo frente a las demás.
+         *
+         * @return Peso del campo
+         */
+        public double getPeso() {
+            return peso;
+        }
+    }
+
+    private static final LogHelper logger = LogHelper.getLogger(IndiceInvertido.class);
+
+    /** Número de libros leídos por consulta durante la carga inicial */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    /** Instancia compartida por la aplicación */
+    private static IndiceInvertido instance;
+
+    private static final int NUM_CAMPOS = Campo.values().length;
+
+    /** Saturación de la frecuencia de un término en BM25 */
+    private static final double K1 = 1.2;
+
+    /** Grado de normalización por la longitud del campo en BM25 */
+    private static final double B = 0.75;
+
+    /** Longitud máxima de un campo que se guarda; las mayores se recortan */
+    private static final int MAX_LONGITUD = 0xFF;
+
+    /** Diccionario de términos por campo: término normalizado a ID de término */
+    private final List<Map<String, Integer>> diccionarios = new ArrayList<>(NUM_CAMPOS);
+
+    /** Listas de libros por ID de término */
+    private final List<ListaIds> postings = new ArrayList<>();
+
+    /** Términos de cada libro, para poder retirarlo al actualizarlo o eliminarlo */
+    private final Map<Long, int[]> terminosPorLibro = new HashMap<>();
+
+    /** Número de términos de cada campo de un libro, un byte por campo */
+    private final MapaLongInt longitudes = new MapaLongInt();
+
+    /** Suma por campo de las longitudes guardadas, para la longitud media */
+    private final long[] sumaLongitudes = new long[NUM_CAMPOS];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean cargado;
+
+    /**
+     * Constructor que crea un índice vacío
+     */
+    public IndiceInvertido() {
+        for (int i = 0; i < NUM_CAMPOS; i++) {
+            diccionarios.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Obtiene la instancia compartida del índice.
+     *
+     * @return Índice del catálogo
+     */
+    public static synchronized IndiceInvertido getInstance() {
+        if (instance == null) {
+            instance = new IndiceInvertido();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye el índice recorriendo el catálogo completo y lo registra como
+     * observador de {@link LibroDAO} para mantenerlo actualizado. El registro se
+     * hace antes de recorrer la tabla para no perder escrituras concurrentes.
+     *
+     * @param libroDAO DAO con el que recorrer el catálogo
+     * @throws DAOException Si ocurre un error al leer el catálogo
+     */
+    public void cargar(LibroDAO libroDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        LibroDAO.registrarObservador(this);
+        libroDAO.recorrer(TAMANO_BLOQUE_CARGA, this::indexar);
+        cargado = true;
+        logger.info("Índice invertido cargado: {} libros, {} términos, {} KB en {} ms",
+                getNumeroLibros(), getNumeroTerminos(), estimarMemoria() / 1024,
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si el índice ha terminado su carga inicial y puede usarse.
+     *
+     * @return true si el índice está cargado
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Añade un libro al índice o, si ya estaba, sustituye sus términos.
+     *
+     * @param libro Libro a indexar
+     */
+    public void indexar(Libro libro) {
+        if (libro == null || libro.getId() == null) {
+            return;
+        }
+        long id = libro.getId();
+        String[] textos = {libro.getTitulo(), libro.getAutor(), libro.getEditorial(), libro.getDescripcion()};
+
+        lock.writeLock().lock();
+        try {
+            retirar(id);
+            Map<Integer, Integer> frecuencias = new LinkedHashMap<>();
+            int longitudesLibro = 0;
+            for (int campo = 0; campo < NUM_CAMPOS; campo++) {
+                Map<String, Integer> diccionario = diccionarios.get(campo);
+                List<String> terminos = NormalizadorTexto.tokenizar(textos[campo]);
+                for (String termino : terminos) {
+                    Integer idTermino = diccionario.get(termino);
+                    if (idTermino == null) {
+                        idTermino = postings.size();
+                        postings.add(new ListaIds());
+                        diccionario.put(termino, idTermino);
+                    }
+                    frecuencias.merge(idTermino, 1, Integer::sum);
+                }
+                int longitud = Math.min(terminos.size(), MAX_LONGITUD);
+                longitudesLibro |= longitud << (8 * campo);
+                sumaLongitudes[campo] += longitud;
+            }
+            int[] idsTerminos = new int[frecuencias.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> frecuencia : frecuencias.entrySet()) {
+                postings.get(frecuencia.getKey()).agregar(id, frecuencia.getValue());
+                idsTerminos[i++] = frecuencia.getKey();
+            }
+            terminosPorLibro.put(id, idsTerminos);
+            longitudes.put(id, longitudesLibro);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un libro del índice.
+     *
+     * @param id ID del libro
+     */
+    public void eliminar(Long id) {
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            retirar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retira un libro de todas sus listas. Debe llamarse con el cerrojo de
+     * escritura adquirido.
+     *
+     * @param id ID del libro
+     */
+    private void retirar(long id) {
+        int[] anteriores = terminosPorLibro.remove(id);
+        if (anteriores != null) {
+            for (int idTermino : anteriores) {
+                postings.get(idTermino).eliminar(id);
+            }
+            int longitudesLibro = longitudes.remove(id, 0);
+            for (int campo = 0; campo < NUM_CAMPOS; campo++) {
+                sumaLongitudes[campo] -= longitud(longitudesLibro, campo);
+            }
+        }
+    }
+
+    @Override
+    public void entidadGuardada(Libro libro) {
+        indexar(libro);
+    }
+
+    @Override
+    public void entidadEliminada(Long id) {
+        eliminar(id);
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta en
+     * cualquiera de los campos indexados.
+     *
+     * @param consulta Texto de la consulta
+     * @return IDs de los libros encontrados, en orden ascendente
+     */
+    public long[] buscar(String consulta) {
+        return buscar(Campo.values(), consulta);
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta en el
+     * campo indicado.
+     *
+     * @param campo Campo en el que buscar
+     * @param consulta Texto de la consulta
+     * @return IDs de los libros encontrados, en orden ascendente
+     */
+    public long[] buscar(Campo campo, String consulta) {
+        return buscar(new Campo[] {campo}, consulta);
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta en alguno
+     * de los campos indicados.
+     *
+     * @param campos Campos en los que buscar
+     * @param consulta Texto de la consulta
+     * @return IDs de los libros encontrados, en orden ascendente
+     */
+    private long[] buscar(Campo[] campos, String consulta) {
+        Set<String> terminos = new LinkedHashSet<>(NormalizadorTexto.tokenizar(consulta));
+        if (terminos.isEmpty()) {
+            return new long[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            List<ListaIds> porTermino = new ArrayList<>(terminos.size());
+            for (String termino : terminos) {
+                ListaIds ids = ListaIds.union(listasDeTermino(campos, termino, new ListaIds[campos.length]));
+                if (ids.tamano() == 0) {
+                    return new long[0];
+                }
+                porTermino.add(ids);
+            }
+            return ListaIds.interseccion(porTermino);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta en
+     * cualquiera de los campos indexados, ordenados por relevancia.
+     *
+     * @param consulta Texto de la consulta
+     * @param limite Número máximo de resultados, o 0 para no limitar
+     * @return IDs de los libros más relevantes, de mayor a menor relevancia
+     */
+    public long[] buscarRelevantes(String consulta, int limite) {
+        return buscarRelevantes(Campo.values(), consulta, limite);
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta en el
+     * campo indicado, ordenados por relevancia.
+     *
+     * @param campo Campo en el que buscar
+     * @param consulta Texto de la consulta
+     * @param limite Número máximo de resultados, o 0 para no limitar
+     * @return IDs de los libros más relevantes, de mayor a menor relevancia
+     */
+    public long[] buscarRelevantes(Campo campo, String consulta, int limite) {
+        return buscarRelevantes(new Campo[] {campo}, consulta, limite);
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta en alguno
+     * de los campos indicados y selecciona los más relevantes según BM25F. A
+     * igual relevancia va primero el libro con menor ID.
+     *
+     * @param campos Campos en los que buscar
+     * @param consulta Texto de la consulta
+     * @param limite Número máximo de resultados, o 0 para no limitar
+     * @return IDs de los libros más relevantes, de mayor a menor relevancia
+     */
+    private long[] buscarRelevantes(Campo[] campos, String consulta, int limite) {
+        Set<String> terminos = new LinkedHashSet<>(NormalizadorTexto.tokenizar(consulta));
+        if (terminos.isEmpty()) {
+            return new long[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            double numLibros = terminosPorLibro.size();
+            ListaIds[][] listas = new ListaIds[terminos.size()][];
+            double[] idf = new double[terminos.size()];
+            List<ListaIds> porTermino = new ArrayList<>(terminos.size());
+            int t = 0;
+            for (String termino : terminos) {
+                listas[t] = new ListaIds[campos.length];
+                ListaIds ids = ListaIds.union(listasDeTermino(campos, termino, listas[t]));
+                if (ids.tamano() == 0) {
+                    return new long[0];
+                }
+                porTermino.add(ids);
+                idf[t++] = Math.log(1 + (numLibros - ids.tamano() + 0.5) / (ids.tamano() + 0.5));
+            }
+            long[] candidatos = ListaIds.interseccion(porTermino);
+
+            double[] inversaLongitudMedia = new double[campos.length];
+            for (int c = 0; c < campos.length; c++) {
+                long suma = sumaLongitudes[campos[c].ordinal()];
+                inversaLongitudMedia[c] = suma > 0 ? numLibros / suma : 0;
+            }
+            SeleccionMejores seleccion = new SeleccionMejores(
+                    limite > 0 ? Math.min(limite, candidatos.length) : candidatos.length);
+            // Los candidatos están ordenados, así que cada lista se recorre una sola vez
+            int[][] cursores = new int[listas.length][campos.length];
+            for (long id : candidatos) {
+                int longitudesLibro = longitudes.get(id, 0);
+                double puntuacion = 0;
+                for (t = 0; t < listas.length; t++) {
+                    double frecuencia = 0;
+                    for (int c = 0; c < campos.length; c++) {
+                        ListaIds lista = listas[t][c];
+                        if (lista == null) {
+                            continue;
+                        }
+                        int posicion = lista.buscar(id, cursores[t][c]);
+                        if (posicion < 0) {
+                            cursores[t][c] = -posicion - 1;
+                            continue;
+                        }
+                        cursores[t][c] = posicion + 1;
+                        double normalizacion = 1 - B
+                                + B * longitud(longitudesLibro, campos[c].ordinal()) * inversaLongitudMedia[c];
+                        frecuencia += campos[c].getPeso() * lista.frecuencia(posicion) / normalizacion;
+                    }
+                    puntuacion += idf[t] * frecuencia * (K1 + 1) / (K1 + frecuencia);
+                }
+                seleccion.ofrecer(id, puntuacion);
+            }
+            return seleccion.ordenados();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene las listas de libros de un término en cada campo. Debe llamarse
+     * con el cerrojo de lectura adquirido.
+     *
+     * @param campos Campos en los que buscar
+     * @param termino Término normalizado
+     * @param porCampo Array que recibe la lista de cada campo, o null si el
+     *        término no aparece en él
+     * @return Listas no nulas encontradas
+     */
+    private List<ListaIds> listasDeTermino(Campo[] campos, String termino, ListaIds[] porCampo) {
+        List<ListaIds> encontradas = new ArrayList<>(campos.length);
+        for (int c = 0; c < campos.length; c++) {
+            Integer idTermino = diccionarios.get(campos[c].ordinal()).get(termino);
+            if (idTermino != null) {
+                porCampo[c] = postings.get(idTermino);
+                encontradas.add(porCampo[c]);
+            }
+        }
+        return encontradas;
+    }
+
+    /**
+     * Extrae la longitud de un campo de las longitudes empaquetadas de un libro.
+     *
+     * @param longitudesLibro Longitudes de todos los campos, un byte por campo
+     * @param campo Ordinal del campo
+     * @return Número de términos del campo
+     */
+    private static int longitud(int longitudesLibro, int campo) {
+        return (longitudesLibro >>> (8 * campo)) & MAX_LONGITUD;
+    }
+
+    /**
+     * Obtiene el número de libros indexados.
+     *
+     * @return Número de libros
+     */
+    public int getNumeroLibros() {
+        lock.readLock().lock();
+        try {
+            return terminosPorLibro.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el número de términos distintos del índice, sumando todos los campos.
+     *
+     * @return Número de términos
+     */
+    public int getNumeroTerminos() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estima la memoria ocupada por el índice: diccionarios, listas de libros
+     * y términos por libro. Es una aproximación para una JVM de 64 bits con
+     * referencias comprimidas.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Map<String, Integer> diccionario : diccionarios) {
+                for (String termino : diccionario.keySet()) {
+                    // Entrada del mapa + String + array de bytes + Integer
+                    bytes += 32 + 24 + 16 + termino.length() + 16;
+                }
+            }
+            for (ListaIds lista : postings) {
+                bytes += lista.estimarMemoria();
+            }
+            for (int[] terminos : terminosPorLibro.values()) {
+                // Entrada del mapa + Long + array de términos
+                bytes += 32 + 16 + 16 + 4L * terminos.length;
+            }
+            return bytes + longitudes.estimarMemoria();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selección de los libros con mayor puntuación sobre un montículo de
+     * mínimos de tamaño fijo, con arrays de tipos primitivos. La raíz es el
+     * peor de los seleccionados, así que cada candidato se descarta con una
+     * sola comparación salvo que mejore la selección.
+     */
+    private static final class SeleccionMejores {
+        private final long[] ids;
+        private final double[] puntuaciones;
+        private int tamano;
+
+        SeleccionMejores(int capacidad) {
+            ids = new long[capacidad];
+            puntuaciones = new double[capacidad];
+        }
+
+        /**
+         * Ofrece un candidato. Los candidatos deben llegar por ID ascendente,
+         * de modo que un empate con el peor seleccionado nunca lo sustituye.
+         */
+        void ofrecer(long id, double puntuacion) {
+            if (tamano < ids.length) {
+                int i = tamano++;
+                while (i > 0) {
+                    int padre = (i - 1) >>> 1;
+                    if (!peor(puntuacion, id, puntuaciones[padre], ids[padre])) {
+                        break;
+                    }
+                    ids[i] = ids[padre];
+                    puntuaciones[i] = puntuaciones[padre];
+                    i = padre;
+                }
+                ids[i] = id;
+                puntuaciones[i] = puntuacion;
+            } else if (tamano > 0 && puntuacion > puntuaciones[0]) {
+                hundir(id, puntuacion, tamano);
+            }
+        }
+
+        /**
+         * Vacía el montículo devolviendo los IDs de mejor a peor.
+         */
+        long[] ordenados() {
+            long[] resultado = new long[tamano];
+            for (int n = tamano; n > 0; n--) {
+                resultado[n - 1] = ids[0];
+                hundir(ids[n - 1], puntuaciones[n - 1], n - 1);
+            }
+            tamano = 0;
+            return resultado;
+        }
+
+        /**
+         * Coloca un elemento en la raíz de un montículo de n elementos y lo
+         * hunde hasta su posición.
+         */
+        private void hundir(long id, double puntuacion, int n) {
+            int i = 0;
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= n) {
+                    break;
+                }
+                if (hijo + 1 < n && peor(puntuaciones[hijo + 1], ids[hijo + 1], puntuaciones[hijo], ids[hijo])) {
+                    hijo++;
+                }
+                if (!peor(puntuaciones[hijo], ids[hijo], puntuacion, id)) {
+                    break;
+                }
+                ids[i] = ids[hijo];
+                puntuaciones[i] = puntuaciones[hijo];
+                i = hijo;
+            }
+            ids[i] = id;
+            puntuaciones[i] = puntuacion;
+        }
+
+        private static boolean peor(double puntuacion, long id, double otraPuntuacion, long otroId) {
+            return puntuacion < otraPuntuacion || (puntuacion == otraPuntuacion && id > otroId);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ObservadorDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.NormalizadorTexto;
+
+/**
+ * Índice de trigramas sobre el nombre completo de los usuarios para búsquedas
+ * aproximadas: tolera errores de escritura, tildes y apellidos en otro orden.
+ * <p>
+ * Cada palabra del nombre normalizado se rellena con dos espacios delante y uno
+ * detrás y se divide en trigramas ("ana" da "  a", " an", "ana", "na "), como
+ * hace {@code pg_trgm}. La puntuación de un usuario es la fracción de trigramas
+ * de la consulta que aparecen en su nombre, así que una consulta parcial como
+ * "garcia" encuentra "María García López". A igual puntuación va primero el
+ * nombre más parecido en conjunto.
+ * <p>
+ * La búsqueda solo genera candidatos a partir de las listas de trigramas menos
+ * frecuentes: un usuario que no aparece en ninguna de ellas no puede alcanzar
+ * el umbral. Así se evitan los trigramas muy comunes, cuyas listas abarcan
+ * buena parte de la tabla.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class IndiceTrigramas implements ObservadorDAO<Usuario, Long> {
+
+    private static final LogHelper logger = LogHelper.getLogger(IndiceTrigramas.class);
+
+    /** Número de usuarios leídos por consulta durante la carga inicial */
+    private static final int TAMANO_BLOQUE_CARGA = 5000;
+
+    /** Orden de los resultados: mayor puntuación, mayor parecido y menor ID */
+    private static final Comparator<Coincidencia> ORDEN = Comparator
+            .comparingDouble((Coincidencia c) -> -c.puntuacion)
+            .thenComparingDouble(c -> -c.parecido)
+            .thenComparingLong(c -> c.id);
+
+    /** Instancia compartida por la aplicación */
+    private static IndiceTrigramas instance;
+
+    /** Listas de usuarios por trigrama */
+    private final Map<String, ListaIds> postings = new HashMap<>();
+
+    /** Nombre normalizado de cada usuario, para poder retirarlo */
+    private final Map<Long, String> nombres = new HashMap<>();
+
+    /** Número de trigramas distintos del nombre de cada usuario */
+    private final MapaLongInt trigramasPorUsuario = new MapaLongInt();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean cargado;
+
+    /**
+     * Obtiene la instancia compartida del índice.
+     *
+     * @return Índice de nombres de usuario
+     */
+    public static synchronized IndiceTrigramas getInstance() {
+        if (instance == null) {
+            instance = new IndiceTrigramas();
+        }
+        return instance;
+    }
+
+    /**
+     * Construye el índice recorriendo todos los usuarios y lo registra como
+     * observador de {@link UsuarioDAO} para mantenerlo actualizado. El registro
+     * se hace antes de recorrer la tabla para no perder escrituras concurrentes.
+     *
+     * @param usuarioDAO DAO con el que recorrer los usuarios
+     * @throws DAOException Si ocurre un error al leer los usuarios
+     */
+    public void cargar(UsuarioDAO usuarioDAO) throws DAOException {
+        long inicio = System.nanoTime();
+        UsuarioDAO.registrarObservador(this);
+        usuarioDAO.recorrer(TAMANO_BLOQUE_CARGA, this::indexar);
+        cargado = true;
+        logger.info("Índice de trigramas cargado: {} usuarios, {} trigramas, {} KB en {} ms",
+                getNumeroUsuarios(), getNumeroTrigramas(), estimarMemoria() / 1024,
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Indica si el índice ha terminado su carga inicial y puede usarse.
+     *
+     * @return true si el índice está cargado
+     */
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    /**
+     * Añade un usuario al índice o, si ya estaba, sustituye su nombre.
+     *
+     * @param usuario Usuario a indexar
+     */
+    public void indexar(Usuario usuario) {
+        if (usuario == null || usuario.getId() == null) {
+            return;
+        }
+        indexar(usuario.getId(), usuario.getNombre() + " " + usuario.getApellidos());
+    }
+
+    /**
+     * Asocia un nombre completo a un ID de usuario.
+     *
+     * @param id ID del usuario
+     * @param nombreCompleto Nombre y apellidos
+     */
+    public void indexar(long id, String nombreCompleto) {
+        String nombre = String.join(" ", NormalizadorTexto.tokenizar(nombreCompleto));
+        Set<String> trigramas = trigramas(nombre);
+
+        lock.writeLock().lock();
+        try {
+            retirar(id);
+            for (String trigrama : trigramas) {
+                postings.computeIfAbsent(trigrama, t -> new ListaIds()).agregar(id);
+            }
+            nombres.put(id, nombre);
+            trigramasPorUsuario.put(id, trigramas.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un usuario del índice.
+     *
+     * @param id ID del usuario
+     */
+    public void eliminar(Long id) {
+        if (id == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            retirar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retira un usuario de todas sus listas. Debe llamarse con el cerrojo de
+     * escritura adquirido.
+     *
+     * @param id ID del usuario
+     */
+    private void retirar(long id) {
+        String anterior = nombres.remove(id);
+        if (anterior == null) {
+            return;
+        }
+        trigramasPorUsuario.remove(id, 0);
+        for (String trigrama : trigramas(anterior)) {
+            ListaIds lista = postings.get(trigrama);
+            if (lista != null) {
+                lista.eliminar(id);
+                if (lista.tamano() == 0) {
+                    postings.remove(trigrama);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void entidadGuardada(Usuario usuario) {
+        indexar(usuario);
+    }
+
+    @Override
+    public void entidadEliminada(Long id) {
+        eliminar(id);
+    }
+
+    /**
+     * Busca los usuarios cuyo nombre contiene al menos una fracción de los
+     * trigramas de la consulta.
+     *
+     * @param consulta Nombre, apellidos o parte de ellos
+     * @param umbral Fracción mínima de trigramas coincidentes, entre 0 y 1
+     * @param limite Número máximo de resultados
+     * @return IDs de los usuarios, del más al menos parecido
+     */
+    public long[] buscar(String consulta, double umbral, int limite) {
+        List<String> trigramas = new ArrayList<>(trigramas(String.join(" ", NormalizadorTexto.tokenizar(consulta))));
+        if (trigramas.isEmpty() || limite <= 0) {
+            return new long[0];
+        }
+        int minimoComunes = Math.max(1, (int) Math.ceil(umbral * trigramas.size() - 1e-9));
+
+        lock.readLock().lock();
+        try {
+            List<ListaIds> listas = new ArrayList<>(trigramas.size());
+            for (String trigrama : trigramas) {
+                ListaIds lista = postings.get(trigrama);
+                listas.add(lista != null ? lista : new ListaIds());
+            }
+            listas.sort(Comparator.comparingInt(ListaIds::tamano));
+
+            // Los candidatos deben aparecer en alguna de las listas más cortas.
+            // Se mezclan en orden de ID y se comprueban en las demás con
+            // búsquedas binarias que avanzan desde la última posición; como los
+            // candidatos llegan ordenados, una lista generadora puede pasar a
+            // ser de comprobación en cualquier momento.
+            int generadoras = trigramas.size() - minimoComunes + 1;
+            int[] cursores = new int[listas.size()];
+            PriorityQueue<Coincidencia> mejores = new PriorityQueue<>(limite + 1, ORDEN.reversed());
+
+            while (true) {
+                long candidato = Long.MAX_VALUE;
+                for (int i = 0; i < generadoras; i++) {
+                    ListaIds lista = listas.get(i);
+                    if (cursores[i] < lista.tamano() && lista.get(cursores[i]) < candidato) {
+                        candidato = lista.get(cursores[i]);
+                    }
+                }
+                if (candidato == Long.MAX_VALUE) {
+                    break;
+                }
+                int comunes = 0;
+                for (int i = 0; i < generadoras; i++) {
+                    ListaIds lista = listas.get(i);
+                    if (cursores[i] < lista.tamano() && lista.get(cursores[i]) == candidato) {
+                        comunes++;
+                        cursores[i]++;
+                    }
+                }
+                for (int i = generadoras; i < listas.size() && comunes + listas.size() - i >= minimoComunes; i++) {
+                    ListaIds lista = listas.get(i);
+                    int posicion = lista.buscar(candidato, cursores[i]);
+                    if (posicion >= 0) {
+                        comunes++;
+                        cursores[i] = posicion + 1;
+                    } else {
+                        cursores[i] = -posicion - 1;
+                    }
+                }
+                if (comunes >= minimoComunes) {
+                    int trigramasNombre = trigramasPorUsuario.get(candidato, comunes);
+                    Coincidencia coincidencia = new Coincidencia(candidato, (double) comunes / trigramas.size(),
+                            (double) comunes / (trigramas.size() + trigramasNombre - comunes));
+                    mejores.add(coincidencia);
+                    if (mejores.size() > limite) {
+                        mejores.poll();
+                    }
+                    if (mejores.size() == limite) {
+                        // Con la lista llena, un candidato necesita al menos tantos
+                        // trigramas como el peor seleccionado: sobran generadoras
+                        int minimoActual = (int) Math.round(mejores.peek().puntuacion * trigramas.size());
+                        if (minimoActual > minimoComunes) {
+                            minimoComunes = minimoActual;
+                            generadoras = trigramas.size() - minimoComunes + 1;
+                        }
+                    }
+                }
+            }
+
+            long[] resultado = new long[mejores.size()];
+            for (int i = resultado.length - 1; i >= 0; i--) {
+                resultado[i] = mejores.poll().id;
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula los trigramas de un texto ya normalizado.
+     *
+     * @param texto Texto normalizado con las palabras separadas por espacios
+     * @return Trigramas distintos, en el orden en que aparecen
+     */
+    static Set<String> trigramas(String texto) {
+        Set<String> trigramas = new LinkedHashSet<>();
+        for (String palabra : texto.split(" ")) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            String relleno = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= relleno.length(); i++) {
+                trigramas.add(relleno.substring(i, i + 3));
+            }
+        }
+        return trigramas;
+    }
+
+    /**
+     * Obtiene el número de usuarios indexados.
+     *
+     * @return Número de usuarios
+     */
+    public int getNumeroUsuarios() {
+        lock.readLock().lock();
+        try {
+            return nombres.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el número de trigramas distintos del índice.
+     *
+     * @return Número de trigramas
+     */
+    public int getNumeroTrigramas() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estima la memoria ocupada por el índice para una JVM de 64 bits con
+     * referencias comprimidas.
+     *
+     * @return Bytes aproximados
+     */
+    public long estimarMemoria() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (ListaIds lista : postings.values()) {
+                // Entrada del mapa + String del trigrama + lista
+                bytes += 32 + 24 + 16 + 3 + lista.estimarMemoria();
+            }
+            for (String nombre : nombres.values()) {
+                // Entrada del mapa + Long + String
+                bytes += 32 + 16 + 24 + 16 + nombre.length();
+            }
+            bytes += trigramasPorUsuario.estimarMemoria();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Usuario candidato con su puntuación
+     */
+    private static final class Coincidencia {
+        final long id;
+        final double puntuacion;
+        final double parecido;
+
+        Coincidencia(long id, double puntuacion, double parecido) {
+            this.id = id;
+            this.puntuacion = puntuacion;
+            this.parecido = parecido;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lista ordenada y sin duplicados de identificadores, almacenada sobre un
+ * array de {@code long} para evitar el coste de memoria de los tipos envoltorio.
+ * Incluye las operaciones de intersección y unión de listas ordenadas que usan
+ * los índices en memoria.
+ * <p>
+ * Opcionalmente guarda una frecuencia por identificador (las apariciones de un
+ * término en un libro). El array de frecuencias solo se crea cuando alguna es
+ * distinta de 1, que es lo raro en campos cortos como el título.
+ * <p>
+ * No es segura para hilos: la sincronización corresponde al índice que la usa.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+class ListaIds {
+
+    private static final long[] VACIA = new long[0];
+
+    /** Frecuencia máxima que se guarda; las mayores se recortan */
+    private static final int MAX_FRECUENCIA = Character.MAX_VALUE;
+
+    private long[] ids;
+    /** Frecuencia de cada identificador; null mientras todas valen 1 */
+    private char[] frecuencias;
+    private int tamano;
+
+    /**
+     * Constructor que crea una lista vacía
+     */
+    ListaIds() {
+        this.ids = new long[2];
+    }
+
+    /**
+     * Añade un identificador manteniendo el orden. La inserción al final, que es
+     * el caso habitual durante la carga inicial ordenada por ID, es O(1).
+     *
+     * @param id Identificador a añadir
+     * @return true si se añadió, false si ya estaba presente
+     */
+    boolean agregar(long id) {
+        return agregar(id, 1);
+    }
+
+    /**
+     * Añade un identificador con su frecuencia manteniendo el orden.
+     *
+     * @param id Identificador a añadir
+     * @param frecuencia Frecuencia asociada (mayor que 0)
+     * @return true si se añadió, false si ya estaba presente
+     */
+    boolean agregar(long id, int frecuencia) {
+        int posicion;
+        if (tamano == 0 || ids[tamano - 1] < id) {
+            posicion = tamano;
+        } else {
+            int encontrado = Arrays.binarySearch(ids, 0, tamano, id);
+            if (encontrado >= 0) {
+                return false;
+            }
+            posicion = -encontrado - 1;
+        }
+        if (tamano == ids.length) {
+            ids = Arrays.copyOf(ids, tamano + (tamano >> 1) + 1);
+            if (frecuencias != null) {
+                frecuencias = Arrays.copyOf(frecuencias, ids.length);
+            }
+        }
+        System.arraycopy(ids, posicion, ids, posicion + 1, tamano - posicion);
+        ids[posicion] = id;
+        if (frecuencias == null && frecuencia != 1) {
+            frecuencias = new char[ids.length];
+            Arrays.fill(frecuencias, 0, tamano + 1, (char) 1);
+        }
+        if (frecuencias != null) {
+            System.arraycopy(frecuencias, posicion, frecuencias, posicion + 1, tamano - posicion);
+            frecuencias[posicion] = (char) Math.min(Math.max(frecuencia, 1), MAX_FRECUENCIA);
+        }
+        tamano++;
+        return true;
+    }
+
+    /**
+     * Elimina un identificador de la lista.
+     *
+     * @param id Identificador a eliminar
+     * @return true si se eliminó, false si no estaba presente
+     */
+    boolean eliminar(long id) {
+        int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+        if (posicion < 0) {
+            return false;
+        }
+        System.arraycopy(ids, posicion + 1, ids, posicion, tamano - posicion - 1);
+        if (frecuencias != null) {
+            System.arraycopy(frecuencias, posicion + 1, frecuencias, posicion, tamano - posicion - 1);
+        }
+        tamano--;
+        return true;
+    }
+
+    /**
+     * Obtiene el número de identificadores de la lista.
+     *
+     * @return Tamaño de la lista
+     */
+    int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Obtiene el identificador de una posición de la lista.
+     *
+     * @param posicion Posición, entre 0 y {@link #tamano()} - 1
+     * @return Identificador en esa posición
+     */
+    long get(int posicion) {
+        return ids[posicion];
+    }
+
+    /**
+     * Obtiene la frecuencia del identificador de una posición de la lista.
+     *
+     * @param posicion Posición, entre 0 y {@link #tamano()} - 1
+     * @return Frecuencia guardada, o 1 si la lista no guarda frecuencias
+     */
+    int frecuencia(int posicion) {
+        return frecuencias != null ? frecuencias[posicion] : 1;
+    }
+
+    /**
+     * Busca un identificador a partir de una posición.
+     *
+     * @param id Identificador a buscar
+     * @param desde Primera posición en la que buscar
+     * @return Posición del identificador o, si no está, {@code -(punto de inserción) - 1}
+     */
+    int buscar(long id, int desde) {
+        // Caso habitual al recorrer dos listas a la par: está en la posición de partida
+        if (desde < tamano && ids[desde] == id) {
+            return desde;
+        }
+        return Arrays.binarySearch(ids, Math.min(desde, tamano), tamano, id);
+    }
+
+    /**
+     * Obtiene una copia de los identificadores de la lista.
+     *
+     * @return Array ordenado con los identificadores
+     */
+    long[] toArray() {
+        return Arrays.copyOf(ids, tamano);
+    }
+
+    /**
+     * Estima la memoria ocupada por la lista.
+     *
+     * @return Bytes aproximados
+     */
+    long estimarMemoria() {
+        return 24 + 16 + 8L * ids.length + (frecuencias != null ? 16 + 2L * frecuencias.length : 0);
+    }
+
+    /**
+     * Intersecta varias listas. Recorre la más corta y localiza cada candidato
+     * en las demás mediante búsqueda binaria desde la última posición
+     * encontrada, por lo que el coste depende sobre todo de la lista más
+     * selectiva. Las listas no se copian.
+     *
+     * @param listas Listas a intersectar (se reordenan por tamaño)
+     * @return Array ordenado con los identificadores presentes en todas las listas
+     */
+    static long[] interseccion(List<ListaIds> listas) {
+        if (listas.isEmpty()) {
+            return VACIA;
+        }
+        listas.sort(Comparator.comparingInt(ListaIds::tamano));
+        ListaIds menor = listas.get(0);
+        long[] resultado = new long[menor.tamano];
+        int[] cursores = new int[listas.size()];
+        int tamanoResultado = 0;
+
+        candidatos:
+        for (int c = 0; c < menor.tamano; c++) {
+            long candidato = menor.ids[c];
+            for (int i = 1; i < listas.size(); i++) {
+                ListaIds lista = listas.get(i);
+                int posicion = Arrays.binarySearch(lista.ids, cursores[i], lista.tamano, candidato);
+                if (posicion < 0) {
+                    cursores[i] = -posicion - 1;
+                    if (cursores[i] >= lista.tamano) {
+                        break candidatos;
+                    }
+                    continue candidatos;
+                }
+                cursores[i] = posicion + 1;
+            }
+            resultado[tamanoResultado++] = candidato;
+        }
+        return Arrays.copyOf(resultado, tamanoResultado);
+    }
+
+    /**
+     * Une varias listas eliminando duplicados. Si solo hay una lista se
+     * devuelve la misma instancia, sin copiarla.
+     *
+     * @param listas Listas a unir
+     * @return Lista con los identificadores presentes en alguna de las listas
+     */
+    static ListaIds union(List<ListaIds> listas) {
+        if (listas.isEmpty()) {
+            return new ListaIds();
+        }
+        ListaIds resultado = listas.get(0);
+        for (int i = 1; i < listas.size(); i++) {
+            resultado = unir(resultado, listas.get(i));
+        }
+        return resultado;
+    }
+
+    /**
+     * Une dos listas eliminando duplicados.
+     *
+     * @param a Primera lista
+     * @param b Segunda lista
+     * @return Nueva lista con la unión de ambas
+     */
+    private static ListaIds unir(ListaIds a, ListaIds b) {
+        long[] resultado = new long[a.tamano + b.tamano];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.tamano && j < b.tamano) {
+            if (a.ids[i] < b.ids[j]) {
+                resultado[k++] = a.ids[i++];
+            } else if (a.ids[i] > b.ids[j]) {
+                resultado[k++] = b.ids[j++];
+            } else {
+                resultado[k++] = a.ids[i++];
+                j++;
+            }
+        }
+        while (i < a.tamano) {
+            resultado[k++] = a.ids[i++];
+        }
+        while (j < b.tamano) {
+            resultado[k++] = b.ids[j++];
+        }
+        ListaIds union = new ListaIds();
+        union.ids = resultado;
+        union.tamano = k;
+        return union;
+    }
+}
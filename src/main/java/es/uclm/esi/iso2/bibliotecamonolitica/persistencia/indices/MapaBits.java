@@ -0,0 +1,318 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto comprimido de identificadores al estilo de los Roaring bitmaps. Los
+ * identificadores se reparten en bloques de 65536 según sus 16 bits altos y
+ * cada bloque se guarda de la forma más compacta: un array ordenado de los 16
+ * bits bajos mientras tiene como mucho {@value #MAX_ARRAY} elementos, o un
+ * mapa de 65536 bits cuando es más denso.
+ * <p>
+ * Admite identificadores entre 0 y 2^32 - 1. El recuento de la intersección
+ * con otro conjunto no crea conjuntos intermedios y salta los bloques que solo
+ * están en uno de ellos.
+ * <p>
+ * No es seguro para hilos: la sincronización corresponde al índice que lo usa.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+class MapaBits {
+
+    /** Número máximo de elementos de un bloque guardado como array */
+    static final int MAX_ARRAY = 4096;
+
+    /** Número de palabras de 64 bits de un bloque guardado como mapa de bits */
+    private static final int PALABRAS_BLOQUE = 1024;
+
+    private static final long MAX_ID = 0xFFFFFFFFL;
+
+    /** 16 bits altos de cada bloque, en orden */
+    private char[] claves = new char[4];
+    private Bloque[] bloques = new Bloque[4];
+    private int numBloques;
+
+    /**
+     * Crea un conjunto con los identificadores de un array.
+     *
+     * @param ids Identificadores (es más rápido si están ordenados)
+     * @return Conjunto con los identificadores
+     */
+    static MapaBits desde(long[] ids) {
+        MapaBits mapa = new MapaBits();
+        for (long id : ids) {
+            mapa.agregar(id);
+        }
+        return mapa;
+    }
+
+    /**
+     * Añade un identificador.
+     *
+     * @param id Identificador, entre 0 y 2^32 - 1
+     * @return true si se añadió, false si ya estaba
+     */
+    boolean agregar(long id) {
+        comprobar(id);
+        char clave = (char) (id >>> 16);
+        int posicion = buscarBloque(clave);
+        if (posicion < 0) {
+            posicion = -posicion - 1;
+            insertarBloque(posicion, clave);
+        }
+        return bloques[posicion].agregar((char) id);
+    }
+
+    /**
+     * Elimina un identificador.
+     *
+     * @param id Identificador
+     * @return true si se eliminó, false si no estaba
+     */
+    boolean eliminar(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int posicion = buscarBloque((char) (id >>> 16));
+        if (posicion < 0 || !bloques[posicion].eliminar((char) id)) {
+            return false;
+        }
+        if (bloques[posicion].cardinalidad == 0) {
+            System.arraycopy(claves, posicion + 1, claves, posicion, numBloques - posicion - 1);
+            System.arraycopy(bloques, posicion + 1, bloques, posicion, numBloques - posicion - 1);
+            bloques[--numBloques] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Indica si el conjunto contiene un identificador.
+     *
+     * @param id Identificador
+     * @return true si está presente
+     */
+    boolean contiene(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int posicion = buscarBloque((char) (id >>> 16));
+        return posicion >= 0 && bloques[posicion].contiene((char) id);
+    }
+
+    /**
+     * Obtiene el número de identificadores del conjunto.
+     *
+     * @return Cardinalidad
+     */
+    int cardinalidad() {
+        int total = 0;
+        for (int i = 0; i < numBloques; i++) {
+            total += bloques[i].cardinalidad;
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene el número de bloques de 65536 identificadores que tienen algún
+     * elemento del conjunto.
+     *
+     * @return Número de bloques
+     */
+    int numeroBloques() {
+        return numBloques;
+    }
+
+    /**
+     * Cuenta los identificadores comunes con otro conjunto.
+     *
+     * @param otro Otro conjunto
+     * @return Cardinalidad de la intersección
+     */
+    int cardinalidadInterseccion(MapaBits otro) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < numBloques && j < otro.numBloques) {
+            if (claves[i] < otro.claves[j]) {
+                i++;
+            } else if (claves[i] > otro.claves[j]) {
+                j++;
+            } else {
+                total += bloques[i].cardinalidadInterseccion(otro.bloques[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Estima la memoria ocupada por el conjunto.
+     *
+     * @return Bytes aproximados
+     */
+    long estimarMemoria() {
+        long bytes = 16 + 16 + 2L * claves.length + 16 + 4L * bloques.length;
+        for (int i = 0; i < numBloques; i++) {
+            bytes += bloques[i].estimarMemoria();
+        }
+        return bytes;
+    }
+
+    private int buscarBloque(char clave) {
+        // Caso habitual al cargar por ID ascendente: el último bloque
+        if (numBloques > 0 && claves[numBloques - 1] == clave) {
+            return numBloques - 1;
+        }
+        return Arrays.binarySearch(claves, 0, numBloques, clave);
+    }
+
+    private void insertarBloque(int posicion, char clave) {
+        if (numBloques == claves.length) {
+            claves = Arrays.copyOf(claves, numBloques * 2);
+            bloques = Arrays.copyOf(bloques, numBloques * 2);
+        }
+        System.arraycopy(claves, posicion, claves, posicion + 1, numBloques - posicion);
+        System.arraycopy(bloques, posicion, bloques, posicion + 1, numBloques - posicion);
+        claves[posicion] = clave;
+        bloques[posicion] = new Bloque();
+        numBloques++;
+    }
+
+    private static void comprobar(long id) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Identificador fuera de rango: " + id);
+        }
+    }
+
+    /**
+     * Bloque de 65536 posibles valores, como array ordenado o como mapa de bits
+     */
+    private static final class Bloque {
+        /** Valores ordenados; null cuando el bloque es un mapa de bits */
+        private char[] valores = new char[4];
+        /** Mapa de bits; null cuando el bloque es un array */
+        private long[] bits;
+        private int cardinalidad;
+
+        boolean agregar(char valor) {
+            if (bits != null) {
+                long anterior = bits[valor >>> 6];
+                bits[valor >>> 6] = anterior | (1L << valor);
+                if (anterior == bits[valor >>> 6]) {
+                    return false;
+                }
+                cardinalidad++;
+                return true;
+            }
+            int posicion = cardinalidad > 0 && valores[cardinalidad - 1] < valor
+                    ? -cardinalidad - 1 : Arrays.binarySearch(valores, 0, cardinalidad, valor);
+            if (posicion >= 0) {
+                return false;
+            }
+            if (cardinalidad == MAX_ARRAY) {
+                convertirEnBits();
+                return agregar(valor);
+            }
+            posicion = -posicion - 1;
+            if (cardinalidad == valores.length) {
+                valores = Arrays.copyOf(valores, Math.min(MAX_ARRAY, cardinalidad * 2));
+            }
+            System.arraycopy(valores, posicion, valores, posicion + 1, cardinalidad - posicion);
+            valores[posicion] = valor;
+            cardinalidad++;
+            return true;
+        }
+
+        boolean eliminar(char valor) {
+            if (bits != null) {
+                long anterior = bits[valor >>> 6];
+                bits[valor >>> 6] = anterior & ~(1L << valor);
+                if (anterior == bits[valor >>> 6]) {
+                    return false;
+                }
+                cardinalidad--;
+                if (cardinalidad <= MAX_ARRAY / 2) {
+                    convertirEnArray();
+                }
+                return true;
+            }
+            int posicion = Arrays.binarySearch(valores, 0, cardinalidad, valor);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(valores, posicion + 1, valores, posicion, cardinalidad - posicion - 1);
+            cardinalidad--;
+            return true;
+        }
+
+        boolean contiene(char valor) {
+            if (bits != null) {
+                return (bits[valor >>> 6] & (1L << valor)) != 0;
+            }
+            return Arrays.binarySearch(valores, 0, cardinalidad, valor) >= 0;
+        }
+
+        int cardinalidadInterseccion(Bloque otro) {
+            if (bits != null && otro.bits != null) {
+                int total = 0;
+                for (int i = 0; i < PALABRAS_BLOQUE; i++) {
+                    total += Long.bitCount(bits[i] & otro.bits[i]);
+                }
+                return total;
+            }
+            if (bits != null) {
+                return otro.cardinalidadInterseccion(this);
+            }
+            int total = 0;
+            if (otro.bits != null) {
+                long[] bitsOtro = otro.bits;
+                for (int i = 0; i < cardinalidad; i++) {
+                    char valor = valores[i];
+                    total += (int) ((bitsOtro[valor >>> 6] >>> valor) & 1L);
+                }
+                return total;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < cardinalidad && j < otro.cardinalidad) {
+                if (valores[i] < otro.valores[j]) {
+                    i++;
+                } else if (valores[i] > otro.valores[j]) {
+                    j++;
+                } else {
+                    total++;
+                    i++;
+                    j++;
+                }
+            }
+            return total;
+        }
+
+        long estimarMemoria() {
+            return 24 + (bits != null ? 16 + 8L * bits.length : 16 + 2L * valores.length);
+        }
+
+        private void convertirEnBits() {
+            bits = new long[PALABRAS_BLOQUE];
+            for (int i = 0; i < cardinalidad; i++) {
+                bits[valores[i] >>> 6] |= 1L << valores[i];
+            }
+            valores = null;
+        }
+
+        private void convertirEnArray() {
+            valores = new char[cardinalidad];
+            int n = 0;
+            for (int i = 0; i < PALABRAS_BLOQUE; i++) {
+                long palabra = bits[i];
+                while (palabra != 0) {
+                    valores[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(palabra));
+                    palabra &= palabra - 1;
+                }
+            }
+            bits = null;
+        }
+    }
+}
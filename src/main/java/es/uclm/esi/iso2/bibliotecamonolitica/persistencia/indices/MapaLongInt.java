@@ -0,0 +1,168 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de claves {@code long} a valores {@code int} con direccionamiento
+ * abierto y sondeo lineal. Evita los objetos {@code Long}, {@code Integer} y
+ * las entradas de {@link java.util.HashMap}, por lo que ocupa unas cinco veces
+ * menos memoria cuando se guardan millones de identificadores.
+ * <p>
+ * No es seguro para hilos: la sincronización corresponde al índice que lo usa.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+class MapaLongInt {
+
+    /** Valor que marca una celda vacía; por eso no se admite como clave */
+    private static final long VACIA = Long.MIN_VALUE;
+
+    private long[] claves;
+    private int[] valores;
+    private int tamano;
+
+    /**
+     * Constructor que crea un mapa vacío
+     */
+    MapaLongInt() {
+        this(16);
+    }
+
+    /**
+     * Constructor que reserva espacio para un número de entradas.
+     *
+     * @param capacidadInicial Número de entradas previstas
+     */
+    MapaLongInt(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(4, capacidadInicial * 2 - 1)) << 1;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        Arrays.fill(claves, VACIA);
+    }
+
+    /**
+     * Obtiene el valor asociado a una clave.
+     *
+     * @param clave Clave a buscar
+     * @param porDefecto Valor a devolver si la clave no existe
+     * @return Valor asociado o el valor por defecto
+     */
+    int get(long clave, int porDefecto) {
+        int mascara = claves.length - 1;
+        for (int i = mezclar(clave) & mascara; claves[i] != VACIA; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                return valores[i];
+            }
+        }
+        return porDefecto;
+    }
+
+    /**
+     * Asocia un valor a una clave, sustituyendo el anterior si existía.
+     *
+     * @param clave Clave (distinta de {@link Long#MIN_VALUE})
+     * @param valor Valor a asociar
+     */
+    void put(long clave, int valor) {
+        if (clave == VACIA) {
+            throw new IllegalArgumentException("Clave no admitida: " + clave);
+        }
+        if ((tamano + 1) * 2 > claves.length) {
+            redimensionar(claves.length * 2);
+        }
+        int mascara = claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (claves[i] != VACIA) {
+            if (claves[i] == clave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        tamano++;
+    }
+
+    /**
+     * Elimina una clave. Las celdas siguientes del mismo grupo se desplazan
+     * hacia atrás para no dejar huecos que corten las búsquedas.
+     *
+     * @param clave Clave a eliminar
+     * @param porDefecto Valor a devolver si la clave no existe
+     * @return Valor que tenía la clave o el valor por defecto
+     */
+    int remove(long clave, int porDefecto) {
+        int mascara = claves.length - 1;
+        int i = mezclar(clave) & mascara;
+        while (claves[i] != clave) {
+            if (claves[i] == VACIA) {
+                return porDefecto;
+            }
+            i = (i + 1) & mascara;
+        }
+        int anterior = valores[i];
+        int hueco = i;
+        for (int j = (hueco + 1) & mascara; claves[j] != VACIA; j = (j + 1) & mascara) {
+            int ideal = mezclar(claves[j]) & mascara;
+            // Mover la celda j al hueco si su posición ideal no está entre el hueco y j
+            if (((j - ideal) & mascara) >= ((j - hueco) & mascara)) {
+                claves[hueco] = claves[j];
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        claves[hueco] = VACIA;
+        tamano--;
+        return anterior;
+    }
+
+    /**
+     * Obtiene el número de entradas del mapa.
+     *
+     * @return Número de entradas
+     */
+    int size() {
+        return tamano;
+    }
+
+    /**
+     * Estima la memoria ocupada por el mapa.
+     *
+     * @return Bytes aproximados
+     */
+    long estimarMemoria() {
+        return 32 + 16 + 8L * claves.length + 16 + 4L * valores.length;
+    }
+
+    /**
+     * Amplía las tablas y recoloca todas las entradas.
+     *
+     * @param capacidad Nueva capacidad (potencia de dos)
+     */
+    private void redimensionar(int capacidad) {
+        long[] clavesAnteriores = claves;
+        int[] valoresAnteriores = valores;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        Arrays.fill(claves, VACIA);
+        tamano = 0;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != VACIA) {
+                put(clavesAnteriores[i], valoresAnteriores[i]);
+            }
+        }
+    }
+
+    /**
+     * Dispersa los bits de la clave para repartir IDs consecutivos por la tabla.
+     *
+     * @param clave Clave a dispersar
+     * @return Valor de dispersión
+     */
+    private static int mezclar(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,203 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Mapa de claves {@code long} a valores {@code int} seguro para hilos. Reparte
+ * las claves entre segmentos, cada uno con su propio {@link MapaLongInt} y su
+ * cerrojo de lectura y escritura, de modo que las operaciones sobre claves de
+ * segmentos distintos no se esperan entre sí.
+ * <p>
+ * Cada operación es atómica respecto a su clave; en particular
+ * {@link #actualizarSiPresente} lee y escribe el valor sin que otra operación
+ * sobre la misma clave pueda intercalarse.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+class MapaLongIntConcurrente {
+
+    private static final int SEGMENTOS_POR_DEFECTO = 64;
+
+    private final MapaLongInt[] mapas;
+    private final ReadWriteLock[] locks;
+    private final int desplazamiento;
+
+    /**
+     * Constructor que crea un mapa vacío con el número de segmentos por defecto
+     */
+    MapaLongIntConcurrente() {
+        this(SEGMENTOS_POR_DEFECTO);
+    }
+
+    /**
+     * Constructor que crea un mapa vacío.
+     *
+     * @param segmentos Número de segmentos; se redondea a la potencia de dos superior
+     */
+    MapaLongIntConcurrente(int segmentos) {
+        int tamano = Integer.highestOneBit(Math.max(1, Math.min(segmentos, 1 << 16) * 2 - 1));
+        mapas = new MapaLongInt[tamano];
+        locks = new ReadWriteLock[tamano];
+        for (int i = 0; i < tamano; i++) {
+            mapas[i] = new MapaLongInt();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        // Los bits altos de la dispersión eligen el segmento; MapaLongInt usa los bajos
+        desplazamiento = 64 - Integer.numberOfTrailingZeros(tamano);
+    }
+
+    /**
+     * Obtiene el valor asociado a una clave.
+     *
+     * @param clave Clave a buscar
+     * @param porDefecto Valor a devolver si la clave no existe
+     * @return Valor asociado o el valor por defecto
+     */
+    int get(long clave, int porDefecto) {
+        int i = segmento(clave);
+        locks[i].readLock().lock();
+        try {
+            return mapas[i].get(clave, porDefecto);
+        } finally {
+            locks[i].readLock().unlock();
+        }
+    }
+
+    /**
+     * Asocia un valor a una clave, sustituyendo el anterior si existía.
+     *
+     * @param clave Clave (distinta de {@link Long#MIN_VALUE})
+     * @param valor Valor a asociar
+     */
+    void put(long clave, int valor) {
+        int i = segmento(clave);
+        locks[i].writeLock().lock();
+        try {
+            mapas[i].put(clave, valor);
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Asocia un valor a una clave solo si no tenía ninguno.
+     *
+     * @param clave Clave (distinta de {@link Long#MIN_VALUE})
+     * @param valor Valor a asociar
+     * @param ausente Valor que nunca se guarda y marca las claves inexistentes
+     * @return true si se ha asociado el valor
+     */
+    boolean putSiAusente(long clave, int valor, int ausente) {
+        int i = segmento(clave);
+        locks[i].writeLock().lock();
+        try {
+            if (mapas[i].get(clave, ausente) != ausente) {
+                return false;
+            }
+            mapas[i].put(clave, valor);
+            return true;
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sustituye atómicamente el valor de una clave existente por el resultado
+     * de aplicarle una función. Las claves inexistentes no se añaden.
+     *
+     * @param clave Clave a actualizar
+     * @param funcion Función que recibe el valor actual y devuelve el nuevo
+     * @param ausente Valor que nunca se guarda y marca las claves inexistentes
+     * @return Nuevo valor, o {@code ausente} si la clave no existía
+     */
+    int actualizarSiPresente(long clave, IntUnaryOperator funcion, int ausente) {
+        int i = segmento(clave);
+        locks[i].writeLock().lock();
+        try {
+            int actual = mapas[i].get(clave, ausente);
+            if (actual == ausente) {
+                return ausente;
+            }
+            int nuevo = funcion.applyAsInt(actual);
+            mapas[i].put(clave, nuevo);
+            return nuevo;
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina una clave.
+     *
+     * @param clave Clave a eliminar
+     * @param porDefecto Valor a devolver si la clave no existe
+     * @return Valor que tenía la clave o el valor por defecto
+     */
+    int remove(long clave, int porDefecto) {
+        int i = segmento(clave);
+        locks[i].writeLock().lock();
+        try {
+            return mapas[i].remove(clave, porDefecto);
+        } finally {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina todas las claves, segmento a segmento.
+     */
+    void vaciar() {
+        for (int i = 0; i < mapas.length; i++) {
+            locks[i].writeLock().lock();
+            try {
+                mapas[i] = new MapaLongInt();
+            } finally {
+                locks[i].writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Obtiene el número de entradas del mapa. Con escrituras concurrentes el
+     * resultado es aproximado.
+     *
+     * @return Número de entradas
+     */
+    int size() {
+        int total = 0;
+        for (int i = 0; i < mapas.length; i++) {
+            locks[i].readLock().lock();
+            try {
+                total += mapas[i].size();
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Estima la memoria ocupada por el mapa.
+     *
+     * @return Bytes aproximados
+     */
+    long estimarMemoria() {
+        long total = 16 + 16 + 8L * mapas.length * 2;
+        for (int i = 0; i < mapas.length; i++) {
+            locks[i].readLock().lock();
+            try {
+                total += mapas[i].estimarMemoria() + 48;
+            } finally {
+                locks[i].readLock().unlock();
+            }
+        }
+        return total;
+    }
+
+    private int segmento(long clave) {
+        return desplazamiento == 64 ? 0 : (int) ((clave * 0x9E3779B97F4A7C15L) >>> desplazamiento);
+    }
+}
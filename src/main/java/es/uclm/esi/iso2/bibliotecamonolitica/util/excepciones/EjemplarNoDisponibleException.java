@@ -0,0 +1,24 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones;
+
+/**
+ * Excepción lanzada cuando al registrar un préstamo alguno de sus ejemplares
+ * ya no está disponible, normalmente porque otro préstamo simultáneo lo ha
+ * reclamado antes. La operación se ha revertido por completo.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class EjemplarNoDisponibleException extends DAOException {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor que recibe el mensaje de error
+     *
+     * @param message Mensaje que describe la razón de la excepción
+     */
+    public EjemplarNoDisponibleException(String message) {
+        super(message);
+    }
+}
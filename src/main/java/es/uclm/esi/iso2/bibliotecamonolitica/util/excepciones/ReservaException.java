@@ -0,0 +1,34 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones;
+
+/**
+ * Excepción lanzada cuando no se puede crear o cancelar una reserva, bien
+ * porque no se cumplen las condiciones de la reserva o porque falla la
+ * persistencia.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ReservaException extends Exception {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor que recibe el mensaje de error
+     *
+     * @param message Mensaje que describe la razón de la excepción
+     */
+    public ReservaException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor que recibe el mensaje de error y la causa
+     *
+     * @param message Mensaje que describe la razón de la excepción
+     * @param cause Causa original de la excepción
+     */
+    public ReservaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
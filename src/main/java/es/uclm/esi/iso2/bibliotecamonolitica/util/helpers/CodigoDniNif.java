@@ -0,0 +1,106 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+/**
+ * Utilidad para validar y normalizar DNI y NIE sin expresiones regulares ni
+ * reservas de memoria. La letra de control es la del resto de dividir el
+ * número entre 23; en los NIE la letra inicial X, Y o Z cuenta como 0, 1 o 2
+ * delante de los siete dígitos.
+ * <p>
+ * Se admiten guiones y espacios entre los caracteres, y la letra en
+ * minúscula; {@link #normalizar(String)} los elimina y la pasa a mayúscula.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class CodigoDniNif {
+
+    /** Letra de control correspondiente a cada resto de dividir entre 23 */
+    private static final String LETRAS_CONTROL = "TRWAGMYFPDXBNJZSQVHLCKE";
+
+    /** Caracteres de un DNI o NIE sin separadores */
+    private static final int LONGITUD = 9;
+
+    /**
+     * Constructor privado para evitar instanciación
+     */
+    private CodigoDniNif() {
+    }
+
+    /**
+     * Comprueba el formato y la letra de control de un DNI (ocho dígitos y
+     * letra) o de un NIE (X, Y o Z, siete dígitos y letra).
+     *
+     * @param dniNif DNI o NIE con o sin separadores (puede ser null)
+     * @return true si es válido
+     */
+    public static boolean esValido(CharSequence dniNif) {
+        if (dniNif == null) {
+            return false;
+        }
+        int caracteres = 0;
+        int numero = 0;
+        boolean separadorAnterior = true;
+        for (int i = 0; i < dniNif.length(); i++) {
+            char c = Character.toUpperCase(dniNif.charAt(i));
+            if (c == '-' || c == ' ') {
+                if (separadorAnterior) {
+                    return false;
+                }
+                separadorAnterior = true;
+                continue;
+            }
+            separadorAnterior = false;
+            if (caracteres == LONGITUD) {
+                return false;
+            }
+            if (c >= '0' && c <= '9' && caracteres < LONGITUD - 1) {
+                numero = numero * 10 + (c - '0');
+            } else if (caracteres == 0 && c >= 'X' && c <= 'Z') {
+                numero = c - 'X';
+            } else if (caracteres == LONGITUD - 1) {
+                if (c != LETRAS_CONTROL.charAt(numero % 23)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+            caracteres++;
+        }
+        return caracteres == LONGITUD && !separadorAnterior;
+    }
+
+    /**
+     * Elimina los separadores de un DNI o NIE válido y pasa sus letras a
+     * mayúscula. Solo reserva memoria si no está ya normalizado.
+     *
+     * @param dniNif DNI o NIE con o sin separadores (puede ser null)
+     * @return DNI o NIE normalizado, o el propio valor si es null o no es válido
+     */
+    public static String normalizar(String dniNif) {
+        if (!esValido(dniNif)) {
+            return dniNif;
+        }
+        if (dniNif.length() == LONGITUD && estaNormalizado(dniNif)) {
+            return dniNif;
+        }
+        char[] normalizado = new char[LONGITUD];
+        int caracteres = 0;
+        for (int i = 0; i < dniNif.length(); i++) {
+            char c = dniNif.charAt(i);
+            if (c != '-' && c != ' ') {
+                normalizado[caracteres++] = Character.toUpperCase(c);
+            }
+        }
+        return new String(normalizado);
+    }
+
+    private static boolean estaNormalizado(String dniNif) {
+        for (int i = 0; i < dniNif.length(); i++) {
+            char c = dniNif.charAt(i);
+            if (c == '-' || c == ' ' || Character.isLowerCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
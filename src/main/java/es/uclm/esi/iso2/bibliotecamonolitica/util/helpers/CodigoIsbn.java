@@ -0,0 +1,152 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+/**
+ * Utilidad para validar y normalizar ISBN sin expresiones regulares ni
+ * reservas de memoria: recorre la cadena una sola vez, salta los guiones y
+ * espacios y calcula el dígito de control de ISBN-13 e ISBN-10 a la vez.
+ * <p>
+ * Se acepta el prefijo {@code ISBN}, {@code ISBN-10} o {@code ISBN-13}
+ * seguido opcionalmente de dos puntos y espacios, como en la portadilla de
+ * los libros. Los separadores no pueden ir al principio, al final ni
+ * repetidos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class CodigoIsbn {
+
+    /**
+     * Constructor privado para evitar instanciación
+     */
+    private CodigoIsbn() {
+    }
+
+    /**
+     * Comprueba el formato y el dígito de control de un ISBN-13 (con prefijo
+     * 978 o 979) o de un ISBN-10.
+     *
+     * @param isbn ISBN con o sin separadores (puede ser null)
+     * @return true si el ISBN es válido
+     */
+    public static boolean esValido(CharSequence isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        int inicio = saltarPrefijo(isbn);
+        int longitud = isbn.length();
+        int digitos = 0;
+        int prefijo = 0;
+        int suma13 = 0;
+        int suma10 = 0;
+        boolean separadorAnterior = true;
+        for (int i = inicio; i < longitud; i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digitos == 13) {
+                    return false;
+                }
+                int digito = c - '0';
+                suma13 += (digitos & 1) == 0 ? digito : 3 * digito;
+                suma10 += (10 - digitos) * digito;
+                if (digitos < 3) {
+                    prefijo = prefijo * 10 + digito;
+                }
+                digitos++;
+                separadorAnterior = false;
+            } else if (c == 'X' || c == 'x') {
+                // Solo el dígito de control de un ISBN-10 puede valer 10
+                if (digitos != 9 || i != longitud - 1) {
+                    return false;
+                }
+                return (suma10 + 10) % 11 == 0;
+            } else if (c == '-' || c == ' ') {
+                if (separadorAnterior) {
+                    return false;
+                }
+                separadorAnterior = true;
+            } else {
+                return false;
+            }
+        }
+        if (separadorAnterior) {
+            return false;
+        }
+        if (digitos == 13) {
+            return (prefijo == 978 || prefijo == 979) && suma13 % 10 == 0;
+        }
+        return digitos == 10 && suma10 % 11 == 0;
+    }
+
+    /**
+     * Convierte un ISBN válido a ISBN-13 sin separadores, la forma con la que
+     * se guarda. Los ISBN-10 pasan a tener el prefijo 978 y un nuevo dígito de
+     * control. Solo reserva memoria si el ISBN no está ya normalizado.
+     *
+     * @param isbn ISBN con o sin separadores (puede ser null)
+     * @return ISBN-13 sin separadores, o el propio valor si es null o no es válido
+     */
+    public static String normalizar(String isbn) {
+        if (!esValido(isbn)) {
+            return isbn;
+        }
+        if (isbn.length() == 13 && esNumerico(isbn)) {
+            return isbn;
+        }
+        char[] normalizado = new char[13];
+        int digitos = 0;
+        for (int i = saltarPrefijo(isbn); i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalizado[digitos++] = c;
+            }
+        }
+        if (digitos == 13) {
+            return new String(normalizado);
+        }
+        // ISBN-10: se descarta su dígito de control (incluida la X) y se antepone 978
+        System.arraycopy(normalizado, 0, normalizado, 3, 9);
+        normalizado[0] = '9';
+        normalizado[1] = '7';
+        normalizado[2] = '8';
+        int suma = 0;
+        for (int i = 0; i < 12; i++) {
+            int digito = normalizado[i] - '0';
+            suma += (i & 1) == 0 ? digito : 3 * digito;
+        }
+        normalizado[12] = (char) ('0' + (10 - suma % 10) % 10);
+        return new String(normalizado);
+    }
+
+    private static boolean esNumerico(CharSequence texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Obtiene la posición del primer carácter tras el prefijo "ISBN", "ISBN-10"
+     * o "ISBN-13" y los dos puntos y espacios que lo siguen.
+     */
+    private static int saltarPrefijo(CharSequence isbn) {
+        if (isbn.length() < 4 || isbn.charAt(0) != 'I' || isbn.charAt(1) != 'S'
+                || isbn.charAt(2) != 'B' || isbn.charAt(3) != 'N') {
+            return 0;
+        }
+        int posicion = 4;
+        if (isbn.length() >= 7 && isbn.charAt(4) == '-' && isbn.charAt(5) == '1'
+                && (isbn.charAt(6) == '0' || isbn.charAt(6) == '3')) {
+            posicion = 7;
+        }
+        if (posicion < isbn.length() && isbn.charAt(posicion) == ':') {
+            posicion++;
+        }
+        while (posicion < isbn.length() && isbn.charAt(posicion) == ' ') {
+            posicion++;
+        }
+        return posicion;
+    }
+}
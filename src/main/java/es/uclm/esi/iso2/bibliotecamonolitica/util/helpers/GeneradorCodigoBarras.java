@@ -0,0 +1,20 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+/**
+ * Genera los códigos de barras de los ejemplares nuevos. Las implementaciones
+ * deben poder usarse desde varios hilos a la vez y no repetir nunca un código.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ * @see GeneradorCodigoBarrasSnowflake
+ */
+@FunctionalInterface
+public interface GeneradorCodigoBarras {
+
+    /**
+     * Genera un código de barras nuevo.
+     *
+     * @return Código de barras que no se ha generado antes
+     */
+    String generar();
+}
@@ -0,0 +1,179 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de ficheros CSV y TSV que recorre el fichero fila a fila sin cargarlo
+ * entero en memoria. Sigue el RFC 4180: los campos entre comillas dobles
+ * pueden contener el separador, saltos de línea y comillas escritas dos veces.
+ * Acepta saltos de línea CRLF y LF y descarta la marca de orden de bytes
+ * inicial.
+ * <p>
+ * Lee el {@link Reader} por bloques con su propio buffer, de modo que no
+ * necesita un {@link java.io.BufferedReader}. No es seguro para hilos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class LectorCsv implements LectorFilas {
+
+    private static final int TAMANO_BUFFER = 1 << 16;
+
+    private final Reader entrada;
+    private final char separador;
+    private final char[] buffer = new char[TAMANO_BUFFER];
+    private final StringBuilder campo = new StringBuilder(64);
+    private int posicion;
+    private int limite;
+    private boolean primeraLectura = true;
+
+    /** Línea del fichero en la que termina la última fila leída */
+    private long linea;
+
+    /** Línea del fichero en la que empieza la última fila leída */
+    private long lineaFila;
+
+    /**
+     * Crea un lector sobre una entrada de texto.
+     *
+     * @param entrada Entrada a leer; se cierra al cerrar el lector
+     * @param separador Separador de campos, normalmente ',', ';' o '\t'
+     */
+    public LectorCsv(Reader entrada, char separador) {
+        this.entrada = entrada;
+        this.separador = separador;
+    }
+
+    /**
+     * Elige el separador de un fichero a partir de su cabecera: tabulador si
+     * la contiene y, si no, el más frecuente entre ';' y ','.
+     *
+     * @param cabecera Primera línea del fichero
+     * @return Separador de campos
+     */
+    public static char detectarSeparador(String cabecera) {
+        if (cabecera.indexOf('\t') >= 0) {
+            return '\t';
+        }
+        int puntoYComa = 0;
+        int comas = 0;
+        for (int i = 0; i < cabecera.length(); i++) {
+            char c = cabecera.charAt(i);
+            if (c == ';') {
+                puntoYComa++;
+            } else if (c == ',') {
+                comas++;
+            }
+        }
+        return puntoYComa > comas ? ';' : ',';
+    }
+
+    /**
+     * Lee la siguiente fila. Las líneas vacías se saltan.
+     *
+     * @return Campos de la fila, o null al llegar al final del fichero
+     * @throws IOException Si falla la lectura o una comilla queda sin cerrar
+     */
+    @Override
+    public String[] siguienteFila() throws IOException {
+        List<String> campos = new ArrayList<>();
+        int c;
+        // Saltar líneas vacías
+        do {
+            c = leer();
+            if (c == '\r') {
+                c = leer();
+            }
+            if (c == '\n') {
+                linea++;
+            }
+        } while (c == '\n');
+        if (c < 0) {
+            return null;
+        }
+        lineaFila = linea + 1;
+
+        campo.setLength(0);
+        boolean entreComillas = false;
+        boolean campoEntrecomillado = false;
+        while (true) {
+            if (entreComillas) {
+                if (c < 0) {
+                    throw new IOException("Comillas sin cerrar en la fila que empieza en la línea " + lineaFila);
+                }
+                if (c == '"') {
+                    c = leer();
+                    if (c == '"') {
+                        campo.append('"');
+                    } else {
+                        entreComillas = false;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        linea++;
+                    }
+                    campo.append((char) c);
+                }
+            } else if (c == '"' && campo.length() == 0 && !campoEntrecomillado) {
+                entreComillas = true;
+                campoEntrecomillado = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+                campoEntrecomillado = false;
+            } else if (c == '\n' || c == '\r' || c < 0) {
+                if (c == '\r') {
+                    c = leer();
+                    if (c != '\n' && c >= 0) {
+                        // Un CR suelto también termina la fila
+                        posicion--;
+                    }
+                }
+                campos.add(campo.toString());
+                linea++;
+                return campos.toArray(new String[0]);
+            } else {
+                campo.append((char) c);
+            }
+            c = leer();
+        }
+    }
+
+    /**
+     * Obtiene la línea del fichero en la que empieza la última fila leída.
+     *
+     * @return Número de línea, empezando en 1
+     */
+    @Override
+    public long getLinea() {
+        return lineaFila;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+
+    private int leer() throws IOException {
+        if (posicion == limite) {
+            limite = entrada.read(buffer, 0, buffer.length);
+            posicion = 0;
+            if (limite <= 0) {
+                limite = 0;
+                return -1;
+            }
+            if (primeraLectura) {
+                primeraLectura = false;
+                if (buffer[0] == '\uFEFF') {
+                    posicion = 1;
+                    return leer();
+                }
+            }
+        }
+        return buffer[posicion++];
+    }
+}
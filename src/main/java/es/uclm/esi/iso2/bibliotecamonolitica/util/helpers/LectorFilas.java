@@ -0,0 +1,29 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Origen de filas de texto que se recorre una sola vez, como un fichero CSV o
+ * un volcado MARC21.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public interface LectorFilas extends Closeable {
+
+    /**
+     * Lee la siguiente fila.
+     *
+     * @return Campos de la fila, o null al llegar al final
+     * @throws IOException Si falla la lectura o el origen está mal formado
+     */
+    String[] siguienteFila() throws IOException;
+
+    /**
+     * Obtiene la posición de la última fila leída, para informar de ella.
+     *
+     * @return Número de línea o de registro, empezando en 1
+     */
+    long getLinea();
+}
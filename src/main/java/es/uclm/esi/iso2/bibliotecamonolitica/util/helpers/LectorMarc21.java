@@ -0,0 +1,452 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+
+/**
+ * Lector de volcados de registros bibliográficos MARC21 en formato binario
+ * ISO 2709, el que intercambian las bibliotecas y los consorcios. Cada
+ * registro se convierte en una fila con las columnas de {@link #COLUMNAS}:
+ * <ul>
+ *   <li>{@code isbn}: primer ISBN válido de los campos 020 $a</li>
+ *   <li>{@code titulo}: 245 $a y $b</li>
+ *   <li>{@code autor}: 100 $a</li>
+ *   <li>{@code editorial} y {@code anio_publicacion}: 260 $b y $c, o 264 $b y
+ *       $c de la publicación; el año se toma de la posición 07 del 008 si el
+ *       $c no lo contiene</li>
+ *   <li>{@code descripcion}: 520 $a</li>
+ * </ul>
+ * Se quita la puntuación ISBD del final de cada valor.
+ * <p>
+ * El fichero se proyecta en memoria por ventanas con {@link FileChannel#map},
+ * así que el montículo no depende de su tamaño y se pueden leer volcados de
+ * varios GB. La cabecera y el directorio se recorren directamente sobre la
+ * proyección, y solo se decodifican los subcampos que se usan, sin copiarlos
+ * antes a otro buffer. Los registros en UTF-8 se decodifican tal cual; los
+ * registros en MARC-8 admiten ASCII y los diacríticos ANSEL del español y
+ * otras lenguas latinas, y el resto de caracteres se sustituyen por U+FFFD.
+ * <p>
+ * No es seguro para hilos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class LectorMarc21 implements LectorFilas {
+
+    /** Columnas de las filas, en orden */
+    public static final String[] COLUMNAS = {
+        "isbn", "titulo", "autor", "editorial", "anio_publicacion", "descripcion"
+    };
+
+    private static final int ISBN = 0;
+    private static final int TITULO = 1;
+    private static final int AUTOR = 2;
+    private static final int EDITORIAL = 3;
+    private static final int ANIO = 4;
+    private static final int DESCRIPCION = 5;
+
+    private static final int TAMANO_CABECERA = 24;
+
+    /** Longitud máxima de un registro, limitada por los cinco dígitos de la cabecera */
+    private static final int MAX_REGISTRO = 99999;
+
+    private static final byte FIN_CAMPO = 0x1E;
+    private static final byte FIN_REGISTRO = 0x1D;
+    private static final byte DELIMITADOR = 0x1F;
+
+    /** Tamaño por defecto de cada ventana proyectada */
+    private static final long TAMANO_VENTANA = 1L << 28;
+
+    private final FileChannel canal;
+    private final long tamano;
+    private final long tamanoVentana;
+
+    private MappedByteBuffer ventana;
+
+    /** Posición del fichero en la que empieza la ventana */
+    private long inicioVentana;
+
+    /** Posición del siguiente registro dentro de la ventana */
+    private int posicion;
+
+    private long registro;
+
+    private final CharsetDecoder decodificador = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer caracteres = CharBuffer.allocate(1024);
+    private final StringBuilder marc8 = new StringBuilder(256);
+    private final StringBuilder diacriticos = new StringBuilder(4);
+
+    /**
+     * Abre un volcado MARC21.
+     *
+     * @param fichero Fichero con los registros uno detrás de otro
+     * @return Lector situado en el primer registro
+     * @throws IOException Si no se puede abrir el fichero
+     */
+    public static LectorMarc21 abrir(Path fichero) throws IOException {
+        return new LectorMarc21(FileChannel.open(fichero, StandardOpenOption.READ), TAMANO_VENTANA);
+    }
+
+    /**
+     * Crea un lector sobre un canal.
+     *
+     * @param canal Canal del fichero; se cierra al cerrar el lector
+     * @param tamanoVentana Bytes de cada ventana proyectada; al menos un registro
+     * @throws IOException Si no se puede obtener el tamaño del fichero
+     */
+    LectorMarc21(FileChannel canal, long tamanoVentana) throws IOException {
+        this.canal = canal;
+        this.tamano = canal.size();
+        this.tamanoVentana = Math.max(tamanoVentana, MAX_REGISTRO);
+    }
+
+    /**
+     * Lee el siguiente registro. Se saltan los saltos de línea entre
+     * registros que añaden algunos programas al exportar.
+     *
+     * @return Campos del registro en el orden de {@link #COLUMNAS}, con null
+     *         en los que no tiene; o null al llegar al final del fichero
+     * @throws IOException Si falla la lectura o la cabecera o la longitud de
+     *         un registro no son válidas; no se puede seguir leyendo después
+     */
+    @Override
+    public String[] siguienteFila() throws IOException {
+        while (restante() > 0) {
+            asegurar(1);
+            if (!esSaltoLinea(ventana.get(posicion))) {
+                break;
+            }
+            posicion++;
+        }
+        long restante = restante();
+        if (restante <= 0) {
+            return null;
+        }
+        long desplazamiento = inicioVentana + posicion;
+        if (restante < TAMANO_CABECERA) {
+            throw new IOException("Registro incompleto al final del fichero, en la posición " + desplazamiento);
+        }
+        asegurar(TAMANO_CABECERA);
+        int longitud = leerNumero(posicion, 5);
+        if (longitud <= TAMANO_CABECERA || longitud > restante) {
+            throw new IOException("Longitud de registro no válida en la posición " + desplazamiento);
+        }
+        asegurar(longitud);
+        if (ventana.get(posicion + longitud - 1) != FIN_REGISTRO) {
+            throw new IOException("Falta el fin del registro que empieza en la posición " + desplazamiento);
+        }
+        registro++;
+        String[] fila = leerRegistro(posicion, longitud, desplazamiento);
+        posicion += longitud;
+        return fila;
+    }
+
+    /**
+     * Obtiene el número de orden del último registro leído.
+     *
+     * @return Número de registro, empezando en 1
+     */
+    @Override
+    public long getLinea() {
+        return registro;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ventana = null;
+        canal.close();
+    }
+
+    /**
+     * Recorre el directorio de un registro y decodifica solo los campos que
+     * se usan.
+     */
+    private String[] leerRegistro(int inicio, int longitud, long desplazamiento) throws IOException {
+        boolean unicode = ventana.get(inicio + 9) == 'a';
+        int base = leerNumero(inicio + 12, 5);
+        int anchoLongitud = leerNumero(inicio + 20, 1);
+        int anchoInicio = leerNumero(inicio + 21, 1);
+        int anchoImplementacion = Math.max(0, leerNumero(inicio + 22, 1));
+        if (base <= TAMANO_CABECERA || base > longitud || anchoLongitud <= 0 || anchoInicio <= 0) {
+            throw new IOException("Cabecera no válida en el registro de la posición " + desplazamiento);
+        }
+
+        String[] fila = new String[COLUMNAS.length];
+        String isbnNoValido = null;
+        String anio008 = null;
+        int campo260 = -1;
+        int fin260 = -1;
+        int campo264 = -1;
+        int fin264 = -1;
+        int fin = inicio + longitud - 1;
+        int anchoEntrada = 3 + anchoLongitud + anchoInicio + anchoImplementacion;
+        int finDirectorio = inicio + base - 1;
+        for (int entrada = inicio + TAMANO_CABECERA; entrada + anchoEntrada <= finDirectorio;
+                entrada += anchoEntrada) {
+            int etiqueta = leerNumero(entrada, 3);
+            int largo = leerNumero(entrada + 3, anchoLongitud);
+            int desde = leerNumero(entrada + 3 + anchoLongitud, anchoInicio);
+            if (etiqueta < 0 || largo <= 0 || desde < 0) {
+                // Etiquetas locales con letras o entradas dañadas: no son campos que se usen
+                continue;
+            }
+            int campo = inicio + base + desde;
+            int finCampo = Math.min(campo + largo, fin);
+            if (finCampo > campo && ventana.get(finCampo - 1) == FIN_CAMPO) {
+                finCampo--;
+            }
+            if (campo >= finCampo) {
+                continue;
+            }
+
+            switch (etiqueta) {
+                case 8:
+                    if (finCampo - campo >= 11) {
+                        anio008 = anio(decodificar(campo + 7, campo + 11, unicode));
+                    }
+                    break;
+                case 20:
+                    if (fila[ISBN] == null) {
+                        String isbn = limpiarIsbn(subcampo(campo, finCampo, 'a', unicode));
+                        if (isbn != null && CodigoIsbn.esValido(isbn)) {
+                            fila[ISBN] = isbn;
+                        } else if (isbnNoValido == null) {
+                            isbnNoValido = isbn;
+                        }
+                    }
+                    break;
+                case 100:
+                    if (fila[AUTOR] == null) {
+                        fila[AUTOR] = limpiar(subcampo(campo, finCampo, 'a', unicode));
+                    }
+                    break;
+                case 245:
+                    if (fila[TITULO] == null) {
+                        String titulo = limpiar(subcampo(campo, finCampo, 'a', unicode));
+                        String resto = limpiar(subcampo(campo, finCampo, 'b', unicode));
+                        fila[TITULO] = titulo != null && resto != null ? titulo + " : " + resto : titulo;
+                    }
+                    break;
+                case 260:
+                    if (campo260 < 0) {
+                        campo260 = campo;
+                        fin260 = finCampo;
+                    }
+                    break;
+                case 264:
+                    // Del 264 solo interesa la publicación, con el segundo indicador 1
+                    if (campo264 < 0 && ventana.get(campo + 1) == '1') {
+                        campo264 = campo;
+                        fin264 = finCampo;
+                    }
+                    break;
+                case 520:
+                    if (fila[DESCRIPCION] == null) {
+                        fila[DESCRIPCION] = subcampo(campo, finCampo, 'a', unicode);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (fila[ISBN] == null) {
+            fila[ISBN] = isbnNoValido;
+        }
+        int publicacion = campo260 >= 0 ? campo260 : campo264;
+        if (publicacion >= 0) {
+            int finPublicacion = campo260 >= 0 ? fin260 : fin264;
+            fila[EDITORIAL] = limpiar(subcampo(publicacion, finPublicacion, 'b', unicode));
+            fila[ANIO] = anio(subcampo(publicacion, finPublicacion, 'c', unicode));
+        }
+        if (fila[ANIO] == null) {
+            fila[ANIO] = anio008;
+        }
+        return fila;
+    }
+
+    /**
+     * Decodifica el primer subcampo con el código indicado de un campo de
+     * datos, saltando los dos indicadores.
+     *
+     * @return Valor del subcampo, o null si el campo no lo tiene
+     */
+    private String subcampo(int campo, int finCampo, char codigo, boolean unicode) {
+        for (int i = campo + 2; i < finCampo - 1; i++) {
+            if (ventana.get(i) == DELIMITADOR && ventana.get(i + 1) == codigo) {
+                int desde = i + 2;
+                int hasta = desde;
+                while (hasta < finCampo && ventana.get(hasta) != DELIMITADOR) {
+                    hasta++;
+                }
+                return decodificar(desde, hasta, unicode);
+            }
+        }
+        return null;
+    }
+
+    private String decodificar(int desde, int hasta, boolean unicode) {
+        if (unicode) {
+            ByteBuffer bytes = ventana.duplicate();
+            bytes.limit(hasta);
+            bytes.position(desde);
+            if (caracteres.capacity() < hasta - desde) {
+                caracteres = CharBuffer.allocate(hasta - desde);
+            }
+            caracteres.clear();
+            decodificador.reset();
+            decodificador.decode(bytes, caracteres, true);
+            decodificador.flush(caracteres);
+            caracteres.flip();
+            return caracteres.toString();
+        }
+        return decodificarMarc8(desde, hasta);
+    }
+
+    /**
+     * Decodifica MARC-8. En ANSEL los diacríticos van delante de la letra y en
+     * Unicode detrás, así que se guardan hasta la letra siguiente y al final
+     * se componen en su forma NFC.
+     */
+    private String decodificarMarc8(int desde, int hasta) {
+        marc8.setLength(0);
+        diacriticos.setLength(0);
+        boolean compuesto = false;
+        for (int i = desde; i < hasta; i++) {
+            int b = ventana.get(i) & 0xFF;
+            if (b < 0x80) {
+                marc8.append((char) b).append(diacriticos);
+                compuesto |= diacriticos.length() > 0;
+                diacriticos.setLength(0);
+            } else {
+                char diacritico = diacriticoAnsel(b);
+                if (diacritico != 0) {
+                    diacriticos.append(diacritico);
+                } else {
+                    marc8.append('\uFFFD');
+                }
+            }
+        }
+        return compuesto ? Normalizer.normalize(marc8, Normalizer.Form.NFC) : marc8.toString();
+    }
+
+    private static char diacriticoAnsel(int b) {
+        switch (b) {
+            case 0xE1: return '\u0300'; // grave
+            case 0xE2: return '\u0301'; // agudo
+            case 0xE3: return '\u0302'; // circunflejo
+            case 0xE4: return '\u0303'; // tilde
+            case 0xE8: return '\u0308'; // diéresis
+            case 0xF0: return '\u0327'; // cedilla
+            default: return 0;
+        }
+    }
+
+    /**
+     * Quita la puntuación ISBD del final de un valor: separadores y el punto
+     * final, salvo el de las iniciales.
+     */
+    static String limpiar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        int fin = valor.length();
+        while (fin > 0) {
+            char c = valor.charAt(fin - 1);
+            if (c == ' ' || c == ',' || c == ':' || c == ';' || c == '/' || c == '=') {
+                fin--;
+            } else if (c == '.' && fin >= 2 && !Character.isUpperCase(valor.charAt(fin - 2))) {
+                fin--;
+            } else {
+                break;
+            }
+        }
+        String limpio = valor.substring(0, fin).trim();
+        return limpio.isEmpty() ? null : limpio;
+    }
+
+    /**
+     * Se queda con el ISBN de un 020 $a sin las calificaciones que lo siguen,
+     * como {@code 8437622774 (rústica)}.
+     */
+    private static String limpiarIsbn(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        int fin = 0;
+        while (fin < valor.length() && valor.charAt(fin) != ' ' && valor.charAt(fin) != '(') {
+            fin++;
+        }
+        return fin > 0 ? valor.substring(0, fin) : null;
+    }
+
+    /**
+     * Obtiene el primer grupo de cuatro cifras de una fecha como
+     * {@code [c2005].} o {@code 1998-}.
+     */
+    private static String anio(String fecha) {
+        if (fecha == null) {
+            return null;
+        }
+        int cifras = 0;
+        for (int i = 0; i < fecha.length(); i++) {
+            if (Character.isDigit(fecha.charAt(i))) {
+                if (++cifras == 4 && (i + 1 == fecha.length() || !Character.isDigit(fecha.charAt(i + 1)))) {
+                    return fecha.substring(i - 3, i + 1);
+                }
+            } else {
+                cifras = 0;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lee un número ASCII de la ventana.
+     *
+     * @return Número, o -1 si alguno de los caracteres no es una cifra
+     */
+    private int leerNumero(int desde, int cifras) {
+        int numero = 0;
+        for (int i = desde; i < desde + cifras; i++) {
+            int c = ventana.get(i) - '0';
+            if (c < 0 || c > 9) {
+                return -1;
+            }
+            numero = numero * 10 + c;
+        }
+        return numero;
+    }
+
+    private long restante() {
+        return tamano - inicioVentana - posicion;
+    }
+
+    private static boolean esSaltoLinea(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Garantiza que la ventana contiene los bytes indicados desde la posición
+     * actual, proyectando una nueva ventana que empiece en ella si no.
+     */
+    private void asegurar(int bytes) throws IOException {
+        if (ventana == null || posicion + bytes > ventana.limit()) {
+            inicioVentana += posicion;
+            posicion = 0;
+            ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicioVentana,
+                    Math.min(tamanoVentana, tamano - inicioVentana));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilidad para normalizar textos en español antes de indexarlos o buscarlos.
+ * Convierte a minúsculas y elimina tildes y diéresis, conservando la "ñ"
+ * para no confundir palabras como "año" y "ano".
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public final class NormalizadorTexto {
+
+    /**
+     * Constructor privado para evitar instanciación
+     */
+    private NormalizadorTexto() {
+    }
+
+    /**
+     * Normaliza un texto completo: minúsculas y sin tildes.
+     *
+     * @param texto Texto a normalizar (puede ser null)
+     * @return Texto normalizado, o cadena vacía si el texto es null
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            sb.append(plegar(texto.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Divide un texto en términos normalizados. Los separadores son todos los
+     * caracteres que no son letras ni dígitos.
+     *
+     * @param texto Texto a dividir (puede ser null)
+     * @return Lista de términos normalizados, en el orden en que aparecen
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null) {
+            return terminos;
+        }
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                actual.append(plegar(c));
+            } else if (actual.length() > 0) {
+                terminos.add(actual.toString());
+                actual.setLength(0);
+            }
+        }
+        if (actual.length() > 0) {
+            terminos.add(actual.toString());
+        }
+        return terminos;
+    }
+
+    /**
+     * Pliega un carácter a su forma en minúsculas sin marcas diacríticas.
+     *
+     * @param c Carácter a plegar
+     * @return Carácter plegado
+     */
+    public static char plegar(char c) {
+        char minuscula = Character.toLowerCase(c);
+        if (minuscula < 0x80 || minuscula == 'ñ') {
+            return minuscula;
+        }
+        switch (minuscula) {
+            case 'á': case 'à': case 'ä': case 'â':
+                return 'a';
+            case 'é': case 'è': case 'ë': case 'ê':
+                return 'e';
+            case 'í': case 'ì': case 'ï': case 'î':
+                return 'i';
+            case 'ó': case 'ò': case 'ö': case 'ô':
+                return 'o';
+            case 'ú': case 'ù': case 'ü': case 'û':
+                return 'u';
+            case 'ç':
+                return 'c';
+            default:
+                String descompuesto = Normalizer.normalize(String.valueOf(minuscula), Normalizer.Form.NFD);
+                return descompuesto.charAt(0);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.validacion;
+
+import static java.lang.annotation.ElementType.ANNOTATION_TYPE;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+
+/**
+ * Restricción de Bean Validation que exige un DNI o NIE con su letra de
+ * control correcta. Los valores nulos se consideran válidos.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ * @see es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoDniNif
+ */
+@Documented
+@Constraint(validatedBy = ValidadorDniNif.class)
+@Target({FIELD, METHOD, PARAMETER, ANNOTATION_TYPE})
+@Retention(RUNTIME)
+public @interface DniNifValido {
+
+    String message() default "El DNI/NIF no es válido";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
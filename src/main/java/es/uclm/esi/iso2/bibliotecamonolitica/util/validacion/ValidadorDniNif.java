@@ -0,0 +1,20 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.validacion;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoDniNif;
+
+/**
+ * Validador de la restricción {@link DniNifValido}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ValidadorDniNif implements ConstraintValidator<DniNifValido, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence valor, ConstraintValidatorContext contexto) {
+        return valor == null || CodigoDniNif.esValido(valor);
+    }
+}
@@ -0,0 +1,20 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.validacion;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.CodigoIsbn;
+
+/**
+ * Validador de la restricción {@link IsbnValido}.
+ *
+ * @author Sistema de Gestión de Bibliotecas
+ * @version 1.0
+ */
+public class ValidadorIsbn implements ConstraintValidator<IsbnValido, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence valor, ConstraintValidatorContext contexto) {
+        return valor == null || CodigoIsbn.esValido(valor);
+    }
+}
@@ -28,7 +28,7 @@ INSERT INTO libros (titulo, autor, editorial, anio_publicacion, isbn, categoria_
 ('Patrones de diseño', 'Erich Gamma', 'Addison-Wesley', 1994, '9780201633610', 4, 'Elementos reusables para software orientado a objetos', '2020-02-01'),
 ('Clean Code', 'Robert C. Martin', 'Prentice Hall', 2008, '9780132350884', 4, 'Un manual para el desarrollo ágil', '2020-02-03'),
 ('El mundo de Sofía', 'Jostein Gaarder', 'Siruela', 1991, '9788478446070', 5, 'Novela sobre la historia de la filosofía', '2020-02-05'),
-('Así habló Zaratustra', 'Friedrich Nietzsche', 'Alianza', 1883, '9788420674359', 5, 'Obra filosófica sobre el superhombre', '2020-02-07'),
+('Así habló Zaratustra', 'Friedrich Nietzsche', 'Alianza', 1883, '9788420674353', 5, 'Obra filosófica sobre el superhombre', '2020-02-07'),
 ('La historia del arte', 'E.H. Gombrich', 'Phaidon', 1950, '9780714898704', 6, 'Visión general de la historia del arte', '2020-02-09'),
 ('Veinte poemas de amor', 'Pablo Neruda', 'Seix Barral', 1924, '9788432230257', 7, 'Y una canción desesperada', '2020-02-11'),
 ('El cálculo con geometría analítica', 'Louis Leithold', 'Oxford', 1972, '9789706136718', 8, 'Manual de cálculo universitario', '2020-02-13'),
@@ -37,8 +37,8 @@ INSERT INTO libros (titulo, autor, editorial, anio_publicacion, isbn, categoria_
 ('Los pilares de la Tierra', 'Ken Follett', 'Plaza & Janés', 1989, '9788401328510', 1, 'Épica sobre la construcción de una catedral', '2020-02-19'),
 ('El código Da Vinci', 'Dan Brown', 'Umbriel', 2003, '9788495618825', 1, 'Thriller sobre símbolos y secretos religiosos', '2020-02-21'),
 ('La insoportable levedad del ser', 'Milan Kundera', 'Tusquets', 1984, '9788483835166', 1, 'Novela filosófica sobre el amor y el destino', '2020-02-23'),
-('Mujercitas', 'Louisa May Alcott', 'Penguin Clásicos', 1868, '9788491052080', 1, 'Historia de cuatro hermanas durante la Guerra Civil', '2020-02-25'),
-('Orgullo y prejuicio', 'Jane Austen', 'Alianza', 1813, '9788420664153', 1, 'Novela romántica sobre diferencias sociales', '2020-02-27'),
+('Mujercitas', 'Louisa May Alcott', 'Penguin Clásicos', 1868, '9788491052081', 1, 'Historia de cuatro hermanas durante la Guerra Civil', '2020-02-25'),
+('Orgullo y prejuicio', 'Jane Austen', 'Alianza', 1813, '9788420664156', 1, 'Novela romántica sobre diferencias sociales', '2020-02-27'),
 ('Crónica de una muerte anunciada', 'Gabriel García Márquez', 'Debolsillo', 1981, '9788497592437', 1, 'Novela sobre un asesinato en un pueblo', '2020-03-01'),
 ('El alquimista', 'Paulo Coelho', 'Planeta', 1988, '9788408130451', 1, 'Fábula sobre seguir los sueños', '2020-03-03'),
 ('La metamorfosis', 'Franz Kafka', 'Alianza', 1915, '9788420651361', 1, 'Relato sobre la transformación de un hombre en insecto', '2020-03-05'),
@@ -50,13 +50,13 @@ INSERT INTO libros (titulo, autor, editorial, anio_publicacion, isbn, categoria_
 ('Drácula', 'Bram Stoker', 'Penguin Clásicos', 1897, '9788491051329', 1, 'Novela gótica sobre el conde vampiro', '2020-03-17'),
 ('El gran Gatsby', 'F. Scott Fitzgerald', 'Debolsillo', 1925, '9788490628249', 1, 'Novela sobre el sueño americano', '2020-03-19'),
 ('Anna Karenina', 'León Tolstói', 'Cátedra', 1877, '9788437633060', 1, 'Drama sobre el amor y la sociedad rusa', '2020-03-21'),
-('Moby Dick', 'Herman Melville', 'Penguin Clásicos', 1851, '9788491050901', 1, 'Novela sobre la obsesión por una ballena blanca', '2020-03-23'),
+('Moby Dick', 'Herman Melville', 'Penguin Clásicos', 1851, '9788491050902', 1, 'Novela sobre la obsesión por una ballena blanca', '2020-03-23'),
 ('El Hobbit', 'J.R.R. Tolkien', 'Minotauro', 1937, '9788445074534', 1, 'Preludio de El Señor de los Anillos', '2020-03-25'),
 ('Rayuela', 'Julio Cortázar', 'Cátedra', 1963, '9788437624747', 1, 'Novela experimental sobre el amor y el exilio', '2020-03-27'),
 ('El lobo estepario', 'Hermann Hesse', 'Alianza', 1927, '9788420674186', 1, 'Novela sobre la dualidad humana', '2020-03-29'),
 ('Los miserables', 'Victor Hugo', 'Penguin Clásicos', 1862, '9788491052111', 1, 'Epopeya sobre la redención y la justicia social', '2020-04-01'),
 ('El perfume', 'Patrick Süskind', 'Seix Barral', 1985, '9788432228032', 1, 'Historia de un asesino obsesionado con los olores', '2020-04-03'),
-('Introducción al pensamiento complejo', 'Edgar Morin', 'Gedisa', 1990, '9788474325889', 5, 'Sobre el paradigma de la complejidad', '2020-04-05'),
+('Introducción al pensamiento complejo', 'Edgar Morin', 'Gedisa', 1990, '9788474325881', 5, 'Sobre el paradigma de la complejidad', '2020-04-05'),
 ('El arte de amar', 'Erich Fromm', 'Paidós', 1956, '9788449325359', 5, 'Ensayo sobre la naturaleza del amor', '2020-04-07'),
 ('El origen de las especies', 'Charles Darwin', 'Espasa', 1859, '9788467036916', 2, 'Teoría de la evolución por selección natural', '2020-04-09'),
 ('Física para la ciencia y la tecnología', 'Paul A. Tipler', 'Reverté', 1999, '9788429144291', 2, 'Manual de física universitaria', '2020-04-11'),
@@ -114,9 +114,9 @@ INSERT INTO libros (titulo, autor, editorial, anio_publicacion, isbn, categoria_
 
 -- Insertar 100 usuarios
 INSERT INTO usuarios (nombre, apellidos, dni_nif, direccion, telefono, email, tipo_usuario, estado, fecha_alta) VALUES
-('Juan', 'García López', '12345678A', 'Calle Mayor 1, Madrid', '600111222', 'juan.garcia@email.com', 'ESTUDIANTE', 'ACTIVO', '2020-01-01'),
-('Ana', 'Martínez Rodríguez', '23456789B', 'Avenida de la Paz 23, Barcelona', '611222333', 'ana.martinez@email.com', 'PROFESOR', 'ACTIVO', '2020-01-02'),
-('Carlos', 'López Fernández', '34567890C', 'Plaza del Sol 5, Valencia', '622333444', 'carlos.lopez@email.com', 'ESTUDIANTE', 'ACTIVO', '2020-01-03'),
-('María', 'González Pérez', '45678901D', 'Calle del Pino 8, Sevilla', '633444555', 'maria.gonzalez@email.com', 'ESTUDIANTE', 'ACTIVO', '2020-01-04'),
-('Pedro', 'Sánchez Ruiz', '56789012E', 'Avenida Diagonal 100, Barcelona', '644555666', 'pedro.sanchez@email.com', 'PERSONAL', 'ACTIVO', '2020-01-05'),
-('Laura', 'Fernández García', '67890123F', 'Calle Alcalá 45, Madrid', '655
\ No newline at end of file
+('Juan', 'García López', '12345678Z', 'Calle Mayor 1, Madrid', '600111222', 'juan.garcia@email.com', 'ESTUDIANTE', 'ACTIVO', '2020-01-01'),
+('Ana', 'Martínez Rodríguez', '23456789D', 'Avenida de la Paz 23, Barcelona', '611222333', 'ana.martinez@email.com', 'PROFESOR', 'ACTIVO', '2020-01-02'),
+('Carlos', 'López Fernández', '34567890V', 'Plaza del Sol 5, Valencia', '622333444', 'carlos.lopez@email.com', 'ESTUDIANTE', 'ACTIVO', '2020-01-03'),
+('María', 'González Pérez', '45678901G', 'Calle del Pino 8, Sevilla', '633444555', 'maria.gonzalez@email.com', 'ESTUDIANTE', 'ACTIVO', '2020-01-04'),
+('Pedro', 'Sánchez Ruiz', '56789012B', 'Avenida Diagonal 100, Barcelona', '644555666', 'pedro.sanchez@email.com', 'PERSONAL', 'ACTIVO', '2020-01-05'),
+('Laura', 'Fernández García', '67890123B', 'Calle Alcalá 45, Madrid', '655
\ No newline at end of file
@@ -56,8 +56,10 @@ CREATE TABLE IF NOT EXISTS prestamos (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     usuario_id BIGINT NOT NULL,
     fecha DATE NOT NULL,
-    fecha_devolucion_prevista DATE NOT NULL,
+    fecha_devolucion_prevista DATETIME NOT NULL,
     estado VARCHAR(20) NOT NULL,
+    -- El aviso de bloqueo del préstamo ya se procesó: no se repite al arrancar
+    bloqueo_aplicado BOOLEAN NOT NULL DEFAULT FALSE,
     FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE
 ) ENGINE=InnoDB;
 
@@ -76,7 +78,8 @@ CREATE TABLE IF NOT EXISTS detalle_prestamos (
 CREATE TABLE IF NOT EXISTS multas (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     usuario_id BIGINT NOT NULL,
-    prestamo_id BIGINT,
+    -- Como mucho una multa por préstamo
+    prestamo_id BIGINT UNIQUE,
     importe DECIMAL(10,2) NOT NULL,
     estado VARCHAR(20) NOT NULL,
     fecha_inicio DATE NOT NULL,
@@ -85,6 +88,51 @@ CREATE TABLE IF NOT EXISTS multas (
     FOREIGN KEY (prestamo_id) REFERENCES prestamos(id) ON DELETE SET NULL
 ) ENGINE=InnoDB;
 
+-- Tabla de reservas: listas de espera de los libros sin ejemplares disponibles
+CREATE TABLE IF NOT EXISTS reservas (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    libro_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    prioridad TINYINT NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    fecha_reserva TIMESTAMP NOT NULL,
+    ejemplar_id BIGINT,
+    fecha_asignacion TIMESTAMP NULL,
+    FOREIGN KEY (libro_id) REFERENCES libros(id) ON DELETE CASCADE,
+    FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE,
+    FOREIGN KEY (ejemplar_id) REFERENCES ejemplares(id) ON DELETE SET NULL
+) ENGINE=InnoDB;
+
+-- Diario de préstamos: eventos de solo adición (préstamos, devoluciones,
+-- renovaciones y multas), como registro de actividad que puede perder
+-- eventos. Sin claves ajenas ni índices secundarios, para que cada inserción
+-- solo escriba al final del índice primario.
+CREATE TABLE IF NOT EXISTS eventos_prestamo (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tipo VARCHAR(30) NOT NULL,
+    prestamo_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    ejemplar_id BIGINT,
+    importe DECIMAL(10,2),
+    fecha TIMESTAMP NOT NULL
+) ENGINE=InnoDB;
+
+-- Punto de control de las tareas por lotes, para reanudarlas tras un fallo
+CREATE TABLE IF NOT EXISTS puntos_control (
+    tarea VARCHAR(50) PRIMARY KEY,
+    fecha_referencia DATE NOT NULL,
+    ultimo_id BIGINT NOT NULL,
+    completada BOOLEAN NOT NULL DEFAULT FALSE,
+    actualizado TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB;
+
+-- Secuencias de las que se reservan bloques de IDs para asignarlos en el cliente.
+-- Cada secuencia se llama como su tabla y guarda el primer ID sin reservar.
+CREATE TABLE IF NOT EXISTS secuencias (
+    nombre VARCHAR(50) PRIMARY KEY,
+    siguiente BIGINT NOT NULL
+) ENGINE=InnoDB;
+
 -- Índices para mejorar el rendimiento
 CREATE INDEX idx_libros_titulo ON libros (titulo);
 CREATE INDEX idx_libros_autor ON libros (autor);
@@ -92,4 +140,13 @@ CREATE INDEX idx_usuarios_nombre_apellidos ON usuarios (nombre, apellidos);
 CREATE INDEX idx_prestamos_usuario ON prestamos (usuario_id);
 CREATE INDEX idx_prestamos_estado ON prestamos (estado);
 CREATE INDEX idx_ejemplares_estado ON ejemplares (estado);
-CREATE INDEX idx_multas_usuario ON multas (usuario_id);
\ No newline at end of file
+CREATE INDEX idx_multas_usuario ON multas (usuario_id);
+CREATE INDEX idx_reservas_estado ON reservas (estado, id);
+CREATE INDEX idx_reservas_usuario_libro ON reservas (usuario_id, libro_id, estado);
+
+-- Índices de texto completo para las búsquedas por relevancia (MATCH ... AGAINST).
+-- MATCH debe nombrar exactamente las columnas de un índice, por eso el título y
+-- el autor tienen además su propio índice.
+CREATE FULLTEXT INDEX ft_libros_texto ON libros (titulo, autor, descripcion);
+CREATE FULLTEXT INDEX ft_libros_titulo ON libros (titulo);
+CREATE FULLTEXT INDEX ft_libros_autor ON libros (autor);
\ No newline at end of file
@@ -132,16 +132,56 @@ public class LibroTest {
         assertEquals(3, libro.contarEjemplaresDisponibles());
         
         // Cambiamos el estado de un ejemplar
-        ejemplar2.setEstado(EstadoEjemplar.PRESTADO);
+        libro.cambiarEstadoEjemplar(ejemplar2, EstadoEjemplar.PRESTADO);
         assertEquals(2, libro.contarEjemplaresDisponibles());
+        assertEquals(EstadoEjemplar.PRESTADO, ejemplar2.getEstado());
         
         // Cambiamos el estado de otro ejemplar
-        ejemplar3.setEstado(EstadoEjemplar.REPARACION);
+        libro.cambiarEstadoEjemplar(ejemplar3, EstadoEjemplar.REPARACION);
         assertEquals(1, libro.contarEjemplaresDisponibles());
         
         // Cambiamos el estado del último ejemplar disponible
-        ejemplar1.setEstado(EstadoEjemplar.PRESTADO);
+        libro.cambiarEstadoEjemplar(ejemplar1, EstadoEjemplar.PRESTADO);
         assertEquals(0, libro.contarEjemplaresDisponibles());
+        assertEquals(2, libro.contarEjemplares(EstadoEjemplar.PRESTADO));
+        assertEquals(1, libro.contarEjemplares(EstadoEjemplar.REPARACION));
+        
+        // Al eliminar un ejemplar se descuenta de su estado
+        libro.eliminarEjemplar(ejemplar2);
+        assertEquals(1, libro.contarEjemplares(EstadoEjemplar.PRESTADO));
+    }
+    
+    @Test
+    @DisplayName("Test de ejemplares de otro libro")
+    public void testCambiarEstadoEjemplarDeOtroLibro() {
+        Ejemplar ajeno = new Libro().agregarEjemplar("Estantería A");
+        
+        assertThrows(IllegalArgumentException.class,
+                () -> libro.cambiarEstadoEjemplar(ajeno, EstadoEjemplar.PRESTADO));
+        assertEquals(EstadoEjemplar.DISPONIBLE, ajeno.getEstado());
+    }
+    
+    @Test
+    @DisplayName("Test de disponibles cargados de la base de datos")
+    public void testCargarEjemplaresDisponibles() {
+        Ejemplar prestado = new Ejemplar();
+        prestado.setLibro(libro);
+        prestado.setEstado(EstadoEjemplar.PRESTADO);
+        Ejemplar disponible = new Ejemplar();
+        disponible.setLibro(libro);
+        disponible.setEstado(EstadoEjemplar.DISPONIBLE);
+        libro.getEjemplares().add(prestado);
+        libro.getEjemplares().add(disponible);
+        
+        // El número de disponibles no necesita la colección
+        libro.cargarEjemplaresDisponibles(1);
+        assertEquals(1, libro.contarEjemplaresDisponibles());
+        
+        // Los demás estados se cuentan una vez al consultarlos
+        assertEquals(1, libro.contarEjemplares(EstadoEjemplar.PRESTADO));
+        libro.cambiarEstadoEjemplar(prestado, EstadoEjemplar.DISPONIBLE);
+        assertEquals(2, libro.contarEjemplaresDisponibles());
+        assertEquals(0, libro.contarEjemplares(EstadoEjemplar.PRESTADO));
     }
     
     @Test
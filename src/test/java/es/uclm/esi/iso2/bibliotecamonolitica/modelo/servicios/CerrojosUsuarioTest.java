@@ -0,0 +1,152 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.CerrojoUsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.PrestamoException;
+
+/**
+ * Pruebas unitarias para la clase CerrojosUsuario.
+ */
+public class CerrojosUsuarioTest {
+
+    private CerrojosUsuario cerrojos;
+
+    @BeforeEach
+    public void setUp() {
+        cerrojos = new CerrojosUsuario(64, 200);
+    }
+
+    /**
+     * Busca un usuario que caiga en una franja distinta de la del usuario dado.
+     */
+    private long usuarioEnOtraFranja(long usuarioId) {
+        long otro = usuarioId + 1;
+        while (cerrojos.franja(otro) == cerrojos.franja(usuarioId)) {
+            otro++;
+        }
+        return otro;
+    }
+
+    @Test
+    public void testMismoUsuarioSerializado() throws Exception {
+        int hilos = 8;
+        AtomicInteger dentro = new AtomicInteger();
+        AtomicInteger solapes = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int i = 0; i < hilos; i++) {
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                for (int j = 0; j < 20; j++) {
+                    try (CerrojosUsuario.Cerrojo cerrojo = cerrojos.adquirir(7L)) {
+                        if (dentro.incrementAndGet() > 1) {
+                            solapes.incrementAndGet();
+                        }
+                        Thread.yield();
+                        dentro.decrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, solapes.get());
+        assertEquals(hilos * 20, cerrojos.getAdquisiciones());
+    }
+
+    @Test
+    public void testUsuariosDistintosEnParalelo() throws Exception {
+        long otro = usuarioEnOtraFranja(1L);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (CerrojosUsuario.Cerrojo cerrojo = cerrojos.adquirir(1L)) {
+            // Otro hilo opera con otro usuario sin esperar
+            Future<Boolean> resultado = executor.submit(() -> {
+                try (CerrojosUsuario.Cerrojo otroCerrojo = cerrojos.adquirir(otro)) {
+                    return true;
+                }
+            });
+            assertTrue(resultado.get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, cerrojos.getAdquisicionesConEspera());
+    }
+
+    @Test
+    public void testEsperaAgotada() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (CerrojosUsuario.Cerrojo cerrojo = cerrojos.adquirir(1L)) {
+            Future<?> resultado = executor.submit(() -> {
+                assertThrows(PrestamoException.class, () -> cerrojos.adquirir(1L));
+                return null;
+            });
+            resultado.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Liberado el cerrojo, se puede volver a adquirir
+        cerrojos.adquirir(1L).close();
+
+        assertEquals(3, cerrojos.getAdquisiciones());
+        assertEquals(1, cerrojos.getAdquisicionesConEspera());
+        assertTrue(cerrojos.getMaxNanosEspera() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(cerrojos.getNanosEspera() >= cerrojos.getMaxNanosEspera());
+    }
+
+    @Test
+    public void testFranjas() throws Exception {
+        assertEquals(64, cerrojos.getNumeroFranjas());
+        assertEquals(128, new CerrojosUsuario(100, 200).getNumeroFranjas());
+        assertEquals(1, new CerrojosUsuario(0, 200).getNumeroFranjas());
+
+        CerrojosUsuario.Cerrojo cerrojo = cerrojos.adquirir(1L);
+        cerrojo.close();
+        cerrojo.close();
+        cerrojos.adquirir(1L).close();
+    }
+
+    @Test
+    public void testCerrojoDistribuido() throws Exception {
+        CerrojoUsuarioDAO dao = mock(CerrojoUsuarioDAO.class);
+        Connection conexion = mock(Connection.class);
+        when(dao.adquirir(eq(1L), anyInt())).thenReturn(conexion);
+        when(dao.adquirir(eq(2L), anyInt())).thenThrow(new DAOException("Tiempo agotado"));
+        CerrojosUsuario distribuidos = new CerrojosUsuario(64, 1000, dao);
+
+        try (CerrojosUsuario.Cerrojo cerrojo = distribuidos.adquirir(1L)) {
+            verify(dao).adquirir(1L, 1);
+        }
+        verify(dao).liberar(conexion, 1L);
+
+        // Si falla el cerrojo de MySQL se libera también el local
+        assertThrows(PrestamoException.class, () -> distribuidos.adquirir(2L));
+        doReturn(conexion).when(dao).adquirir(eq(2L), anyInt());
+        distribuidos.adquirir(2L).close();
+    }
+}
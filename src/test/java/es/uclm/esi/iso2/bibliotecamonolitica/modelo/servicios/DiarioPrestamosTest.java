@@ -0,0 +1,222 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoEventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.EventoPrestamoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO.ConsumidorElegibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Pruebas unitarias para la clase DiarioPrestamos.
+ */
+@ExtendWith(MockitoExtension.class)
+public class DiarioPrestamosTest {
+
+    @Mock
+    private EventoPrestamoDAO mockDAO;
+
+    @Mock
+    private UsuarioDAO mockUsuarioDAO;
+
+    private DiarioPrestamos diario;
+
+    /** Eventos escritos por el DAO simulado, en orden */
+    private final List<EventoPrestamo> escritos = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        diario = new DiarioPrestamos(100000, 500);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        diario.detener(5000);
+    }
+
+    private void simularEscrituras() throws DAOException {
+        doAnswer(inv -> {
+            List<EventoPrestamo> lote = inv.getArgument(0);
+            escritos.addAll(lote);
+            return null;
+        }).when(mockDAO).insertar(anyList());
+    }
+
+    /**
+     * Simula las tablas de préstamos con los préstamos activos indicados,
+     * como pares de ID de usuario y número de préstamos.
+     */
+    private void simularTablas(long... usuariosYPrestamos) throws DAOException {
+        when(mockUsuarioDAO.recorrerElegibilidad(anyInt(), any())).thenAnswer(inv -> {
+            ConsumidorElegibilidad consumidor = inv.getArgument(1);
+            for (int i = 0; i < usuariosYPrestamos.length; i += 2) {
+                consumidor.aceptar(usuariosYPrestamos[i], true, (int) usuariosYPrestamos[i + 1], 0);
+            }
+            return (long) usuariosYPrestamos.length / 2;
+        });
+    }
+
+    private void cargarVacio() throws DAOException {
+        simularTablas();
+        diario.cargar(mockUsuarioDAO);
+    }
+
+    private static EventoPrestamo evento(TipoEventoPrestamo tipo, long prestamoId, long usuarioId, long ejemplarId) {
+        return new EventoPrestamo(tipo, prestamoId, usuarioId, ejemplarId, null, new Date());
+    }
+
+    @Test
+    public void testEscrituraAgrupadaDeOperacionesConcurrentes() throws Exception {
+        simularEscrituras();
+        cargarVacio();
+        diario.iniciar(mockDAO);
+
+        // Miles de préstamos de un ejemplar registrados a la vez desde varios hilos
+        int hilos = 8;
+        int eventosPorHilo = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                final long usuario = h + 1;
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < eventosPorHilo; i++) {
+                        diario.registrar(evento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, usuario * 100000 + i, usuario, i));
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(diario.detener(10000));
+
+        assertEquals((long) hilos * eventosPorHilo, diario.getEscritos());
+        assertEquals(hilos * eventosPorHilo, escritos.size());
+        assertEquals(0, diario.getDescartados());
+        // Muchas operaciones comparten cada transacción
+        assertTrue(diario.getLotes() < diario.getEscritos());
+        for (long usuario = 1; usuario <= hilos; usuario++) {
+            assertEquals(eventosPorHilo, diario.consultar(usuario).getPrestamosActivos());
+        }
+    }
+
+    @Test
+    public void testReintentaLosLotesQueFallan() throws Exception {
+        doThrow(new DAOException("Error simulado")).doNothing().when(mockDAO).insertar(anyList());
+        cargarVacio();
+        diario.iniciar(mockDAO);
+
+        diario.registrar(evento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 10L, 1L, 100L));
+        long limite = System.currentTimeMillis() + 5000;
+        while (diario.getEscritos() == 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, diario.getEscritos());
+        verify(mockDAO, times(2)).insertar(anyList());
+        assertEquals(1, diario.consultar(1L).getPrestamosActivos());
+    }
+
+    @Test
+    public void testCargaDesdeLasTablasDePrestamos() throws Exception {
+        simularTablas(1L, 2L, 2L, 0L);
+
+        diario.cargar(mockUsuarioDAO);
+
+        // Los préstamos activos salen de las tablas; el diario no se lee
+        assertTrue(diario.isCargado());
+        assertEquals(2, diario.consultar(1L).getPrestamosActivos());
+        assertEquals(0, diario.consultar(2L).getPrestamosActivos());
+        verifyNoInteractions(mockDAO);
+    }
+
+    @Test
+    public void testEscritorIniciadoAntesDeLaCarga() throws Exception {
+        simularEscrituras();
+
+        // El escritor trabaja antes de cargar la proyección
+        diario.iniciar(mockDAO);
+        diario.registrar(evento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 10L, 1L, 100L));
+        long limite = System.currentTimeMillis() + 5000;
+        while (diario.getEscritos() == 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, diario.getEscritos());
+
+        // Las tablas ya incluyen ese préstamo, y los lotes siguientes se aplican sobre ellas
+        simularTablas(1L, 1L);
+        diario.cargar(mockUsuarioDAO);
+        diario.registrar(evento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 11L, 1L, 101L));
+        assertTrue(diario.detener(10000));
+
+        assertEquals(2, diario.consultar(1L).getPrestamosActivos());
+        assertEquals(1, diario.consultar(1L).getEjemplaresPrestados());
+    }
+
+    @Test
+    public void testConciliacionCorrigeEventosPerdidos() throws Exception {
+        // Sin proyección cargada no hay nada que conciliar
+        assertEquals(0, diario.conciliar(mockUsuarioDAO));
+        verify(mockUsuarioDAO, never()).recorrerElegibilidad(anyInt(), any());
+
+        simularEscrituras();
+        cargarVacio();
+        diario.iniciar(mockDAO);
+        diario.registrar(evento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 10L, 1L, 100L));
+        assertTrue(diario.detener(10000));
+
+        // Las tablas tienen un préstamo más del usuario 1 y uno del usuario 2 cuyos eventos se perdieron
+        simularTablas(1L, 2L, 2L, 1L, 3L, 0L);
+
+        assertEquals(2, diario.conciliar(mockUsuarioDAO));
+        assertEquals(2, diario.consultar(1L).getPrestamosActivos());
+        assertEquals(1, diario.consultar(2L).getPrestamosActivos());
+        assertEquals(0, diario.conciliar(mockUsuarioDAO));
+        assertEquals(2, diario.getCorrecciones());
+    }
+
+    @Test
+    public void testEscribeEnLotesDeTamanoMaximo() throws Exception {
+        diario = new DiarioPrestamos(100000, 100);
+        simularEscrituras();
+        cargarVacio();
+        for (int i = 0; i < 600; i++) {
+            diario.registrar(evento(TipoEventoPrestamo.EJEMPLAR_PRESTADO, i, 1L, i));
+        }
+        // Los eventos encolados antes de arrancar el escritor se escriben en lotes de como mucho 100
+        diario.iniciar(mockDAO);
+        assertTrue(diario.detener(10000));
+
+        assertEquals(6, diario.getLotes());
+        assertEquals(600, escritos.size());
+        assertEquals(600, diario.consultar(1L).getPrestamosActivos());
+    }
+}
@@ -0,0 +1,283 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Pruebas unitarias para la clase ImportadorCatalogo.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ImportadorCatalogoTest {
+
+    private static final String CABECERA = "isbn,titulo,autor,editorial,anio_publicacion,categoria_id,descripcion\n";
+
+    @Mock
+    private LibroDAO mockDAO;
+
+    /** Libros recibidos por cada llamada a crearLote, en orden */
+    private List<Libro> creados;
+
+    /** Libros recibidos por cada llamada a actualizarLote, en orden */
+    private List<Libro> actualizados;
+
+    /** ISBN que el DAO simulado tiene ya en el catálogo, con su ID */
+    private Map<String, Long> existentes;
+
+    @BeforeEach
+    public void setUp() throws DAOException {
+        creados = Collections.synchronizedList(new ArrayList<>());
+        actualizados = Collections.synchronizedList(new ArrayList<>());
+        existentes = new HashMap<>();
+
+        lenient().when(mockDAO.buscarIdsPorIsbn(anyList())).thenAnswer(invocacion -> {
+            Map<String, Long> encontrados = new HashMap<>();
+            for (Object isbn : invocacion.getArgument(0, List.class)) {
+                if (existentes.containsKey(isbn)) {
+                    encontrados.put((String) isbn, existentes.get(isbn));
+                }
+            }
+            return encontrados;
+        });
+        lenient().when(mockDAO.crearLote(anyList())).thenAnswer(invocacion -> {
+            List<Libro> libros = invocacion.getArgument(0);
+            creados.addAll(libros);
+            return libros;
+        });
+        lenient().doAnswer(invocacion -> {
+            List<Libro> libros = invocacion.getArgument(0);
+            actualizados.addAll(libros);
+            return null;
+        }).when(mockDAO).actualizarLote(anyList());
+    }
+
+    private ImportadorCatalogo.Resumen importar(String csv, ModoImportacion modo, int tamanoBloque)
+            throws IOException, DAOException {
+        return new ImportadorCatalogo(mockDAO, tamanoBloque, 2).importar(new StringReader(csv), ',', modo);
+    }
+
+    @Test
+    public void testImportarLibrosNuevos() throws Exception {
+        String csv = CABECERA
+                + "978-84-376-2277-4,Cien años de soledad,Gabriel García Márquez,Cátedra,1967,3,\"Novela, realismo mágico\"\n"
+                + "0-306-40615-2,Otro libro,Otro autor,,,,\n";
+
+        ImportadorCatalogo.Resumen resumen = importar(csv, ModoImportacion.OMITIR_EXISTENTES, 1000);
+
+        assertEquals(2, resumen.getFilas());
+        assertEquals(2, resumen.getCreadas());
+        assertEquals(0, resumen.getRechazadas());
+        assertEquals(2, creados.size());
+
+        Libro primero = creados.get(0);
+        assertEquals("9788437622774", primero.getIsbn());
+        assertEquals("Cien años de soledad", primero.getTitulo());
+        assertEquals("Cátedra", primero.getEditorial());
+        assertEquals(Integer.valueOf(1967), primero.getAnioPublicacion());
+        assertEquals(Long.valueOf(3), primero.getCategoria().getId());
+        assertEquals("Novela, realismo mágico", primero.getDescripcion());
+        assertNotNull(primero.getFechaAlta());
+
+        Libro segundo = creados.get(1);
+        assertEquals("9780306406157", segundo.getIsbn());
+        assertNull(segundo.getEditorial());
+        assertNull(segundo.getAnioPublicacion());
+        assertNull(segundo.getCategoria());
+    }
+
+    @Test
+    public void testRechazarFilasNoValidas() throws Exception {
+        String csv = CABECERA
+                + "9788400000011,Válido,Autor,,,,\n"
+                + ",Sin ISBN,Autor,,,,\n"
+                + "9788400000012,ISBN incorrecto,Autor,,,,\n"
+                + "9788400000028,,Sin título,,,,\n"
+                + "9788400000035,Año,Autor,,mil,,\n"
+                + "9788400000042,Categoría,Autor,,,-1,\n";
+
+        ImportadorCatalogo.Resumen resumen = importar(csv, ModoImportacion.OMITIR_EXISTENTES, 2);
+
+        assertEquals(6, resumen.getFilas());
+        assertEquals(1, resumen.getCreadas());
+        assertEquals(5, resumen.getRechazadas());
+        List<ImportadorCatalogo.Rechazo> rechazos = resumen.getRechazos();
+        assertEquals(3, rechazos.get(0).getLinea());
+        assertTrue(rechazos.get(0).getMotivo().contains("ISBN"));
+        assertEquals(4, rechazos.get(1).getLinea());
+        assertTrue(rechazos.get(1).getMotivo().contains("9788400000012"));
+        assertEquals(5, rechazos.get(2).getLinea());
+        assertTrue(rechazos.get(2).getMotivo().contains("título"));
+        assertEquals(6, rechazos.get(3).getLinea());
+        assertEquals(7, rechazos.get(4).getLinea());
+    }
+
+    @Test
+    public void testDescartarIsbnDuplicadosEnElFichero() throws Exception {
+        // El ISBN-10 de la tercera fila es el mismo libro que la primera
+        String csv = CABECERA
+                + "978-0-306-40615-7,Primera,Autor,,,,\n"
+                + "9788400000011,Otro,Autor,,,,\n"
+                + "0306406152,Repetida,Autor,,,,\n"
+                + "9788400000011,Repetida,Autor,,,,\n";
+
+        ImportadorCatalogo.Resumen resumen = importar(csv, ModoImportacion.OMITIR_EXISTENTES, 1);
+
+        assertEquals(2, resumen.getCreadas());
+        assertEquals(2, resumen.getDuplicadas());
+        assertEquals("Primera", creados.get(0).getTitulo());
+        assertEquals("Otro", creados.get(1).getTitulo());
+    }
+
+    @Test
+    public void testOmitirLibrosExistentes() throws Exception {
+        existentes.put("9788400000011", 7L);
+        String csv = CABECERA
+                + "9788400000011,Existente,Autor,,,,\n"
+                + "9788400000028,Nuevo,Autor,,,,\n";
+
+        ImportadorCatalogo.Resumen resumen = importar(csv, ModoImportacion.OMITIR_EXISTENTES, 1000);
+
+        assertEquals(1, resumen.getCreadas());
+        assertEquals(1, resumen.getOmitidas());
+        assertEquals(0, resumen.getActualizadas());
+        assertEquals("Nuevo", creados.get(0).getTitulo());
+        assertTrue(actualizados.isEmpty());
+    }
+
+    @Test
+    public void testActualizarLibrosExistentes() throws Exception {
+        existentes.put("9788400000011", 7L);
+        String csv = CABECERA
+                + "9788400000011,Título corregido,Autor,,,,\n"
+                + "9788400000028,Nuevo,Autor,,,,\n";
+
+        ImportadorCatalogo.Resumen resumen = importar(csv, ModoImportacion.ACTUALIZAR_EXISTENTES, 1000);
+
+        assertEquals(1, resumen.getCreadas());
+        assertEquals(1, resumen.getActualizadas());
+        assertEquals(0, resumen.getOmitidas());
+        assertEquals(1, actualizados.size());
+        assertEquals(Long.valueOf(7), actualizados.get(0).getId());
+        assertEquals("Título corregido", actualizados.get(0).getTitulo());
+    }
+
+    @Test
+    public void testImportarMuchosBloquesEnOrden() throws Exception {
+        StringBuilder csv = new StringBuilder("titulo;autor;isbn\n");
+        List<String> isbns = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String isbn = isbn13("978" + String.format("%09d", i));
+            isbns.add(isbn);
+            csv.append("Libro ").append(i).append(";Autor;").append(isbn).append('\n');
+        }
+
+        ImportadorCatalogo.Resumen resumen = new ImportadorCatalogo(mockDAO, 7, 4)
+                .importar(new StringReader(csv.toString()), ';', ModoImportacion.OMITIR_EXISTENTES);
+
+        assertEquals(500, resumen.getFilas());
+        assertEquals(500, resumen.getCreadas());
+        assertEquals(500, creados.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(isbns.get(i), creados.get(i).getIsbn());
+        }
+    }
+
+    @Test
+    public void testErrorAlEscribirDetieneLaImportacion() throws Exception {
+        doThrow(new DAOException("Error de prueba")).when(mockDAO).crearLote(anyList());
+        String csv = CABECERA
+                + "9788400000011,Uno,Autor,,,,\n"
+                + "9788400000028,Dos,Autor,,,,\n";
+
+        DAOException e = assertThrows(DAOException.class,
+                () -> importar(csv, ModoImportacion.OMITIR_EXISTENTES, 1));
+        assertEquals("Error de prueba", e.getMessage());
+        verify(mockDAO, atMost(2)).crearLote(anyList());
+    }
+
+    @Test
+    public void testImportarVolcadoMarc21(@TempDir Path directorio) throws Exception {
+        ByteArrayOutputStream volcado = new ByteArrayOutputStream();
+        volcado.write(registroMarc21("020  \u001Fa978-84-376-2277-4", "1001 \u001FaGarcía Márquez, Gabriel.",
+                "24510\u001FaCien años de soledad /", "260  \u001FbCátedra,\u001Fc1987."));
+        volcado.write(registroMarc21("24510\u001FaSin ISBN"));
+        Path fichero = Files.write(directorio.resolve("volcado.mrc"), volcado.toByteArray());
+
+        ImportadorCatalogo.Resumen resumen = new ImportadorCatalogo(mockDAO, 10, 2)
+                .importar(fichero, ModoImportacion.OMITIR_EXISTENTES);
+
+        assertEquals(2, resumen.getFilas());
+        assertEquals(1, resumen.getCreadas());
+        assertEquals(1, resumen.getRechazadas());
+        assertEquals(2, resumen.getRechazos().get(0).getLinea());
+        Libro libro = creados.get(0);
+        assertEquals("9788437622774", libro.getIsbn());
+        assertEquals("Cien años de soledad", libro.getTitulo());
+        assertEquals("García Márquez, Gabriel", libro.getAutor());
+        assertEquals("Cátedra", libro.getEditorial());
+        assertEquals(Integer.valueOf(1987), libro.getAnioPublicacion());
+    }
+
+    @Test
+    public void testCabeceraSinColumnaObligatoria() {
+        IOException e = assertThrows(IOException.class,
+                () -> importar("isbn,titulo\n9788400000011,Uno\n", ModoImportacion.OMITIR_EXISTENTES, 10));
+        assertTrue(e.getMessage().contains("autor"));
+        verifyNoInteractions(mockDAO);
+    }
+
+    /**
+     * Construye un registro MARC21 en UTF-8 con los campos indicados, cada uno
+     * con su etiqueta delante.
+     */
+    private static byte[] registroMarc21(String... campos) throws IOException {
+        ByteArrayOutputStream directorio = new ByteArrayOutputStream();
+        ByteArrayOutputStream datos = new ByteArrayOutputStream();
+        for (String campo : campos) {
+            byte[] bytes = (campo.substring(3) + "\u001E").getBytes(StandardCharsets.UTF_8);
+            directorio.write(String.format("%s%04d%05d", campo.substring(0, 3), bytes.length, datos.size())
+                    .getBytes(StandardCharsets.US_ASCII));
+            datos.write(bytes);
+        }
+        directorio.write(0x1E);
+        int base = 24 + directorio.size();
+        ByteArrayOutputStream registro = new ByteArrayOutputStream();
+        registro.write(String.format("%05dnam a22%05d   4500", base + datos.size() + 1, base)
+                .getBytes(StandardCharsets.US_ASCII));
+        registro.write(directorio.toByteArray());
+        registro.write(datos.toByteArray());
+        registro.write(0x1D);
+        return registro.toByteArray();
+    }
+
+    private static String isbn13(String prefijo) {
+        int suma = 0;
+        for (int i = 0; i < 12; i++) {
+            suma += (prefijo.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return prefijo + (10 - suma % 10) % 10;
+    }
+}
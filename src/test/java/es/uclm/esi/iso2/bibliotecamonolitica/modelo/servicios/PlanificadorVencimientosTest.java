@@ -0,0 +1,165 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios.PlanificadorVencimientos.Aviso;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios.PlanificadorVencimientos.TipoAviso;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.VencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.VencimientoDAO.ConsumidorVencimiento;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
+
+/**
+ * Pruebas unitarias para la clase PlanificadorVencimientos.
+ */
+public class PlanificadorVencimientosTest {
+
+    private static final long DIA = TimeUnit.DAYS.toMillis(1);
+
+    private PlanificadorVencimientos planificador;
+    private List<Aviso> avisos;
+    private long ahora;
+
+    @BeforeEach
+    public void setUp() {
+        ahora = System.currentTimeMillis();
+        planificador = new PlanificadorVencimientos(TimeUnit.MINUTES.toMillis(1), 2, 30, ahora);
+        avisos = new ArrayList<>();
+        planificador.addObservador(avisos::add);
+    }
+
+    @Test
+    public void testAvisosDeUnPrestamo() {
+        planificador.programar(10L, 1L, new Date(ahora + 15 * DIA));
+        assertEquals(3, planificador.getAvisosPendientes());
+
+        assertEquals(0, planificador.avanzar(ahora + 12 * DIA));
+        assertEquals(1, planificador.avanzar(ahora + 13 * DIA));
+        assertEquals(TipoAviso.RECORDATORIO, avisos.get(0).getTipo());
+        assertEquals(1L, avisos.get(0).getUsuarioId());
+
+        assertEquals(1, planificador.avanzar(ahora + 16 * DIA));
+        assertEquals(TipoAviso.VENCIMIENTO, avisos.get(1).getTipo());
+        assertEquals(1, planificador.avanzar(ahora + 45 * DIA));
+        assertEquals(TipoAviso.BLOQUEO, avisos.get(2).getTipo());
+        assertEquals(3, planificador.getAvisosEntregados());
+        assertEquals(0, planificador.getAvisosPendientes());
+    }
+
+    @Test
+    public void testRenovacionYDevolucion() {
+        planificador.programar(10L, 1L, new Date(ahora + 5 * DIA));
+        planificador.programar(11L, 1L, new Date(ahora + 5 * DIA));
+
+        // La renovación aplaza los avisos y la devolución los cancela
+        planificador.programar(10L, 1L, new Date(ahora + 20 * DIA));
+        planificador.cancelar(11L);
+
+        assertEquals(0, planificador.avanzar(ahora + 10 * DIA));
+        assertEquals(1, planificador.avanzar(ahora + 19 * DIA));
+        assertEquals(10L, avisos.get(0).getPrestamoId());
+    }
+
+    @Test
+    public void testAvisosVencidosSeEntreganAlCargar() throws Exception {
+        // El préstamo 1 venció hace 3 días; el 2 venció hace 40; el 3 está en curso;
+        // el 4 venció hace 40 y su bloqueo ya se aplicó antes de parar la aplicación
+        VencimientoDAO vencimientoDAO = mock(VencimientoDAO.class);
+        when(vencimientoDAO.recorrerVencimientos(anyInt(), any())).thenAnswer(inv -> {
+            ConsumidorVencimiento consumidor = inv.getArgument(1);
+            consumidor.aceptar(1L, 1L, new Date(ahora - 3 * DIA), false);
+            consumidor.aceptar(2L, 2L, new Date(ahora - 40 * DIA), false);
+            // El préstamo 3 se devuelve mientras se carga: su fila ya no vale
+            planificador.cancelar(3L);
+            consumidor.aceptar(3L, 3L, new Date(ahora + 10 * DIA), false);
+            consumidor.aceptar(4L, 4L, new Date(ahora - 40 * DIA), true);
+            return 4L;
+        });
+
+        planificador.cargar(vencimientoDAO);
+
+        // Los recordatorios pasados y los bloqueos ya aplicados se descartan
+        assertTrue(planificador.isCargado());
+        assertEquals(5, planificador.getAvisosPendientes());
+
+        // Los vencimientos y el bloqueo que vencieron con la aplicación parada se entregan enseguida
+        assertEquals(4, planificador.avanzar(ahora));
+        assertEquals(TipoAviso.VENCIMIENTO, avisos.get(0).getTipo());
+        assertEquals(1L, avisos.get(0).getPrestamoId());
+        assertEquals(TipoAviso.VENCIMIENTO, avisos.get(1).getTipo());
+        assertEquals(2L, avisos.get(1).getPrestamoId());
+        assertEquals(TipoAviso.BLOQUEO, avisos.get(2).getTipo());
+        assertEquals(2L, avisos.get(2).getPrestamoId());
+        assertEquals(TipoAviso.VENCIMIENTO, avisos.get(3).getTipo());
+        assertEquals(4L, avisos.get(3).getPrestamoId());
+
+        // El bloqueo del préstamo 1 llega a su hora
+        assertEquals(0, planificador.avanzar(ahora + 26 * DIA));
+        assertEquals(1, planificador.avanzar(ahora + 28 * DIA));
+        assertEquals(TipoAviso.BLOQUEO, avisos.get(4).getTipo());
+        assertEquals(1L, avisos.get(4).getPrestamoId());
+    }
+
+    @Test
+    public void testErrorDeUnObservadorNoDetieneLosAvisos() {
+        PlanificadorVencimientos.ObservadorVencimientos fallido = aviso -> {
+            throw new IllegalStateException("Error simulado");
+        };
+        planificador = new PlanificadorVencimientos(TimeUnit.MINUTES.toMillis(1), 0, 0, ahora);
+        planificador.addObservador(fallido);
+        planificador.addObservador(avisos::add);
+        planificador.programar(1L, 1L, new Date(ahora));
+        planificador.programar(2L, 1L, new Date(ahora + DIA));
+
+        assertEquals(2, planificador.avanzar(ahora + 3 * DIA));
+        assertEquals(2, avisos.size());
+    }
+
+    @Test
+    public void testAccionesDeLosAvisos() throws Exception {
+        UsuarioDAO usuarioDAO = mock(UsuarioDAO.class);
+        VencimientoDAO vencimientoDAO = mock(VencimientoDAO.class);
+        MultaVencimientoDAO multaVencimientoDAO = mock(MultaVencimientoDAO.class);
+        IndiceElegibilidad indice = new IndiceElegibilidad();
+        indice.registrarUsuario(1L, false, 1, 0);
+        AvisosVencimiento acciones = new AvisosVencimiento(usuarioDAO, vencimientoDAO, multaVencimientoDAO,
+                new BigDecimal("0.50"));
+        acciones.setIndiceElegibilidad(indice);
+
+        // Vencimiento: se crea la multa devengada
+        when(multaVencimientoDAO.registrarMultas(anyList(), any(BigDecimal[].class), any(Date.class)))
+                .thenReturn(new boolean[] {true});
+        acciones.avisar(new Aviso(TipoAviso.VENCIMIENTO, 10L, 1L, new Date(ahora - DIA)));
+        assertEquals(1, indice.getMultasActivas(1L));
+
+        // Bloqueo: el usuario activo pasa a bloqueado
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+        usuario.setEstado(EstadoUsuario.ACTIVO);
+        when(usuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        acciones.avisar(new Aviso(TipoAviso.BLOQUEO, 10L, 1L, new Date(ahora - 30 * DIA)));
+        assertEquals(EstadoUsuario.BLOQUEADO, usuario.getEstado());
+        verify(usuarioDAO).update(usuario);
+        verify(vencimientoDAO).marcarBloqueoAplicado(10L);
+
+        // Un usuario ya bloqueado no se vuelve a guardar, pero el bloqueo del préstamo queda aplicado
+        acciones.avisar(new Aviso(TipoAviso.BLOQUEO, 11L, 1L, new Date(ahora - 30 * DIA)));
+        verify(usuarioDAO, times(1)).update(any(Usuario.class));
+        verify(vencimientoDAO).marcarBloqueoAplicado(11L);
+    }
+}
@@ -0,0 +1,92 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EventoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoEventoPrestamo;
+
+/**
+ * Pruebas unitarias para la clase ProyeccionPrestamos.
+ */
+public class ProyeccionPrestamosTest {
+
+    private ProyeccionPrestamos proyeccion;
+
+    @BeforeEach
+    public void setUp() {
+        proyeccion = new ProyeccionPrestamos();
+    }
+
+    private void aplicar(TipoEventoPrestamo tipo, long prestamoId, long usuarioId, long ejemplarId) {
+        proyeccion.aplicar(new EventoPrestamo(tipo, prestamoId, usuarioId, ejemplarId,
+                tipo == TipoEventoPrestamo.MULTA_GENERADA ? new BigDecimal("1.50") : null, new Date()));
+    }
+
+    @Test
+    public void testPrestamoQuedaActivoHastaDevolverElUltimoEjemplar() {
+        aplicar(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 10L, 1L, 100L);
+        aplicar(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 10L, 1L, 101L);
+        aplicar(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 11L, 1L, 102L);
+        aplicar(TipoEventoPrestamo.PRESTAMO_RENOVADO, 10L, 1L, 0);
+
+        ProyeccionPrestamos.ResumenUsuario resumen = proyeccion.consultar(1L);
+        assertEquals(2, resumen.getPrestamosActivos());
+        assertEquals(3, resumen.getEjemplaresPrestados());
+        assertEquals(1, resumen.getRenovaciones());
+
+        aplicar(TipoEventoPrestamo.EJEMPLAR_DEVUELTO, 10L, 1L, 100L);
+        assertEquals(2, proyeccion.consultar(1L).getPrestamosActivos());
+        aplicar(TipoEventoPrestamo.EJEMPLAR_DEVUELTO, 10L, 1L, 101L);
+        aplicar(TipoEventoPrestamo.MULTA_GENERADA, 10L, 1L, 0);
+
+        resumen = proyeccion.consultar(1L);
+        assertEquals(1, resumen.getPrestamosActivos());
+        assertEquals(1, resumen.getEjemplaresPrestados());
+        assertEquals(1, resumen.getMultas());
+        assertEquals(1, proyeccion.getPrestamosEnCurso());
+    }
+
+    @Test
+    public void testDevolucionDeUnPrestamoAnteriorALaCarga() {
+        aplicar(TipoEventoPrestamo.EJEMPLAR_DEVUELTO, 5L, 1L, 100L);
+
+        ProyeccionPrestamos.ResumenUsuario resumen = proyeccion.consultar(1L);
+        assertEquals(0, resumen.getPrestamosActivos());
+        assertEquals(0, resumen.getEjemplaresPrestados());
+        assertEquals(0, proyeccion.consultar(99L).getPrestamosActivos());
+    }
+
+    @Test
+    public void testConciliacionRespetaLosUsuariosModificados() {
+        aplicar(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 10L, 1L, 100L);
+        aplicar(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 11L, 2L, 101L);
+
+        proyeccion.iniciarConciliacion();
+        // El usuario 2 presta otro ejemplar después de leer la base de datos
+        aplicar(TipoEventoPrestamo.EJEMPLAR_PRESTADO, 12L, 2L, 102L);
+        Map<Long, Integer> leidos = new HashMap<>();
+        leidos.put(1L, 3);
+        leidos.put(2L, 1);
+        leidos.put(3L, 1);
+        leidos.put(4L, 0);
+        leidos.put(5L, 2);
+        int corregidos = proyeccion.terminarConciliacion(leidos, Collections.singleton(5L));
+
+        assertEquals(2, corregidos);
+        assertEquals(3, proyeccion.consultar(1L).getPrestamosActivos());
+        assertEquals(2, proyeccion.consultar(2L).getPrestamosActivos());
+        assertEquals(1, proyeccion.consultar(3L).getPrestamosActivos());
+        // Los usuarios sin préstamos ni eventos no se añaden
+        assertEquals(3, proyeccion.getNumeroUsuarios());
+        assertEquals(0, proyeccion.consultar(5L).getPrestamosActivos());
+    }
+}
@@ -0,0 +1,109 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase RuedaTemporizadores.
+ */
+public class RuedaTemporizadoresTest {
+
+    private static final long TIC = 1000;
+
+    @Test
+    public void testVenceCadaTemporizadorEnSuTic() {
+        RuedaTemporizadores<String> rueda = new RuedaTemporizadores<>(TIC, 0);
+        long nivel1 = 5 * 64 * TIC + 7 * TIC;
+        long nivel2 = 3 * 64 * 64 * TIC + 2 * 64 * TIC + 9 * TIC;
+        assertTrue(rueda.programar(1, 5 * TIC, "nivel0"));
+        assertTrue(rueda.programar(2, nivel1, "nivel1"));
+        assertTrue(rueda.programar(3, nivel2, "nivel2"));
+        assertEquals(3, rueda.size());
+
+        assertTrue(rueda.avanzar(5 * TIC - 1).isEmpty());
+        assertEquals(Collections.singletonList("nivel0"), rueda.avanzar(5 * TIC));
+        assertTrue(rueda.avanzar(nivel1 - 1).isEmpty());
+        assertEquals(Collections.singletonList("nivel1"), rueda.avanzar(nivel1));
+        assertTrue(rueda.avanzar(nivel2 - 1).isEmpty());
+        assertEquals(Collections.singletonList("nivel2"), rueda.avanzar(nivel2 + 10 * TIC));
+        assertEquals(0, rueda.size());
+    }
+
+    @Test
+    public void testReprogramarYCancelar() {
+        RuedaTemporizadores<String> rueda = new RuedaTemporizadores<>(TIC, 0);
+        rueda.programar(1, 10 * TIC, "primero");
+        rueda.programar(2, 20 * TIC, "segundo");
+
+        // Programar la misma clave sustituye el temporizador
+        rueda.programar(1, 100 * TIC, "reprogramado");
+        assertTrue(rueda.cancelar(2));
+        assertFalse(rueda.cancelar(2));
+
+        assertTrue(rueda.avanzar(50 * TIC).isEmpty());
+        assertEquals(Collections.singletonList("reprogramado"), rueda.avanzar(100 * TIC));
+    }
+
+    @Test
+    public void testTemporizadoresAtrasadosYFueraDeAlcance() {
+        RuedaTemporizadores<String> rueda = new RuedaTemporizadores<>(TIC, 100 * TIC);
+
+        // Un instante pasado vence en el siguiente avance
+        rueda.programar(1, 10 * TIC, "atrasado");
+        assertEquals(Collections.singletonList("atrasado"), rueda.avanzar(100 * TIC));
+
+        assertFalse(rueda.programar(2, 100 * TIC + rueda.getAlcance(), "lejano"));
+        assertEquals(0, rueda.size());
+    }
+
+    @Test
+    public void testOrdenDeVencimientoAleatorio() {
+        // El reloj empieza cerca de una vuelta del nivel más alto para cruzarla
+        long inicio = ((1L << 24) - 200) * TIC;
+        RuedaTemporizadores<Long> rueda = new RuedaTemporizadores<>(TIC, inicio);
+        Random random = new Random(42);
+        Map<Long, Long> pendientes = new HashMap<>();
+        for (long clave = 0; clave < 20_000; clave++) {
+            long instante = inicio + 1 + (long) (random.nextDouble() * 64 * 64 * 64 * 4 * TIC);
+            assertTrue(rueda.programar(clave, instante, clave));
+            pendientes.put(clave, instante);
+        }
+        for (long clave = 0; clave < 20_000; clave += 7) {
+            assertTrue(rueda.cancelar(clave));
+            pendientes.remove(clave);
+        }
+
+        long ahora = inicio;
+        while (!pendientes.isEmpty()) {
+            ahora += (long) (random.nextDouble() * 5000 * TIC);
+            List<Long> vencidos = rueda.avanzar(ahora);
+            List<Long> esperados = new ArrayList<>();
+            for (Map.Entry<Long, Long> entrada : pendientes.entrySet()) {
+                if (entrada.getValue() / TIC <= ahora / TIC) {
+                    esperados.add(entrada.getKey());
+                }
+            }
+            Long[] ordenados = vencidos.toArray(new Long[0]);
+            Arrays.sort(ordenados);
+            Collections.sort(esperados);
+            assertEquals(esperados, Arrays.asList(ordenados));
+            // Los temporizadores vencen por orden de tic
+            for (int i = 1; i < vencidos.size(); i++) {
+                assertTrue(pendientes.get(vencidos.get(i - 1)) / TIC <= pendientes.get(vencidos.get(i)) / TIC);
+            }
+            for (Long clave : vencidos) {
+                pendientes.remove(clave);
+            }
+        }
+        assertEquals(0, rueda.size());
+    }
+}
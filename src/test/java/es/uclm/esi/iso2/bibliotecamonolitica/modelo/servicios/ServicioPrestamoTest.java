@@ -4,12 +4,19 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +27,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.*;
 import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.*;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceDisponibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.*;
 
 /**
@@ -43,6 +52,12 @@ public class ServicioPrestamoTest {
     @Mock
     private MultaDAO mockMultaDAO;
     
+    @Mock
+    private PrestamoLoteDAO mockPrestamoLoteDAO;
+    
+    @Mock
+    private MultaVencimientoDAO mockMultaVencimientoDAO;
+    
     @InjectMocks
     private ServicioPrestamo servicioPrestamo;
     
@@ -52,6 +67,8 @@ public class ServicioPrestamoTest {
     private List<Long> ejemplarIds;
     private Prestamo prestamo;
     private DetallePrestamo detallePrestamo;
+    private PlanificadorVencimientos planificador;
+    private DiarioPrestamos diario;
     
     @BeforeEach
     public void setUp() throws NotNullValueAllowedException {
@@ -80,6 +97,7 @@ public class ServicioPrestamoTest {
         ejemplar2.setLibro(libro);
         ejemplar2.setEstado(EstadoEjemplar.DISPONIBLE);
         ejemplar2.setCodigoBarras("EJM-002");
+        libro.setEjemplares(new ArrayList<>(Arrays.asList(ejemplar1, ejemplar2)));
         
         ejemplarIds = Arrays.asList(1L, 2L);
         
@@ -98,17 +116,23 @@ public class ServicioPrestamoTest {
         detallePrestamo.setPrestamo(prestamo);
         detallePrestamo.setEjemplar(ejemplar1);
         detallePrestamo.setEstado(EstadoDetallePrestamo.PRESTADO);
+        
+        // Índice de elegibilidad propio y vacío: cada prueba parte de la base de datos
+        servicioPrestamo.setIndiceElegibilidad(new IndiceElegibilidad());
+        planificador = new PlanificadorVencimientos(60_000, 2, 30, System.currentTimeMillis());
+        servicioPrestamo.setPlanificadorVencimientos(planificador);
+        diario = new DiarioPrestamos(1000, 100);
+        servicioPrestamo.setDiarioPrestamos(diario);
     }
     
     @Test
     public void testRealizarPrestamo() throws Exception {
         // Configurar comportamiento de los mocks
         when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
-        when(mockEjemplarDAO.findById(1L)).thenReturn(Optional.of(ejemplar1));
-        when(mockEjemplarDAO.findById(2L)).thenReturn(Optional.of(ejemplar2));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(ejemplarIds)).thenReturn(Arrays.asList(ejemplar1, ejemplar2));
         when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
         when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
-        when(mockPrestamoDAO.create(any(Prestamo.class))).thenAnswer(inv -> {
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> {
             Prestamo p = inv.getArgument(0);
             p.setId(1L);
             return p;
@@ -117,21 +141,69 @@ public class ServicioPrestamoTest {
         // Ejecutar método
         Prestamo resultado = servicioPrestamo.realizarPrestamo(1L, ejemplarIds);
         
-        // Verificar comportamiento y resultado
+        // Verificar comportamiento y resultado: una consulta para los ejemplares
+        // y un único registro del préstamo con todos sus detalles
         verify(mockUsuarioDAO).findById(1L);
-        verify(mockEjemplarDAO).findById(1L);
-        verify(mockEjemplarDAO).findById(2L);
         verify(mockMultaDAO).existeMultaActivaUsuario(1L);
         verify(mockPrestamoDAO).contarPrestamosActivosUsuario(1L);
-        verify(mockPrestamoDAO).create(any(Prestamo.class));
-        verify(mockDetallePrestamDAO, times(2)).create(any(DetallePrestamo.class));
-        verify(mockEjemplarDAO, times(2)).update(any(Ejemplar.class));
+        verify(mockPrestamoLoteDAO).findEjemplaresByIds(ejemplarIds);
+        verify(mockPrestamoLoteDAO).registrarPrestamo(any(Prestamo.class));
+        verifyNoInteractions(mockEjemplarDAO, mockDetallePrestamDAO);
+        verify(mockPrestamoDAO, never()).create(any(Prestamo.class));
         
         assertNotNull(resultado);
         assertEquals(usuario, resultado.getUsuario());
         assertEquals(EstadoPrestamo.ACTIVO, resultado.getEstado());
         assertNotNull(resultado.getFecha());
         assertNotNull(resultado.getFechaDevolucionPrevista());
+        assertEquals(2, resultado.getDetalles().size());
+        assertEquals(ejemplar1, resultado.getDetalles().get(0).getEjemplar());
+        assertEquals(ejemplar2, resultado.getDetalles().get(1).getEjemplar());
+        assertEquals(EstadoEjemplar.PRESTADO, ejemplar1.getEstado());
+        assertEquals(EstadoEjemplar.PRESTADO, ejemplar2.getEstado());
+        assertEquals(0, libro.contarEjemplaresDisponibles());
+        assertEquals(2, libro.contarEjemplares(EstadoEjemplar.PRESTADO));
+    }
+    
+    @Test
+    public void testRealizarPrestamoEjemplarNoEncontrado() throws Exception {
+        // Configurar comportamiento de los mocks: el ejemplar 2 no existe
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(ejemplarIds)).thenReturn(Arrays.asList(ejemplar1));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
+        
+        // Verificar que se lanza excepción sin registrar nada
+        assertThrows(PrestamoException.class, () -> {
+            servicioPrestamo.realizarPrestamo(1L, ejemplarIds);
+        });
+        verify(mockPrestamoLoteDAO, never()).registrarPrestamo(any(Prestamo.class));
+    }
+    
+    @Test
+    public void testRealizarPrestamoEjemplarYaPrestadoAlRegistrar() throws Exception {
+        // Índice propio con los dos ejemplares disponibles
+        IndiceDisponibilidad indice = new IndiceDisponibilidad();
+        indice.actualizar(ejemplar1);
+        indice.actualizar(ejemplar2);
+        servicioPrestamo.setIndiceDisponibilidad(indice);
+        
+        // Configurar comportamiento de los mocks: otro préstamo se adelanta y el
+        // cambio de estado condicional no encuentra todos los ejemplares disponibles
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(ejemplarIds)).thenReturn(Arrays.asList(ejemplar1, ejemplar2));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class)))
+                .thenThrow(new EjemplarNoDisponibleException("Algún ejemplar ya no está disponible"));
+        
+        // Verificar que se lanza excepción y no cambia nada en memoria
+        assertThrows(PrestamoException.class, () -> {
+            servicioPrestamo.realizarPrestamo(1L, ejemplarIds);
+        });
+        assertEquals(EstadoEjemplar.DISPONIBLE, ejemplar1.getEstado());
+        assertEquals(EstadoEjemplar.DISPONIBLE, ejemplar2.getEstado());
+        assertEquals(2, indice.contarDisponibles(1L));
     }
     
     @Test
@@ -145,6 +217,14 @@ public class ServicioPrestamoTest {
         });
     }
     
+    @Test
+    public void testRealizarPrestamoSinUsuario() {
+        // Verificar que se lanza la excepción declarada y no un NullPointerException
+        assertThrows(PrestamoException.class, () -> {
+            servicioPrestamo.realizarPrestamo(null, ejemplarIds);
+        });
+    }
+    
     @Test
     public void testRealizarPrestamoUsuarioInactivo() throws Exception {
         // Configurar usuario inactivo
@@ -191,7 +271,7 @@ public class ServicioPrestamoTest {
         
         // Configurar comportamiento de los mocks
         when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
-        when(mockEjemplarDAO.findById(1L)).thenReturn(Optional.of(ejemplar1));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(ejemplar1));
         when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
         when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
         
@@ -220,8 +300,8 @@ public class ServicioPrestamoTest {
         // Ejecutar método
         Prestamo resultado = servicioPrestamo.renovarPrestamo(1L);
         
-        // Verificar comportamiento y resultado
-        verify(mockPrestamoDAO).findById(1L);
+        // Verificar comportamiento y resultado: el préstamo se relee con el cerrojo del usuario
+        verify(mockPrestamoDAO, times(2)).findById(1L);
         verify(mockPrestamoDAO).contarRenovacionesPrestamo(1L);
         verify(mockPrestamoDAO).update(prestamo);
         
@@ -309,6 +389,45 @@ public class ServicioPrestamoTest {
         assertEquals(fechaDevolucion, detallePrestamo.getFechaDevolucionReal());
     }
     
+    @Test
+    public void testRegistrarDevolucionApartaEjemplarReservado() throws Exception {
+        List<DetallePrestamo> detalles = new ArrayList<>();
+        detalles.add(detallePrestamo);
+        prestamo.setDetalles(detalles);
+        IndiceDisponibilidad indice = new IndiceDisponibilidad();
+        servicioPrestamo.setIndiceDisponibilidad(indice);
+        ServicioReserva servicioReserva = mock(ServicioReserva.class);
+        servicioPrestamo.setServicioReserva(servicioReserva);
+
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenReturn(prestamo);
+        when(servicioReserva.asignarEjemplar(1L, 1L)).thenReturn(true);
+
+        servicioPrestamo.registrarDevolucion(1L, new Date());
+
+        // El ejemplar queda apartado para la reserva y no cuenta como disponible
+        verify(servicioReserva).asignarEjemplar(1L, 1L);
+        assertEquals(EstadoEjemplar.RESERVADO, ejemplar1.getEstado());
+        assertFalse(indice.tieneDisponibles(1L));
+        assertEquals(1, libro.contarEjemplares(EstadoEjemplar.RESERVADO));
+    }
+    
+    @Test
+    public void testRealizarPrestamoDeEjemplarReservado() throws Exception {
+        // El ejemplar apartado pasa la comprobación previa; la transacción decide si es del usuario
+        ejemplar1.setEstado(EstadoEjemplar.RESERVADO);
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(ejemplar1));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Prestamo resultado = servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L));
+
+        assertEquals(1, resultado.getDetalles().size());
+        assertEquals(EstadoEjemplar.PRESTADO, ejemplar1.getEstado());
+    }
+    
     @Test
     public void testRegistrarDevolucionConRetraso() throws Exception {
         // Configurar préstamo con detalle y fecha vencida
@@ -325,7 +444,8 @@ public class ServicioPrestamoTest {
         when(mockEjemplarDAO.update(any(Ejemplar.class))).thenReturn(ejemplar1);
         when(mockDetallePrestamDAO.update(any(DetallePrestamo.class))).thenReturn(detallePrestamo);
         when(mockPrestamoDAO.update(any(Prestamo.class))).thenReturn(prestamo);
-        when(mockMultaDAO.create(any(Multa.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(mockMultaVencimientoDAO.registrarMultaDevolucion(eq(1L), any(), any()))
+                .thenReturn(MultaVencimientoDAO.MultaDevolucion.CREADA);
         
         // Fecha de devolución actual
         Date fechaDevolucion = new Date();
@@ -338,12 +458,166 @@ public class ServicioPrestamoTest {
         verify(mockEjemplarDAO).update(ejemplar1);
         verify(mockDetallePrestamDAO).update(detallePrestamo);
         verify(mockPrestamoDAO).update(prestamo);
-        verify(mockMultaDAO).create(any(Multa.class)); // Debe crear multa por retraso
+        verify(mockMultaVencimientoDAO).registrarMultaDevolucion(eq(1L), any(BigDecimal.class),
+                eq(fechaDevolucion)); // Debe crear multa por retraso
         
         assertNotNull(resultado);
         assertEquals(EstadoPrestamo.DEVUELTO, resultado.getEstado());
     }
     
+    @Test
+    public void testRegistrarDevolucionConMultaDevengada() throws Exception {
+        List<DetallePrestamo> detalles = new ArrayList<>();
+        detalles.add(detallePrestamo);
+        prestamo.setDetalles(detalles);
+        
+        Date fechaDevolucion = new Date();
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(fechaDevolucion);
+        cal.add(Calendar.DAY_OF_MONTH, -5); // 5 días de retraso
+        prestamo.setFechaDevolucionPrevista(cal.getTime());
+        
+        // La tarea de multas vencidas ya creó la multa del préstamo
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenReturn(prestamo);
+        when(mockMultaVencimientoDAO.registrarMultaDevolucion(eq(1L), any(), any()))
+                .thenReturn(MultaVencimientoDAO.MultaDevolucion.ACTUALIZADA);
+        
+        Prestamo resultado = servicioPrestamo.registrarDevolucion(1L, fechaDevolucion);
+        
+        // Se fija el importe final de la multa existente sin crear otra
+        verify(mockMultaVencimientoDAO).registrarMultaDevolucion(1L, new BigDecimal("2.50"), fechaDevolucion);
+        verify(mockMultaDAO, never()).create(any(Multa.class));
+        assertEquals(EstadoPrestamo.DEVUELTO, resultado.getEstado());
+    }
+    
+    @Test
+    public void testRegistrarDevolucionConMultaDevengadaYaPagada() throws Exception {
+        List<DetallePrestamo> detalles = new ArrayList<>();
+        detalles.add(detallePrestamo);
+        prestamo.setDetalles(detalles);
+        IndiceElegibilidad indiceElegibilidad = new IndiceElegibilidad();
+        indiceElegibilidad.registrarUsuario(1L, false, 1, 0);
+        servicioPrestamo.setIndiceElegibilidad(indiceElegibilidad);
+        
+        Date fechaDevolucion = new Date();
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(fechaDevolucion);
+        cal.add(Calendar.DAY_OF_MONTH, -5); // 5 días de retraso
+        prestamo.setFechaDevolucionPrevista(cal.getTime());
+        
+        // El usuario ya pagó la multa que creó la tarea de multas vencidas
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenReturn(prestamo);
+        when(mockMultaVencimientoDAO.registrarMultaDevolucion(eq(1L), any(), any()))
+                .thenReturn(MultaVencimientoDAO.MultaDevolucion.RESUELTA);
+        
+        Prestamo resultado = servicioPrestamo.registrarDevolucion(1L, fechaDevolucion);
+        
+        // No se crea una segunda multa por el mismo retraso
+        verify(mockMultaVencimientoDAO).registrarMultaDevolucion(1L, new BigDecimal("2.50"), fechaDevolucion);
+        verify(mockMultaDAO, never()).create(any(Multa.class));
+        assertEquals(IndiceElegibilidad.Resultado.APTO, indiceElegibilidad.comprobarPrestamo(1L, 5));
+        assertEquals(EstadoPrestamo.DEVUELTO, resultado.getEstado());
+    }
+    
+    @Test
+    public void testRegistrarDevolucionesPorCodigoDeBarras() throws Exception {
+        IndiceDisponibilidad indiceDisponibilidad = new IndiceDisponibilidad();
+        IndiceElegibilidad indiceElegibilidad = new IndiceElegibilidad();
+        indiceElegibilidad.registrarUsuario(1L, false, 1, 0);
+        servicioPrestamo.setIndiceDisponibilidad(indiceDisponibilidad);
+        servicioPrestamo.setIndiceElegibilidad(indiceElegibilidad);
+
+        // EJM-001 cierra el préstamo 1 con una multa nueva; EJM-999 no existe
+        PrestamoLoteDAO.Devolucion devuelta = mock(PrestamoLoteDAO.Devolucion.class);
+        when(devuelta.getResultado()).thenReturn(PrestamoLoteDAO.Devolucion.Resultado.DEVUELTO);
+        when(devuelta.getEjemplarId()).thenReturn(1L);
+        when(devuelta.getLibroId()).thenReturn(1L);
+        when(devuelta.isPrestamoCerrado()).thenReturn(true);
+        when(devuelta.getUsuarioId()).thenReturn(1L);
+        when(devuelta.getPrestamoId()).thenReturn(1L);
+        when(devuelta.isMultaNueva()).thenReturn(true);
+        PrestamoLoteDAO.Devolucion noEncontrada = mock(PrestamoLoteDAO.Devolucion.class);
+        when(noEncontrada.getResultado()).thenReturn(PrestamoLoteDAO.Devolucion.Resultado.NO_ENCONTRADO);
+
+        Date fechaDevolucion = new Date();
+        List<String> codigos = Arrays.asList("EJM-001", "EJM-999");
+        when(mockPrestamoLoteDAO.registrarDevoluciones(eq(codigos), eq(fechaDevolucion), any()))
+                .thenAnswer(inv -> {
+                    // La multa se calcula con el retraso respecto a la fecha de devolución
+                    PrestamoLoteDAO.CalculadoraMulta calculadora = inv.getArgument(2);
+                    Calendar cal = Calendar.getInstance();
+                    cal.setTime(fechaDevolucion);
+                    cal.add(Calendar.DAY_OF_MONTH, -4);
+                    assertEquals(new BigDecimal("2.00"), calculadora.calcular(cal.getTime()));
+                    assertEquals(0, calculadora.calcular(fechaDevolucion).signum());
+                    return Arrays.asList(devuelta, noEncontrada);
+                });
+
+        List<PrestamoLoteDAO.Devolucion> resultado = servicioPrestamo.registrarDevoluciones(codigos, fechaDevolucion);
+
+        assertEquals(2, resultado.size());
+        // Los índices reflejan el ejemplar disponible, el préstamo cerrado y la multa
+        assertTrue(indiceDisponibilidad.tieneDisponibles(1L));
+        assertEquals(0, indiceElegibilidad.getPrestamosActivos(1L));
+        assertEquals(1, indiceElegibilidad.getMultasActivas(1L));
+        verifyNoInteractions(mockPrestamoDAO, mockEjemplarDAO, mockDetallePrestamDAO, mockMultaDAO);
+    }
+    
+    @Test
+    public void testAvisosDeVencimientoSiguenAlPrestamo() throws Exception {
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(ejemplarIds)).thenReturn(Arrays.asList(ejemplar1, ejemplar2));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> {
+            Prestamo p = inv.getArgument(0);
+            p.setId(1L);
+            return p;
+        });
+
+        // El préstamo programa su recordatorio, vencimiento y bloqueo
+        Prestamo realizado = servicioPrestamo.realizarPrestamo(1L, ejemplarIds);
+        assertEquals(3, planificador.getAvisosPendientes());
+
+        // La devolución los cancela
+        realizado.setDetalles(new ArrayList<>());
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(realizado));
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        servicioPrestamo.registrarDevolucion(1L, new Date());
+        assertEquals(0, planificador.getAvisosPendientes());
+    }
+    
+    @Test
+    public void testOperacionesSeRegistranEnElDiario() throws Exception {
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(ejemplarIds)).thenReturn(Arrays.asList(ejemplar1, ejemplar2));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> {
+            Prestamo p = inv.getArgument(0);
+            p.setId(1L);
+            return p;
+        });
+
+        // Un evento por ejemplar prestado
+        Prestamo realizado = servicioPrestamo.realizarPrestamo(1L, ejemplarIds);
+        assertEquals(2, diario.getPendientes());
+
+        // La devolución con retraso añade un evento por ejemplar y otro por la multa
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.DAY_OF_MONTH, -3);
+        realizado.setFechaDevolucionPrevista(cal.getTime());
+        realizado.setEstado(EstadoPrestamo.ACTIVO);
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(realizado));
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(mockMultaVencimientoDAO.registrarMultaDevolucion(eq(1L), any(), any()))
+                .thenReturn(MultaVencimientoDAO.MultaDevolucion.CREADA);
+        servicioPrestamo.registrarDevolucion(1L, new Date());
+        assertEquals(5, diario.getPendientes());
+    }
+    
     @Test
     public void testRegistrarDevolucionPrestamoNoEncontrado() {
         // Configurar comportamiento de los mocks
@@ -368,4 +642,272 @@ public class ServicioPrestamoTest {
             servicioPrestamo.registrarDevolucion(1L, new Date());
         });
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testPrestamoYDevolucionActualizanDisponibilidad() throws Exception {
+        // Índice propio con el único ejemplar disponible del libro
+        IndiceDisponibilidad indice = new IndiceDisponibilidad();
+        indice.actualizar(ejemplar1);
+        servicioPrestamo.setIndiceDisponibilidad(indice);
+        
+        // Configurar comportamiento de los mocks
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(ejemplar1));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(0);
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        
+        // El préstamo deja el libro sin ejemplares disponibles
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L));
+        assertFalse(indice.tieneDisponibles(1L));
+        
+        // La devolución lo vuelve a dejar disponible
+        List<DetallePrestamo> detalles = new ArrayList<>();
+        detalles.add(detallePrestamo);
+        prestamo.setDetalles(detalles);
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenReturn(prestamo);
+        
+        servicioPrestamo.registrarDevolucion(1L, new Date());
+        assertTrue(indice.tieneDisponibles(1L));
+        assertEquals(1, indice.contarDisponibles(1L));
+    }
+    
+    @Test
+    public void testPrestamosSimultaneosDeUnUsuarioRespetanElMaximo() throws Exception {
+        // El usuario tiene 3 préstamos activos de un máximo de 5
+        AtomicInteger activos = new AtomicInteger(3);
+        servicioPrestamo.setCerrojosUsuario(new CerrojosUsuario(16, 5000));
+        servicioPrestamo.setIndiceDisponibilidad(null);
+        
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenAnswer(inv -> activos.get());
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(anyList())).thenAnswer(inv -> {
+            List<Ejemplar> ejemplares = new ArrayList<>();
+            for (Object id : (List<?>) inv.getArgument(0)) {
+                Ejemplar ejemplar = new Ejemplar();
+                ejemplar.setId((Long) id);
+                ejemplar.setLibro(libro);
+                ejemplar.setEstado(EstadoEjemplar.DISPONIBLE);
+                ejemplares.add(ejemplar);
+            }
+            return ejemplares;
+        });
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> {
+            // Ventana entre la comprobación del límite y el registro
+            Thread.sleep(20);
+            activos.incrementAndGet();
+            return inv.getArgument(0);
+        });
+        
+        // Varios mostradores prestan a la vez al mismo usuario
+        int hilos = 8;
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            long ejemplarId = 100L + i;
+            resultados.add(executor.submit(() -> {
+                salida.await();
+                try {
+                    servicioPrestamo.realizarPrestamo(1L, Arrays.asList(ejemplarId));
+                    return true;
+                } catch (PrestamoException e) {
+                    return false;
+                }
+            }));
+        }
+        salida.countDown();
+        
+        int realizados = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(10, TimeUnit.SECONDS)) {
+                realizados++;
+            }
+        }
+        executor.shutdown();
+        
+        // Solo caben dos préstamos más
+        assertEquals(2, realizados);
+        assertEquals(5, activos.get());
+        verify(mockPrestamoLoteDAO, times(2)).registrarPrestamo(any(Prestamo.class));
+    }
+    
+    @Test
+    public void testRenovacionesSimultaneasRespetanElMaximo() throws Exception {
+        servicioPrestamo.setCerrojosUsuario(new CerrojosUsuario(16, 5000));
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(mockPrestamoDAO.contarRenovacionesPrestamo(1L)).thenReturn(1);
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenAnswer(inv -> {
+            // Ventana entre la comprobación de las renovaciones y su registro
+            Thread.sleep(20);
+            return inv.getArgument(0);
+        });
+        
+        // Varios mostradores renuevan a la vez el mismo préstamo, al que le queda una renovación
+        int hilos = 8;
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (int i = 0; i < hilos; i++) {
+            resultados.add(executor.submit(() -> {
+                salida.await();
+                try {
+                    servicioPrestamo.renovarPrestamo(1L);
+                    return true;
+                } catch (PrestamoException e) {
+                    return false;
+                }
+            }));
+        }
+        salida.countDown();
+        
+        int realizadas = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(10, TimeUnit.SECONDS)) {
+                realizadas++;
+            }
+        }
+        executor.shutdown();
+        
+        assertEquals(1, realizadas);
+        verify(mockPrestamoDAO, times(1)).update(any(Prestamo.class));
+    }
+    
+    @Test
+    public void testRealizarPrestamoTrasPagarMulta() throws Exception {
+        // El índice aún tiene anotada una multa que ya se ha pagado
+        IndiceElegibilidad indice = new IndiceElegibilidad();
+        indice.registrarUsuario(1L, false, 1, 1);
+        servicioPrestamo.setIndiceElegibilidad(indice);
+        servicioPrestamo.setIndiceDisponibilidad(null);
+        
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(1);
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(ejemplar1));
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L));
+        
+        // La base de datos confirma que no hay multas y el índice se corrige
+        assertEquals(0, indice.getMultasActivas(1L));
+        assertEquals(2, indice.getPrestamosActivos(1L));
+    }
+    
+    @Test
+    public void testRealizarPrestamoConMultaActivaEnElIndice() throws Exception {
+        IndiceElegibilidad indice = new IndiceElegibilidad();
+        indice.registrarUsuario(1L, false, 1, 1);
+        servicioPrestamo.setIndiceElegibilidad(indice);
+        
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(true);
+        
+        assertThrows(PrestamoException.class, () -> servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L)));
+        verifyNoInteractions(mockPrestamoLoteDAO);
+        assertEquals(1, indice.getMultasActivas(1L));
+    }
+    
+    @Test
+    public void testRealizarPrestamoConsultaElegibilidadEnMemoria() throws Exception {
+        // Usuario ya conocido por el índice, sin multas y con 4 préstamos
+        IndiceElegibilidad indice = new IndiceElegibilidad();
+        indice.registrarUsuario(1L, false, 4, 0);
+        servicioPrestamo.setIndiceElegibilidad(indice);
+        servicioPrestamo.setIndiceDisponibilidad(null);
+        
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(ejemplar1));
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L));
+        
+        // Las comprobaciones no consultan la base de datos y el préstamo queda registrado
+        verifyNoInteractions(mockMultaDAO);
+        verify(mockPrestamoDAO, never()).contarPrestamosActivosUsuario(anyLong());
+        assertEquals(5, indice.getPrestamosActivos(1L));
+        
+        // Alcanzado el máximo, el siguiente préstamo se rechaza sin consultar ejemplares
+        assertThrows(PrestamoException.class, () -> servicioPrestamo.realizarPrestamo(1L, Arrays.asList(2L)));
+        verify(mockPrestamoLoteDAO, times(1)).findEjemplaresByIds(anyList());
+    }
+    
+    @Test
+    public void testRealizarPrestamoSoloCorrigeElBloqueoDesfasado() throws Exception {
+        // El índice aún cree bloqueado a un usuario que ya se ha desbloqueado
+        IndiceElegibilidad indice = spy(new IndiceElegibilidad());
+        indice.registrarUsuario(1L, true, 1, 0);
+        servicioPrestamo.setIndiceElegibilidad(indice);
+        servicioPrestamo.setIndiceDisponibilidad(null);
+        
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(anyList())).thenReturn(Arrays.asList(ejemplar1))
+                .thenReturn(Arrays.asList(ejemplar2));
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L));
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(2L));
+        
+        // El usuario recién leído está activo: se corrige una vez y no en cada préstamo
+        verify(indice, times(1)).actualizarBloqueo(1L, false);
+        assertEquals(IndiceElegibilidad.Resultado.APTO, indice.comprobarPrestamo(1L, 5));
+    }
+    
+    @Test
+    public void testRealizarPrestamoRegistraUsuarioEnElIndice() throws Exception {
+        IndiceElegibilidad indice = new IndiceElegibilidad();
+        servicioPrestamo.setIndiceElegibilidad(indice);
+        servicioPrestamo.setIndiceDisponibilidad(null);
+        
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockMultaDAO.existeMultaActivaUsuario(1L)).thenReturn(false);
+        when(mockPrestamoDAO.contarPrestamosActivosUsuario(1L)).thenReturn(2);
+        when(mockPrestamoLoteDAO.findEjemplaresByIds(anyList())).thenReturn(Arrays.asList(ejemplar1))
+                .thenReturn(Arrays.asList(ejemplar2));
+        when(mockPrestamoLoteDAO.registrarPrestamo(any(Prestamo.class))).thenAnswer(inv -> inv.getArgument(0));
+        
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(1L));
+        servicioPrestamo.realizarPrestamo(1L, Arrays.asList(2L));
+        
+        // Solo el primer préstamo consulta la base de datos
+        verify(mockMultaDAO, times(1)).existeMultaActivaUsuario(1L);
+        verify(mockPrestamoDAO, times(1)).contarPrestamosActivosUsuario(1L);
+        assertEquals(4, indice.getPrestamosActivos(1L));
+    }
+    
+    @Test
+    public void testRenovacionYDevolucionActualizanElegibilidad() throws Exception {
+        IndiceElegibilidad indice = new IndiceElegibilidad();
+        indice.registrarUsuario(1L, false, 1, 0);
+        servicioPrestamo.setIndiceElegibilidad(indice);
+        servicioPrestamo.setIndiceDisponibilidad(null);
+        
+        List<DetallePrestamo> detalles = new ArrayList<>();
+        detalles.add(detallePrestamo);
+        prestamo.setDetalles(detalles);
+        when(mockPrestamoDAO.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(mockPrestamoDAO.contarRenovacionesPrestamo(1L)).thenReturn(1);
+        when(mockPrestamoDAO.update(any(Prestamo.class))).thenReturn(prestamo);
+        
+        // La primera renovación lee la base de datos; la segunda ya no y se rechaza
+        servicioPrestamo.renovarPrestamo(1L);
+        assertEquals(2, indice.getRenovaciones(1L));
+        assertThrows(PrestamoException.class, () -> servicioPrestamo.renovarPrestamo(1L));
+        verify(mockPrestamoDAO, times(1)).contarRenovacionesPrestamo(1L);
+        
+        // La devolución con retraso libera el préstamo y registra la multa
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.DAY_OF_MONTH, -5);
+        prestamo.setFechaDevolucionPrevista(cal.getTime());
+        when(mockMultaVencimientoDAO.registrarMultaDevolucion(eq(1L), any(), any()))
+                .thenReturn(MultaVencimientoDAO.MultaDevolucion.CREADA);
+        servicioPrestamo.registrarDevolucion(1L, new Date());
+        
+        assertEquals(0, indice.getPrestamosActivos(1L));
+        assertEquals(1, indice.getMultasActivas(1L));
+        assertEquals(-1, indice.getRenovaciones(1L));
+        assertEquals(IndiceElegibilidad.Resultado.MULTA_ACTIVA, indice.comprobarPrestamo(1L, 5));
+    }
+}
@@ -0,0 +1,163 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO.ResultadoAsignacion;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.ColasReserva;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceDisponibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.ReservaException;
+
+/**
+ * Pruebas unitarias para la clase ServicioReserva.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ServicioReservaTest {
+
+    @Mock
+    private UsuarioDAO mockUsuarioDAO;
+
+    @Mock
+    private ReservaDAO mockReservaDAO;
+
+    private ServicioReserva servicioReserva;
+    private ColasReserva colas;
+    private IndiceDisponibilidad indice;
+    private Usuario usuario;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        servicioReserva = new ServicioReserva(mockUsuarioDAO, mockReservaDAO);
+        colas = new ColasReserva();
+        indice = new IndiceDisponibilidad();
+        servicioReserva.setColasReserva(colas);
+        servicioReserva.setIndiceDisponibilidad(indice);
+        servicioReserva.setCerrojosUsuario(new CerrojosUsuario(16, 1000));
+
+        usuario = new Usuario();
+        usuario.setId(1L);
+        usuario.setTipoUsuario(TipoUsuario.PROFESOR);
+        usuario.setEstado(EstadoUsuario.ACTIVO);
+    }
+
+    @Test
+    public void testReservarConPrioridadDelTipoDeUsuario() throws Exception {
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockReservaDAO.existeReservaAbierta(1L, 5L)).thenReturn(false);
+        when(mockReservaDAO.crear(eq(5L), eq(1L), eq(0), any(Date.class))).thenReturn(20L);
+        colas.anadir(10L, 5L, 2L, ServicioReserva.calcularPrioridad(TipoUsuario.ESTUDIANTE));
+
+        long reservaId = servicioReserva.reservar(1L, 5L);
+
+        // La reserva del profesor pasa por delante de la del estudiante
+        assertEquals(20L, reservaId);
+        assertEquals(20L, colas.primera(5L).getReservaId());
+        assertEquals(2, servicioReserva.contarReservasPendientes(5L));
+    }
+
+    @Test
+    public void testPrioridades() {
+        assertEquals(0, ServicioReserva.calcularPrioridad(TipoUsuario.PROFESOR));
+        assertEquals(1, ServicioReserva.calcularPrioridad(TipoUsuario.PERSONAL));
+        assertEquals(2, ServicioReserva.calcularPrioridad(TipoUsuario.ESTUDIANTE));
+        assertEquals(2, ServicioReserva.calcularPrioridad(null));
+    }
+
+    @Test
+    public void testReservarLibroConEjemplaresDisponibles() throws Exception {
+        indice.cargar(mock(LibroDAO.class));
+        indice.actualizar(3L, 5L, true);
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+
+        assertThrows(ReservaException.class, () -> servicioReserva.reservar(1L, 5L));
+        verify(mockReservaDAO, never()).crear(anyLong(), anyLong(), anyInt(), any(Date.class));
+    }
+
+    @Test
+    public void testReservarRepetida() throws Exception {
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+        when(mockReservaDAO.existeReservaAbierta(1L, 5L)).thenReturn(true);
+
+        assertThrows(ReservaException.class, () -> servicioReserva.reservar(1L, 5L));
+        assertEquals(0, colas.getNumeroReservas());
+    }
+
+    @Test
+    public void testReservarSinUsuario() {
+        assertThrows(ReservaException.class, () -> servicioReserva.reservar(null, 5L));
+        assertEquals(0, colas.getNumeroReservas());
+    }
+
+    @Test
+    public void testReservarUsuarioInactivo() throws Exception {
+        usuario.setEstado(EstadoUsuario.BLOQUEADO);
+        when(mockUsuarioDAO.findById(1L)).thenReturn(Optional.of(usuario));
+
+        assertThrows(ReservaException.class, () -> servicioReserva.reservar(1L, 5L));
+    }
+
+    @Test
+    public void testCancelarReserva() throws Exception {
+        colas.anadir(10L, 5L, 1L, 0);
+        when(mockReservaDAO.cancelar(1L, 5L)).thenReturn(10L).thenReturn(-1L);
+
+        servicioReserva.cancelarReserva(1L, 5L);
+
+        assertNull(colas.primera(5L));
+        assertThrows(ReservaException.class, () -> servicioReserva.cancelarReserva(1L, 5L));
+    }
+
+    @Test
+    public void testAsignarEjemplarSaltaReservasQueYaNoEstanPendientes() throws Exception {
+        colas.anadir(10L, 5L, 1L, 0);
+        colas.anadir(11L, 5L, 2L, 2);
+        when(mockReservaDAO.asignar(eq(10L), eq(3L), any(Date.class)))
+                .thenReturn(ResultadoAsignacion.RESERVA_NO_PENDIENTE);
+        when(mockReservaDAO.asignar(eq(11L), eq(3L), any(Date.class))).thenReturn(ResultadoAsignacion.ASIGNADA);
+
+        assertTrue(servicioReserva.asignarEjemplar(3L, 5L));
+        assertEquals(0, colas.contarPendientes(5L));
+    }
+
+    @Test
+    public void testAsignarEjemplarNoDisponibleConservaLaReserva() throws Exception {
+        colas.anadir(10L, 5L, 1L, 0);
+        when(mockReservaDAO.asignar(eq(10L), eq(3L), any(Date.class)))
+                .thenReturn(ResultadoAsignacion.EJEMPLAR_NO_DISPONIBLE);
+
+        assertFalse(servicioReserva.asignarEjemplar(3L, 5L));
+        assertEquals(10L, colas.primera(5L).getReservaId());
+    }
+
+    @Test
+    public void testAsignarEjemplarConFalloDeLaBaseDeDatos() throws Exception {
+        colas.anadir(10L, 5L, 1L, 0);
+        when(mockReservaDAO.asignar(eq(10L), eq(3L), any(Date.class))).thenThrow(new DAOException("Error simulado"));
+
+        assertFalse(servicioReserva.asignarEjemplar(3L, 5L));
+        assertEquals(1, colas.contarPendientes(5L));
+    }
+
+    @Test
+    public void testAsignarEjemplarSinReservasNoConsultaLaBaseDeDatos() {
+        assertFalse(servicioReserva.asignarEjemplar(3L, 5L));
+        verifyNoInteractions(mockReservaDAO);
+    }
+}
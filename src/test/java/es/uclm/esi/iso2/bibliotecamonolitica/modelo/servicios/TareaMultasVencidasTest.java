@@ -0,0 +1,197 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.modelo.servicios;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoPrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.MultaVencimientoDAO.PrestamoVencido;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Pruebas unitarias para la clase TareaMultasVencidas.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TareaMultasVencidasTest {
+
+    private static final String TAREA_ACTIVOS = "multas_vencidas.activo";
+    private static final String TAREA_RENOVADOS = "multas_vencidas.renovado";
+
+    @Mock
+    private MultaVencimientoDAO mockDAO;
+
+    private IndiceElegibilidad indice;
+    private DiarioPrestamos diario;
+    private Date hoy;
+
+    @BeforeEach
+    public void setUp() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        hoy = cal.getTime();
+
+        indice = new IndiceElegibilidad();
+        indice.registrarUsuario(1L, false, 1, 0);
+        diario = new DiarioPrestamos(1000, 100);
+    }
+
+    private TareaMultasVencidas crearTarea(int tamanoBloque, int paralelismo) {
+        TareaMultasVencidas tarea = new TareaMultasVencidas(mockDAO, new BigDecimal("0.50"), tamanoBloque,
+                paralelismo);
+        tarea.setIndiceElegibilidad(indice);
+        tarea.setDiarioPrestamos(diario);
+        return tarea;
+    }
+
+    private Date haceDias(int dias) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(hoy);
+        cal.add(Calendar.DAY_OF_MONTH, -dias);
+        return cal.getTime();
+    }
+
+    /**
+     * Crea los préstamos vencidos con IDs consecutivos, todos del usuario 1,
+     * vencidos hace 4 días y sin multa.
+     */
+    private List<PrestamoVencido> crearPrestamos(long desdeId, int cantidad) {
+        List<PrestamoVencido> prestamos = new ArrayList<>();
+        for (long id = desdeId; id < desdeId + cantidad; id++) {
+            prestamos.add(new PrestamoVencido(id, 1L, haceDias(4), null));
+        }
+        return prestamos;
+    }
+
+    @Test
+    public void testEjecutarProcesaTodosLosBloques() throws Exception {
+        when(mockDAO.leerPuntoControl(anyString(), eq(hoy))).thenReturn(0L);
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.ACTIVO, hoy, 0L, 2)).thenReturn(crearPrestamos(1, 2));
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.ACTIVO, hoy, 2L, 2)).thenReturn(crearPrestamos(3, 1));
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.RENOVADO, hoy, 0L, 2))
+                .thenReturn(Collections.emptyList());
+        when(mockDAO.registrarMultas(anyList(), any(BigDecimal[].class), eq(hoy)))
+                .thenAnswer(inv -> new boolean[((List<?>) inv.getArgument(0)).size()])
+                .thenReturn(new boolean[] {true});
+
+        TareaMultasVencidas.Resumen resumen = crearTarea(2, 2).ejecutar(new Date());
+
+        assertEquals(3, resumen.getPrestamos());
+        assertEquals(2, resumen.getBloques());
+        assertEquals(1, resumen.getMultasNuevas());
+        // Solo se consultó el bloque siguiente al primero porque el segundo no estaba completo
+        verify(mockDAO, times(2)).buscarPrestamosVencidos(eq(EstadoPrestamo.ACTIVO), any(), anyLong(), eq(2));
+        verify(mockDAO).guardarPuntoControl(TAREA_ACTIVOS, hoy, 3L, true);
+        verify(mockDAO).guardarPuntoControl(TAREA_RENOVADOS, hoy, 0L, true);
+        // La multa nueva se refleja en la elegibilidad del usuario y en el diario
+        assertEquals(1, indice.getMultasActivas(1L));
+        assertEquals(1, diario.getPendientes());
+    }
+
+    @Test
+    public void testEjecutarCalculaLosImportesPorRetraso() throws Exception {
+        List<PrestamoVencido> prestamos = new ArrayList<>();
+        prestamos.add(new PrestamoVencido(1L, 1L, haceDias(3), null));
+        prestamos.add(new PrestamoVencido(2L, 1L, haceDias(10), MultaVencimientoDAO.MULTA_ACTIVA));
+        when(mockDAO.leerPuntoControl(anyString(), eq(hoy))).thenReturn(0L);
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.ACTIVO, hoy, 0L, 10)).thenReturn(prestamos);
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.RENOVADO, hoy, 0L, 10))
+                .thenReturn(Collections.emptyList());
+        when(mockDAO.registrarMultas(anyList(), any(BigDecimal[].class), eq(hoy)))
+                .thenReturn(new boolean[] {true, false});
+
+        crearTarea(10, 1).ejecutar(hoy);
+
+        ArgumentCaptor<BigDecimal[]> importes = ArgumentCaptor.forClass(BigDecimal[].class);
+        verify(mockDAO).registrarMultas(eq(prestamos), importes.capture(), eq(hoy));
+        assertEquals(new BigDecimal("1.50"), importes.getValue()[0]);
+        assertEquals(new BigDecimal("5.00"), importes.getValue()[1]);
+    }
+
+    @Test
+    public void testEjecutarReanudaDesdeElPuntoDeControl() throws Exception {
+        // Los préstamos activos ya se completaron hoy y los renovados se quedaron en el 50
+        when(mockDAO.leerPuntoControl(TAREA_ACTIVOS, hoy)).thenReturn(-1L);
+        when(mockDAO.leerPuntoControl(TAREA_RENOVADOS, hoy)).thenReturn(50L);
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.RENOVADO, hoy, 50L, 5)).thenReturn(crearPrestamos(51, 2));
+        when(mockDAO.registrarMultas(anyList(), any(BigDecimal[].class), eq(hoy))).thenReturn(new boolean[2]);
+
+        TareaMultasVencidas.Resumen resumen = crearTarea(5, 2).ejecutar(hoy);
+
+        assertEquals(2, resumen.getPrestamos());
+        verify(mockDAO, never()).buscarPrestamosVencidos(eq(EstadoPrestamo.ACTIVO), any(), anyLong(), anyInt());
+        verify(mockDAO).guardarPuntoControl(TAREA_RENOVADOS, hoy, 52L, true);
+    }
+
+    @Test
+    public void testPuntoDeControlNoSuperaUnBloqueFallido() throws Exception {
+        // Con bloques de un préstamo, falla la escritura del préstamo 3
+        when(mockDAO.leerPuntoControl(anyString(), eq(hoy))).thenReturn(0L);
+        for (long id = 0; id < 5; id++) {
+            lenient().when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.ACTIVO, hoy, id, 1))
+                    .thenReturn(crearPrestamos(id + 1, 1));
+        }
+        lenient().when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.ACTIVO, hoy, 5L, 1))
+                .thenReturn(Collections.emptyList());
+        when(mockDAO.registrarMultas(anyList(), any(BigDecimal[].class), eq(hoy))).thenAnswer(inv -> {
+            List<PrestamoVencido> bloque = inv.getArgument(0);
+            if (bloque.get(0).getPrestamoId() == 3L) {
+                throw new DAOException("Error simulado");
+            }
+            return new boolean[1];
+        });
+
+        DAOException excepcion = assertThrows(DAOException.class, () -> crearTarea(1, 1).ejecutar(hoy));
+        assertTrue(excepcion.getMessage().contains(TAREA_ACTIVOS));
+
+        // El punto de control se queda en el último préstamo anterior al fallo y no se completa
+        verify(mockDAO).guardarPuntoControl(TAREA_ACTIVOS, hoy, 2L, false);
+        verify(mockDAO, never()).guardarPuntoControl(eq(TAREA_ACTIVOS), any(), eq(3L), anyBoolean());
+        verify(mockDAO, never()).guardarPuntoControl(anyString(), any(), anyLong(), eq(true));
+        verify(mockDAO, never()).buscarPrestamosVencidos(eq(EstadoPrestamo.RENOVADO), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testEjecutarBloquesEnParalelo() throws Exception {
+        int bloques = 40;
+        when(mockDAO.leerPuntoControl(anyString(), eq(hoy))).thenReturn(0L);
+        when(mockDAO.buscarPrestamosVencidos(eq(EstadoPrestamo.ACTIVO), eq(hoy), anyLong(), eq(10)))
+                .thenAnswer(inv -> {
+                    long desde = inv.getArgument(2);
+                    return desde < bloques * 10 ? crearPrestamos(desde + 1, 10) : Collections.emptyList();
+                });
+        when(mockDAO.buscarPrestamosVencidos(EstadoPrestamo.RENOVADO, hoy, 0L, 10))
+                .thenReturn(Collections.emptyList());
+        when(mockDAO.registrarMultas(anyList(), any(BigDecimal[].class), eq(hoy))).thenAnswer(inv -> {
+            Thread.sleep(2);
+            boolean[] creadas = new boolean[10];
+            creadas[0] = true;
+            return creadas;
+        });
+
+        TareaMultasVencidas.Resumen resumen = crearTarea(10, 4).ejecutar(hoy);
+
+        assertEquals(bloques * 10, resumen.getPrestamos());
+        assertEquals(bloques, resumen.getMultasNuevas());
+        assertEquals(bloques, indice.getMultasActivas(1L));
+        verify(mockDAO).guardarPuntoControl(TAREA_ACTIVOS, hoy, bloques * 10L, true);
+    }
+}
@@ -0,0 +1,149 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Pruebas unitarias para la clase AgrupadorConsultas.
+ */
+public class AgrupadorConsultasTest {
+
+    private static final int LLAMANTES = 8;
+
+    private AgrupadorConsultas<String, String> agrupador;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        agrupador = new AgrupadorConsultas<>();
+        executor = Executors.newFixedThreadPool(LLAMANTES);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Test de consultas concurrentes idénticas agrupadas en una sola")
+    public void testConsultasConcurrentesAgrupadas() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        List<Future<String>> resultados = new ArrayList<>();
+        for (int i = 0; i < LLAMANTES; i++) {
+            resultados.add(executor.submit(() -> agrupador.ejecutar("9788437622774", () -> {
+                ejecuciones.incrementAndGet();
+                esperar(liberar);
+                return "Don Quijote de la Mancha";
+            })));
+        }
+
+        // Esperar a que todos los llamantes salvo el primero estén esperando
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (agrupador.getConsultasSuprimidas() < LLAMANTES - 1 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        liberar.countDown();
+
+        for (Future<String> resultado : resultados) {
+            assertEquals("Don Quijote de la Mancha", resultado.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, ejecuciones.get());
+        assertEquals(1, agrupador.getConsultasEjecutadas());
+        assertEquals(LLAMANTES - 1, agrupador.getConsultasSuprimidas());
+        assertEquals(0, agrupador.getConsultasEnCurso());
+    }
+
+    @Test
+    @DisplayName("Test de copia del resultado para cada llamante en espera")
+    public void testCopiaParaLlamantesEnEspera() throws Exception {
+        AgrupadorConsultas<String, StringBuilder> agrupadorCopias =
+                new AgrupadorConsultas<>(original -> new StringBuilder(original));
+        CountDownLatch liberar = new CountDownLatch(1);
+        StringBuilder resultado = new StringBuilder("Don Quijote");
+
+        Future<StringBuilder> primero = executor.submit(() -> agrupadorCopias.ejecutar("clave", () -> {
+            esperar(liberar);
+            return resultado;
+        }));
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (agrupadorCopias.getConsultasEnCurso() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        Future<StringBuilder> segundo = executor.submit(() -> agrupadorCopias.ejecutar("clave", () -> null));
+        while (agrupadorCopias.getConsultasSuprimidas() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        liberar.countDown();
+
+        StringBuilder delPrimero = primero.get(5, TimeUnit.SECONDS);
+        StringBuilder delSegundo = segundo.get(5, TimeUnit.SECONDS);
+        assertSame(resultado, delPrimero);
+        assertNotSame(delPrimero, delSegundo);
+        assertEquals("Don Quijote", delSegundo.toString());
+    }
+
+    @Test
+    @DisplayName("Test de consultas secuenciales no agrupadas")
+    public void testConsultasSecuencialesNoAgrupadas() throws DAOException {
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        agrupador.ejecutar("clave", () -> "v" + ejecuciones.incrementAndGet());
+        String segundo = agrupador.ejecutar("clave", () -> "v" + ejecuciones.incrementAndGet());
+
+        assertEquals("v2", segundo);
+        assertEquals(2, agrupador.getConsultasEjecutadas());
+        assertEquals(0, agrupador.getConsultasSuprimidas());
+    }
+
+    @Test
+    @DisplayName("Test de propagación del error a todos los llamantes agrupados")
+    public void testErrorPropagadoALlamantesAgrupados() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+
+        Future<String> primero = executor.submit(() -> agrupador.ejecutar("clave", () -> {
+            esperar(liberar);
+            throw new DAOException("Test exception");
+        }));
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (agrupador.getConsultasEnCurso() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        Future<String> segundo = executor.submit(() -> agrupador.ejecutar("clave", () -> "no ejecutada"));
+        while (agrupador.getConsultasSuprimidas() == 0 && System.nanoTime() < limite) {
+            Thread.sleep(1);
+        }
+        liberar.countDown();
+
+        Exception errorPrimero = assertThrows(Exception.class, () -> primero.get(5, TimeUnit.SECONDS));
+        Exception errorSegundo = assertThrows(Exception.class, () -> segundo.get(5, TimeUnit.SECONDS));
+        assertTrue(errorPrimero.getCause() instanceof DAOException);
+        assertTrue(errorSegundo.getCause() instanceof DAOException);
+        assertEquals(0, agrupador.getConsultasEnCurso());
+    }
+
+    private static void esperar(CountDownLatch latch) throws DAOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DAOException("Interrumpido", e);
+        }
+    }
+}
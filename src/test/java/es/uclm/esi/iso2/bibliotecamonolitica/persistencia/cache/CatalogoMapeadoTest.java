@@ -0,0 +1,106 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.LibroDAO;
+
+/**
+ * Pruebas unitarias para la clase CatalogoMapeado.
+ */
+public class CatalogoMapeadoTest {
+
+    @TempDir
+    Path directorio;
+
+    private LibroDAO libroDAO;
+    private CatalogoMapeado catalogo;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        libroDAO = mock(LibroDAO.class);
+        catalogo = new CatalogoMapeado(directorio);
+    }
+
+    @Test
+    @DisplayName("Test de refresco con cambio de generación")
+    public void testRefrescar() throws Exception {
+        simularCatalogo(Arrays.asList(libro(1L, "Don Quijote de la Mancha")), 1L, 1L);
+        InstantaneaCatalogo primera = catalogo.refrescar(libroDAO);
+
+        simularCatalogo(Arrays.asList(libro(1L, "Don Quijote de la Mancha"), libro(2L, "La Celestina")), 2L);
+        InstantaneaCatalogo segunda = catalogo.refrescar(libroDAO);
+
+        assertSame(segunda, catalogo.getActual());
+        assertEquals(2, segunda.getGeneracion());
+        assertEquals(0, segunda.getDisponibles(segunda.buscar(1L)));
+        assertEquals(1, segunda.getDisponibles(segunda.buscar(2L)));
+        // La generación anterior sigue siendo legible aunque se haya borrado su fichero
+        assertEquals(2, primera.getDisponibles(primera.buscar(1L)));
+        assertFalse(Files.exists(directorio.resolve("catalogo-1.col")));
+        assertTrue(Files.exists(directorio.resolve("catalogo-2.col")));
+    }
+
+    @Test
+    @DisplayName("Test de arranque con la última generación del directorio")
+    public void testAbrirUltima() throws Exception {
+        assertFalse(catalogo.abrirUltima());
+        assertNull(catalogo.getActual());
+
+        simularCatalogo(Arrays.asList(libro(1L, "Don Quijote de la Mancha")));
+        catalogo.refrescar(libroDAO);
+        catalogo.refrescar(libroDAO);
+
+        CatalogoMapeado reiniciado = new CatalogoMapeado(directorio);
+        assertTrue(reiniciado.abrirUltima());
+        assertEquals(2, reiniciado.getActual().getGeneracion());
+        assertEquals("Don Quijote de la Mancha", reiniciado.getActual().getTitulo(0));
+
+        // Un nuevo refresco continúa la numeración del directorio
+        assertEquals(3, new CatalogoMapeado(directorio).refrescar(libroDAO).getGeneracion());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void simularCatalogo(List<Libro> libros, Long... librosDeEjemplaresDisponibles) throws Exception {
+        doAnswer(invocacion -> {
+            BiConsumer<Long, Long> consumidor = invocacion.getArgument(1);
+            long idEjemplar = 100;
+            for (Long idLibro : librosDeEjemplaresDisponibles) {
+                consumidor.accept(idEjemplar++, idLibro);
+            }
+            return (long) librosDeEjemplaresDisponibles.length;
+        }).when(libroDAO).recorrerEjemplaresDisponibles(anyInt(), any(BiConsumer.class));
+        doAnswer(invocacion -> {
+            Consumer<Libro> consumidor = invocacion.getArgument(1);
+            libros.forEach(consumidor);
+            return (long) libros.size();
+        }).when(libroDAO).recorrer(anyInt(), any(Consumer.class));
+    }
+
+    private static Libro libro(long id, String titulo) throws Exception {
+        Categoria categoria = new Categoria();
+        categoria.setId(1L);
+        Libro libro = new Libro();
+        libro.setId(id);
+        libro.setTitulo(titulo);
+        libro.setAutor("Anónimo");
+        libro.setAnioPublicacion(1499);
+        libro.setCategoria(categoria);
+        return libro;
+    }
+}
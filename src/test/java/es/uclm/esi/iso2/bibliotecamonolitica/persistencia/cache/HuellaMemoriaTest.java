@@ -0,0 +1,132 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.TipoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.helpers.LogHelper;
+
+/**
+ * Pruebas de la huella en memoria de las entidades y de sus formas compactas,
+ * medida con JOL sobre un catálogo en el que los autores y las editoriales se
+ * repiten como en uno real.
+ */
+public class HuellaMemoriaTest {
+
+    private static final LogHelper logger = LogHelper.getLogger(HuellaMemoriaTest.class);
+
+    private static final int ENTIDADES = 1000;
+    private static final int AUTORES = 50;
+    private static final int EDITORIALES = 10;
+
+    @Test
+    @DisplayName("Test de bytes por libro antes y después de compactar")
+    public void testHuellaLibros() throws Exception {
+        Categoria categoria = new Categoria();
+        categoria.setId(1L);
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < ENTIDADES; i++) {
+            Libro libro = new Libro();
+            libro.setId((long) i + 1);
+            libro.setTitulo("Título " + i);
+            // Cadenas nuevas, como las que devuelve cada fila del ResultSet
+            libro.setAutor(new String("Autor " + (i % AUTORES)));
+            libro.setEditorial(new String("Editorial " + (i % EDITORIALES)));
+            libro.setAnioPublicacion(1900 + i % 120);
+            libro.setIsbn(String.format("978%010d", i));
+            libro.setCategoria(categoria);
+            libro.setFechaAlta(fecha(i));
+            libros.add(libro);
+        }
+
+        InternadorCadenas internador = new InternadorCadenas();
+        List<LibroCompacto> compactos = new ArrayList<>();
+        for (Libro libro : libros) {
+            compactos.add(LibroCompacto.desde(libro, internador));
+        }
+
+        long antes = bytesPorEntidad(libros);
+        long despues = bytesPorEntidad(compactos);
+        logger.info("Huella por libro: {} bytes como Libro, {} bytes como LibroCompacto", antes, despues);
+
+        assertTrue(despues < antes, "LibroCompacto ocupa " + despues + " bytes y Libro " + antes);
+        assertEquals(AUTORES + EDITORIALES, internador.getNumeroCadenas());
+    }
+
+    @Test
+    @DisplayName("Test de bytes por usuario antes y después de compactar")
+    public void testHuellaUsuarios() throws Exception {
+        List<Usuario> usuarios = new ArrayList<>();
+        for (int i = 0; i < ENTIDADES; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setId((long) i + 1);
+            usuario.setNombre(new String("Nombre " + (i % AUTORES)));
+            usuario.setApellidos("Apellido " + i);
+            usuario.setDniNif(String.format("%08dA", i));
+            usuario.setEmail("usuario" + i + "@uclm.es");
+            usuario.setTipoUsuario(TipoUsuario.ESTUDIANTE);
+            usuario.setEstado(EstadoUsuario.ACTIVO);
+            usuario.setFechaAlta(fecha(i));
+            usuarios.add(usuario);
+        }
+
+        InternadorCadenas internador = new InternadorCadenas();
+        List<UsuarioCompacto> compactos = new ArrayList<>();
+        for (Usuario usuario : usuarios) {
+            compactos.add(UsuarioCompacto.desde(usuario, internador));
+        }
+
+        long antes = bytesPorEntidad(usuarios);
+        long despues = bytesPorEntidad(compactos);
+        logger.info("Huella por usuario: {} bytes como Usuario, {} bytes como UsuarioCompacto", antes, despues);
+
+        assertTrue(despues < antes, "UsuarioCompacto ocupa " + despues + " bytes y Usuario " + antes);
+    }
+
+    @Test
+    @DisplayName("Test de entidades recién creadas sin colecciones reservadas")
+    public void testColeccionesPerezosas() throws Exception {
+        Libro libro = new Libro();
+        Usuario usuario = new Usuario();
+
+        long libroVacio = GraphLayout.parseInstance(libro).totalSize();
+        long usuarioVacio = GraphLayout.parseInstance(usuario).totalSize();
+        libro.getEjemplares();
+        usuario.getPrestamos();
+        usuario.getMultas();
+
+        // Las listas solo se crean cuando se piden
+        assertTrue(GraphLayout.parseInstance(libro).totalSize() > libroVacio);
+        assertTrue(GraphLayout.parseInstance(usuario).totalSize() > usuarioVacio);
+    }
+
+    /**
+     * Mide los bytes alcanzables desde las entidades, sin contar la lista que las
+     * contiene, y los reparte entre ellas.
+     */
+    private static long bytesPorEntidad(List<?> entidades) {
+        long total = GraphLayout.parseInstance(entidades.toArray()).totalSize();
+        long contenedor = GraphLayout.parseInstance((Object) new Object[entidades.size()]).totalSize();
+        return (total - contenedor) / entidades.size();
+    }
+
+    private static Date fecha(int dias) {
+        Calendar calendario = Calendar.getInstance();
+        calendario.clear();
+        calendario.set(2024, Calendar.JANUARY, 1);
+        calendario.add(Calendar.DAY_OF_MONTH, dias);
+        return calendario.getTime();
+    }
+}
@@ -0,0 +1,107 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas unitarias para la clase InstantaneaCatalogo.
+ */
+public class InstantaneaCatalogoTest {
+
+    @TempDir
+    Path directorio;
+
+    private Path fichero;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        EscritorInstantaneaCatalogo escritor = new EscritorInstantaneaCatalogo();
+        escritor.anadir(3L, 1L, 1605, 2, "Don Quijote de la Mancha", "Miguel de Cervantes", "9788437622774");
+        escritor.anadir(5L, 1L, 1613, 0, "Novelas ejemplares", "Miguel de Cervantes", "9788437603148");
+        escritor.anadir(8L, 2L, 1936, 1, "Poeta en Nueva York", "Federico García Lorca", null);
+        escritor.anadir(13L, InstantaneaCatalogo.SIN_CATEGORIA, InstantaneaCatalogo.SIN_ANIO, 4,
+                "Ñandúes y otras aves", "Anónimo", "978-84-376-0494-7");
+        fichero = directorio.resolve("catalogo-7.col");
+        escritor.escribir(fichero, 7);
+    }
+
+    @Test
+    @DisplayName("Test de lectura de las columnas de una instantánea")
+    public void testLeerColumnas() throws Exception {
+        InstantaneaCatalogo instantanea = InstantaneaCatalogo.abrir(fichero);
+
+        assertEquals(4, instantanea.getNumeroLibros());
+        assertEquals(7, instantanea.getGeneracion());
+        // Los dos libros de Cervantes comparten la cadena del autor
+        assertEquals(7, instantanea.getNumeroCadenas());
+
+        int posicion = instantanea.buscar(8L);
+        assertEquals(2, posicion);
+        assertEquals("Poeta en Nueva York", instantanea.getTitulo(posicion));
+        assertEquals("Federico García Lorca", instantanea.getAutor(posicion));
+        assertEquals(2L, instantanea.getCategoriaId(posicion));
+        assertEquals(1936, instantanea.getAnioPublicacion(posicion));
+        assertEquals(1, instantanea.getDisponibles(posicion));
+        assertNull(instantanea.getIsbn(posicion));
+
+        posicion = instantanea.buscar(13L);
+        assertEquals("Ñandúes y otras aves", instantanea.getTitulo(posicion));
+        assertEquals(InstantaneaCatalogo.SIN_ANIO, instantanea.getAnioPublicacion(posicion));
+        assertEquals("978-84-376-0494-7", instantanea.getIsbn(posicion));
+        assertEquals(-1, instantanea.buscar(4L));
+    }
+
+    @Test
+    @DisplayName("Test de búsquedas por ISBN, autor y categoría")
+    public void testBusquedas() throws Exception {
+        InstantaneaCatalogo instantanea = InstantaneaCatalogo.abrir(fichero);
+
+        assertEquals(1, instantanea.buscarPorIsbn("9788437603148"));
+        assertEquals(-1, instantanea.buscarPorIsbn("978843760314"));
+        assertArrayEquals(new long[] {3L, 5L}, instantanea.buscarPorAutor("Miguel de Cervantes"));
+        assertArrayEquals(new long[0], instantanea.buscarPorAutor("Lope de Vega"));
+        assertArrayEquals(new long[] {3L, 5L}, instantanea.buscarPorCategoria(1L, false));
+        assertArrayEquals(new long[] {3L}, instantanea.buscarPorCategoria(1L, true));
+        assertEquals(3, instantanea.contarLibrosDisponibles());
+    }
+
+    @Test
+    @DisplayName("Test de la instantánea abierta tras borrar su fichero")
+    public void testFicheroBorrado() throws Exception {
+        InstantaneaCatalogo instantanea = InstantaneaCatalogo.abrir(fichero);
+        Files.delete(fichero);
+
+        assertEquals("Don Quijote de la Mancha", instantanea.getTitulo(instantanea.buscar(3L)));
+    }
+
+    @Test
+    @DisplayName("Test de libros añadidos fuera de orden")
+    public void testOrdenDeIds() {
+        EscritorInstantaneaCatalogo escritor = new EscritorInstantaneaCatalogo();
+        escritor.anadir(5L, 1L, 2000, 0, "B", "Autor", null);
+
+        assertThrows(IllegalArgumentException.class, () -> escritor.anadir(5L, 1L, 2000, 0, "A", "Autor", null));
+    }
+
+    @Test
+    @DisplayName("Test de ficheros truncados o que no son instantáneas")
+    public void testFicheroNoValido() throws Exception {
+        byte[] datos = Files.readAllBytes(fichero);
+        Path truncado = directorio.resolve("truncado.col");
+        Files.write(truncado, Arrays.copyOf(datos, datos.length - 3));
+        Path otro = directorio.resolve("otro.col");
+        Files.write(otro, new byte[128]);
+
+        assertThrows(IOException.class, () -> InstantaneaCatalogo.abrir(truncado));
+        assertThrows(IOException.class, () -> InstantaneaCatalogo.abrir(otro));
+    }
+}
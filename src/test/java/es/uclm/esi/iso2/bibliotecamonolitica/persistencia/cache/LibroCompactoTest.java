@@ -0,0 +1,102 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+
+/**
+ * Pruebas unitarias para la clase LibroCompacto.
+ */
+public class LibroCompactoTest {
+
+    private InternadorCadenas internador;
+    private Libro libro;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        internador = new InternadorCadenas();
+
+        Categoria categoria = new Categoria();
+        categoria.setId(3L);
+
+        libro = new Libro();
+        libro.setId(7L);
+        libro.setTitulo("Don Quijote de la Mancha");
+        libro.setAutor("Miguel de Cervantes");
+        libro.setEditorial("Cátedra");
+        libro.setAnioPublicacion(1605);
+        libro.setIsbn("9788437622774");
+        libro.setDescripcion("Novela");
+        libro.setCategoria(categoria);
+        libro.setFechaAlta(fecha(2024, Calendar.MARCH, 15));
+    }
+
+    @Test
+    @DisplayName("Test de ida y vuelta entre Libro y LibroCompacto")
+    public void testIdaYVuelta() throws Exception {
+        LibroCompacto compacto = LibroCompacto.desde(libro, internador);
+        Libro reconstruido = compacto.aLibro();
+
+        assertEquals(7L, compacto.getId());
+        assertEquals(3L, compacto.getCategoriaId());
+        assertEquals(7L, reconstruido.getId());
+        assertEquals("Don Quijote de la Mancha", reconstruido.getTitulo());
+        assertEquals("Miguel de Cervantes", reconstruido.getAutor());
+        assertEquals("Cátedra", reconstruido.getEditorial());
+        assertEquals(1605, reconstruido.getAnioPublicacion());
+        assertEquals("9788437622774", reconstruido.getIsbn());
+        assertEquals("Novela", reconstruido.getDescripcion());
+        assertEquals(3L, reconstruido.getCategoria().getId());
+        assertEquals(libro.getFechaAlta(), reconstruido.getFechaAlta());
+    }
+
+    @Test
+    @DisplayName("Test de libro sin año, categoría ni fecha de alta")
+    public void testValoresAusentes() throws Exception {
+        libro.setAnioPublicacion(null);
+        libro.setCategoria(null);
+        libro.setFechaAlta(null);
+
+        LibroCompacto compacto = LibroCompacto.desde(libro, internador);
+        Libro reconstruido = compacto.aLibro();
+
+        assertEquals(LibroCompacto.SIN_ANIO, compacto.getAnioPublicacion());
+        assertEquals(LibroCompacto.SIN_CATEGORIA, compacto.getCategoriaId());
+        assertEquals(LibroCompacto.SIN_FECHA, compacto.getDiaAlta());
+        assertNull(reconstruido.getAnioPublicacion());
+        assertNull(reconstruido.getCategoria());
+        assertNull(reconstruido.getFechaAlta());
+    }
+
+    @Test
+    @DisplayName("Test de autores y editoriales compartidos entre libros")
+    public void testCadenasDeduplicadas() throws Exception {
+        Libro otro = new Libro();
+        otro.setId(8L);
+        otro.setTitulo("Novelas ejemplares");
+        otro.setAutor(new String("Miguel de Cervantes"));
+        otro.setEditorial(new String("Cátedra"));
+
+        LibroCompacto primero = LibroCompacto.desde(libro, internador);
+        LibroCompacto segundo = LibroCompacto.desde(otro, internador);
+
+        assertSame(primero.getAutor(), segundo.getAutor());
+        assertSame(primero.getEditorial(), segundo.getEditorial());
+        assertEquals(2, internador.getNumeroCadenas());
+    }
+
+    private static Date fecha(int anio, int mes, int dia) {
+        Calendar calendario = Calendar.getInstance();
+        calendario.clear();
+        calendario.set(anio, mes, dia);
+        return calendario.getTime();
+    }
+}
@@ -139,6 +139,28 @@ public class AgentMySQLTest {
         assertEquals(1, result);
     }
     
+    @Test
+    public void testExecuteInsertDevuelveIdLong() throws Exception {
+        // Mock del método connect
+        AgentMySQL spyAgent = spy(agentMySQL);
+        doReturn(mockConnection).when(spyAgent).connect();
+        
+        // Simular un ID generado mayor que Integer.MAX_VALUE
+        when(mockPreparedStatement.executeUpdate()).thenReturn(1);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(1)).thenReturn(3_000_000_000L);
+        
+        long id = spyAgent.executeInsert("INSERT INTO usuarios (nombre) VALUES (?)", "Ana");
+        
+        assertEquals(3_000_000_000L, id);
+        verify(mockResultSet, never()).getInt(1);
+        verify(mockConnection).close();
+        
+        // executeUpdate no puede devolverlo sin desbordarse: la fila ya está escrita
+        // y devuelve las filas afectadas en lugar de fallar
+        assertEquals(1, spyAgent.executeUpdate("INSERT INTO usuarios (nombre) VALUES (?)", "Ana"));
+    }
+    
     @Test
     public void testBeginTransaction() throws Exception {
         // Mock del método connect
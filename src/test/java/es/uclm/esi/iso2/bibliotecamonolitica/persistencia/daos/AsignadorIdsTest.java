@@ -0,0 +1,128 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Pruebas unitarias para la clase AsignadorIds.
+ */
+@ExtendWith(MockitoExtension.class)
+public class AsignadorIdsTest {
+
+    @Mock
+    private SecuenciaDAO mockSecuenciaDAO;
+
+    @Test
+    public void testSiguienteSoloReservaAlAgotarElBloque() throws Exception {
+        when(mockSecuenciaDAO.reservarBloque("libros", 3)).thenReturn(3_000_000_000L);
+        AsignadorIds asignador = new AsignadorIds("libros", mockSecuenciaDAO, 3, 3, 10000);
+
+        // Los IDs no caben en un int
+        assertEquals(3_000_000_000L, asignador.siguiente());
+        assertEquals(3_000_000_001L, asignador.siguiente());
+        assertEquals(3_000_000_002L, asignador.siguiente());
+        verify(mockSecuenciaDAO, times(1)).reservarBloque(anyString(), anyInt());
+
+        when(mockSecuenciaDAO.reservarBloque("libros", 3)).thenReturn(10L);
+        assertEquals(10L, asignador.siguiente());
+        assertEquals(2, asignador.getReservas());
+    }
+
+    @Test
+    public void testBloqueSeAdaptaAlRitmoDeInserciones() throws Exception {
+        when(mockSecuenciaDAO.reservarBloque(eq("libros"), anyInt())).thenReturn(1L, 100L, 1000L, 5000L, 9000L);
+        AtomicLong reloj = new AtomicLong(1);
+        AsignadorIds asignador = new AsignadorIds("libros", mockSecuenciaDAO, 10, 25, 1000, reloj::get);
+
+        // Bloques agotados muy por debajo de la duración objetivo: se duplican hasta el máximo
+        for (int i = 0; i < 10 + 20 + 1; i++) {
+            asignador.siguiente();
+        }
+        verify(mockSecuenciaDAO).reservarBloque("libros", 10);
+        verify(mockSecuenciaDAO).reservarBloque("libros", 20);
+        verify(mockSecuenciaDAO).reservarBloque("libros", 25);
+        assertEquals(25, asignador.getTamanoBloque());
+
+        // Un bloque que dura más del doble del objetivo: el siguiente es la mitad
+        asignador.siguientes(24);
+        reloj.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        asignador.siguiente();
+        verify(mockSecuenciaDAO).reservarBloque("libros", 12);
+
+        // Dentro del margen del objetivo el tamaño no cambia
+        asignador.siguientes(11);
+        reloj.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        asignador.siguiente();
+        verify(mockSecuenciaDAO, times(2)).reservarBloque("libros", 12);
+    }
+
+    @Test
+    public void testSiguientesCompletaElBloqueActualConUnaReserva() throws Exception {
+        when(mockSecuenciaDAO.reservarBloque("libros", 5)).thenReturn(1L);
+        when(mockSecuenciaDAO.reservarBloque("libros", 7)).thenReturn(50L);
+        AsignadorIds asignador = new AsignadorIds("libros", mockSecuenciaDAO, 5, 5, 10000);
+        asignador.siguientes(2);
+
+        long[] ids = asignador.siguientes(10);
+
+        assertArrayEquals(new long[] {3, 4, 5, 50, 51, 52, 53, 54, 55, 56}, ids);
+        assertEquals(2, asignador.getReservas());
+    }
+
+    @Test
+    public void testErrorAlReservarNoConsumeIds() throws Exception {
+        when(mockSecuenciaDAO.reservarBloque("libros", 2))
+                .thenThrow(new DAOException("Error simulado"))
+                .thenReturn(7L);
+        AsignadorIds asignador = new AsignadorIds("libros", mockSecuenciaDAO, 2, 2, 10000);
+
+        assertThrows(DAOException.class, asignador::siguiente);
+        assertEquals(7L, asignador.siguiente());
+        assertEquals(8L, asignador.siguiente());
+    }
+
+    @Test
+    public void testReservaFueraDelMonitor() throws Exception {
+        CountDownLatch reservando = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        when(mockSecuenciaDAO.reservarBloque("libros", 4)).thenAnswer(inv -> {
+            reservando.countDown();
+            assertTrue(continuar.await(5, TimeUnit.SECONDS));
+            return 100L;
+        });
+        AsignadorIds asignador = new AsignadorIds("libros", mockSecuenciaDAO, 4, 4, 10000);
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> primero = hilos.submit(asignador::siguiente);
+            assertTrue(reservando.await(5, TimeUnit.SECONDS));
+
+            // Mientras se espera a la base de datos el asignador sigue accesible,
+            // y otro hilo que necesita un ID espera al bloque en curso
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> asignador.getReservas());
+            Future<Long> segundo = hilos.submit(asignador::siguiente);
+            continuar.countDown();
+
+            assertEquals(100L, (long) primero.get(5, TimeUnit.SECONDS));
+            assertEquals(101L, (long) segundo.get(5, TimeUnit.SECONDS));
+            assertEquals(1, asignador.getReservas());
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.DetallePrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Ejemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Prestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+
+/**
+ * Base de datos en memoria que reproduce lo que importa de InnoDB para
+ * reclamar ejemplares: cada sentencia tarda lo que un viaje de ida y
+ * vuelta, el {@code UPDATE} bloquea las filas una a una en el orden de sus
+ * parámetros hasta el final de la transacción, y una espera demasiado larga
+ * se trata como un interbloqueo. Comprueba al confirmar cada préstamo que
+ * ninguno de sus ejemplares está ya prestado a otro.
+ * <p>
+ * La comparten las pruebas de {@link PrestamoLoteDAO} con mostradores
+ * concurrentes y {@link PrestamoLoteDAOBenchmark}.
+ */
+class BaseDatosSimulada {
+
+    private static final long LATENCIA_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long LATENCIA_FILA_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long ESPERA_MAXIMA_MS = 1000;
+
+    private final String[] estados;
+    private final ReentrantLock[] filas;
+    private final Map<Long, Long> prestamoPorEjemplar = new ConcurrentHashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+    private final AtomicInteger doblesPrestamos = new AtomicInteger();
+    private final AtomicInteger interbloqueos = new AtomicInteger();
+
+    BaseDatosSimulada(int ejemplares) {
+        estados = new String[ejemplares + 1];
+        filas = new ReentrantLock[ejemplares + 1];
+        for (int i = 1; i <= ejemplares; i++) {
+            estados[i] = EstadoEjemplar.DISPONIBLE.name();
+            filas[i] = new ReentrantLock();
+        }
+    }
+
+    Agent crearAgente() {
+        return new Agent() {
+            @Override
+            public Connection beginTransaction() {
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {Connection.class}, new Transaccion());
+            }
+
+            @Override
+            public void commitTransaction(Connection connection) {
+                ((Transaccion) Proxy.getInvocationHandler(connection)).confirmar();
+            }
+
+            @Override
+            public void rollbackTransaction(Connection connection) {
+                if (connection != null) {
+                    ((Transaccion) Proxy.getInvocationHandler(connection)).revertir();
+                }
+            }
+
+            @Override
+            public void disconnect(Connection connection) {
+                rollbackTransaction(connection);
+            }
+
+            @Override
+            public Connection connect() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ResultSet executeQuery(String sql, Object... params) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int executeUpdate(String sql, Object... params) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public long executeInsert(String sql, Object... params) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /** Crea un préstamo de un usuario cualquiera con los ejemplares indicados */
+    static Prestamo crearPrestamo(List<Long> ids) {
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+        Prestamo prestamo = new Prestamo(usuario);
+        prestamo.setFechaDevolucionPrevista(new java.util.Date());
+        for (long id : ids) {
+            Ejemplar ejemplar = new Ejemplar();
+            ejemplar.setId(id);
+            prestamo.addEjemplar(ejemplar);
+        }
+        return prestamo;
+    }
+
+    /** Crea un préstamo de ejemplares distintos elegidos al azar, en orden aleatorio */
+    Prestamo crearPrestamoAleatorio(int ejemplares) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> ids = new ArrayList<>();
+        while (ids.size() < ejemplares) {
+            long id = 1L + random.nextInt(estados.length - 1);
+            if (!ids.contains(id)) {
+                ids.add(id);
+            }
+        }
+        return crearPrestamo(ids);
+    }
+
+    /** Devuelve los ejemplares de un préstamo, como haría otra transacción */
+    void devolver(Prestamo prestamo) {
+        if (prestamo == null) {
+            return;
+        }
+        for (DetallePrestamo detalle : prestamo.getDetalles()) {
+            int id = detalle.getEjemplar().getId().intValue();
+            filas[id].lock();
+            try {
+                prestamoPorEjemplar.remove((long) id, prestamo.getId());
+                estados[id] = EstadoEjemplar.DISPONIBLE.name();
+            } finally {
+                filas[id].unlock();
+            }
+        }
+    }
+
+    int contarPrestados() {
+        int prestados = 0;
+        for (int i = 1; i < filas.length; i++) {
+            filas[i].lock();
+            try {
+                prestados += EstadoEjemplar.PRESTADO.name().equals(estados[i]) ? 1 : 0;
+            } finally {
+                filas[i].unlock();
+            }
+        }
+        return prestados + prestamoPorEjemplar.size();
+    }
+
+    int getDoblesPrestamos() {
+        return doblesPrestamos.get();
+    }
+
+    int getInterbloqueos() {
+        return interbloqueos.get();
+    }
+
+    /** Conexión con una transacción abierta */
+    private class Transaccion implements InvocationHandler {
+
+        private final List<ReentrantLock> bloqueadas = new ArrayList<>();
+        private final Map<Integer, String> deshacer = new HashMap<>();
+        private final Map<Long, Long> detallesPendientes = new HashMap<>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("prepareStatement")) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class}, new Sentencia(this, (String) args[0]));
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+
+        long[] ejecutar(String sql, Map<Integer, Object> parametros) throws SQLException {
+            LockSupport.parkNanos(LATENCIA_NANOS);
+            if (sql.startsWith("UPDATE ejemplares")) {
+                return new long[] {reclamar(parametros)};
+            }
+            if (sql.startsWith("INSERT INTO prestamos")) {
+                return new long[] {secuencia.incrementAndGet()};
+            }
+            long[] claves = new long[parametros.size() / 3];
+            for (int i = 0; i < claves.length; i++) {
+                detallesPendientes.put((Long) parametros.get(3 * i + 2), (Long) parametros.get(3 * i + 1));
+                claves[i] = secuencia.incrementAndGet();
+            }
+            return claves;
+        }
+
+        private int reclamar(Map<Integer, Object> parametros) throws SQLException {
+            String nuevo = (String) parametros.get(1);
+            String esperado = (String) parametros.get(2);
+            int reclamados = 0;
+            for (int i = 3; i <= parametros.size(); i++) {
+                int id = ((Long) parametros.get(i)).intValue();
+                bloquear(filas[id]);
+                LockSupport.parkNanos(LATENCIA_FILA_NANOS);
+                if (esperado.equals(estados[id])) {
+                    deshacer.putIfAbsent(id, estados[id]);
+                    estados[id] = nuevo;
+                    reclamados++;
+                }
+            }
+            return reclamados;
+        }
+
+        private void bloquear(ReentrantLock fila) throws SQLException {
+            if (fila.isHeldByCurrentThread()) {
+                return;
+            }
+            try {
+                if (!fila.tryLock(ESPERA_MAXIMA_MS, TimeUnit.MILLISECONDS)) {
+                    interbloqueos.incrementAndGet();
+                    throw new SQLException("Deadlock found when trying to get lock", "40001", 1213);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+            bloqueadas.add(fila);
+        }
+
+        void confirmar() {
+            LockSupport.parkNanos(LATENCIA_NANOS);
+            for (Map.Entry<Long, Long> detalle : detallesPendientes.entrySet()) {
+                if (prestamoPorEjemplar.putIfAbsent(detalle.getKey(), detalle.getValue()) != null) {
+                    doblesPrestamos.incrementAndGet();
+                }
+            }
+            deshacer.clear();
+            liberar();
+        }
+
+        void revertir() {
+            for (Map.Entry<Integer, String> fila : deshacer.entrySet()) {
+                estados[fila.getKey()] = fila.getValue();
+            }
+            deshacer.clear();
+            liberar();
+        }
+
+        private void liberar() {
+            detallesPendientes.clear();
+            for (ReentrantLock fila : bloqueadas) {
+                fila.unlock();
+            }
+            bloqueadas.clear();
+        }
+    }
+
+    /** Sentencia preparada sobre una transacción */
+    private static class Sentencia implements InvocationHandler {
+
+        private final Transaccion transaccion;
+        private final String sql;
+        private final Map<Integer, Object> parametros = new HashMap<>();
+        private long[] claves;
+
+        Sentencia(Transaccion transaccion, String sql) {
+            this.transaccion = transaccion;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+            switch (method.getName()) {
+                case "setLong":
+                case "setString":
+                case "setDate":
+                case "setTimestamp":
+                    parametros.put((Integer) args[0], args[1]);
+                    return null;
+                case "executeUpdate":
+                    claves = transaccion.ejecutar(sql, parametros);
+                    return sql.startsWith("UPDATE") ? (int) claves[0] : claves.length;
+                case "getGeneratedKeys":
+                    return crearClaves(claves);
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private static ResultSet crearClaves(long[] claves) {
+            int[] posicion = {-1};
+            return (ResultSet) Proxy.newProxyInstance(Sentencia.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                return ++posicion[0] < claves.length;
+                            case "getLong":
+                                return claves[posicion[0]];
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
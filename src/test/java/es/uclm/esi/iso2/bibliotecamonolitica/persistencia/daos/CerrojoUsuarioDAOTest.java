@@ -0,0 +1,97 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+
+/**
+ * Pruebas unitarias para la clase CerrojoUsuarioDAO.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CerrojoUsuarioDAOTest {
+
+    @Mock
+    private Agent mockAgent;
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private PreparedStatement mockStatement;
+
+    @Mock
+    private ResultSet mockResultSet;
+
+    private CerrojoUsuarioDAO cerrojoUsuarioDAO;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        try (MockedStatic<Agent> mockedStatic = mockStatic(Agent.class)) {
+            mockedStatic.when(() -> Agent.getInstance(anyString())).thenReturn(mockAgent);
+            cerrojoUsuarioDAO = new CerrojoUsuarioDAO();
+        }
+    }
+
+    private void configurarResultado(String sql, int resultado) throws Exception {
+        when(mockConnection.prepareStatement(sql)).thenReturn(mockStatement);
+        when(mockStatement.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getInt(1)).thenReturn(resultado);
+    }
+
+    @Test
+    public void testAdquirir() throws Exception {
+        when(mockAgent.connect()).thenReturn(mockConnection);
+        configurarResultado("SELECT GET_LOCK(?, ?)", 1);
+
+        Connection resultado = cerrojoUsuarioDAO.adquirir(7L, 5);
+
+        assertSame(mockConnection, resultado);
+        verify(mockStatement).setObject(1, "biblioteca.usuario.7");
+        verify(mockStatement).setObject(2, 5);
+        verify(mockAgent, never()).disconnect(any(Connection.class));
+    }
+
+    @Test
+    public void testAdquirirEsperaAgotada() throws Exception {
+        when(mockAgent.connect()).thenReturn(mockConnection);
+        configurarResultado("SELECT GET_LOCK(?, ?)", 0);
+
+        assertThrows(DAOException.class, () -> cerrojoUsuarioDAO.adquirir(7L, 5));
+        verify(mockAgent).disconnect(mockConnection);
+    }
+
+    @Test
+    public void testLiberar() throws Exception {
+        configurarResultado("SELECT RELEASE_LOCK(?)", 1);
+
+        cerrojoUsuarioDAO.liberar(mockConnection, 7L);
+
+        verify(mockStatement).setObject(1, "biblioteca.usuario.7");
+        verify(mockAgent).disconnect(mockConnection);
+    }
+
+    @Test
+    public void testLiberarHandlesException() throws Exception {
+        when(mockConnection.prepareStatement(anyString())).thenThrow(new SQLException("Conexión perdida"));
+
+        cerrojoUsuarioDAO.liberar(mockConnection, 7L);
+
+        verify(mockAgent).disconnect(mockConnection);
+    }
+}
@@ -4,10 +4,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -21,6 +25,7 @@ import org.mockito.stubbing.Answer;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
 import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
 import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceInvertido;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DatabaseConnectionException;
 import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.NotNullValueAllowedException;
@@ -40,6 +45,9 @@ public class LibroDAOTest {
     @Mock
     private CategoriaDAO mockCategoriaDAO;
     
+    @Mock
+    private SecuenciaDAO mockSecuenciaDAO;
+    
     private LibroDAO libroDAO;
     private Libro libroTest;
     private Categoria categoriaTest;
@@ -57,6 +65,10 @@ public class LibroDAOTest {
             java.lang.reflect.Field categoriaDAOField = LibroDAO.class.getDeclaredField("categoriaDAO");
             categoriaDAOField.setAccessible(true);
             categoriaDAOField.set(libroDAO, mockCategoriaDAO);
+            
+            java.lang.reflect.Field asignadorIdsField = LibroDAO.class.getDeclaredField("asignadorIds");
+            asignadorIdsField.setAccessible(true);
+            asignadorIdsField.set(libroDAO, new AsignadorIds("libros", mockSecuenciaDAO, 10, 10, 10000));
         }
         
         // Crear objetos de prueba
@@ -79,37 +91,135 @@ public class LibroDAOTest {
     @Test
     public void testCreate() throws Exception {
         // Configurar comportamiento del mock
-        when(mockAgent.executeUpdate(anyString(), any())).thenReturn(1);
+        when(mockSecuenciaDAO.reservarBloque("libros", 10)).thenReturn(3_000_000_000L);
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockAgent.connect()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(
+            "INSERT INTO libros (id, titulo, autor, editorial, anio_publicacion, isbn, categoria_id, descripcion, fecha_alta) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"))
+            .thenReturn(mockStatement);
         
         // Ejecutar método
         Libro resultado = libroDAO.create(libroTest);
         
-        // Verificar comportamiento y resultado
-        verify(mockAgent).executeUpdate(
-            eq("INSERT INTO libros (titulo, autor, editorial, anio_publicacion, isbn, categoria_id, descripcion, fecha_alta) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
-            eq(libroTest.getTitulo()),
-            eq(libroTest.getAutor()),
-            eq(libroTest.getEditorial()),
-            eq(libroTest.getAnioPublicacion()),
-            eq(libroTest.getIsbn()),
-            eq(libroTest.getCategoria().getId()),
-            eq(libroTest.getDescripcion()),
-            any(Date.class)
-        );
+        // Verificar comportamiento y resultado: el ID no cabe en un int y no se leen claves generadas
+        verify(mockStatement).setLong(1, 3_000_000_000L);
+        verify(mockStatement).setString(2, libroTest.getTitulo());
+        verify(mockStatement).setString(3, libroTest.getAutor());
+        verify(mockStatement).setString(4, libroTest.getEditorial());
+        verify(mockStatement).setObject(5, libroTest.getAnioPublicacion());
+        verify(mockStatement).setString(6, libroTest.getIsbn());
+        verify(mockStatement).setObject(7, libroTest.getCategoria().getId());
+        verify(mockStatement).setString(8, libroTest.getDescripcion());
+        verify(mockStatement).setDate(eq(9), any(Date.class));
+        verify(mockStatement).executeUpdate();
+        verify(mockStatement, never()).getGeneratedKeys();
+        verify(mockAgent, never()).executeUpdate(anyString(), any());
+        verify(mockAgent).disconnect(mockConnection);
         
         assertNotNull(resultado);
         assertEquals(libroTest, resultado);
+        assertEquals(3_000_000_000L, resultado.getId());
     }
     
     @Test
     public void testCreateHandlesException() throws Exception {
         // Configurar comportamiento del mock para lanzar excepción
-        when(mockAgent.executeUpdate(anyString(), any())).thenThrow(new SQLException("Test exception"));
+        when(mockSecuenciaDAO.reservarBloque("libros", 10)).thenReturn(1L);
+        Connection mockConnection = mock(Connection.class);
+        when(mockAgent.connect()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenThrow(new SQLException("Test exception"));
         
         // Verificar que se propaga como DAOException
         assertThrows(DAOException.class, () -> {
             libroDAO.create(libroTest);
         });
+        verify(mockAgent).disconnect(mockConnection);
+    }
+    
+    @Test
+    public void testCrearLote() throws Exception {
+        when(mockSecuenciaDAO.reservarBloque("libros", 10)).thenReturn(100L);
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO libros (id,"))).thenReturn(mockStatement);
+        Libro otro = new Libro();
+        otro.setTitulo("La Regenta");
+        otro.setAutor("Leopoldo Alas");
+        
+        List<Libro> creados = libroDAO.crearLote(Arrays.asList(libroTest, otro));
+        
+        // Una sola reserva de IDs y un solo lote, sin leer claves generadas
+        assertEquals(100L, creados.get(0).getId());
+        assertEquals(101L, creados.get(1).getId());
+        verify(mockStatement).setLong(1, 100L);
+        verify(mockStatement).setLong(1, 101L);
+        verify(mockStatement, times(2)).addBatch();
+        verify(mockStatement).executeBatch();
+        verify(mockStatement, never()).getGeneratedKeys();
+        verify(mockAgent).commitTransaction(mockConnection);
+        verify(mockSecuenciaDAO, times(1)).reservarBloque(anyString(), anyInt());
+    }
+
+    @Test
+    public void testActualizarLote() throws Exception {
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(startsWith("UPDATE libros SET"))).thenReturn(mockStatement);
+        // Otros índices pueden haberse registrado como observadores: se releen los libros
+        lenient().when(mockAgent.executeQuery(startsWith("SELECT * FROM libros WHERE id IN"), any(), any()))
+            .thenReturn(mockResultSet);
+        Libro otro = new Libro();
+        otro.setId(2L);
+        otro.setTitulo("La Regenta");
+        otro.setAutor("Leopoldo Alas");
+
+        libroDAO.actualizarLote(Arrays.asList(libroTest, otro));
+
+        // Los datos que faltan en la fila importada no borran los guardados
+        verify(mockConnection).prepareStatement(contains("editorial = COALESCE(?, editorial)"));
+        verify(mockStatement).setString(3, null);
+        verify(mockStatement).setString(7, null);
+        verify(mockStatement).setLong(8, 1L);
+        verify(mockStatement).setLong(8, 2L);
+        verify(mockStatement, times(2)).addBatch();
+        verify(mockStatement).executeBatch();
+        verify(mockAgent).commitTransaction(mockConnection);
+    }
+
+    @Test
+    public void testBuscarIdsPorIsbn() throws Exception {
+        when(mockAgent.executeQuery(eq("SELECT id, isbn FROM libros WHERE isbn IN (?, ?)"),
+                eq("9788437622774"), eq("9780306406157"))).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenReturn(false);
+        when(mockResultSet.getString("isbn")).thenReturn("9788437622774");
+        when(mockResultSet.getLong("id")).thenReturn(1L);
+
+        Map<String, Long> ids = libroDAO.buscarIdsPorIsbn(Arrays.asList("9788437622774", "9780306406157"));
+
+        assertEquals(1, ids.size());
+        assertEquals(1L, ids.get("9788437622774"));
+    }
+
+    @Test
+    public void testCargarEjemplaresDisponibles() throws Exception {
+        Libro sinDisponibles = new Libro();
+        sinDisponibles.setId(2L);
+        sinDisponibles.agregarEjemplar("Estantería A");
+        when(mockAgent.executeQuery(startsWith("SELECT libro_id, COUNT(*) AS disponibles FROM ejemplares"),
+                eq("DISPONIBLE"), eq(1L), eq(2L))).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenReturn(false);
+        when(mockResultSet.getLong("libro_id")).thenReturn(1L);
+        when(mockResultSet.getInt("disponibles")).thenReturn(4);
+        
+        libroDAO.cargarEjemplaresDisponibles(Arrays.asList(libroTest, sinDisponibles));
+        
+        // Una sola consulta agrupada, sin recuperar los ejemplares
+        assertEquals(4, libroTest.contarEjemplaresDisponibles());
+        assertEquals(0, sinDisponibles.contarEjemplaresDisponibles());
+        verify(mockAgent, times(1)).executeQuery(anyString(), any(), any(), any());
     }
     
     @Test
@@ -142,6 +252,18 @@ public class LibroDAOTest {
         assertEquals(categoriaTest, resultado.get().getCategoria());
     }
     
+    @Test
+    public void testFindByIsbnNormalizaElIsbn() throws Exception {
+        when(mockAgent.executeQuery(anyString(), eq("9788437622774"))).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+        
+        // Con guiones se busca igual que se guarda
+        Optional<Libro> resultado = libroDAO.findByIsbn("978-84-376-2277-4");
+        
+        verify(mockAgent).executeQuery("SELECT * FROM libros WHERE isbn = ?", "9788437622774");
+        assertFalse(resultado.isPresent());
+    }
+    
     @Test
     public void testFindByIdNotFound() throws Exception {
         // Configurar comportamiento del mock
@@ -305,4 +427,96 @@ public class LibroDAOTest {
         assertEquals(1, resultados.size());
         assertEquals("Don Quijote de la Mancha", resultados.get(0).getTitulo());
     }
+    
+    @Test
+    public void testFindByTituloConIndice() throws Exception {
+        // Inyectar un índice ya cargado mediante reflection
+        IndiceInvertido indice = new IndiceInvertido();
+        indice.indexar(libroTest);
+        java.lang.reflect.Field cargadoField = IndiceInvertido.class.getDeclaredField("cargado");
+        cargadoField.setAccessible(true);
+        cargadoField.set(indice, true);
+        java.lang.reflect.Field indiceField = LibroDAO.class.getDeclaredField("indice");
+        indiceField.setAccessible(true);
+        indiceField.set(libroDAO, indice);
+        
+        // Configurar comportamiento del mock
+        when(mockAgent.executeQuery(eq("SELECT * FROM libros WHERE id IN (?)"), eq(1L))).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true).thenReturn(false);
+        when(mockResultSet.getLong("id")).thenReturn(1L);
+        when(mockResultSet.getString("titulo")).thenReturn("Don Quijote de la Mancha");
+        when(mockResultSet.getString("autor")).thenReturn("Miguel de Cervantes");
+        when(mockResultSet.getDate("fecha_alta")).thenReturn(new Date(System.currentTimeMillis()));
+        when(mockResultSet.getLong("categoria_id")).thenReturn(0L);
+        when(mockResultSet.wasNull()).thenReturn(true);
+        
+        // Ejecutar método: sin tildes ni mayúsculas, sin consulta LIKE
+        List<Libro> resultados = libroDAO.findByTitulo("QUIJOTE");
+        
+        // Verificar comportamiento y resultado
+        verify(mockAgent, never()).executeQuery(eq("SELECT * FROM libros WHERE titulo LIKE ?"), any());
+        assertEquals(1, resultados.size());
+        assertEquals("Don Quijote de la Mancha", resultados.get(0).getTitulo());
+        
+        // Un término ausente no consulta la base de datos
+        assertTrue(libroDAO.findByTitulo("Hamlet").isEmpty());
+    }
+    
+    @Test
+    public void testFindByTituloFullTextBooleano() throws Exception {
+        // Crear un DAO configurado en modo FULLTEXT booleano
+        LibroDAO libroDAOFullText;
+        try (MockedStatic<Agent> mockedStatic = mockStatic(Agent.class)) {
+            mockedStatic.when(() -> Agent.getInstance(anyString())).thenReturn(mockAgent);
+            libroDAOFullText = new LibroDAO(ModoBusqueda.FULLTEXT_BOOLEANO);
+        }
+        
+        String sql = "SELECT *, MATCH (titulo) AGAINST (? IN BOOLEAN MODE) AS relevancia FROM libros "
+                + "WHERE MATCH (titulo) AGAINST (? IN BOOLEAN MODE) ORDER BY relevancia DESC";
+        when(mockAgent.executeQuery(eq(sql), eq("+quijote +mancha"), eq("+quijote +mancha"))).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+        
+        // Ejecutar método: las palabras cortas se descartan
+        List<Libro> resultados = libroDAOFullText.findByTitulo("Quijote de la Mancha");
+        
+        // Verificar comportamiento y resultado
+        verify(mockAgent).executeQuery(sql, "+quijote +mancha", "+quijote +mancha");
+        assertTrue(resultados.isEmpty());
+    }
+    
+    @Test
+    public void testBuscarPorTextoLikeSinLimite() throws Exception {
+        // Crear un DAO configurado en modo LIKE
+        LibroDAO libroDAOLike;
+        try (MockedStatic<Agent> mockedStatic = mockStatic(Agent.class)) {
+            mockedStatic.when(() -> Agent.getInstance(anyString())).thenReturn(mockAgent);
+            libroDAOLike = new LibroDAO(ModoBusqueda.LIKE);
+        }
+        
+        String sql = "SELECT * FROM libros WHERE titulo LIKE ? OR autor LIKE ? OR descripcion LIKE ?";
+        when(mockAgent.executeQuery(startsWith(sql), eq("%quijote%"), eq("%quijote%"), eq("%quijote%")))
+                .thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+        
+        // Un límite 0 no limita, igual que en los modos FULLTEXT
+        libroDAOLike.buscarPorTexto("quijote", 0);
+        libroDAOLike.buscarPorTexto("quijote", 5);
+        
+        // Verificar comportamiento
+        verify(mockAgent).executeQuery(sql, "%quijote%", "%quijote%", "%quijote%");
+        verify(mockAgent).executeQuery(sql + " LIMIT 5", "%quijote%", "%quijote%", "%quijote%");
+    }
+    
+    @Test
+    public void testPrepararConsultaBooleana() {
+        assertEquals("+garcia +marquez", LibroDAO.prepararConsultaBooleana("García Márquez"));
+        assertEquals("+cervantes -quijote", LibroDAO.prepararConsultaBooleana(" +cervantes -quijote "));
+        assertEquals("", LibroDAO.prepararConsultaBooleana("el de la"));
+        assertEquals("", LibroDAO.prepararConsultaBooleana(null));
+        // Un guion dentro de una palabra no es un operador
+        assertEquals("+\"spider man\"", LibroDAO.prepararConsultaBooleana("Spider-Man"));
+        assertEquals("\"spider man\" -comic", LibroDAO.prepararConsultaBooleana("Spider-Man -cómic"));
+        assertEquals("+\"cien años\" garcia quij*",
+                LibroDAO.prepararConsultaBooleana("+\"Cien años\" (García) quij*"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mockStatic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.MockedStatic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Prestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.EjemplarNoDisponibleException;
+
+/**
+ * Prueba de rendimiento de {@link PrestamoLoteDAO#registrarPrestamo} con
+ * varios mostradores que prestan a la vez ejemplares elegidos al azar de un
+ * fondo común de 100, sobre {@link BaseDatosSimulada}. Cada mostrador mantiene
+ * su último préstamo hasta hacer el siguiente. Se ejecuta con 1 y con 8 hilos
+ * para comparar los préstamos por segundo.
+ * <p>
+ * No forma parte de las pruebas unitarias; se ejecuta con el método
+ * {@link #main(String[])} desde el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrestamoLoteDAOBenchmark {
+
+    private static final int EJEMPLARES_SIMULADOS = 100;
+    private static final int EJEMPLARES_POR_PRESTAMO = 4;
+
+    private BaseDatosSimulada baseDatos;
+
+    private PrestamoLoteDAO dao;
+
+    @Setup
+    public void preparar() throws DAOException {
+        baseDatos = new BaseDatosSimulada(EJEMPLARES_SIMULADOS);
+        try (MockedStatic<Agent> mockedStatic = mockStatic(Agent.class)) {
+            mockedStatic.when(() -> Agent.getInstance(anyString())).thenReturn(baseDatos.crearAgente());
+            dao = new PrestamoLoteDAO();
+        }
+    }
+
+    /** Último préstamo de cada mostrador, que se devuelve al hacer el siguiente */
+    @State(Scope.Thread)
+    public static class Mostrador {
+
+        Prestamo anterior;
+    }
+
+    @Benchmark
+    public boolean prestar(Mostrador mostrador) throws DAOException {
+        Prestamo nuevo = baseDatos.crearPrestamoAleatorio(EJEMPLARES_POR_PRESTAMO);
+        try {
+            dao.registrarPrestamo(nuevo);
+        } catch (EjemplarNoDisponibleException e) {
+            return false;
+        }
+        baseDatos.devolver(mostrador.anterior);
+        mostrador.anterior = nuevo;
+        return true;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int mostradores : new int[] {1, 8}) {
+            Options opciones = new OptionsBuilder()
+                    .include(PrestamoLoteDAOBenchmark.class.getSimpleName())
+                    .threads(mostradores)
+                    .build();
+            new Runner(opciones).run();
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.DetallePrestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Ejemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Prestamo;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.PrestamoLoteDAO.Devolucion;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.agentes.Agent;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.DAOException;
+import es.uclm.esi.iso2.bibliotecamonolitica.util.excepciones.EjemplarNoDisponibleException;
+
+/**
+ * Pruebas unitarias para la clase PrestamoLoteDAO.
+ */
+@ExtendWith(MockitoExtension.class)
+public class PrestamoLoteDAOTest {
+
+    private static final int NUM_EJEMPLARES = 10;
+
+    /** Parámetros de la prueba de préstamos concurrentes */
+    private static final int EJEMPLARES_SIMULADOS = 100;
+    private static final int EJEMPLARES_POR_PRESTAMO = 4;
+    private static final int PRESTAMOS_POR_MOSTRADOR = 40;
+
+    @Mock
+    private Agent mockAgent;
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private PreparedStatement mockInsertPrestamo;
+
+    @Mock
+    private PreparedStatement mockUpdateEjemplares;
+
+    @Mock
+    private PreparedStatement mockInsertDetalles;
+
+    @Mock
+    private ResultSet mockResultSet;
+
+    @Mock
+    private ResultSet mockClavePrestamo;
+
+    @Mock
+    private ResultSet mockClavesDetalles;
+
+    private PrestamoLoteDAO prestamoLoteDAO;
+    private Prestamo prestamo;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        try (MockedStatic<Agent> mockedStatic = mockStatic(Agent.class)) {
+            mockedStatic.when(() -> Agent.getInstance(anyString())).thenReturn(mockAgent);
+            prestamoLoteDAO = new PrestamoLoteDAO();
+        }
+
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+
+        prestamo = new Prestamo(usuario);
+        prestamo.setFechaDevolucionPrevista(new java.util.Date());
+        for (long id = 1; id <= NUM_EJEMPLARES; id++) {
+            Ejemplar ejemplar = new Ejemplar();
+            ejemplar.setId(id);
+            ejemplar.setEstado(EstadoEjemplar.DISPONIBLE);
+            prestamo.addEjemplar(ejemplar);
+        }
+    }
+
+    private void configurarReclamacion(int ejemplaresReclamados) throws Exception {
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(startsWith("UPDATE ejemplares"))).thenReturn(mockUpdateEjemplares);
+        when(mockUpdateEjemplares.executeUpdate()).thenReturn(ejemplaresReclamados);
+    }
+
+    private void configurarInserciones() throws Exception {
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO prestamos"), eq(Statement.RETURN_GENERATED_KEYS)))
+                .thenReturn(mockInsertPrestamo);
+        when(mockInsertPrestamo.getGeneratedKeys()).thenReturn(mockClavePrestamo);
+        when(mockClavePrestamo.next()).thenReturn(true);
+        when(mockClavePrestamo.getLong(1)).thenReturn(100L);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO detalle_prestamos"),
+                eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(mockInsertDetalles);
+        when(mockInsertDetalles.getGeneratedKeys()).thenReturn(mockClavesDetalles);
+        when(mockClavesDetalles.next()).thenReturn(true);
+        when(mockClavesDetalles.getLong(1)).thenReturn(500L, 501L, 502L, 503L, 504L, 505L, 506L, 507L, 508L, 509L);
+    }
+
+    @Test
+    public void testRegistrarPrestamoConNumeroConstanteDeSentencias() throws Exception {
+        configurarReclamacion(NUM_EJEMPLARES);
+        configurarInserciones();
+
+        // Ejecutar método
+        Prestamo resultado = prestamoLoteDAO.registrarPrestamo(prestamo);
+
+        // Tres sentencias en una sola transacción, sea cual sea el número de ejemplares
+        verify(mockAgent).beginTransaction();
+        verify(mockInsertPrestamo).executeUpdate();
+        verify(mockUpdateEjemplares).executeUpdate();
+        verify(mockInsertDetalles).executeUpdate();
+        verify(mockAgent).commitTransaction(mockConnection);
+        verify(mockAgent, never()).rollbackTransaction(any());
+        verify(mockAgent).disconnect(mockConnection);
+        verify(mockAgent, never()).executeUpdate(anyString(), any());
+
+        // El cambio de estado solo afecta a los ejemplares que siguen disponibles
+        verify(mockConnection).prepareStatement(
+                "UPDATE ejemplares SET estado = ? WHERE estado = ? AND id IN (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ORDER BY id");
+        verify(mockUpdateEjemplares).setString(1, EstadoEjemplar.PRESTADO.name());
+        verify(mockUpdateEjemplares).setString(2, EstadoEjemplar.DISPONIBLE.name());
+        verify(mockUpdateEjemplares).setLong(3, 1L);
+        verify(mockUpdateEjemplares).setLong(NUM_EJEMPLARES + 2, (long) NUM_EJEMPLARES);
+
+        assertEquals(100L, resultado.getId());
+        List<DetallePrestamo> detalles = resultado.getDetalles();
+        assertEquals(500L, detalles.get(0).getId());
+        assertEquals(509L, detalles.get(NUM_EJEMPLARES - 1).getId());
+    }
+
+    @Test
+    public void testRegistrarPrestamoReclamaEnOrdenDeId() throws Exception {
+        configurarReclamacion(3);
+        configurarInserciones();
+        Prestamo desordenado = new Prestamo(prestamo.getUsuario());
+        desordenado.setFechaDevolucionPrevista(new java.util.Date());
+        for (long id : new long[] {9L, 2L, 5L}) {
+            Ejemplar ejemplar = new Ejemplar();
+            ejemplar.setId(id);
+            desordenado.addEjemplar(ejemplar);
+        }
+
+        prestamoLoteDAO.registrarPrestamo(desordenado);
+
+        // Las filas se bloquean en orden ascendente, sea cual sea el orden del préstamo
+        verify(mockUpdateEjemplares).setLong(3, 2L);
+        verify(mockUpdateEjemplares).setLong(4, 5L);
+        verify(mockUpdateEjemplares).setLong(5, 9L);
+        // Los detalles conservan el orden del préstamo
+        verify(mockInsertDetalles).setLong(2, 9L);
+    }
+
+    @Test
+    public void testRegistrarPrestamoDeEjemplaresReservados() throws Exception {
+        configurarReclamacion(NUM_EJEMPLARES - 2);
+        configurarInserciones();
+        PreparedStatement reclamarReservados = mock(PreparedStatement.class);
+        PreparedStatement cumplirReservas = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(contains("SELECT ejemplar_id FROM reservas"))).thenReturn(reclamarReservados);
+        when(mockConnection.prepareStatement(startsWith("UPDATE reservas"))).thenReturn(cumplirReservas);
+        when(reclamarReservados.executeUpdate()).thenReturn(2);
+        prestamo.getDetalles().get(6).getEjemplar().setEstado(EstadoEjemplar.RESERVADO);
+        prestamo.getDetalles().get(2).getEjemplar().setEstado(EstadoEjemplar.RESERVADO);
+
+        prestamoLoteDAO.registrarPrestamo(prestamo);
+
+        // Los apartados solo se reclaman si lo están para una reserva del usuario del préstamo
+        verify(mockConnection).prepareStatement(
+                "UPDATE ejemplares SET estado = ? WHERE estado = ? AND id IN (?, ?, ?, ?, ?, ?, ?, ?) ORDER BY id");
+        verify(reclamarReservados).setString(2, EstadoEjemplar.RESERVADO.name());
+        verify(reclamarReservados).setLong(3, 3L);
+        verify(reclamarReservados).setLong(4, 7L);
+        verify(reclamarReservados).setLong(5, 1L);
+        verify(cumplirReservas).setString(1, "CUMPLIDA");
+        verify(cumplirReservas).executeUpdate();
+        verify(mockAgent).commitTransaction(mockConnection);
+    }
+
+    @Test
+    public void testRegistrarPrestamoDeEjemplarReservadoParaOtroUsuario() throws Exception {
+        configurarReclamacion(NUM_EJEMPLARES - 1);
+        PreparedStatement reclamarReservados = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(contains("SELECT ejemplar_id FROM reservas"))).thenReturn(reclamarReservados);
+        when(reclamarReservados.executeUpdate()).thenReturn(0);
+        prestamo.getDetalles().get(0).getEjemplar().setEstado(EstadoEjemplar.RESERVADO);
+
+        assertThrows(EjemplarNoDisponibleException.class, () -> prestamoLoteDAO.registrarPrestamo(prestamo));
+        verify(mockConnection, never()).prepareStatement(startsWith("UPDATE reservas"));
+        verify(mockAgent).rollbackTransaction(mockConnection);
+    }
+
+    @Test
+    public void testRegistrarPrestamoEjemplarNoDisponible() throws Exception {
+        // Otro préstamo se ha llevado uno de los ejemplares
+        configurarReclamacion(NUM_EJEMPLARES - 1);
+
+        // Verificar que se revierte la transacción sin insertar nada
+        assertThrows(EjemplarNoDisponibleException.class, () -> {
+            prestamoLoteDAO.registrarPrestamo(prestamo);
+        });
+        verify(mockAgent).rollbackTransaction(mockConnection);
+        verify(mockAgent, never()).commitTransaction(any());
+        verify(mockConnection, never()).prepareStatement(anyString(), anyInt());
+        verify(mockAgent).disconnect(mockConnection);
+        assertNull(prestamo.getId());
+    }
+
+    @Test
+    public void testRegistrarPrestamoReintentaTrasInterbloqueo() throws Exception {
+        configurarReclamacion(NUM_EJEMPLARES);
+        configurarInserciones();
+        when(mockUpdateEjemplares.executeUpdate())
+                .thenThrow(new SQLException("Deadlock found when trying to get lock", "40001", 1213))
+                .thenReturn(NUM_EJEMPLARES);
+
+        // Ejecutar método
+        Prestamo resultado = prestamoLoteDAO.registrarPrestamo(prestamo);
+
+        // El primer intento se revierte y el segundo se confirma
+        verify(mockAgent, times(2)).beginTransaction();
+        verify(mockAgent).rollbackTransaction(mockConnection);
+        verify(mockAgent).commitTransaction(mockConnection);
+        verify(mockAgent, times(2)).disconnect(mockConnection);
+        assertEquals(100L, resultado.getId());
+    }
+
+    @Test
+    public void testRegistrarPrestamoHandlesException() throws Exception {
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenThrow(new SQLException("Test exception"));
+
+        // Verificar que se propaga como DAOException tras revertir
+        assertThrows(DAOException.class, () -> {
+            prestamoLoteDAO.registrarPrestamo(prestamo);
+        });
+        verify(mockAgent).rollbackTransaction(mockConnection);
+        verify(mockAgent).disconnect(mockConnection);
+    }
+
+    @Test
+    public void testRegistrarPrestamoSinEjemplares() {
+        Prestamo vacio = new Prestamo(new Usuario());
+
+        assertThrows(DAOException.class, () -> {
+            prestamoLoteDAO.registrarPrestamo(vacio);
+        });
+        verifyNoInteractions(mockAgent);
+    }
+
+    @Test
+    public void testFindEjemplaresByIds() throws Exception {
+        // La base de datos devuelve los ejemplares en otro orden y sin el 99
+        when(mockAgent.executeQuery(anyString(), eq(1L), eq(2L), eq(99L))).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getLong("id")).thenReturn(2L, 1L);
+        when(mockResultSet.getLong("libro_id")).thenReturn(7L, 7L);
+        when(mockResultSet.getString("codigo_barras")).thenReturn("EJM-002", "EJM-001");
+        when(mockResultSet.getString("estado")).thenReturn("PRESTADO", "DISPONIBLE");
+        when(mockResultSet.getString("ubicacion")).thenReturn("A-1", "A-1");
+
+        // Ejecutar método
+        List<Ejemplar> resultado = prestamoLoteDAO.findEjemplaresByIds(Arrays.asList(1L, 2L, 1L, 99L));
+
+        // Una sola consulta con los IDs sin repetir
+        verify(mockAgent).executeQuery(
+                "SELECT id, libro_id, codigo_barras, estado, ubicacion, fecha_adquisicion FROM ejemplares WHERE id IN (?, ?, ?)",
+                1L, 2L, 99L);
+
+        assertEquals(2, resultado.size());
+        assertEquals(1L, resultado.get(0).getId());
+        assertEquals("EJM-001", resultado.get(0).getCodigoBarras());
+        assertEquals(EstadoEjemplar.DISPONIBLE, resultado.get(0).getEstado());
+        assertEquals(2L, resultado.get(1).getId());
+        assertEquals(EstadoEjemplar.PRESTADO, resultado.get(1).getEstado());
+        assertEquals(7L, resultado.get(1).getLibro().getId());
+    }
+
+    @Test
+    public void testFindEjemplaresByIdsVacio() throws Exception {
+        assertTrue(prestamoLoteDAO.findEjemplaresByIds(new ArrayList<>()).isEmpty());
+        verifyNoInteractions(mockAgent);
+    }
+
+    @Test
+    public void testRegistrarDevolucionesPorConjuntos() throws Exception {
+        // A y B son los dos ejemplares del préstamo 10; C es uno de los del préstamo 20; D no está prestado
+        java.sql.Timestamp prevista = java.sql.Timestamp.valueOf("2024-01-10 18:30:00");
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        PreparedStatement consulta = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("SELECT e.id"))).thenReturn(consulta);
+        when(consulta.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, true, true, false);
+        when(mockResultSet.getString("codigo_barras")).thenReturn("A", "B", "C", "D");
+        when(mockResultSet.getLong("detalle_id")).thenReturn(100L, 101L, 102L, 0L);
+        when(mockResultSet.wasNull()).thenReturn(false, false, false, true);
+        when(mockResultSet.getLong("prestamo_id")).thenReturn(10L, 10L, 20L);
+        when(mockResultSet.getLong("usuario_id")).thenReturn(1L, 1L, 2L);
+        when(mockResultSet.getTimestamp("fecha_devolucion_prevista")).thenReturn(prevista);
+        when(mockResultSet.getLong("id")).thenReturn(1L, 2L, 3L, 4L);
+        when(mockResultSet.getLong("libro_id")).thenReturn(7L, 7L, 8L, 8L);
+
+        PreparedStatement detalles = mock(PreparedStatement.class);
+        PreparedStatement prestamos = mock(PreparedStatement.class);
+        PreparedStatement pendientes = mock(PreparedStatement.class);
+        ResultSet rsPendientes = mock(ResultSet.class);
+        when(mockConnection.prepareStatement(startsWith("UPDATE detalle_prestamos"))).thenReturn(detalles);
+        when(mockConnection.prepareStatement(startsWith("UPDATE ejemplares"))).thenReturn(mockUpdateEjemplares);
+        when(mockConnection.prepareStatement(startsWith("SELECT DISTINCT prestamo_id"))).thenReturn(pendientes);
+        when(pendientes.executeQuery()).thenReturn(rsPendientes);
+        when(rsPendientes.next()).thenReturn(true, false);
+        when(rsPendientes.getLong("prestamo_id")).thenReturn(20L);
+        when(mockConnection.prepareStatement(startsWith("UPDATE prestamos"))).thenReturn(prestamos);
+
+        PreparedStatement actualizarMultas = mock(PreparedStatement.class);
+        PreparedStatement insertarMultas = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("UPDATE multas"))).thenReturn(actualizarMultas);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO multas"))).thenReturn(insertarMultas);
+        // El controlador no informa de las filas insertadas por cada sentencia
+        when(insertarMultas.executeBatch()).thenReturn(new int[] {Statement.SUCCESS_NO_INFO});
+
+        // Ejecutar método
+        List<Devolucion> resultado = prestamoLoteDAO.registrarDevoluciones(
+                Arrays.asList("A", "B", "X", "C", "A", " ", "D"), new java.util.Date(),
+                fecha -> prevista.equals(fecha) ? new BigDecimal("2.50") : BigDecimal.ZERO);
+
+        // Una transacción con un número fijo de sentencias
+        verify(mockAgent).beginTransaction();
+        verify(mockConnection).prepareStatement(startsWith("SELECT e.id"));
+        verify(consulta).setString(2, "A");
+        verify(consulta).setString(6, "D");
+        verify(detalles).executeUpdate();
+        verify(mockUpdateEjemplares).executeUpdate();
+        verify(mockConnection).prepareStatement("UPDATE prestamos SET estado = ? WHERE id IN (?)");
+        verify(prestamos).setLong(2, 10L);
+        verify(actualizarMultas).executeBatch();
+        verify(insertarMultas).setBigDecimal(1, new BigDecimal("2.50"));
+        verify(mockAgent).commitTransaction(mockConnection);
+        verify(mockAgent).disconnect(mockConnection);
+
+        // Un resultado por código, en el orden de lectura
+        assertEquals(7, resultado.size());
+        assertEquals(Devolucion.Resultado.DEVUELTO, resultado.get(0).getResultado());
+        assertFalse(resultado.get(0).isPrestamoCerrado());
+        assertEquals(1L, resultado.get(0).getEjemplarId());
+        assertEquals(7L, resultado.get(0).getLibroId());
+        // El préstamo 10 se cierra con su último ejemplar y recibe la multa
+        assertTrue(resultado.get(1).isPrestamoCerrado());
+        assertEquals(10L, resultado.get(1).getPrestamoId());
+        assertEquals(new BigDecimal("2.50"), resultado.get(1).getImporteMulta());
+        assertTrue(resultado.get(1).isMultaNueva());
+        assertEquals(Devolucion.Resultado.NO_ENCONTRADO, resultado.get(2).getResultado());
+        // El préstamo 20 sigue con ejemplares pendientes
+        assertEquals(Devolucion.Resultado.DEVUELTO, resultado.get(3).getResultado());
+        assertFalse(resultado.get(3).isPrestamoCerrado());
+        assertNull(resultado.get(3).getImporteMulta());
+        assertEquals(Devolucion.Resultado.REPETIDO, resultado.get(4).getResultado());
+        assertEquals(Devolucion.Resultado.NO_ENCONTRADO, resultado.get(5).getResultado());
+        assertEquals(Devolucion.Resultado.NO_PRESTADO, resultado.get(6).getResultado());
+    }
+
+    @Test
+    public void testRegistrarDevolucionesEnBloques() throws Exception {
+        int codigos = PrestamoLoteDAO.TAMANO_BLOQUE_DEVOLUCIONES * 2 + 1;
+        List<String> leidos = new ArrayList<>();
+        for (int i = 0; i < codigos; i++) {
+            leidos.add("EJM-" + i);
+        }
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        PreparedStatement consulta = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("SELECT e.id"))).thenReturn(consulta);
+        when(consulta.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        // Ejecutar método
+        List<Devolucion> resultado = prestamoLoteDAO.registrarDevoluciones(leidos, new java.util.Date(),
+                fecha -> BigDecimal.ZERO);
+
+        // Una transacción por bloque y ninguna actualización si no hay ejemplares prestados
+        verify(mockAgent, times(3)).beginTransaction();
+        verify(mockAgent, times(3)).commitTransaction(mockConnection);
+        verify(mockConnection, never()).prepareStatement(startsWith("UPDATE"));
+        assertEquals(codigos, resultado.size());
+        assertEquals(Devolucion.Resultado.NO_ENCONTRADO, resultado.get(codigos - 1).getResultado());
+        assertEquals("EJM-" + (codigos - 1), resultado.get(codigos - 1).getCodigoBarras());
+    }
+
+    @Test
+    public void testRegistrarDevolucionesReintentaTrasInterbloqueo() throws Exception {
+        when(mockAgent.beginTransaction()).thenReturn(mockConnection);
+        PreparedStatement consulta = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("SELECT e.id"))).thenReturn(consulta);
+        when(consulta.executeQuery())
+                .thenThrow(new SQLException("Deadlock found when trying to get lock", "40001", 1213))
+                .thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(false);
+
+        List<Devolucion> resultado = prestamoLoteDAO.registrarDevoluciones(Collections.singletonList("A"),
+                new java.util.Date(), fecha -> BigDecimal.ZERO);
+
+        verify(mockAgent, times(2)).beginTransaction();
+        verify(mockAgent).rollbackTransaction(mockConnection);
+        verify(mockAgent).commitTransaction(mockConnection);
+        assertEquals(Devolucion.Resultado.NO_ENCONTRADO, resultado.get(0).getResultado());
+    }
+
+    @Test
+    public void testPrestamosConcurrentesEntreMostradores() throws Exception {
+        BaseDatosSimulada baseDatos = new BaseDatosSimulada(EJEMPLARES_SIMULADOS);
+        PrestamoLoteDAO dao = crearDAO(baseDatos);
+
+        // Cada mostrador presta ejemplares elegidos al azar de un fondo común,
+        // así que los préstamos simultáneos comparten ejemplares a menudo
+        for (int mostradores : new int[] {1, 2, 4, 8}) {
+            long[] resultado = ejecutarMostradores(dao, baseDatos, mostradores);
+
+            assertEquals(0L, resultado[2], "Errores con " + mostradores + " mostradores");
+            assertEquals((long) mostradores * PRESTAMOS_POR_MOSTRADOR, resultado[0] + resultado[1]);
+            assertEquals(0, baseDatos.getDoblesPrestamos(), "Ejemplares prestados dos veces");
+            assertEquals(0, baseDatos.getInterbloqueos(), "Interbloqueos");
+            assertEquals(0, baseDatos.contarPrestados(), "Todos los ejemplares se han devuelto");
+        }
+    }
+
+    @Test
+    public void testMismosEjemplaresEntreMostradores() throws Exception {
+        BaseDatosSimulada baseDatos = new BaseDatosSimulada(EJEMPLARES_SIMULADOS);
+        PrestamoLoteDAO dao = crearDAO(baseDatos);
+        int mostradores = 8;
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(mostradores);
+        List<Future<Boolean>> tareas = new ArrayList<>();
+
+        // Todos los mostradores reclaman a la vez los mismos ejemplares, cada uno en otro orden
+        for (int m = 0; m < mostradores; m++) {
+            List<Long> ids = new ArrayList<>(Arrays.asList(1L, 2L, 3L, 4L));
+            Collections.rotate(ids, m);
+            Prestamo prestamo = BaseDatosSimulada.crearPrestamo(ids);
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                try {
+                    dao.registrarPrestamo(prestamo);
+                    return true;
+                } catch (EjemplarNoDisponibleException e) {
+                    return false;
+                }
+            }));
+        }
+        salida.countDown();
+        int concedidos = 0;
+        for (Future<Boolean> tarea : tareas) {
+            // Cualquier otra excepción haría fallar la prueba aquí
+            concedidos += tarea.get(30, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Exactamente un préstamo gana y el resto recibe un rechazo explícito
+        assertEquals(1, concedidos);
+        assertEquals(0, baseDatos.getDoblesPrestamos());
+        assertEquals(0, baseDatos.getInterbloqueos());
+        // Cada uno de los 4 ejemplares cuenta por su estado y por su préstamo
+        assertEquals(8, baseDatos.contarPrestados());
+    }
+
+    private static PrestamoLoteDAO crearDAO(BaseDatosSimulada baseDatos) throws DAOException {
+        try (MockedStatic<Agent> mockedStatic = mockStatic(Agent.class)) {
+            mockedStatic.when(() -> Agent.getInstance(anyString())).thenReturn(baseDatos.crearAgente());
+            return new PrestamoLoteDAO();
+        }
+    }
+
+    /**
+     * Lanza varios mostradores que hacen préstamos a la vez. Cada mostrador
+     * mantiene su último préstamo hasta hacer el siguiente y lo devuelve al
+     * terminar.
+     *
+     * @return Préstamos realizados, rechazados y errores
+     */
+    private long[] ejecutarMostradores(PrestamoLoteDAO dao, BaseDatosSimulada baseDatos, int mostradores)
+            throws Exception {
+        AtomicInteger prestamos = new AtomicInteger();
+        AtomicInteger rechazados = new AtomicInteger();
+        AtomicInteger errores = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(mostradores);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int m = 0; m < mostradores; m++) {
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                Prestamo anterior = null;
+                for (int i = 0; i < PRESTAMOS_POR_MOSTRADOR; i++) {
+                    Prestamo nuevo = baseDatos.crearPrestamoAleatorio(EJEMPLARES_POR_PRESTAMO);
+                    try {
+                        dao.registrarPrestamo(nuevo);
+                        prestamos.incrementAndGet();
+                        baseDatos.devolver(anterior);
+                        anterior = nuevo;
+                    } catch (EjemplarNoDisponibleException e) {
+                        rechazados.incrementAndGet();
+                    } catch (DAOException e) {
+                        errores.incrementAndGet();
+                    }
+                }
+                baseDatos.devolver(anterior);
+                return null;
+            }));
+        }
+
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        return new long[] {prestamos.get(), rechazados.get(), errores.get()};
+    }
+}
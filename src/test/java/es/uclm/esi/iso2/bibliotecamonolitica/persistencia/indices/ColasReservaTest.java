@@ -0,0 +1,191 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.ReservaDAO.ConsumidorReserva;
+
+/**
+ * Pruebas unitarias para la clase ColasReserva.
+ */
+public class ColasReservaTest {
+
+    private static final long LIBRO = 7L;
+
+    private ColasReserva colas;
+
+    @BeforeEach
+    public void setUp() {
+        colas = new ColasReserva();
+    }
+
+    /**
+     * Retira una a una las reservas de un libro y devuelve sus IDs en orden de atención.
+     */
+    private List<Long> vaciar(long libroId) {
+        List<Long> orden = new ArrayList<>();
+        ColasReserva.Turno turno;
+        while ((turno = colas.primera(libroId)) != null) {
+            orden.add(turno.getReservaId());
+            assertTrue(colas.retirar(libroId, turno.getReservaId()));
+        }
+        return orden;
+    }
+
+    @Test
+    @DisplayName("Test de orden por prioridad y llegada")
+    public void testOrdenPorPrioridadYLlegada() {
+        colas.anadir(1L, LIBRO, 100L, 2);
+        colas.anadir(2L, LIBRO, 101L, 2);
+        colas.anadir(3L, LIBRO, 102L, 0);
+        colas.anadir(4L, LIBRO, 103L, 1);
+        colas.anadir(5L, LIBRO, 104L, 0);
+
+        ColasReserva.Turno primera = colas.primera(LIBRO);
+        assertEquals(3L, primera.getReservaId());
+        assertEquals(102L, primera.getUsuarioId());
+        assertEquals(5, colas.contarPendientes(LIBRO));
+        assertEquals(Arrays.asList(3L, 5L, 4L, 1L, 2L), vaciar(LIBRO));
+        assertNull(colas.primera(LIBRO));
+        assertEquals(0, colas.getNumeroReservas());
+    }
+
+    @Test
+    @DisplayName("Test de cancelación de reservas")
+    public void testRetirarDejaHuecos() {
+        for (long id = 1; id <= 6; id++) {
+            colas.anadir(id, LIBRO, id * 10, 2);
+        }
+        assertTrue(colas.retirar(LIBRO, 1L));
+        assertTrue(colas.retirar(LIBRO, 4L));
+        assertFalse(colas.retirar(LIBRO, 4L));
+        assertFalse(colas.retirar(99L, 2L));
+
+        assertEquals(4, colas.contarPendientes(LIBRO));
+        assertEquals(Arrays.asList(2L, 3L, 5L, 6L), vaciar(LIBRO));
+    }
+
+    @Test
+    @DisplayName("Test de crecimiento de las colas")
+    public void testCrecimientoConHuecos() {
+        // Se cancela una de cada tres mientras se llena, forzando varias ampliaciones
+        List<Long> esperadas = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            colas.anadir(id, LIBRO, id, 1);
+            if (id % 3 == 0) {
+                colas.retirar(LIBRO, id - 1);
+                esperadas.remove(Long.valueOf(id - 1));
+            }
+            esperadas.add(id);
+        }
+        assertEquals(esperadas.size(), colas.contarPendientes(LIBRO));
+        assertEquals(esperadas, vaciar(LIBRO));
+        assertTrue(colas.estimarMemoria() > 0);
+    }
+
+    @Test
+    @DisplayName("Test de reservas repetidas y valores no válidos")
+    public void testRepetidasYValoresNoValidos() {
+        assertTrue(colas.anadir(1L, LIBRO, 10L, 0));
+        assertFalse(colas.anadir(1L, LIBRO, 10L, 0));
+        assertEquals(1, colas.getNumeroReservas());
+
+        assertThrows(IllegalArgumentException.class, () -> colas.anadir(0L, LIBRO, 10L, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> colas.anadir(2L, LIBRO, 10L, ColasReserva.NIVELES_PRIORIDAD));
+    }
+
+    @Test
+    @DisplayName("Test de carga desde la base de datos")
+    public void testCargar() throws Exception {
+        ReservaDAO reservaDAO = mock(ReservaDAO.class);
+        when(reservaDAO.recorrerPendientes(anyInt(), any())).thenAnswer(inv -> {
+            ConsumidorReserva consumidor = inv.getArgument(1);
+            consumidor.aceptar(1L, LIBRO, 10L, 2);
+            consumidor.aceptar(2L, LIBRO, 11L, 0);
+            consumidor.aceptar(3L, 8L, 12L, 1);
+            // Una reserva creada durante la carga ya estaba añadida
+            consumidor.aceptar(4L, LIBRO, 13L, 2);
+            return 4L;
+        });
+        colas.anadir(4L, LIBRO, 13L, 2);
+
+        colas.cargar(reservaDAO);
+
+        assertTrue(colas.isCargado());
+        assertEquals(4, colas.getNumeroReservas());
+        assertEquals(Arrays.asList(2L, 4L, 1L), vaciar(LIBRO));
+        assertEquals(3L, colas.primera(8L).getReservaId());
+    }
+
+    @Test
+    @DisplayName("Test de reservas y asignaciones concurrentes")
+    public void testAccesoConcurrente() throws Exception {
+        // Miles de reservas sobre tres libros mientras otros hilos asignan ejemplares
+        int hilos = 8;
+        int reservasPorHilo = 3000;
+        AtomicLong ids = new AtomicLong();
+        Set<Long> asignadas = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos * 2);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < reservasPorHilo; i++) {
+                        long id = ids.incrementAndGet();
+                        colas.anadir(id, id % 3, id, (int) (id % ColasReserva.NIVELES_PRIORIDAD));
+                    }
+                    return null;
+                }));
+                final long libro = h % 3;
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < reservasPorHilo / 2; i++) {
+                        ColasReserva.Turno turno = colas.primera(libro);
+                        // Solo un hilo consigue retirar cada reserva
+                        if (turno != null && colas.retirar(libro, turno.getReservaId())) {
+                            assertTrue(asignadas.add(turno.getReservaId()));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Long> restantes = new ArrayList<>();
+        for (long libro = 0; libro < 3; libro++) {
+            restantes.addAll(vaciar(libro));
+        }
+        for (Long id : restantes) {
+            assertFalse(asignadas.contains(id));
+        }
+        assertEquals((long) hilos * reservasPorHilo, asignadas.size() + restantes.size());
+        assertEquals(0, colas.getNumeroReservas());
+    }
+}
@@ -0,0 +1,63 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Prueba de rendimiento de las sugerencias de {@link IndiceAutocompletado}
+ * sobre un índice compactado de 200.000 títulos, con prefijos que van desde
+ * el vacío hasta otros que casi identifican un único título.
+ * <p>
+ * No forma parte de las pruebas unitarias; se ejecuta con el método
+ * {@link #main(String[])} desde el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndiceAutocompletadoBenchmark {
+
+    private final String[] prefijos = {"", "t", "titulo", "titulo 1", "titulo a", "titulo zz", "titulo 4k"};
+
+    private IndiceAutocompletado indice;
+
+    @Setup
+    public void preparar() {
+        indice = new IndiceAutocompletado();
+        for (long id = 1; id <= 200_000; id++) {
+            indice.agregar(id, "Título " + Long.toString(id * 7919, 36));
+        }
+        indice.compactar();
+    }
+
+    @Benchmark
+    public void completar(Blackhole resultado) {
+        for (String prefijo : prefijos) {
+            resultado.consume(indice.completar(prefijo, 10));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(IndiceAutocompletadoBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}
@@ -0,0 +1,122 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase IndiceAutocompletado.
+ */
+public class IndiceAutocompletadoTest {
+
+    private IndiceAutocompletado indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceAutocompletado();
+        indice.agregar(1L, "Gabriel García Márquez");
+        indice.agregar(2L, "Miguel de Cervantes");
+        indice.agregar(3L, "Gabriel García Márquez");
+        indice.agregar(4L, "Miguel Delibes");
+        indice.agregar(5L, "Gabriela Mistral");
+    }
+
+    @Test
+    @DisplayName("Test de sugerencias ordenadas por popularidad")
+    public void testCompletarPorPopularidad() {
+        assertEquals(Arrays.asList("Gabriel García Márquez", "Gabriela Mistral"), indice.completar("gab", 10));
+        // A igual popularidad va primero la sugerencia más corta
+        assertEquals(Arrays.asList("Miguel Delibes", "Miguel de Cervantes"), indice.completar("MIGUEL DE", 10));
+        assertEquals(Collections.singletonList("Gabriel García Márquez"), indice.completar("Gabriel García", 10));
+        assertTrue(indice.completar("rayuela", 10).isEmpty());
+        assertEquals(4, indice.getNumeroEntradas());
+    }
+
+    @Test
+    @DisplayName("Test de selección de una sugerencia")
+    public void testRegistrarSeleccion() {
+        indice.registrarSeleccion("miguel delibes");
+        indice.registrarSeleccion("miguel delibes");
+
+        assertEquals("Miguel Delibes", indice.completar("miguel", 10).get(0));
+    }
+
+    @Test
+    @DisplayName("Test de actualización y eliminación incremental")
+    public void testActualizacionYEliminacion() {
+        indice.agregar(5L, "Julio Cortázar");
+        indice.eliminar(2L);
+
+        assertTrue(indice.completar("gabriela", 10).isEmpty());
+        assertEquals(Collections.singletonList("Julio Cortázar"), indice.completar("julio", 10));
+        assertEquals(Collections.singletonList("Miguel Delibes"), indice.completar("miguel", 10));
+
+        indice.compactar();
+        indice.agregar(2L, "Miguel de Cervantes");
+        assertEquals(2, indice.completar("miguel", 10).size());
+    }
+
+    @Test
+    @DisplayName("Test de prefijos con muchas entradas y lista guardada")
+    public void testPrefijoConRangoGrande() {
+        IndiceAutocompletado grande = new IndiceAutocompletado();
+        for (long id = 1; id <= 20_000; id++) {
+            grande.agregar(id, "Libro " + id);
+        }
+        // "Libro 7" aparece en 500 libros más y pasa a ser la más popular
+        for (long id = 20_001; id <= 20_500; id++) {
+            grande.agregar(id, "Libro 7");
+        }
+
+        List<String> sugerencias = grande.completar("libro", 10);
+        assertEquals(10, sugerencias.size());
+        assertEquals("Libro 7", sugerencias.get(0));
+        assertEquals("Libro 1", sugerencias.get(1));
+
+        // La lista guardada se actualiza con las escrituras posteriores
+        for (long id = 20_501; id <= 21_200; id++) {
+            grande.agregar(id, "Libro 99999");
+        }
+        assertEquals("Libro 99999", grande.completar("l", 10).get(0));
+        assertEquals("Libro 99999", grande.completar("libro", 10).get(0));
+
+        for (long id = 20_501; id <= 21_200; id++) {
+            grande.eliminar(id);
+        }
+        assertEquals("Libro 7", grande.completar("libro", 10).get(0));
+    }
+
+    @Test
+    @DisplayName("Test de sugerencias sobre un índice compactado grande")
+    public void testIndiceCompactadoGrande() {
+        IndiceAutocompletado grande = new IndiceAutocompletado();
+        for (long id = 1; id <= 200_000; id++) {
+            grande.agregar(id, "Título " + Long.toString(id * 7919, 36));
+        }
+        grande.compactar();
+
+        String[] prefijos = {"", "t", "titulo", "titulo 1", "titulo a", "titulo zz", "titulo 4k"};
+        for (String prefijo : prefijos) {
+            List<String> sugerencias = grande.completar(prefijo, 10);
+            assertFalse(sugerencias.isEmpty(), "Sin sugerencias para '" + prefijo + "'");
+            assertTrue(sugerencias.size() <= 10);
+        }
+        assertTrue(grande.estimarMemoria() > 0);
+    }
+
+    @Test
+    @DisplayName("Test de estimación de memoria")
+    public void testEstimacionMemoria() {
+        long antes = indice.estimarMemoria();
+        indice.agregar(6L, "Julio Cortázar");
+
+        assertTrue(antes > 0);
+        assertTrue(indice.estimarMemoria() > antes);
+    }
+}
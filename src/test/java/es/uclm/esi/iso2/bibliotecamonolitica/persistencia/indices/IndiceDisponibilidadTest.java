@@ -0,0 +1,102 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Ejemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoEjemplar;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+
+/**
+ * Pruebas unitarias para la clase IndiceDisponibilidad.
+ */
+public class IndiceDisponibilidadTest {
+
+    private IndiceDisponibilidad indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceDisponibilidad();
+        // Libro 1: dos ejemplares disponibles; libro 2: uno; libro 3: ninguno
+        indice.actualizar(10L, 1L, true);
+        indice.actualizar(11L, 1L, true);
+        indice.actualizar(20L, 2L, true);
+        indice.actualizar(30L, 3L, false);
+    }
+
+    private Ejemplar crearEjemplar(Long id, Long idLibro, EstadoEjemplar estado) {
+        Libro libro = new Libro();
+        libro.setId(idLibro);
+        Ejemplar ejemplar = new Ejemplar();
+        ejemplar.setId(id);
+        ejemplar.setLibro(libro);
+        ejemplar.setEstado(estado);
+        return ejemplar;
+    }
+
+    @Test
+    @DisplayName("Test de libros y ejemplares disponibles")
+    public void testDisponibles() {
+        assertTrue(indice.tieneDisponibles(1L));
+        assertTrue(indice.tieneDisponibles(2L));
+        assertFalse(indice.tieneDisponibles(3L));
+        assertEquals(2, indice.contarDisponibles(1L));
+        assertEquals(0, indice.contarDisponibles(3L));
+        assertEquals(2, indice.getNumeroLibrosDisponibles());
+    }
+
+    @Test
+    @DisplayName("Test de préstamo y devolución de ejemplares")
+    public void testPrestamoYDevolucion() {
+        indice.actualizar(crearEjemplar(20L, 2L, EstadoEjemplar.PRESTADO));
+        assertFalse(indice.tieneDisponibles(2L));
+
+        indice.actualizar(crearEjemplar(10L, 1L, EstadoEjemplar.PRESTADO));
+        assertTrue(indice.tieneDisponibles(1L));
+        assertEquals(1, indice.contarDisponibles(1L));
+
+        indice.actualizar(crearEjemplar(20L, 2L, EstadoEjemplar.DISPONIBLE));
+        assertEquals(1, indice.contarDisponibles(2L));
+        assertEquals(2, indice.getNumeroLibrosDisponibles());
+    }
+
+    @Test
+    @DisplayName("Test de cambios de estado repetidos")
+    public void testCambiosRepetidos() {
+        indice.actualizar(10L, 1L, true);
+        indice.actualizar(20L, 2L, false);
+        indice.actualizar(20L, 2L, false);
+        indice.eliminarEjemplar(20L);
+        indice.eliminarEjemplar(99L);
+
+        assertEquals(2, indice.contarDisponibles(1L));
+        assertEquals(0, indice.contarDisponibles(2L));
+        assertFalse(indice.tieneDisponibles(2L));
+    }
+
+    @Test
+    @DisplayName("Test de filtrado y anotación de un resultado de búsqueda")
+    public void testFiltrarYContar() {
+        long[] resultado = {3L, 2L, 99L, 1L};
+
+        assertArrayEquals(new long[] {2L, 1L}, indice.filtrarDisponibles(resultado));
+        assertArrayEquals(new int[] {0, 1, 0, 2}, indice.contarDisponibles(resultado));
+        assertEquals(0, indice.filtrarDisponibles(new long[0]).length);
+    }
+
+    @Test
+    @DisplayName("Test de ejemplares incompletos y libros fuera de rango")
+    public void testEjemplaresNoValidos() {
+        indice.actualizar(crearEjemplar(null, 4L, EstadoEjemplar.DISPONIBLE));
+        indice.actualizar(crearEjemplar(40L, null, EstadoEjemplar.DISPONIBLE));
+        indice.actualizar((Ejemplar) null);
+
+        assertFalse(indice.tieneDisponibles(4L));
+        assertThrows(IllegalArgumentException.class, () -> indice.actualizar(50L, 1L << 40, true));
+        assertTrue(indice.estimarMemoria() > 0);
+        assertFalse(indice.isCargado());
+    }
+}
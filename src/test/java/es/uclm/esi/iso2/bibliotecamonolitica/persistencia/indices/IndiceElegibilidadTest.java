@@ -0,0 +1,206 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.EstadoUsuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Usuario;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.daos.UsuarioDAO.ConsumidorElegibilidad;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceElegibilidad.Resultado;
+
+/**
+ * Pruebas unitarias para la clase IndiceElegibilidad.
+ */
+public class IndiceElegibilidadTest {
+
+    private IndiceElegibilidad indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceElegibilidad();
+        // Usuario 1: sin préstamos; usuario 2: con el máximo; usuario 3: con una multa
+        indice.registrarUsuario(1L, false, 0, 0);
+        indice.registrarUsuario(2L, false, 5, 0);
+        indice.registrarUsuario(3L, false, 1, 1);
+    }
+
+    /**
+     * Crea un DAO simulado cuyo recorrido de elegibilidad devuelve las filas
+     * indicadas: {usuarioId, activo (1 o 0), préstamos, multas}.
+     */
+    private UsuarioDAO crearUsuarioDAO(int[]... filas) throws Exception {
+        UsuarioDAO usuarioDAO = mock(UsuarioDAO.class);
+        when(usuarioDAO.recorrerElegibilidad(anyInt(), any())).thenAnswer(inv -> {
+            ConsumidorElegibilidad consumidor = inv.getArgument(1);
+            for (int[] fila : filas) {
+                consumidor.aceptar(fila[0], fila[1] == 1, fila[2], fila[3]);
+            }
+            return (long) filas.length;
+        });
+        return usuarioDAO;
+    }
+
+    @Test
+    @DisplayName("Test de comprobación de elegibilidad")
+    public void testComprobarPrestamo() {
+        assertEquals(Resultado.APTO, indice.comprobarPrestamo(1L, 5));
+        assertEquals(Resultado.MAXIMO_PRESTAMOS, indice.comprobarPrestamo(2L, 5));
+        assertEquals(Resultado.MULTA_ACTIVA, indice.comprobarPrestamo(3L, 5));
+        assertEquals(Resultado.DESCONOCIDO, indice.comprobarPrestamo(99L, 5));
+        assertEquals(-1, indice.getPrestamosActivos(99L));
+        assertEquals(3, indice.getNumeroUsuarios());
+    }
+
+    @Test
+    @DisplayName("Test de eventos de préstamo, devolución y multas")
+    public void testEventos() {
+        indice.prestamoRealizado(1L);
+        indice.prestamoRealizado(1L);
+        indice.prestamoDevuelto(1L, 10L);
+        assertEquals(1, indice.getPrestamosActivos(1L));
+
+        // Los contadores no bajan de cero
+        indice.prestamoDevuelto(1L, 10L);
+        indice.prestamoDevuelto(1L, 11L);
+        assertEquals(0, indice.getPrestamosActivos(1L));
+
+        indice.multaGenerada(1L);
+        indice.multaGenerada(1L);
+        indice.multaResuelta(1L);
+        assertEquals(Resultado.MULTA_ACTIVA, indice.comprobarPrestamo(1L, 5));
+        indice.multaResuelta(1L);
+        assertEquals(Resultado.APTO, indice.comprobarPrestamo(1L, 5));
+        indice.multaGenerada(1L);
+        indice.multaGenerada(1L);
+        indice.multasResueltas(1L);
+        assertEquals(0, indice.getMultasActivas(1L));
+
+        // Los eventos de usuarios desconocidos se ignoran
+        indice.prestamoRealizado(99L);
+        assertEquals(Resultado.DESCONOCIDO, indice.comprobarPrestamo(99L, 5));
+
+        // Registrar un usuario ya conocido no lo modifica
+        indice.registrarUsuario(2L, false, 0, 0);
+        assertEquals(5, indice.getPrestamosActivos(2L));
+    }
+
+    @Test
+    @DisplayName("Test de bloqueo de usuarios")
+    public void testBloqueo() throws Exception {
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+        usuario.setEstado(EstadoUsuario.BLOQUEADO);
+        indice.entidadGuardada(usuario);
+        assertTrue(indice.isBloqueado(1L));
+        assertEquals(Resultado.BLOQUEADO, indice.comprobarPrestamo(1L, 5));
+
+        indice.actualizarBloqueo(1L, false);
+        assertEquals(Resultado.APTO, indice.comprobarPrestamo(1L, 5));
+
+        indice.entidadEliminada(1L);
+        assertEquals(Resultado.DESCONOCIDO, indice.comprobarPrestamo(1L, 5));
+    }
+
+    @Test
+    @DisplayName("Test de renovaciones por préstamo")
+    public void testRenovaciones() {
+        assertEquals(-1, indice.getRenovaciones(10L));
+        indice.registrarRenovaciones(10L, 1);
+        assertEquals(1, indice.getRenovaciones(10L));
+        indice.prestamoDevuelto(1L, 10L);
+        assertEquals(-1, indice.getRenovaciones(10L));
+    }
+
+    @Test
+    @DisplayName("Test de conciliación con la base de datos")
+    public void testConciliar() throws Exception {
+        indice.registrarRenovaciones(10L, 2);
+        // El usuario 1 tiene en realidad 2 préstamos, el 3 ya pagó su multa,
+        // el 4 es nuevo y bloqueado y el 2 no ha cambiado
+        UsuarioDAO usuarioDAO = crearUsuarioDAO(
+                new int[] {1, 1, 2, 0}, new int[] {2, 1, 5, 0}, new int[] {3, 1, 1, 0}, new int[] {4, 0, 0, 0});
+
+        assertEquals(3, indice.conciliar(usuarioDAO));
+
+        assertEquals(2, indice.getPrestamosActivos(1L));
+        assertEquals(Resultado.APTO, indice.comprobarPrestamo(3L, 5));
+        assertEquals(Resultado.BLOQUEADO, indice.comprobarPrestamo(4L, 5));
+        assertEquals(-1, indice.getRenovaciones(10L));
+        assertEquals(1, indice.getConciliaciones());
+        assertEquals(3, indice.getCorrecciones());
+
+        // Una segunda pasada sin cambios no corrige nada
+        assertEquals(0, indice.conciliar(usuarioDAO));
+    }
+
+    @Test
+    @DisplayName("Test de eventos durante la conciliación")
+    public void testEventoDuranteConciliacion() throws Exception {
+        // El préstamo del usuario 1 llega después de leer su fila
+        UsuarioDAO usuarioDAO = mock(UsuarioDAO.class);
+        when(usuarioDAO.recorrerElegibilidad(anyInt(), any())).thenAnswer(inv -> {
+            ConsumidorElegibilidad consumidor = inv.getArgument(1);
+            indice.prestamoRealizado(1L);
+            consumidor.aceptar(1L, true, 0, 0);
+            return 1L;
+        });
+
+        // La fila leída no sobrescribe el evento
+        indice.conciliar(usuarioDAO);
+        assertEquals(1, indice.getPrestamosActivos(1L));
+
+        // La siguiente pasada, ya sin eventos, corrige el usuario
+        indice.conciliar(crearUsuarioDAO(new int[] {1, 1, 3, 0}));
+        assertEquals(3, indice.getPrestamosActivos(1L));
+    }
+
+    @Test
+    @DisplayName("Test de eventos concurrentes")
+    public void testEventosConcurrentes() throws Exception {
+        int hilos = 8;
+        int usuarios = 1000;
+        for (long id = 100; id < 100 + usuarios; id++) {
+            indice.registrarUsuario(id, false, 0, 0);
+        }
+
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(executor.submit(() -> {
+                salida.await();
+                // Cada hilo presta dos veces y devuelve una vez a cada usuario
+                for (long id = 100; id < 100 + usuarios; id++) {
+                    indice.prestamoRealizado(id);
+                    indice.prestamoRealizado(id);
+                    indice.prestamoDevuelto(id, id);
+                }
+                return null;
+            }));
+        }
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (long id = 100; id < 100 + usuarios; id++) {
+            assertEquals(hilos, indice.getPrestamosActivos(id));
+        }
+        assertTrue(indice.estimarMemoria() > 0);
+    }
+}
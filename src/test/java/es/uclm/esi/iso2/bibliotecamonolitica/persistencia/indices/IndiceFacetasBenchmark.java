@@ -0,0 +1,74 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceFacetas.Faceta;
+
+/**
+ * Prueba de rendimiento del recuento de facetas de {@link IndiceFacetas} para
+ * un resultado de 200.000 libros dentro de un catálogo de un millón.
+ * <p>
+ * No forma parte de las pruebas unitarias; se ejecuta con el método
+ * {@link #main(String[])} desde el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndiceFacetasBenchmark {
+
+    private IndiceFacetas indice;
+
+    private long[] resultado;
+
+    @Setup
+    public void preparar() {
+        indice = new IndiceFacetas();
+        for (long id = 1; id <= 1_000_000; id++) {
+            Libro libro = new Libro("Título " + id, "Autor " + id);
+            libro.setId(id);
+            libro.setEditorial("Editorial " + (id % 2000));
+            libro.setAnioPublicacion(1900 + (int) (id % 120));
+            Categoria categoria = new Categoria();
+            categoria.setId(id % 50);
+            libro.setCategoria(categoria);
+            indice.indexar(libro);
+        }
+        resultado = new long[200_000];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = 1 + i * 3L;
+        }
+    }
+
+    @Benchmark
+    public Map<Faceta, Map<String, Integer>> contar() {
+        return indice.contar(resultado, 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(IndiceFacetasBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}
@@ -0,0 +1,109 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Categoria;
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceFacetas.Faceta;
+
+/**
+ * Pruebas unitarias para la clase IndiceFacetas.
+ */
+public class IndiceFacetasTest {
+
+    private IndiceFacetas indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceFacetas();
+        indice.indexar(crearLibro(1L, "Cátedra", 1605, 10L));
+        indice.indexar(crearLibro(2L, "Catedra", 1613, 10L));
+        indice.indexar(crearLibro(3L, "Sudamericana", 1967, 20L));
+        indice.indexar(crearLibro(4L, "Debolsillo", 1985, 20L));
+        indice.indexar(crearLibro(5L, "Alfaguara", 1963, 20L));
+    }
+
+    private Libro crearLibro(Long id, String editorial, int anio, Long categoriaId) {
+        Libro libro = new Libro("Título " + id, "Autor " + id);
+        libro.setId(id);
+        libro.setEditorial(editorial);
+        libro.setAnioPublicacion(anio);
+        Categoria categoria = new Categoria();
+        categoria.setId(categoriaId);
+        libro.setCategoria(categoria);
+        return libro;
+    }
+
+    @Test
+    @DisplayName("Test de recuentos por faceta de un resultado")
+    public void testContar() {
+        Map<Faceta, Map<String, Integer>> recuentos = indice.contar(new long[] {5L, 1L, 2L, 3L}, 10);
+
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.EDITORIAL).get("Cátedra"));
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.CATEGORIA).get("10"));
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.CATEGORIA).get("20"));
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.DECADA).get("1960"));
+        assertFalse(recuentos.get(Faceta.DECADA).containsKey("1980"));
+        assertEquals("Cátedra", recuentos.get(Faceta.EDITORIAL).keySet().iterator().next());
+    }
+
+    @Test
+    @DisplayName("Test de actualización y eliminación incremental")
+    public void testActualizacionYEliminacion() {
+        indice.entidadGuardada(crearLibro(3L, "Alfaguara", 1999, 10L));
+        indice.entidadEliminada(1L);
+
+        Map<Faceta, Map<String, Integer>> recuentos = indice.contar(new long[] {1L, 2L, 3L, 4L, 5L}, 10);
+
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.EDITORIAL).get("Alfaguara"));
+        assertFalse(recuentos.get(Faceta.EDITORIAL).containsKey("Sudamericana"));
+        assertEquals(Integer.valueOf(1), recuentos.get(Faceta.EDITORIAL).get("Cátedra"));
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.CATEGORIA).get("10"));
+        assertEquals(Integer.valueOf(1), recuentos.get(Faceta.DECADA).get("1990"));
+    }
+
+    @Test
+    @DisplayName("Test de recuentos a partir de libros")
+    public void testContarLibros() {
+        Map<Faceta, Map<String, Integer>> recuentos = indice.contar(Arrays.asList(
+                crearLibro(4L, "Debolsillo", 1985, 20L), crearLibro(5L, "Alfaguara", 1963, 20L)), 10);
+
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.CATEGORIA).get("20"));
+        assertEquals(1, recuentos.get(Faceta.CATEGORIA).size());
+    }
+
+    @Test
+    @DisplayName("Test del límite de valores por faceta")
+    public void testLimiteValores() {
+        Map<Faceta, Map<String, Integer>> recuentos = indice.contar(new long[] {1L, 2L, 3L, 4L, 5L}, 1);
+
+        assertEquals(1, recuentos.get(Faceta.EDITORIAL).size());
+        assertEquals(Integer.valueOf(2), recuentos.get(Faceta.EDITORIAL).get("Cátedra"));
+        assertEquals(Integer.valueOf(3), recuentos.get(Faceta.CATEGORIA).get("20"));
+    }
+
+    @Test
+    @DisplayName("Test de recuentos con un catálogo grande")
+    public void testCatalogoGrande() {
+        IndiceFacetas grande = new IndiceFacetas();
+        for (long id = 1; id <= 1_000_000; id++) {
+            grande.indexar(crearLibro(id, "Editorial " + (id % 2000), 1900 + (int) (id % 120), id % 50));
+        }
+        long[] resultado = new long[200_000];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = 1 + i * 3L;
+        }
+        Map<Faceta, Map<String, Integer>> recuentos = grande.contar(resultado, 20);
+
+        assertEquals(20, recuentos.get(Faceta.CATEGORIA).size());
+        assertEquals(12, recuentos.get(Faceta.DECADA).size());
+        assertEquals(20, recuentos.get(Faceta.EDITORIAL).size());
+    }
+}
@@ -0,0 +1,97 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+
+/**
+ * Prueba de rendimiento de la ordenación por relevancia de
+ * {@link IndiceInvertido} sobre un catálogo sintético de 300.000 libros. Mide
+ * consultas de dos términos poco frecuentes y una consulta de un término que
+ * aparece en el título de 100.000 libros.
+ * <p>
+ * No forma parte de las pruebas unitarias; se ejecuta con el método
+ * {@link #main(String[])} desde el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndiceInvertidoBenchmark {
+
+    private IndiceInvertido indice;
+
+    private String[] textos;
+
+    @Setup
+    public void preparar() {
+        indice = new IndiceInvertido();
+        Random random = new Random(42);
+        String[] vocabulario = new String[5000];
+        for (int i = 0; i < vocabulario.length; i++) {
+            vocabulario[i] = "palabra" + Integer.toString(i, 36);
+        }
+        for (long id = 1; id <= 300_000; id++) {
+            Libro libro = new Libro(frase(random, vocabulario, 2 + random.nextInt(5)) + (id % 3 == 0 ? " novela" : ""),
+                    frase(random, vocabulario, 2));
+            libro.setId(id);
+            libro.setEditorial(frase(random, vocabulario, 1));
+            libro.setDescripcion(frase(random, vocabulario, 10 + random.nextInt(30)));
+            indice.indexar(libro);
+        }
+        textos = new String[50];
+        for (int q = 0; q < textos.length; q++) {
+            textos[q] = vocabulario[random.nextInt(vocabulario.length)] + " "
+                    + vocabulario[random.nextInt(vocabulario.length)];
+        }
+    }
+
+    private static String frase(Random random, String[] vocabulario, int palabras) {
+        StringBuilder frase = new StringBuilder();
+        for (int i = 0; i < palabras; i++) {
+            if (i > 0) {
+                frase.append(' ');
+            }
+            frase.append(vocabulario[random.nextInt(vocabulario.length)]);
+        }
+        return frase.toString();
+    }
+
+    @Benchmark
+    public void terminosPocoFrecuentes(Blackhole resultado) {
+        for (String texto : textos) {
+            resultado.consume(indice.buscarRelevantes(texto, 10));
+        }
+    }
+
+    @Benchmark
+    public long[] terminoMuyFrecuente() {
+        return indice.buscarRelevantes("novela", 10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(IndiceInvertidoBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}
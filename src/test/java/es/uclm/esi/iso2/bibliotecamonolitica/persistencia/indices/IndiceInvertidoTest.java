@@ -0,0 +1,211 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import es.uclm.esi.iso2.bibliotecamonolitica.modelo.entidades.Libro;
+import es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices.IndiceInvertido.Campo;
+
+/**
+ * Pruebas unitarias para la clase IndiceInvertido.
+ */
+public class IndiceInvertidoTest {
+
+    private IndiceInvertido indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceInvertido();
+        indice.indexar(crearLibro(1L, "Cien años de soledad", "Gabriel García Márquez", "Sudamericana"));
+        indice.indexar(crearLibro(2L, "Don Quijote de la Mancha", "Miguel de Cervantes", "Cátedra"));
+        indice.indexar(crearLibro(3L, "El amor en los tiempos del cólera", "Gabriel García Márquez", "Debolsillo"));
+        indice.indexar(crearLibro(4L, "Novelas ejemplares", "Miguel de Cervantes", "Cátedra"));
+    }
+
+    private Libro crearLibro(Long id, String titulo, String autor, String editorial) {
+        Libro libro = new Libro(titulo, autor);
+        libro.setId(id);
+        libro.setEditorial(editorial);
+        return libro;
+    }
+
+    private Libro crearLibro(Long id, String titulo, String autor, String editorial, String descripcion) {
+        Libro libro = crearLibro(id, titulo, autor, editorial);
+        libro.setDescripcion(descripcion);
+        return libro;
+    }
+
+    @Test
+    @DisplayName("Test de búsqueda sin distinguir mayúsculas ni tildes")
+    public void testBusquedaSinTildesNiMayusculas() {
+        assertArrayEquals(new long[] {1L, 3L}, indice.buscar(Campo.AUTOR, "GARCIA marquez"));
+        assertArrayEquals(new long[] {3L}, indice.buscar(Campo.TITULO, "colera"));
+        assertArrayEquals(new long[] {2L, 4L}, indice.buscar(Campo.EDITORIAL, "catedra"));
+    }
+
+    @Test
+    @DisplayName("Test de búsqueda con varios términos en cualquier campo")
+    public void testBusquedaVariosTerminosCualquierCampo() {
+        assertArrayEquals(new long[] {2L, 4L}, indice.buscar("cervantes cátedra"));
+        assertArrayEquals(new long[] {4L}, indice.buscar("novelas cervantes"));
+        assertEquals(0, indice.buscar("novelas marquez").length);
+        assertEquals(0, indice.buscar("inexistente").length);
+        assertEquals(0, indice.buscar("").length);
+    }
+
+    @Test
+    @DisplayName("Test de que la ñ no se confunde con la n")
+    public void testEnyeConservada() {
+        assertArrayEquals(new long[] {1L}, indice.buscar(Campo.TITULO, "años"));
+        assertEquals(0, indice.buscar(Campo.TITULO, "anos").length);
+    }
+
+    @Test
+    @DisplayName("Test de actualización incremental de un libro")
+    public void testActualizacion() {
+        indice.entidadGuardada(crearLibro(2L, "El ingenioso hidalgo", "Miguel de Cervantes", "Cátedra"));
+
+        assertEquals(0, indice.buscar(Campo.TITULO, "quijote").length);
+        assertArrayEquals(new long[] {2L}, indice.buscar(Campo.TITULO, "hidalgo"));
+        assertEquals(4, indice.getNumeroLibros());
+    }
+
+    @Test
+    @DisplayName("Test de eliminación de un libro")
+    public void testEliminacion() {
+        indice.entidadEliminada(1L);
+
+        assertArrayEquals(new long[] {3L}, indice.buscar(Campo.AUTOR, "garcia"));
+        assertEquals(3, indice.getNumeroLibros());
+    }
+
+    @Test
+    @DisplayName("Test de estimación de memoria")
+    public void testEstimacionMemoria() {
+        long antes = indice.estimarMemoria();
+        indice.indexar(crearLibro(5L, "Rayuela", "Julio Cortázar", "Alfaguara"));
+
+        assertTrue(antes > 0);
+        assertTrue(indice.estimarMemoria() > antes);
+        assertFalse(indice.isCargado());
+    }
+
+    @Test
+    @DisplayName("Test de relevancia según el campo de la coincidencia")
+    public void testRelevanciaPorCampo() {
+        indice.indexar(crearLibro(5L, "Guía de lectura", "Ana Ruiz", "Gredos", "Comentario del Quijote y su época"));
+        indice.indexar(crearLibro(6L, "Ensayos cervantinos", "Quijote Estudios Reunidos", "Gredos"));
+        indice.indexar(crearLibro(7L, "El Quijote", "Miguel de Cervantes", "Alianza"));
+
+        // Primero el título más corto, después el título largo, el autor y la descripción
+        assertArrayEquals(new long[] {7L, 2L, 6L, 5L}, indice.buscarRelevantes("quijote", 0));
+        assertArrayEquals(new long[] {7L, 2L}, indice.buscarRelevantes("quijote", 2));
+        assertArrayEquals(new long[] {7L, 2L}, indice.buscarRelevantes(Campo.TITULO, "QUIJOTE", 0));
+        // Las coincidencias siguen exigiendo todos los términos
+        assertArrayEquals(new long[] {7L, 2L}, indice.buscarRelevantes("quijote cervantes", 0));
+        assertEquals(0, indice.buscarRelevantes("quijote inexistente", 10).length);
+        assertEquals(0, indice.buscarRelevantes("", 10).length);
+    }
+
+    @Test
+    @DisplayName("Test de relevancia según la frecuencia y la rareza de los términos")
+    public void testRelevanciaPorFrecuenciaYRareza() {
+        indice.indexar(crearLibro(5L, "Poemas", "Ana Ruiz", "Gredos", "Verso libre y rima"));
+        indice.indexar(crearLibro(6L, "Cartas", "Ana Ruiz", "Gredos", "Verso a verso, verso"));
+
+        assertArrayEquals(new long[] {6L, 5L}, indice.buscarRelevantes("verso", 0));
+
+        // "luna" es más rara que "sol": pesa más tenerla en el título
+        indice.indexar(crearLibro(7L, "Luna", "Ana Ruiz", "Gredos", "Sol"));
+        indice.indexar(crearLibro(8L, "Sol", "Ana Ruiz", "Gredos", "Luna"));
+        for (long id = 9; id <= 14; id++) {
+            indice.indexar(crearLibro(id, "Sol", "Ana Ruiz", "Gredos", "Verano"));
+        }
+        assertArrayEquals(new long[] {7L, 8L}, indice.buscarRelevantes("sol luna", 0));
+    }
+
+    @Test
+    @DisplayName("Test de empates en la relevancia resueltos por ID")
+    public void testRelevanciaEmpates() {
+        IndiceInvertido iguales = new IndiceInvertido();
+        for (long id = 20; id >= 1; id--) {
+            iguales.indexar(crearLibro(id, "Libro repetido", "Autor", "Editorial"));
+        }
+
+        assertArrayEquals(new long[] {1L, 2L, 3L, 4L, 5L}, iguales.buscarRelevantes("repetido", 5));
+        assertEquals(20, iguales.buscarRelevantes("repetido", 0).length);
+    }
+
+    @Test
+    @DisplayName("Test de calidad de la ordenación por relevancia")
+    public void testRelevanciaCatalogoGrande() {
+        IndiceInvertido grande = new IndiceInvertido();
+        Random random = new Random(42);
+        String[] vocabulario = new String[5000];
+        for (int i = 0; i < vocabulario.length; i++) {
+            vocabulario[i] = "palabra" + Integer.toString(i, 36);
+        }
+        long id = 1;
+        for (; id <= 300_000; id++) {
+            // Un tercio de los títulos comparte un término muy frecuente
+            String titulo = frase(random, vocabulario, 2 + random.nextInt(5)) + (id % 3 == 0 ? " novela" : "");
+            grande.indexar(crearLibro(id, titulo,
+                    frase(random, vocabulario, 2), frase(random, vocabulario, 1),
+                    frase(random, vocabulario, 10 + random.nextInt(30))));
+        }
+
+        // Cada consulta tiene un libro con ambos términos en el título y 200
+        // libros con los mismos términos solo en la descripción o la editorial
+        int consultas = 50;
+        String[] textos = new String[consultas];
+        long[] relevantes = new long[consultas];
+        for (int q = 0; q < consultas; q++) {
+            String a = vocabulario[random.nextInt(vocabulario.length)];
+            String b = vocabulario[random.nextInt(vocabulario.length)];
+            textos[q] = a + " " + b;
+            for (int i = 0; i < 200; i++) {
+                grande.indexar(crearLibro(id++, frase(random, vocabulario, 4), frase(random, vocabulario, 2), a,
+                        frase(random, vocabulario, 5) + " " + b + " " + frase(random, vocabulario, 5)));
+            }
+            relevantes[q] = id;
+            grande.indexar(crearLibro(id++, a + " " + b + " " + frase(random, vocabulario, 2),
+                    frase(random, vocabulario, 2), frase(random, vocabulario, 1), frase(random, vocabulario, 20)));
+        }
+
+        double rangoReciproco = 0;
+        for (int q = 0; q < consultas; q++) {
+            long[] resultado = grande.buscarRelevantes(textos[q], 10);
+            for (int r = 0; r < resultado.length; r++) {
+                if (resultado[r] == relevantes[q]) {
+                    rangoReciproco += 1.0 / (r + 1);
+                }
+            }
+        }
+
+        assertTrue(rangoReciproco / consultas > 0.95, "Rango recíproco medio: " + rangoReciproco / consultas);
+
+        // Una consulta con muchas coincidencias solo conserva las mejores
+        assertEquals(100_000, grande.buscar(Campo.TITULO, "novela").length);
+        long[] mejores = grande.buscarRelevantes("novela", 10);
+        assertEquals(10, mejores.length);
+        for (long mejor : mejores) {
+            assertTrue(mejor % 3 == 0 && mejor <= 300_000, "Sin el término en el título: " + mejor);
+        }
+    }
+
+    private static String frase(Random random, String[] vocabulario, int palabras) {
+        StringBuilder frase = new StringBuilder();
+        for (int i = 0; i < palabras; i++) {
+            if (i > 0) {
+                frase.append(' ');
+            }
+            frase.append(vocabulario[random.nextInt(vocabulario.length)]);
+        }
+        return frase.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Prueba de rendimiento de la búsqueda aproximada de {@link IndiceTrigramas}
+ * entre 100.000 usuarios con nombres y apellidos frecuentes, buscando un nombre
+ * con una errata y sin tildes.
+ * <p>
+ * No forma parte de las pruebas unitarias; se ejecuta con el método
+ * {@link #main(String[])} desde el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndiceTrigramasBenchmark {
+
+    private static final double UMBRAL = 0.4;
+
+    private IndiceTrigramas indice;
+
+    @Setup
+    public void preparar() {
+        String[] nombres = {"María", "José", "Lucía", "Antonio", "Carmen", "Manuel", "Ana", "Javier", "Laura", "David"};
+        String[] apellidos = {"García", "López", "Martínez", "Sánchez", "Pérez", "Gómez", "Martín", "Jiménez",
+            "Ruiz", "Hernández", "Díaz", "Moreno", "Álvarez", "Muñoz", "Romero", "Alonso"};
+        indice = new IndiceTrigramas();
+        Random random = new Random(42);
+        for (long id = 1; id <= 100_000; id++) {
+            indice.indexar(id, nombres[random.nextInt(nombres.length)] + " "
+                    + apellidos[random.nextInt(apellidos.length)] + " "
+                    + apellidos[random.nextInt(apellidos.length)] + " " + Long.toString(id, 36));
+        }
+        indice.indexar(100_001L, "Lucía Jiménez Alonso Zuloaga");
+    }
+
+    @Benchmark
+    public long[] buscar() {
+        return indice.buscar("Lucia Jimenes Alonso Zuloaga", UMBRAL, 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(IndiceTrigramasBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}
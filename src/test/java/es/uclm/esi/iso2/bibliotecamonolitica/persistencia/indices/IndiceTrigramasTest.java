@@ -0,0 +1,94 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase IndiceTrigramas.
+ */
+public class IndiceTrigramasTest {
+
+    private static final double UMBRAL = 0.4;
+
+    private IndiceTrigramas indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceTrigramas();
+        indice.indexar(1L, "María García López");
+        indice.indexar(2L, "Mario Garcés Ruiz");
+        indice.indexar(3L, "José Martínez Sánchez");
+        indice.indexar(4L, "Lucía López García");
+    }
+
+    @Test
+    @DisplayName("Test de trigramas de un texto normalizado")
+    public void testTrigramas() {
+        assertEquals(4, IndiceTrigramas.trigramas("ana").size());
+        assertTrue(IndiceTrigramas.trigramas("ana").contains("  a"));
+        assertTrue(IndiceTrigramas.trigramas("ana").contains("na "));
+        assertTrue(IndiceTrigramas.trigramas("").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test de búsqueda sin tildes y con errores de escritura")
+    public void testBusquedaAproximada() {
+        assertArrayEquals(new long[] {1L}, indice.buscar("maria garcia lopez", UMBRAL, 1));
+        assertArrayEquals(new long[] {3L}, indice.buscar("Jose Martines", UMBRAL, 10));
+        long[] gracia = indice.buscar("Gracia", UMBRAL, 10);
+        assertEquals(2, gracia.length);
+        assertEquals(0, indice.buscar("Rodríguez", UMBRAL, 10).length);
+    }
+
+    @Test
+    @DisplayName("Test de apellidos en otro orden y orden por parecido")
+    public void testApellidosIntercambiados() {
+        long[] ids = indice.buscar("Lopez Garcia Maria", UMBRAL, 10);
+
+        assertEquals(1L, ids[0]);
+        assertEquals(4L, ids[1]);
+    }
+
+    @Test
+    @DisplayName("Test de actualización y eliminación incremental")
+    public void testActualizacionYEliminacion() {
+        indice.indexar(2L, "Mario Benedetti");
+        indice.eliminar(3L);
+
+        assertArrayEquals(new long[] {2L}, indice.buscar("benedetti", UMBRAL, 10));
+        for (long id : indice.buscar("garces", UMBRAL, 10)) {
+            assertNotEquals(2L, id);
+        }
+        for (long id : indice.buscar("jose martinez", UMBRAL, 10)) {
+            assertNotEquals(3L, id);
+        }
+        assertEquals(3, indice.getNumeroUsuarios());
+    }
+
+    @Test
+    @DisplayName("Test de búsqueda aproximada entre muchos usuarios")
+    public void testMuchosUsuarios() {
+        String[] nombres = {"María", "José", "Lucía", "Antonio", "Carmen", "Manuel", "Ana", "Javier", "Laura", "David"};
+        String[] apellidos = {"García", "López", "Martínez", "Sánchez", "Pérez", "Gómez", "Martín", "Jiménez",
+            "Ruiz", "Hernández", "Díaz", "Moreno", "Álvarez", "Muñoz", "Romero", "Alonso"};
+        IndiceTrigramas grande = new IndiceTrigramas();
+        Random random = new Random(42);
+        for (long id = 1; id <= 100_000; id++) {
+            grande.indexar(id, nombres[random.nextInt(nombres.length)] + " "
+                    + apellidos[random.nextInt(apellidos.length)] + " "
+                    + apellidos[random.nextInt(apellidos.length)] + " " + Long.toString(id, 36));
+        }
+        grande.indexar(100_001L, "Lucía Jiménez Alonso Zuloaga");
+
+        long[] ids = grande.buscar("Lucia Jimenes Alonso Zuloaga", UMBRAL, 20);
+
+        assertEquals(100_001L, ids[0]);
+        assertTrue(ids.length <= 20);
+        assertTrue(grande.estimarMemoria() > 0);
+    }
+}
@@ -0,0 +1,75 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.persistencia.indices;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase MapaBits.
+ */
+public class MapaBitsTest {
+
+    @Test
+    @DisplayName("Test de altas, bajas y pertenencia")
+    public void testAgregarEliminarContiene() {
+        MapaBits mapa = MapaBits.desde(new long[] {1L, 70_000L, 5L, 0xFFFFFFFFL});
+
+        assertTrue(mapa.contiene(70_000L));
+        assertTrue(mapa.contiene(0xFFFFFFFFL));
+        assertFalse(mapa.contiene(2L));
+        assertFalse(mapa.agregar(5L));
+        assertTrue(mapa.eliminar(70_000L));
+        assertFalse(mapa.eliminar(70_000L));
+        assertEquals(3, mapa.cardinalidad());
+        assertThrows(IllegalArgumentException.class, () -> mapa.agregar(-1L));
+    }
+
+    @Test
+    @DisplayName("Test de bloques densos y cambio de representación")
+    public void testBloquesDensos() {
+        MapaBits mapa = new MapaBits();
+        long memoriaVacio = mapa.estimarMemoria();
+        for (long id = 0; id < 10_000; id++) {
+            mapa.agregar(id * 2);
+        }
+        assertEquals(10_000, mapa.cardinalidad());
+        assertTrue(mapa.contiene(19_998L));
+        assertFalse(mapa.contiene(19_999L));
+        assertTrue(mapa.estimarMemoria() > memoriaVacio);
+
+        for (long id = 0; id < 9_000; id++) {
+            mapa.eliminar(id * 2);
+        }
+        assertEquals(1_000, mapa.cardinalidad());
+        assertTrue(mapa.contiene(18_000L));
+        assertFalse(mapa.contiene(17_998L));
+    }
+
+    @Test
+    @DisplayName("Test del recuento de la intersección frente a BitSet")
+    public void testCardinalidadInterseccion() {
+        Random random = new Random(7);
+        MapaBits a = new MapaBits();
+        MapaBits b = new MapaBits();
+        BitSet bitsA = new BitSet();
+        BitSet bitsB = new BitSet();
+        for (int i = 0; i < 50_000; i++) {
+            // a es denso en los primeros bloques; b, disperso en todo el rango
+            int idA = random.nextInt(200_000);
+            int idB = random.nextInt(2_000_000);
+            a.agregar(idA);
+            b.agregar(idB);
+            bitsA.set(idA);
+            bitsB.set(idB);
+        }
+        bitsA.and(bitsB);
+
+        assertEquals(bitsA.cardinality(), a.cardinalidadInterseccion(b));
+        assertEquals(bitsA.cardinality(), b.cardinalidadInterseccion(a));
+        assertEquals(a.cardinalidad(), a.cardinalidadInterseccion(a));
+    }
+}
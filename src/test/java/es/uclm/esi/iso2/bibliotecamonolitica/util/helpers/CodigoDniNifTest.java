@@ -0,0 +1,50 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase CodigoDniNif.
+ */
+public class CodigoDniNifTest {
+
+    @Test
+    @DisplayName("Test de DNI y NIE con letra de control correcta")
+    public void testValido() {
+        assertTrue(CodigoDniNif.esValido("12345678Z"));
+        assertTrue(CodigoDniNif.esValido("87654321X"));
+        assertTrue(CodigoDniNif.esValido("12345678-Z"));
+        assertTrue(CodigoDniNif.esValido("12 345 678 z"));
+        assertTrue(CodigoDniNif.esValido("X1234567L"));
+        assertTrue(CodigoDniNif.esValido("Y1234567X"));
+        assertTrue(CodigoDniNif.esValido("z-1234567-r"));
+    }
+
+    @Test
+    @DisplayName("Test de DNI y NIE con letra de control o formato incorrecto")
+    public void testNoValido() {
+        assertFalse(CodigoDniNif.esValido("12345678A"));
+        assertFalse(CodigoDniNif.esValido("X1234567Z"));
+        assertFalse(CodigoDniNif.esValido("1234567Z"));
+        assertFalse(CodigoDniNif.esValido("123456789Z"));
+        assertFalse(CodigoDniNif.esValido("123456789"));
+        assertFalse(CodigoDniNif.esValido("A1234567L"));
+        assertFalse(CodigoDniNif.esValido("-12345678Z"));
+        assertFalse(CodigoDniNif.esValido("12345678--Z"));
+        assertFalse(CodigoDniNif.esValido("12345678Z "));
+        assertFalse(CodigoDniNif.esValido(""));
+        assertFalse(CodigoDniNif.esValido(null));
+    }
+
+    @Test
+    @DisplayName("Test de normalización sin separadores y en mayúsculas")
+    public void testNormalizar() {
+        String normalizado = "12345678Z";
+        assertSame(normalizado, CodigoDniNif.normalizar(normalizado));
+        assertEquals(normalizado, CodigoDniNif.normalizar("12345678-z"));
+        assertEquals("Z1234567R", CodigoDniNif.normalizar("z 1234567 r"));
+        assertEquals("12345678a", CodigoDniNif.normalizar("12345678a"));
+    }
+}
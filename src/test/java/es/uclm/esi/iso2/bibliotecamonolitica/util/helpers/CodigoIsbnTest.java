@@ -0,0 +1,62 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase CodigoIsbn.
+ */
+public class CodigoIsbnTest {
+
+    @Test
+    @DisplayName("Test de ISBN-13 válidos con y sin separadores")
+    public void testIsbn13Valido() {
+        assertTrue(CodigoIsbn.esValido("9788437622774"));
+        assertTrue(CodigoIsbn.esValido("978-84-376-2277-4"));
+        assertTrue(CodigoIsbn.esValido("978 84 376 2277 4"));
+        assertTrue(CodigoIsbn.esValido("ISBN-13: 978-84-376-2277-4"));
+        assertTrue(CodigoIsbn.esValido("ISBN 9788437622774"));
+    }
+
+    @Test
+    @DisplayName("Test de ISBN-10 válidos, incluido el dígito de control X")
+    public void testIsbn10Valido() {
+        assertTrue(CodigoIsbn.esValido("0306406152"));
+        assertTrue(CodigoIsbn.esValido("0-8044-2957-X"));
+        assertTrue(CodigoIsbn.esValido("ISBN-10: 0-8044-2957-x"));
+    }
+
+    @Test
+    @DisplayName("Test de ISBN con dígito de control o formato incorrecto")
+    public void testIsbnNoValido() {
+        assertFalse(CodigoIsbn.esValido("9788437622775"));
+        assertFalse(CodigoIsbn.esValido("1234567890123"));
+        assertFalse(CodigoIsbn.esValido("0306406153"));
+        // Prefijo distinto de 978 y 979 aunque el dígito de control cuadre
+        assertFalse(CodigoIsbn.esValido("9770306406158"));
+        assertFalse(CodigoIsbn.esValido("-9788437622774"));
+        assertFalse(CodigoIsbn.esValido("978--84-376-2277-4"));
+        assertFalse(CodigoIsbn.esValido("978-84-376-2277-4-"));
+        assertFalse(CodigoIsbn.esValido("08044X2957"));
+        assertFalse(CodigoIsbn.esValido("97884376227740"));
+        assertFalse(CodigoIsbn.esValido("978843762277"));
+        assertFalse(CodigoIsbn.esValido("978.84.376.2277.4"));
+        assertFalse(CodigoIsbn.esValido(""));
+        assertFalse(CodigoIsbn.esValido(null));
+    }
+
+    @Test
+    @DisplayName("Test de normalización a ISBN-13 sin separadores")
+    public void testNormalizar() {
+        String normalizado = "9788437622774";
+        assertSame(normalizado, CodigoIsbn.normalizar(normalizado));
+        assertEquals(normalizado, CodigoIsbn.normalizar("ISBN-13: 978-84-376-2277-4"));
+        assertEquals("9780306406157", CodigoIsbn.normalizar("0-306-40615-2"));
+        assertEquals("9780804429573", CodigoIsbn.normalizar("080442957X"));
+        // Los ISBN no válidos se conservan para que los rechace la validación
+        assertEquals("978-84-376-2277-5", CodigoIsbn.normalizar("978-84-376-2277-5"));
+        assertNull(CodigoIsbn.normalizar(null));
+    }
+}
@@ -0,0 +1,112 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase GeneradorCodigoBarrasSnowflake.
+ */
+public class GeneradorCodigoBarrasSnowflakeTest {
+
+    /** 2025-01-01T00:00:00Z */
+    private static final long INSTANTE = 1735689600000L;
+
+    @Test
+    @DisplayName("Test de formato y dígito de control de los códigos")
+    public void testFormatoYDigitoControl() {
+        GeneradorCodigoBarrasSnowflake generador = new GeneradorCodigoBarrasSnowflake(7);
+
+        String codigo = generador.generar();
+
+        assertEquals(GeneradorCodigoBarrasSnowflake.LONGITUD, codigo.length());
+        assertTrue(codigo.startsWith("LIB-"));
+        assertTrue(GeneradorCodigoBarrasSnowflake.esValido(codigo));
+        // Un dígito mal leído o dos dígitos consecutivos intercambiados se detectan
+        char[] erroneo = codigo.toCharArray();
+        erroneo[10] = erroneo[10] == '9' ? '0' : (char) (erroneo[10] + 1);
+        assertFalse(GeneradorCodigoBarrasSnowflake.esValido(new String(erroneo)));
+        String transpuesto = codigo.substring(0, 20) + codigo.charAt(21) + codigo.charAt(20) + codigo.substring(22);
+        assertTrue(transpuesto.equals(codigo) || !GeneradorCodigoBarrasSnowflake.esValido(transpuesto));
+        assertFalse(GeneradorCodigoBarrasSnowflake.esValido("LIB-1700000000000-1"));
+        assertFalse(GeneradorCodigoBarrasSnowflake.esValido(null));
+    }
+
+    @Test
+    @DisplayName("Test de códigos únicos entre hilos y entre nodos")
+    public void testCodigosUnicosEntreHilosYNodos() throws InterruptedException {
+        int hilosPorNodo = 4;
+        int codigosPorHilo = 20000;
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Thread> hilos = new ArrayList<>();
+        for (int nodo = 0; nodo < 2; nodo++) {
+            GeneradorCodigoBarrasSnowflake generador = new GeneradorCodigoBarrasSnowflake(nodo);
+            for (int i = 0; i < hilosPorNodo; i++) {
+                Thread hilo = new Thread(() -> {
+                    try {
+                        inicio.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < codigosPorHilo; j++) {
+                        codigos.add(generador.generar());
+                    }
+                });
+                hilos.add(hilo);
+                hilo.start();
+            }
+        }
+        inicio.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertEquals(2 * hilosPorNodo * codigosPorHilo, codigos.size());
+    }
+
+    @Test
+    @DisplayName("Test de secuencia agotada y reloj que retrocede")
+    public void testSecuenciaAgotadaYRelojQueRetrocede() {
+        AtomicLong reloj = new AtomicLong(INSTANTE);
+        GeneradorCodigoBarrasSnowflake generador = new GeneradorCodigoBarrasSnowflake(3, reloj::get);
+
+        long anterior = generador.generarNumero();
+        // Más códigos de los que caben en un milisegundo, con el reloj parado
+        for (int i = 0; i < 5000; i++) {
+            long numero = generador.generarNumero();
+            assertTrue(numero > anterior);
+            anterior = numero;
+        }
+        reloj.addAndGet(-60000);
+        long numero = generador.generarNumero();
+        assertTrue(numero > anterior);
+        assertEquals(3, (numero >>> 12) & 1023);
+    }
+
+    @Test
+    @DisplayName("Test de nodos fuera de rango")
+    public void testNodoFueraDeRango() {
+        assertThrows(IllegalArgumentException.class, () -> new GeneradorCodigoBarrasSnowflake(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GeneradorCodigoBarrasSnowflake(GeneradorCodigoBarrasSnowflake.MAX_NODOS));
+    }
+
+    @Test
+    @DisplayName("Test de nodo configurado no válido")
+    public void testValidarNodo() {
+        assertEquals(7, GeneradorCodigoBarrasSnowflake.validarNodo(" 7 "));
+        assertThrows(IllegalStateException.class, () -> GeneradorCodigoBarrasSnowflake.validarNodo("siete"));
+        assertThrows(IllegalStateException.class, () -> GeneradorCodigoBarrasSnowflake.validarNodo("-1"));
+        assertThrows(IllegalStateException.class, () -> GeneradorCodigoBarrasSnowflake.validarNodo("1024"));
+    }
+}
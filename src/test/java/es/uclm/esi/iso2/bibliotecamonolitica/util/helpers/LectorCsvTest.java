@@ -0,0 +1,89 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase LectorCsv.
+ */
+public class LectorCsvTest {
+
+    private static LectorCsv lector(String texto, char separador) {
+        return new LectorCsv(new StringReader(texto), separador);
+    }
+
+    @Test
+    @DisplayName("Test de lectura de filas simples con saltos LF y CRLF")
+    public void testFilasSimples() throws IOException {
+        LectorCsv lector = lector("a,b,c\r\n1,2,3\n4,,6", ',');
+
+        assertArrayEquals(new String[] { "a", "b", "c" }, lector.siguienteFila());
+        assertEquals(1, lector.getLinea());
+        assertArrayEquals(new String[] { "1", "2", "3" }, lector.siguienteFila());
+        assertEquals(2, lector.getLinea());
+        assertArrayEquals(new String[] { "4", "", "6" }, lector.siguienteFila());
+        assertEquals(3, lector.getLinea());
+        assertNull(lector.siguienteFila());
+    }
+
+    @Test
+    @DisplayName("Test de campos entre comillas con separadores, comillas dobles y saltos de línea")
+    public void testCamposEntrecomillados() throws IOException {
+        LectorCsv lector = lector("\"El Quijote, 1ª parte\",\"Dijo \"\"hola\"\"\",\"línea 1\nlínea 2\"\nsiguiente,fila\n", ',');
+
+        assertArrayEquals(new String[] { "El Quijote, 1ª parte", "Dijo \"hola\"", "línea 1\nlínea 2" },
+                lector.siguienteFila());
+        assertEquals(1, lector.getLinea());
+        assertArrayEquals(new String[] { "siguiente", "fila" }, lector.siguienteFila());
+        assertEquals(3, lector.getLinea());
+        assertNull(lector.siguienteFila());
+    }
+
+    @Test
+    @DisplayName("Test de líneas vacías y marca de orden de bytes inicial")
+    public void testLineasVaciasYMarcaOrden() throws IOException {
+        LectorCsv lector = lector("\uFEFFisbn;titulo\n\n\r\n978;Libro\n\n", ';');
+
+        assertArrayEquals(new String[] { "isbn", "titulo" }, lector.siguienteFila());
+        assertArrayEquals(new String[] { "978", "Libro" }, lector.siguienteFila());
+        assertEquals(4, lector.getLinea());
+        assertNull(lector.siguienteFila());
+    }
+
+    @Test
+    @DisplayName("Test de comillas sin cerrar al final del fichero")
+    public void testComillasSinCerrar() throws IOException {
+        LectorCsv lector = lector("a,b\n\"sin cerrar,c\n", ',');
+
+        lector.siguienteFila();
+        IOException e = assertThrows(IOException.class, lector::siguienteFila);
+        assertTrue(e.getMessage().contains("línea 2"));
+    }
+
+    @Test
+    @DisplayName("Test de filas más largas que el buffer de lectura")
+    public void testFilasMasLargasQueElBuffer() throws IOException {
+        StringBuilder largo = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            largo.append((char) ('a' + i % 26));
+        }
+        LectorCsv lector = lector("x\t\"" + largo + "\"\ty\n", '\t');
+
+        assertArrayEquals(new String[] { "x", largo.toString(), "y" }, lector.siguienteFila());
+        assertNull(lector.siguienteFila());
+    }
+
+    @Test
+    @DisplayName("Test de detección del separador a partir de la cabecera")
+    public void testDetectarSeparador() {
+        assertEquals('\t', LectorCsv.detectarSeparador("isbn\ttitulo;autor"));
+        assertEquals(';', LectorCsv.detectarSeparador("isbn;titulo;autor"));
+        assertEquals(',', LectorCsv.detectarSeparador("isbn,titulo,autor"));
+        assertEquals(',', LectorCsv.detectarSeparador("isbn"));
+    }
+}
@@ -0,0 +1,181 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas unitarias para la clase LectorMarc21.
+ */
+public class LectorMarc21Test {
+
+    /** Delimitador de subcampo */
+    private static final String S = "\u001F";
+
+    @TempDir
+    Path directorio;
+
+    /**
+     * Construye un registro ISO 2709 con los campos indicados, cada uno con su
+     * etiqueta delante y sin el terminador de campo.
+     */
+    private static byte[] registro(boolean unicode, String... campos) throws IOException {
+        Charset codificacion = unicode ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+        ByteArrayOutputStream directorio = new ByteArrayOutputStream();
+        ByteArrayOutputStream datos = new ByteArrayOutputStream();
+        for (String campo : campos) {
+            byte[] bytes = (campo.substring(3) + "\u001E").getBytes(codificacion);
+            directorio.write(String.format("%s%04d%05d", campo.substring(0, 3), bytes.length, datos.size())
+                    .getBytes(StandardCharsets.US_ASCII));
+            datos.write(bytes);
+        }
+        directorio.write(0x1E);
+        int base = 24 + directorio.size();
+        int longitud = base + datos.size() + 1;
+        ByteArrayOutputStream registro = new ByteArrayOutputStream();
+        registro.write(String.format("%05dnam %c22%05d   4500", longitud, unicode ? 'a' : ' ', base)
+                .getBytes(StandardCharsets.US_ASCII));
+        registro.write(directorio.toByteArray());
+        registro.write(datos.toByteArray());
+        registro.write(0x1D);
+        return registro.toByteArray();
+    }
+
+    private Path escribir(byte[]... registros) throws IOException {
+        ByteArrayOutputStream contenido = new ByteArrayOutputStream();
+        for (byte[] registro : registros) {
+            contenido.write(registro);
+        }
+        return Files.write(directorio.resolve("volcado.mrc"), contenido.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Test de lectura de los campos de un registro en UTF-8")
+    public void testRegistroUnicode() throws IOException {
+        Path fichero = escribir(registro(true,
+                "001000123",
+                "008850101s1967    sp            000 1 spa d",
+                "020  " + S + "a0306406152 (rústica)" + S + "c12 EUR",
+                "1001 " + S + "aGarcía Márquez, Gabriel," + S + "d1927-2014.",
+                "24510" + S + "aCien años de soledad /" + S + "cGabriel García Márquez.",
+                "260  " + S + "aMadrid :" + S + "bCátedra," + S + "c[1987].",
+                "520  " + S + "aHistoria de la familia Buendía."));
+
+        try (LectorMarc21 lector = LectorMarc21.abrir(fichero)) {
+            String[] fila = lector.siguienteFila();
+            assertArrayEquals(new String[] { "0306406152", "Cien años de soledad", "García Márquez, Gabriel",
+                "Cátedra", "1987", "Historia de la familia Buendía." }, fila);
+            assertEquals(1, lector.getLinea());
+            assertNull(lector.siguienteFila());
+        }
+    }
+
+    @Test
+    @DisplayName("Test de subtítulo, campo 264 y año del 008 como alternativa")
+    public void testSubtituloY264() throws IOException {
+        Path fichero = escribir(registro(true,
+                "008150101s2015    sp            000 0 spa d",
+                "24500" + S + "aEl Quijote :" + S + "bedición del IV centenario.",
+                "264 0" + S + "bProductora," + S + "c2014.",
+                "264 1" + S + "aBarcelona :" + S + "bReal Academia Española."));
+
+        try (LectorMarc21 lector = LectorMarc21.abrir(fichero)) {
+            String[] fila = lector.siguienteFila();
+            assertNull(fila[0]);
+            assertEquals("El Quijote : edición del IV centenario", fila[1]);
+            assertNull(fila[2]);
+            assertEquals("Real Academia Española", fila[3]);
+            assertEquals("2015", fila[4]);
+            assertNull(fila[5]);
+        }
+    }
+
+    @Test
+    @DisplayName("Test del primer ISBN válido entre varios campos 020")
+    public void testPrimerIsbnValido() throws IOException {
+        Path fichero = escribir(
+                registro(true, "020  " + S + "a9788437622775", "020  " + S + "a978-84-376-2277-4",
+                        "24500" + S + "aUno"),
+                registro(true, "020  " + S + "a1234", "24500" + S + "aDos"));
+
+        try (LectorMarc21 lector = LectorMarc21.abrir(fichero)) {
+            assertEquals("978-84-376-2277-4", lector.siguienteFila()[0]);
+            // Sin ninguno válido se devuelve el primero, para que el rechazo lo muestre
+            assertEquals("1234", lector.siguienteFila()[0]);
+        }
+    }
+
+    @Test
+    @DisplayName("Test de diacríticos ANSEL en registros MARC-8")
+    public void testDiacriticosMarc8() throws IOException {
+        Path fichero = escribir(registro(false,
+                // 0xE2 es el acento agudo, 0xE4 la tilde y 0xA1 la L con barra, que no se admite
+                "1001 " + S + "aGarc\u00E2ia M\u00E2arquez, Gabriel.",
+                "24510" + S + "aEl oto\u00E4no del patriarca /",
+                "260  " + S + "bEdiciones N\u00E2inguna \u00A1,"));
+
+        try (LectorMarc21 lector = LectorMarc21.abrir(fichero)) {
+            String[] fila = lector.siguienteFila();
+            assertEquals("García Márquez, Gabriel", fila[2]);
+            assertEquals("El otoño del patriarca", fila[1]);
+            // Los caracteres especiales fuera de los diacríticos admitidos se sustituyen
+            assertEquals("Ediciones Nínguna \uFFFD", fila[3]);
+        }
+    }
+
+    @Test
+    @DisplayName("Test de muchos registros separados por saltos de línea en varias ventanas")
+    public void testVariasVentanas() throws IOException {
+        ByteArrayOutputStream contenido = new ByteArrayOutputStream();
+        String relleno = String.join("", Collections.nCopies(40, "texto "));
+        for (int i = 0; i < 500; i++) {
+            contenido.write(registro(true, "24500" + S + "aLibro " + i, "520  " + S + "a" + relleno));
+            contenido.write('\n');
+        }
+        Path fichero = Files.write(directorio.resolve("grande.mrc"), contenido.toByteArray());
+
+        try (LectorMarc21 lector = new LectorMarc21(FileChannel.open(fichero, StandardOpenOption.READ), 1)) {
+            for (int i = 0; i < 500; i++) {
+                assertEquals("Libro " + i, lector.siguienteFila()[1]);
+                assertEquals(i + 1, lector.getLinea());
+            }
+            assertNull(lector.siguienteFila());
+        }
+    }
+
+    @Test
+    @DisplayName("Test de registro truncado al final del fichero")
+    public void testRegistroTruncado() throws IOException {
+        byte[] completo = registro(true, "24500" + S + "aUno");
+        byte[] truncado = Arrays.copyOf(completo, completo.length - 5);
+        Path fichero = escribir(completo, truncado);
+
+        try (LectorMarc21 lector = LectorMarc21.abrir(fichero)) {
+            assertNotNull(lector.siguienteFila());
+            assertThrows(IOException.class, lector::siguienteFila);
+        }
+    }
+
+    @Test
+    @DisplayName("Test de limpieza de la puntuación ISBD")
+    public void testLimpiar() {
+        assertEquals("Cátedra", LectorMarc21.limpiar("Cátedra,"));
+        assertEquals("Cien años de soledad", LectorMarc21.limpiar("Cien años de soledad /"));
+        assertEquals("Tolkien, J.R.R.", LectorMarc21.limpiar("Tolkien, J.R.R."));
+        assertEquals("Cervantes Saavedra, Miguel de", LectorMarc21.limpiar("Cervantes Saavedra, Miguel de."));
+        assertNull(LectorMarc21.limpiar(" : "));
+    }
+}
@@ -0,0 +1,33 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la clase NormalizadorTexto.
+ */
+public class NormalizadorTextoTest {
+
+    @Test
+    @DisplayName("Test de normalización de tildes, diéresis y mayúsculas")
+    public void testNormalizar() {
+        assertEquals("garcia marquez", NormalizadorTexto.normalizar("García MÁRQUEZ"));
+        assertEquals("pinguino", NormalizadorTexto.normalizar("Pingüino"));
+        assertEquals("españa", NormalizadorTexto.normalizar("ESPAÑA"));
+        assertEquals("", NormalizadorTexto.normalizar(null));
+    }
+
+    @Test
+    @DisplayName("Test de división en términos")
+    public void testTokenizar() {
+        assertEquals(Arrays.asList("j", "r", "r", "tolkien"), NormalizadorTexto.tokenizar("J.R.R. Tolkien"));
+        assertEquals(Arrays.asList("el", "señor", "de", "los", "anillos"),
+                NormalizadorTexto.tokenizar("  El señor de los anillos! "));
+        assertTrue(NormalizadorTexto.tokenizar(null).isEmpty());
+        assertTrue(NormalizadorTexto.tokenizar("-- ,").isEmpty());
+    }
+}
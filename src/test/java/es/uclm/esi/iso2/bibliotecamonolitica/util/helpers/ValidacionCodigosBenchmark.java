@@ -0,0 +1,88 @@
+package es.uclm.esi.iso2.bibliotecamonolitica.util.helpers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Prueba de rendimiento de {@link CodigoIsbn} y {@link CodigoDniNif} frente a
+ * las expresiones regulares con las que se validaban antes el ISBN de los
+ * libros y el DNI/NIF de los usuarios. Cada operación valida una muestra
+ * variada de valores válidos y no válidos, como en una importación masiva.
+ * <p>
+ * No forma parte de las pruebas unitarias; se ejecuta con el método
+ * {@link #main(String[])} desde el classpath de pruebas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidacionCodigosBenchmark {
+
+    /** Expresión con la que se validaba el ISBN de Libro */
+    private static final Pattern PATRON_ISBN = Pattern.compile(
+            "^(?:ISBN(?:-13)?:?\\s)?(?=[0-9X]{13}$|(?=(?:[0-9]+[-\\s]){4})[-\\s0-9X]{17}$)97[89][-\\s]?[0-9]{1,5}[-\\s]?[0-9]+[-\\s]?[0-9]+[-\\s]?[0-9X]$");
+
+    /** Expresión con la que se validaba el DNI/NIF de Usuario */
+    private static final Pattern PATRON_DNI_NIF = Pattern.compile("[0-9]{8}[A-Z]");
+
+    private final String[] isbns = {
+        "9788437622774", "978-84-376-2277-4", "ISBN-13: 978-84-376-2277-4", "9788437622775",
+        "0-306-40615-2", "978-0-306-40615-7", "97884376227", "978 0 8044 2957 3"
+    };
+
+    private final String[] dniNifs = {
+        "12345678Z", "87654321X", "12345678A", "X1234567L", "1234567Z", "12345678-Z", "00000000T", "99999999R"
+    };
+
+    @Benchmark
+    public void isbnExpresionRegular(Blackhole resultado) {
+        for (String isbn : isbns) {
+            resultado.consume(PATRON_ISBN.matcher(isbn).matches());
+        }
+    }
+
+    @Benchmark
+    public void isbnCodigoControl(Blackhole resultado) {
+        for (String isbn : isbns) {
+            resultado.consume(CodigoIsbn.esValido(isbn));
+        }
+    }
+
+    @Benchmark
+    public void dniNifExpresionRegular(Blackhole resultado) {
+        for (String dniNif : dniNifs) {
+            resultado.consume(PATRON_DNI_NIF.matcher(dniNif).matches());
+        }
+    }
+
+    @Benchmark
+    public void dniNifLetraControl(Blackhole resultado) {
+        for (String dniNif : dniNifs) {
+            resultado.consume(CodigoDniNif.esValido(dniNif));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(ValidacionCodigosBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}